@@ -170,6 +170,11 @@ public class ConfigDefaults {
     private static final String DB_PROTO = "hibernate.connection.driver_proto";
     public static final String DB_CLASS = "hibernate.connection.driver_class";
 
+    /**
+     * Whether the IN (%s) lists of datasource queries are bound as a single array parameter
+     */
+    public static final String DB_ARRAY_IN_CLAUSE = "java.db_array_in_clause";
+
     private static final String REPORT_DB_BACKEND = "report_db_backend";
     public static final String REPORT_DB_USER = "report_db_user";
     public static final String REPORT_DB_PASSWORD = "report_db_password";
@@ -182,6 +187,9 @@ public class ConfigDefaults {
     private static final String REPORT_DB_PROTO = "reporting.hibernate.connection.driver_proto";
     public static final String REPORT_DB_BATCH_SIZE = "report_db_batch_size";
     public static final String REPORT_DB_HUB_WORKERS = "report_db_hub_workers";
+    public static final String REPORT_DB_INCREMENTAL_REFRESH = "report_db_incremental_refresh";
+    public static final String REPORT_DB_BULK_LOAD = "report_db_bulk_load";
+    public static final String REPORT_DB_PARALLEL_TABLES = "report_db_parallel_tables";
 
     public static final String LOOKUP_EXCEPT_SEND_EMAIL = "lookup_exception_email";
 
@@ -192,6 +200,18 @@ public class ConfigDefaults {
     /** Prometheus metric export flag */
     public static final String PROMETHEUS_MONITORING_ENABLED = "prometheus_monitoring_enabled";
 
+    /** Interval in seconds between two refreshes of the systems metrics */
+    public static final String PROMETHEUS_SYSTEMS_REFRESH_INTERVAL = "java.prometheus_systems_refresh_interval";
+
+    /** Maximum number of queued minion actions Taskomatic hands over to its workers at once */
+    public static final String ACTION_DISPATCH_BATCH_SIZE = "java.action_dispatch_batch_size";
+
+    /** Maximum interval in seconds between two checks for queued minion actions */
+    public static final String ACTION_DISPATCH_POLL_INTERVAL = "java.action_dispatch_poll_interval";
+
+    /** Number of rows fetched at once by API calls streaming their results */
+    public static final String API_STREAMING_FETCH_SIZE = "java.api_streaming_fetch_size";
+
     /**
      * System Currency defaults
      */
@@ -208,6 +228,12 @@ public class ConfigDefaults {
      * Taskomatic defaults
      */
     private static final String TASKOMATIC_CHANNEL_REPODATA_WORKERS = "java.taskomatic_channel_repodata_workers";
+    public static final String TASKOMATIC_CHANNEL_REPODATA_INCREMENTAL =
+            "java.taskomatic_channel_repodata_incremental";
+    public static final String TASKOMATIC_CHANNEL_REPODATA_COMPRESSION =
+            "java.taskomatic_channel_repodata_compression";
+    public static final String TASKOMATIC_DEB_METADATA_COMPRESSION = "java.taskomatic_deb_metadata_compression";
+    private static final String TASKOMATIC_REPODATA_COMPRESSION_LEVEL = "java.taskomatic_repodata_compression_level_";
 
     /**
      * HTTP proxy defaults
@@ -259,6 +285,26 @@ public class ConfigDefaults {
      */
     public static final String SALT_CHECK_DOWNLOAD_TOKENS = "java.salt_check_download_tokens";
 
+    /**
+     * Maximum number of validated tokens and package paths cached by the download endpoint. 0 disables caching.
+     */
+    public static final String DOWNLOAD_CACHE_SIZE = "java.download_cache_size";
+
+    /**
+     * Lifetime in seconds of the validated tokens and package paths cached by the download endpoint
+     */
+    public static final String DOWNLOAD_CACHE_LIFETIME = "java.download_cache_lifetime";
+
+    /**
+     * Maximum number of package name, EVR and arch ids cached by each process. 0 disables caching.
+     */
+    public static final String PACKAGE_REFERENCE_CACHE_SIZE = "java.package_reference_cache_size";
+
+    /**
+     * Lifetime in seconds of the cached package name, EVR and arch ids
+     */
+    public static final String PACKAGE_REFERENCE_CACHE_LIFETIME = "java.package_reference_cache_lifetime";
+
     /**
      * If true, Kiwi OS Image building feature preview will be enabled
      */
@@ -327,6 +373,17 @@ public class ConfigDefaults {
      */
     public static final String SALT_EVENTS_PER_COMMIT = "java.salt_events_per_commit";
 
+    /**
+     * Number of threads shared by all Salt event queues to process events of different minions in parallel.
+     * 0 disables parallel dispatch and every queue processes its events sequentially.
+     */
+    public static final String SALT_EVENT_DISPATCH_WORKERS = "java.salt_event_dispatch_workers";
+
+    /**
+     * Maximum number of events of a minion waiting to be processed in parallel dispatch mode.
+     */
+    public static final String SALT_EVENT_DISPATCH_MAILBOX_SIZE = "java.salt_event_dispatch_mailbox_size";
+
     /**
      * Single Sign-On associated config option name in rhn.conf
      */
@@ -761,6 +818,15 @@ public class ConfigDefaults {
         return DB_BACKEND_POSTGRESQL.equals(Config.get().getString(DB_BACKEND));
     }
 
+    /**
+     * Returns whether the IN (%s) lists of datasource queries are bound as a single array
+     * parameter instead of being expanded in batches of literal values
+     * @return true if lists are bound as arrays
+     */
+    public boolean isDbArrayInClauseEnabled() {
+        return Config.get().getBoolean(DB_ARRAY_IN_CLAUSE, true);
+    }
+
     private boolean isPostgresql(String backend) {
         return DB_BACKEND_POSTGRESQL.equals(backend);
     }
@@ -863,6 +929,45 @@ public class ConfigDefaults {
         return Config.get().getInt(TASKOMATIC_CHANNEL_REPODATA_WORKERS, 1);
     }
 
+    /**
+     * Returns true if channel repodata should be generated incrementally, reusing the
+     * compressed entries of packages which were already part of the previous metadata
+     * @return true if repodata is generated incrementally
+     */
+    public boolean isTaskoChannelRepodataIncremental() {
+        return Config.get().getBoolean(TASKOMATIC_CHANNEL_REPODATA_INCREMENTAL);
+    }
+
+    /**
+     * Returns the compression format of the rpm channel metadata files
+     * @return the format label: gzip, xz or zstd
+     */
+    public String getTaskoChannelRepodataCompression() {
+        return Config.get().getString(TASKOMATIC_CHANNEL_REPODATA_COMPRESSION, "gzip");
+    }
+
+    /**
+     * Returns the compression formats of the Debian Packages files, gzip is always included
+     * @return the format labels
+     */
+    public List<String> getTaskoDebMetadataCompression() {
+        List<String> formats = Config.get().getList(TASKOMATIC_DEB_METADATA_COMPRESSION);
+        formats.replaceAll(String::trim);
+        if (!formats.contains("gzip")) {
+            formats.add(0, "gzip");
+        }
+        return formats;
+    }
+
+    /**
+     * Returns the compression level of a channel metadata compression format
+     * @param format the format label
+     * @return the compression level, negative for the default of the format
+     */
+    public int getTaskoRepodataCompressionLevel(String format) {
+        return Config.get().getInt(TASKOMATIC_REPODATA_COMPRESSION_LEVEL + format, -1);
+    }
+
     /**
      * Gets the proxy host.
      * @return the proxy host
@@ -983,6 +1088,40 @@ public class ConfigDefaults {
         return Config.get().getFloat(SALT_BATCH_DELAY, 1);
     }
 
+    /**
+     * Returns the maximum number of entries of each cache of the download endpoint
+     * @return the maximum number of entries, 0 if caching is disabled
+     */
+    public int getDownloadCacheSize() {
+        return Config.get().getInt(DOWNLOAD_CACHE_SIZE, 10000);
+    }
+
+    /**
+     * Returns the lifetime of the entries cached by the download endpoint. This bounds how long a change not
+     * happening in the same process, like a token revoked by Taskomatic, can go unnoticed.
+     * @return the lifetime in seconds
+     */
+    public int getDownloadCacheLifetime() {
+        return Config.get().getInt(DOWNLOAD_CACHE_LIFETIME, 60);
+    }
+
+    /**
+     * Returns the maximum number of entries of each package name, EVR and arch id cache
+     * @return the maximum number of entries, 0 if caching is disabled
+     */
+    public int getPackageReferenceCacheSize() {
+        return Config.get().getInt(PACKAGE_REFERENCE_CACHE_SIZE, 100000);
+    }
+
+    /**
+     * Returns the lifetime of the cached package name, EVR and arch ids. This bounds how long a row changed or
+     * deleted while the process is running, like by an upgrade of the schema, can still be returned.
+     * @return the lifetime in seconds
+     */
+    public int getPackageReferenceCacheLifetime() {
+        return Config.get().getInt(PACKAGE_REFERENCE_CACHE_LIFETIME, 86400);
+    }
+
     /**
      * Returns true if Prometheus monitoring is enabled
      * @return true if Prometheus monitoring is enabled
@@ -991,6 +1130,40 @@ public class ConfigDefaults {
         return Config.get().getBoolean(PROMETHEUS_MONITORING_ENABLED);
     }
 
+    /**
+     * Returns the interval between two refreshes of the systems metrics. Scrapes in between
+     * get the values of the last refresh.
+     * @return the interval in seconds
+     */
+    public int getPrometheusSystemsRefreshInterval() {
+        return Config.get().getInt(PROMETHEUS_SYSTEMS_REFRESH_INTERVAL, 60);
+    }
+
+    /**
+     * Returns the maximum number of queued minion actions Taskomatic hands over to its workers at once.
+     * @return the batch size
+     */
+    public int getActionDispatchBatchSize() {
+        return Config.get().getInt(ACTION_DISPATCH_BATCH_SIZE, 100);
+    }
+
+    /**
+     * Returns the maximum interval between two checks for queued minion actions. Taskomatic is notified
+     * of new actions, this only matters if a notification gets lost, eg. on database reconnection.
+     * @return the interval in seconds
+     */
+    public int getActionDispatchPollInterval() {
+        return Config.get().getInt(ACTION_DISPATCH_POLL_INTERVAL, 30);
+    }
+
+    /**
+     * Returns the number of rows API calls streaming their results fetch from the database cursor at once.
+     * @return the fetch size
+     */
+    public int getApiStreamingFetchSize() {
+        return Config.get().getInt(API_STREAMING_FETCH_SIZE, 1000);
+    }
+
     /**
      * Returns the duration, in hours, of the time window for Salt minions to
      * stage packages in advance of scheduled installations or upgrades.
@@ -1050,6 +1223,24 @@ public class ConfigDefaults {
         return Config.get().getInt(SALT_EVENTS_PER_COMMIT, 1);
     }
 
+    /**
+     * Number of threads shared by all Salt event queues to process events of different minions in parallel.
+     * Events of the same minion are always processed in order. 0 disables parallel dispatch.
+     * @return the number of dispatch workers
+     */
+    public int getSaltEventDispatchWorkers() {
+        return Config.get().getInt(SALT_EVENT_DISPATCH_WORKERS, 0);
+    }
+
+    /**
+     * Maximum number of events of a minion waiting to be processed in parallel dispatch mode. The waiting events
+     * of a minion are processed in a single transaction.
+     * @return the mailbox size
+     */
+    public int getSaltEventDispatchMailboxSize() {
+        return Config.get().getInt(SALT_EVENT_DISPATCH_MAILBOX_SIZE, 100);
+    }
+
 
     /**
      * Returns the notifications type disabled.
@@ -100,6 +100,36 @@ public final class NamedPreparedStatement {
         return sql.toString();
     }
 
+    /**
+     * Given a SQL query with named bind parameters replace each of them
+     * with a SQL literal, for the statements that cannot take bind
+     * parameters, like COPY.
+     * @param rawSQL the SQL statement to create.
+     * @param literals the SQL literal to use for each named parameter.
+     * @return a SQL statement without bind parameters
+     * @throws BindVariableNotFoundException if the statement uses a named
+     *         parameter without a literal
+     */
+    public static String inlineBindParams(String rawSQL,
+            Map<String, String> literals) {
+        StringBuilder sql = new StringBuilder(rawSQL);
+
+        int idx = findColon(0, sql);
+        while (idx != -1) {
+            int end = findEndofVariable(sql, idx);
+            String name = sql.substring(idx + 1, end).toLowerCase();
+            String literal = literals.get(name);
+            if (literal == null) {
+                throw new BindVariableNotFoundException("No value for variable: " +
+                        name);
+            }
+            sql = sql.replace(idx, end, literal);
+
+            idx = findColon(idx + literal.length(), sql);
+        }
+        return sql.toString();
+    }
+
     /**
      * Execute the CallableStatement using the given values for bind parameters.
      * @param cs The CallableStatement to execute
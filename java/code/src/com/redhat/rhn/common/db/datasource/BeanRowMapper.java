@@ -0,0 +1,231 @@
+/*
+ * Copyright (c) 2023 SUSE LLC
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.common.db.datasource;
+
+import com.redhat.rhn.common.MethodInvocationException;
+import com.redhat.rhn.common.translation.TranslationException;
+import com.redhat.rhn.common.translation.Translator;
+import com.redhat.rhn.common.util.MethodNotFoundException;
+import com.redhat.rhn.common.util.StringUtil;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Sets the columns of a query result on the properties of a DTO class.
+ *
+ * The setter and getter lookups, which used to be done for every cell, are done once per
+ * DTO class and list of columns, and the methods are called through method handles.
+ * The behaviour is the one of {@link com.redhat.rhn.common.util.MethodUtil#callMethod}:
+ * the first setter accepting the value, possibly after a {@link Translator} conversion,
+ * is called. Columns whose setter takes a {@link Collection} are added to the collection
+ * returned by the matching getter instead. When several columns have the same name, only
+ * the first one is mapped.
+ */
+public class BeanRowMapper {
+
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+    private static final ClassValue<Map<List<String>, BeanRowMapper>> MAPPERS =
+            new ClassValue<>() {
+                @Override
+                protected Map<List<String>, BeanRowMapper> computeValue(Class<?> type) {
+                    return new ConcurrentHashMap<>();
+                }
+            };
+
+    private final ColumnSetter[] setters;
+
+    private BeanRowMapper(Class<?> clazz, List<String> columns) {
+        setters = new ColumnSetter[columns.size()];
+        Set<String> mapped = new HashSet<>();
+        for (int i = 0; i < setters.length; i++) {
+            // like a lookup by name, only the first of the columns with the same name is mapped
+            if (mapped.add(columns.get(i))) {
+                setters[i] = new ColumnSetter(clazz, columns.get(i));
+            }
+        }
+    }
+
+    /**
+     * Returns the mapper of a DTO class for a list of columns, creating it on first use.
+     * @param clazz the DTO class
+     * @param columns the lower case column names, in result set order
+     * @return the mapper
+     */
+    public static BeanRowMapper forColumns(Class<?> clazz, List<String> columns) {
+        Map<List<String>, BeanRowMapper> mappers = MAPPERS.get(clazz);
+        BeanRowMapper mapper = mappers.get(columns);
+        if (mapper == null) {
+            List<String> key = List.copyOf(columns);
+            mapper = mappers.computeIfAbsent(key, k -> new BeanRowMapper(clazz, k));
+        }
+        return mapper;
+    }
+
+    /**
+     * Sets the value of a column on a DTO. Nothing is set if an earlier column has the same name.
+     * @param obj the DTO
+     * @param column the index of the column in the list given to {@link #forColumns}, 0 based
+     * @param value the value, can be null
+     */
+    public void setColumn(Object obj, int column, Object value) {
+        if (setters[column] != null) {
+            setters[column].set(obj, value);
+        }
+    }
+
+    /**
+     * Looks up and calls the setter and getter of one column
+     */
+    private static final class ColumnSetter {
+
+        private final String setName;
+        private final String getName;
+        private final Class<?> clazz;
+        // the setters named after the column with a single parameter, in getMethods() order
+        private final Method[] methods;
+        private final MethodHandle[] handles;
+        private final boolean collection;
+        private volatile MethodHandle getter;
+
+        ColumnSetter(Class<?> clazzIn, String columnName) {
+            clazz = clazzIn;
+            setName = StringUtil.beanify("set " + columnName);
+            getName = StringUtil.beanify("get " + columnName);
+
+            List<Method> found = new ArrayList<>();
+            Boolean isCollection = null;
+            for (Method method : clazz.getMethods()) {
+                if (!method.getName().equals(setName)) {
+                    continue;
+                }
+                // only the first setter decides, as with the original reflective lookup
+                if (isCollection == null && method.getParameterCount() > 0) {
+                    isCollection = Collection.class.isAssignableFrom(method.getParameterTypes()[0]);
+                }
+                if (method.getParameterCount() == 1) {
+                    found.add(method);
+                }
+            }
+            collection = isCollection != null && isCollection;
+            methods = found.toArray(new Method[0]);
+            handles = new MethodHandle[methods.length];
+            for (int i = 0; i < methods.length; i++) {
+                handles[i] = unreflect(methods[i], SETTER_TYPE);
+            }
+        }
+
+        void set(Object obj, Object value) {
+            if (collection) {
+                @SuppressWarnings("unchecked")
+                Collection<Object> c = (Collection<Object>) get(obj);
+                if (c == null) {
+                    c = new ArrayList<>();
+                }
+                c.add(value);
+                call(obj, c);
+            }
+            else {
+                call(obj, value);
+            }
+        }
+
+        private Object get(Object obj) {
+            if (getter == null) {
+                Method method;
+                try {
+                    method = clazz.getMethod(getName);
+                }
+                catch (NoSuchMethodException e) {
+                    throw new MethodNotFoundException("Could not find method called: " + getName +
+                            " in class: " + clazz.getName() + " with params: []");
+                }
+                getter = unreflect(method, GETTER_TYPE);
+            }
+            try {
+                return checkAccess(getter, getName).invokeExact(obj);
+            }
+            catch (Throwable t) {
+                throw invocationFailure(getName, t);
+            }
+        }
+
+        private void call(Object obj, Object value) {
+            for (int i = 0; i < methods.length; i++) {
+                Class<?> type = methods[i].getParameterTypes()[0];
+                Object converted;
+                if ((value == null && !type.isPrimitive()) || type.isInstance(value)) {
+                    converted = value;
+                }
+                else {
+                    try {
+                        converted = Translator.convert(value, type);
+                    }
+                    catch (TranslationException e) {
+                        // try the next setter
+                        continue;
+                    }
+                }
+                MethodHandle handle = checkAccess(handles[i], setName);
+                try {
+                    handle.invokeExact(obj, converted);
+                }
+                catch (Throwable t) {
+                    throw invocationFailure(setName, t);
+                }
+                return;
+            }
+            throw new MethodNotFoundException("Could not find method called: " + setName + " in class: " +
+                    clazz.getName() + " with params: [" + (value == null ? "" :
+                    "type: " + value.getClass().getName() + ", value: " + value) + "]");
+        }
+
+        private static MethodInvocationException invocationFailure(String name, Throwable t) {
+            return new MethodInvocationException("Something bad happened when calling " + name,
+                    new InvocationTargetException(t));
+        }
+
+        /**
+         * @return the handle, or null if the method cannot be accessed
+         */
+        private static MethodHandle unreflect(Method method, MethodType type) {
+            try {
+                return MethodHandles.publicLookup().unreflect(method).asType(type);
+            }
+            catch (IllegalAccessException e) {
+                return null;
+            }
+        }
+
+        private static MethodHandle checkAccess(MethodHandle handle, String name) {
+            if (handle == null) {
+                throw new MethodInvocationException("Could not access " + name);
+            }
+            return handle;
+        }
+    }
+}
@@ -16,6 +16,7 @@ package com.redhat.rhn.common.db.datasource;
 
 import com.redhat.rhn.common.ObjectCreateWrapperException;
 import com.redhat.rhn.common.RhnRuntimeException;
+import com.redhat.rhn.common.conf.ConfigDefaults;
 import com.redhat.rhn.common.db.NamedPreparedStatement;
 import com.redhat.rhn.common.hibernate.HibernateHelper;
 import com.redhat.rhn.common.hibernate.HibernateRuntimeException;
@@ -40,12 +41,16 @@ import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 import javax.persistence.FlushModeType;
@@ -71,6 +76,16 @@ public class CachedStatement implements Serializable {
      */
     public static final int BATCH_SIZE = 500;
 
+    /**
+     * The IN (%s) lists which can be replaced by a comparison with an array parameter
+     */
+    private static final Pattern IN_CLAUSE = Pattern.compile("(?i)\\b(not\\s+)?in\\s*\\(\\s*%s\\s*\\)");
+
+    /**
+     * The name of the array parameter replacing the IN (%s) lists
+     */
+    private static final String IN_CLAUSE_PARAM = "in_clause_values";
+
     /*
      * This is the original config for this query as specified in the mode query
      * xml file. It is intended to be immutable.
@@ -97,6 +112,8 @@ public class CachedStatement implements Serializable {
     private CachedStatement parentStatement;
     private RestartData restartData = null;
     private Session session = null;
+    // true if the query text was changed, the original query cannot be used anymore
+    private boolean modified = false;
 
     // We could (and probably should) cache the ResultSet metadata here as
     // well. There is no reason that the first call to each statement
@@ -219,6 +236,7 @@ public class CachedStatement implements Serializable {
             sb.append("'").append(value).append("'");
         }
         this.modifyQuery(replaceToken, sb.toString());
+        modified = true;
     }
 
     private void modifyQuery(String replaceToken, String replacementString) {
@@ -268,6 +286,98 @@ public class CachedStatement implements Serializable {
     }
 
 
+    /**
+     * Executes a query fetching its rows through a server side cursor and hands them over to the consumer
+     * in batches as they are read, so that the whole result is never held in memory. Elaborators are not
+     * executed and rows are always returned as maps.
+     *
+     * @param parameters the query parameters
+     * @param mode the select mode
+     * @param batchSize the number of rows fetched at once and passed to each consumer call
+     * @param consumer the consumer of the batches
+     */
+    void executeInBatches(Map<String, ?> parameters, SelectMode mode, int batchSize,
+            Consumer<DataResult<Map<String, Object>>> consumer) {
+        List<DataResult<Map<String, Object>>> batch = new ArrayList<>(1);
+        batch.add(new DataResult<>(mode));
+        executeWithCursor(parameters, mode, batchSize, 0, false, row -> {
+            batch.get(0).add((Row) row);
+            if (batch.get(0).size() == batchSize) {
+                consumer.accept(batch.get(0));
+                batch.set(0, new DataResult<>(mode));
+            }
+        });
+        if (!batch.get(0).isEmpty()) {
+            consumer.accept(batch.get(0));
+        }
+    }
+
+    /**
+     * Executes a query fetching its rows through a server side cursor and hands them over to the consumer
+     * one at a time as they are read, so that the whole result is never held in memory. Elaborators are
+     * not executed.
+     *
+     * @param parameters the query parameters
+     * @param mode the select mode
+     * @param fetchSize the number of rows fetched from the cursor at once
+     * @param maxRows the maximum number of rows to read, 0 for no limit
+     * @param mapToClass true to return rows as instances of the class of the mode, if any, false to
+     * always return them as maps
+     * @param consumer the consumer of the rows
+     */
+    void executeWithCursor(Map<String, ?> parameters, SelectMode mode, int fetchSize, int maxRows,
+            boolean mapToClass, Consumer<Object> consumer) {
+        this.sqlStatement = NamedPreparedStatement.replaceBindParams(sqlStatement, qMap);
+        String className = mode.getClassString();
+        doWithStolenConnection(connection -> {
+            PreparedStatement ps = null;
+            ResultSet rs = null;
+            try {
+                ps = prepareStatement(connection, sqlStatement, mode);
+                // a positive fetch size makes the JDBC driver read the rows through a cursor
+                ps.setFetchSize(fetchSize);
+                ps.setMaxRows(maxRows);
+                NamedPreparedStatement.execute(ps, qMap, setupParamMap(parameters));
+                rs = ps.getResultSet();
+
+                List<String> columns = getColumnNames(rs.getMetaData());
+                Class<?> clazz = null;
+                BeanRowMapper mapper = null;
+                if (mapToClass && className != null && !className.equals("java.util.Map")) {
+                    clazz = Class.forName(className);
+                    mapper = BeanRowMapper.forColumns(clazz, columns);
+                }
+                while (rs.next()) {
+                    if (mapper == null) {
+                        Row row = new Row();
+                        for (String column : columns) {
+                            row.put(column, getObject(rs, column));
+                        }
+                        consumer.accept(row);
+                    }
+                    else {
+                        Object obj = clazz.getDeclaredConstructor().newInstance();
+                        addToObject(columns, mapper, rs, obj, false);
+                        consumer.accept(obj);
+                    }
+                }
+                return null;
+            }
+            catch (SQLException e) {
+                throw SqlExceptionTranslator.sqlException(e);
+            }
+            catch (HibernateException he) {
+                throw new HibernateRuntimeException("HibernateException executing CachedStatement", he);
+            }
+            catch (ReflectiveOperationException e) {
+                throw new ObjectCreateWrapperException("Could not create " + className, e);
+            }
+            finally {
+                HibernateHelper.cleanupDB(rs, ps);
+            }
+        });
+    }
+
     <T> DataResult<T> execute(Map<String, ?> parameters, Mode mode) {
         return internalExecute(parameters, null, mode);
     }
@@ -295,7 +405,7 @@ public class CachedStatement implements Serializable {
         Object resultObj = executeChecking(sqlStatement, qMap, parameters, mode, null);
         Class<DataResult<T>> drClazz = (Class<DataResult<T>>)(Class<?>) DataResult.class;
         if (drClazz.isAssignableFrom(resultObj.getClass())) {
-            return drClazz.cast(executeChecking(sqlStatement, qMap, parameters, mode, null));
+            return drClazz.cast(resultObj);
         }
         return new DataResult<>(mode);
     }
@@ -305,6 +415,15 @@ public class CachedStatement implements Serializable {
         this.sqlStatement = NamedPreparedStatement.replaceBindParams(sqlStatement, qMap);
 
         if (sqlStatement.contains("%s")) {
+            if (inClause == null || inClause.isEmpty()) {
+                return 0;
+            }
+            ArrayParameter values = ArrayParameter.of(inClause);
+            CachedStatement arrayStatement = values == null ? null : arrayStatement();
+            if (arrayStatement != null) {
+                return arrayStatement.internalExecuteUpdate(withInClause(parameters, values), null, mode);
+            }
+
             int returnInt = 0;
 
             int subStart = 0;
@@ -352,6 +471,11 @@ public class CachedStatement implements Serializable {
             if (inClause == null || inClause.isEmpty()) {
                 return new DataResult<>(mode);
             }
+            ArrayParameter values = ArrayParameter.of(inClause);
+            CachedStatement arrayStatement = values == null ? null : arrayStatement();
+            if (arrayStatement != null) {
+                return arrayStatement.internalExecute(withInClause(parameters, values), null, mode);
+            }
             Class<DataResult<T>> drClazz = (Class<DataResult<T>>)(Class<?>) DataResult.class;
 
             List<String> batches = queryBatches(inClause);
@@ -374,6 +498,69 @@ public class CachedStatement implements Serializable {
         }
     }
 
+    /**
+     * Returns a statement running this query with its IN (%s) lists replaced by comparisons
+     * with an array parameter. The statement text does not depend on the number of values,
+     * so the same prepared statement can be used for any list.
+     * @return the statement, or null if disabled or some %s are not IN lists
+     */
+    private CachedStatement arrayStatement() {
+        if (modified || !ConfigDefaults.get().isDbArrayInClauseEnabled()) {
+            return null;
+        }
+        Matcher matcher = IN_CLAUSE.matcher(protoQuery.getSqlStatement());
+        StringBuffer sql = new StringBuffer();
+        while (matcher.find()) {
+            String comparison = matcher.group(1) == null ? "= ANY" : "<> ALL";
+            matcher.appendReplacement(sql, comparison + "(:" + IN_CLAUSE_PARAM + ")");
+        }
+        matcher.appendTail(sql);
+        if (sql.indexOf("%s") >= 0) {
+            return null;
+        }
+        List<String> newParams = new ArrayList<>(params);
+        newParams.add(IN_CLAUSE_PARAM);
+        CachedStatement cs = new CachedStatement(session, getName(), protoQuery, newParams, this);
+        cs.sqlStatement = sql.toString();
+        return cs;
+    }
+
+    private static Map<String, Object> withInClause(Map<String, ?> parameters, ArrayParameter values) {
+        Map<String, Object> result = parameters != null ? new HashMap<>(parameters) : new HashMap<>();
+        result.put(IN_CLAUSE_PARAM, values);
+        return result;
+    }
+
+    /**
+     * The values of an IN (%s) list, bound as a single bigint array.
+     *
+     * Only integer lists are bound: string literals get the type of the column they are
+     * compared with (inet, enums...), which a text array parameter would not.
+     */
+    private static final class ArrayParameter {
+        private final Long[] values;
+
+        private ArrayParameter(Long[] valuesIn) {
+            values = valuesIn;
+        }
+
+        /**
+         * @return the array parameter, or null if the values are not all integers
+         */
+        static ArrayParameter of(List<?> list) {
+            if (!list.stream().allMatch(v -> v instanceof Long || v instanceof Integer || v instanceof Short)) {
+                return null;
+            }
+            return new ArrayParameter(list.stream()
+                    .map(v -> ((Number) v).longValue())
+                    .toArray(Long[]::new));
+        }
+
+        Object bind(Connection connection) throws SQLException {
+            return connection.createArrayOf("int8", values);
+        }
+    }
+
     private String commaSeparatedList(List<?> list) {
         StringBuilder sb = new StringBuilder();
         boolean firstValue = true;
@@ -396,6 +583,19 @@ public class CachedStatement implements Serializable {
 
     Collection<Object> executeElaborator(List<Object> resultList, Mode mode,
             Map<String, ?> parametersIn) {
+        if (!resultList.isEmpty() && protoQuery.getSqlStatement().contains("%s") &&
+                checkForColumn(resultList.get(0), getColumn())) {
+            // elaborate all the results at once if the keys can be bound as an array
+            List<Object> keys = resultList.stream()
+                    .map(row -> getKey(row, getColumn()))
+                    .collect(Collectors.toList());
+            ArrayParameter values = ArrayParameter.of(keys);
+            CachedStatement arrayStatement = values == null ? null : arrayStatement();
+            if (arrayStatement != null) {
+                return arrayStatement.executeElaboratorBatch(resultList, mode,
+                        withInClause(parametersIn, values));
+            }
+        }
         List<Object> elaborated = new LinkedList<>();
         for (int batch = 0; batch < resultList.size(); batch = batch + BATCH_SIZE) {
             int toIndex = batch + BATCH_SIZE;
@@ -487,24 +687,52 @@ public class CachedStatement implements Serializable {
      */
     private Object executeChecking(String sql, Map<String, List<Integer>> parameterMap,
             Map<String, ?> parameters, Mode mode, List<Object> dr) {
-        return doWithStolenConnection(connection -> {
-            try {
-                return execute(connection, sql, parameterMap, parameters, mode, dr);
-            }
-            catch (SQLException e) {
-                throw SqlExceptionTranslator.sqlException(e);
-            }
-            catch (HibernateException he) {
-                throw new HibernateRuntimeException(
-                        "HibernateException executing CachedStatement", he);
+        long start = System.nanoTime();
+        try {
+            return doWithStolenConnection(connection -> {
+                try {
+                    return execute(connection, sql, parameterMap, parameters, mode, dr);
+                }
+                catch (SQLException e) {
+                    throw SqlExceptionTranslator.sqlException(e);
+                }
+                catch (HibernateException he) {
+                    throw new HibernateRuntimeException(
+                            "HibernateException executing CachedStatement", he);
 
+                }
+                catch (RhnRuntimeException e) {
+                    // we just add more information for better bug tracking
+                    log.error("Error while processing cached statement sql: {}", sql, e);
+                    throw e;
+                }
+            });
+        }
+        finally {
+            QueryStatistics.record(getStatementName(mode), System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Returns the name used in the query statistics: the query name if any, otherwise the
+     * mode name, followed by the elaborator number for elaborators.
+     */
+    private String getStatementName(Mode mode) {
+        // statements derived for a list of values are accounted to their original statement
+        CachedStatement statement = parentStatement != null ? parentStatement : this;
+        if (!statement.getName().isEmpty()) {
+            return statement.getName();
+        }
+        if (mode == null) {
+            return "unnamed";
+        }
+        if (mode instanceof SelectMode) {
+            int elaborator = ((SelectMode) mode).getElaborators().indexOf(statement);
+            if (elaborator >= 0) {
+                return mode.getName() + "_elaborator" + elaborator;
             }
-            catch (RhnRuntimeException e) {
-                // we just add more information for better bug tracking
-                log.error("Error while processing cached statement sql: {}", sql, e);
-                throw e;
-            }
-        });
+        }
+        return mode.getName();
     }
 
     /**
@@ -533,7 +761,7 @@ public class CachedStatement implements Serializable {
         try {
             ps = prepareStatement(connection, sql, mode);
             boolean returnType = NamedPreparedStatement.execute(ps, parameterMap,
-                    setupParamMap(parameters));
+                    bindArrays(connection, setupParamMap(parameters)));
             if (log.isDebugEnabled()) {
                 log.debug("execute() - Return type: {}", returnType);
             }
@@ -547,6 +775,16 @@ public class CachedStatement implements Serializable {
         }
     }
 
+    private Map<String, ?> bindArrays(Connection connection, Map<String, ?> parameters) throws SQLException {
+        Object values = parameters.get(IN_CLAUSE_PARAM);
+        if (!(values instanceof ArrayParameter)) {
+            return parameters;
+        }
+        Map<String, Object> result = new HashMap<>(parameters);
+        result.put(IN_CLAUSE_PARAM, ((ArrayParameter) values).bind(connection));
+        return result;
+    }
+
     /**
      * Executes a prepared SQL statement with parameters.
      * @param connection JDBC connection object in which create the statement
@@ -634,6 +872,12 @@ public class CachedStatement implements Serializable {
         try {
             // Get the column names from the result set.
             List<String> columns = getColumnNames(rs.getMetaData());
+            Class<?> clazz = null;
+            BeanRowMapper mapper = null;
+            if (className != null && !className.equals("java.util.Map")) {
+                clazz = Class.forName(className);
+                mapper = BeanRowMapper.forColumns(clazz, columns);
+            }
             if (currentResults != null && !columns.contains(getColumn().toLowerCase())) {
                 // This is ugly, but we check driving query results someplace
                 // else, so this is only executed if we are elaborating.
@@ -646,7 +890,7 @@ public class CachedStatement implements Serializable {
                 /*
                  * If no className was specified *or* if the caller wants a Map
                  */
-                if (className == null || className.equals("java.util.Map")) {
+                if (mapper == null) {
                     Row resultMap;
                     if (pointers == null) {
                         resultMap = new Row();
@@ -676,7 +920,6 @@ public class CachedStatement implements Serializable {
                  * Otherwise, try to set the results to the class given.
                  */
                 else {
-                    Class<?> clazz = Class.forName(className);
                     Object obj;
                     if (pointers == null) {
                         obj = clazz.newInstance();
@@ -691,7 +934,7 @@ public class CachedStatement implements Serializable {
                         obj = currentResults.get(pos);
                     }
                     // if pointers are null, we are doing an elaborator.
-                    addToObject(columns, rs, obj, (pointers != null));
+                    addToObject(columns, mapper, rs, obj, (pointers != null));
                     // bug 141664: Don't add to the DataResult if we are
                     // elaborating the data.
                     if (pointers == null) {
@@ -767,8 +1010,7 @@ public class CachedStatement implements Serializable {
         }
     }
 
-    @SuppressWarnings("unchecked")
-    private void addToObject(List<String> columns, ResultSet rs, Object obj,
+    private void addToObject(List<String> columns, BeanRowMapper mapper, ResultSet rs, Object obj,
             boolean elaborator)
         throws SQLException {
 
@@ -779,57 +1021,22 @@ public class CachedStatement implements Serializable {
             columnSkip = cb.getCallBackColumns();
         }
         else {
-            columnSkip = new ArrayList<>();
+            columnSkip = Collections.emptyList();
         }
 
-        for (String columnName : columns) {
-            if (columnSkip.contains(columnName.toLowerCase())) {
+        for (int i = 0; i < columns.size(); i++) {
+            if (columnSkip.contains(columns.get(i))) {
                 continue;
             }
-
-            String setName = StringUtil.beanify("set " + columnName.toLowerCase());
-            String getName = StringUtil.beanify("get " + columnName.toLowerCase());
-
-            boolean isList = false;
-            Method[] methods = obj.getClass().getMethods();
             /*
-             * Now loop through the methods and find the set method for this
-             * column then decide if it takes a collection Note: This action
-             * might not complete correctly if there are two set methods with
-             * the same name
+             * Collection setters get the value added to the collection returned by the
+             * matching get method. Otherwise the same set method may be called multiple
+             * times: if the result set should be a list, but has a non-Collection set
+             * method, the attribute corresponding to this column will ultimately contain
+             * the last item found for this column.
              */
-            for (Method methodIn : methods) {
-                // getName() gets the name of the set method
-                // setName is the name of the set method
-                if (methodIn.getName().equals(setName)) {
-                    Class<?> paramType = methodIn.getParameterTypes()[0];
-                    if (Collection.class.isAssignableFrom(paramType)) {
-                        isList = true;
-                    }
-                    break;
-                }
-            }
-
-            if (isList) { // requires matching get method returning the same
-                // list
-                Collection<Object> c = (Collection<Object>) MethodUtil.callMethod(obj,
-                        getName, new Object[0]);
-                if (c == null) {
-                    c = new ArrayList<>();
-                }
-                c.add(getObject(rs, columnName));
-                MethodUtil.callMethod(obj, setName, c);
-                continue;
-            }
-            /*
-             * Just call the set method. This will call the same set method
-             * multiple times. If the result set should be a list, but has a
-             * non-Collection set method, the attribute corresponding to this
-             * column will ultimately contain the last item found for this
-             * column.
-             */
-            MethodUtil.callMethod(obj, setName, getObject(rs, columnName));
-        } // while
+            mapper.setColumn(obj, i, getObject(rs, i + 1));
+        }
     }
 
     /**
@@ -845,7 +1052,19 @@ public class CachedStatement implements Serializable {
      * @throws SQLException if rs.getObject/rs.getTimestamp raise an exception.
      */
     private Object getObject(ResultSet rs, String columnName) throws SQLException {
-        Object columnValue = rs.getObject(columnName);
+        return getObject(rs, rs.findColumn(columnName));
+    }
+
+    /**
+     * Same as {@link #getObject(ResultSet, String)}, with the column index
+     * @param rs the sql result set
+     * @param column the index of the column to be returned, 1 based
+     * @return the timestamp if rs.getObject is a date, the Long if rs.getObject
+     * is a BigDecimal, or just rs.getObject otherwise.
+     * @throws SQLException if rs.getObject/rs.getTimestamp raise an exception.
+     */
+    private Object getObject(ResultSet rs, int column) throws SQLException {
+        Object columnValue = rs.getObject(column);
         if (columnValue == null) {
             return null;
         }
@@ -862,10 +1081,10 @@ public class CachedStatement implements Serializable {
                      .equals(columnValue.getClass().getCanonicalName())) ||
                 ("oracle.sql.TIMESTAMPTZ"
                      .equals(columnValue.getClass().getCanonicalName()))) {
-            return rs.getTimestamp(columnName);
+            return rs.getTimestamp(column);
         }
         else if (columnValue instanceof BigDecimal) {
-            return rs.getLong(columnName);
+            return rs.getLong(column);
         }
         return columnValue;
     }
@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2023 SUSE LLC
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.common.db.datasource;
+
+import com.redhat.rhn.common.conf.ConfigDefaults;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * The lazy result of a query, read through a database cursor only when iterated.
+ *
+ * Returned by API calls whose results can be too large to be held in memory: serializers write each row as soon
+ * as it is read, so memory usage does not depend on the number of rows. Every iteration executes the query again,
+ * within the current Hibernate session, unless {@link #prefetch()} found the whole result in its first fetch.
+ * Elaborators of the mode are not executed.
+ *
+ * Rows are read while the response is written: an error after the first fetch can only abort the response, and
+ * clients get a truncated array instead of a fault. Call {@link #prefetch()} before returning a stream from an API
+ * method, so that at least errors executing the query are reported as faults.
+ *
+ * @param <T> the type of the rows, as defined by the class of the mode
+ */
+public class DataStream<T> {
+
+    private final SelectMode mode;
+    private final Map<String, Object> parameters;
+    private List<T> prefetched;
+
+    /**
+     * Creates a stream of the rows returned by a query
+     * @param modeIn the select mode
+     * @param parametersIn the query parameters
+     */
+    public DataStream(SelectMode modeIn, Map<String, ?> parametersIn) {
+        mode = modeIn;
+        parameters = new HashMap<>(parametersIn);
+    }
+
+    /**
+     * Executes the query and passes each row to the action as it is read from the database
+     * @param action the action to perform on each row
+     */
+    public void forEach(Consumer<? super T> action) {
+        if (prefetched != null) {
+            prefetched.forEach(action);
+            return;
+        }
+        mode.<T>executeWithCursor(parameters, ConfigDefaults.get().getApiStreamingFetchSize(), action::accept);
+    }
+
+    /**
+     * Executes the query and reads its first fetch of rows, so that errors are raised before anything is written
+     * to the response. If the whole result fits in the first fetch it is kept, and iterating does not execute the
+     * query again.
+     * @return this stream
+     */
+    public DataStream<T> prefetch() {
+        int fetchSize = ConfigDefaults.get().getApiStreamingFetchSize();
+        List<T> firstRows = new ArrayList<>();
+        mode.<T>executeWithCursor(parameters, fetchSize, fetchSize + 1, firstRows::add);
+        prefetched = firstRows.size() <= fetchSize ? firstRows : null;
+        return this;
+    }
+
+    /**
+     * Executes the query and collects all the rows in memory
+     * @return the list of rows
+     */
+    public List<T> toList() {
+        List<T> result = new ArrayList<>();
+        forEach(result::add);
+        return result;
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2023 SUSE LLC
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.common.db.datasource;
+
+import com.suse.manager.metrics.PrometheusExporter;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Number of executions and cumulated execution time of the datasource queries, by query name.
+ * The time includes preparing, executing and reading the results of the statement.
+ */
+public class QueryStatistics {
+
+    private static final Map<String, Timing> TIMINGS = new ConcurrentHashMap<>();
+
+    static {
+        PrometheusExporter.INSTANCE.registerQueryStatistics();
+    }
+
+    private QueryStatistics() {
+    }
+
+    /**
+     * Execution count and time of a query
+     */
+    public static class Timing {
+        private final LongAdder executions = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+
+        /**
+         * @return the number of executions
+         */
+        public long getExecutions() {
+            return executions.sum();
+        }
+
+        /**
+         * @return the total execution time in seconds
+         */
+        public double getSeconds() {
+            return nanos.sum() / 1e9;
+        }
+    }
+
+    /**
+     * Records one execution of a query
+     * @param query the query name
+     * @param nanos the execution time in nanoseconds
+     */
+    public static void record(String query, long nanos) {
+        Timing timing = TIMINGS.computeIfAbsent(query, q -> new Timing());
+        timing.executions.increment();
+        timing.nanos.add(nanos);
+    }
+
+    /**
+     * Returns the timings of the queries executed so far
+     * @return the timings by query name
+     */
+    public static Map<String, Timing> getTimings() {
+        return Collections.unmodifiableMap(TIMINGS);
+    }
+}
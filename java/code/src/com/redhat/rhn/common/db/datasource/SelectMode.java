@@ -21,6 +21,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 /**
  * A cached set of query/elaborator strings and the parameterMap hash maps.
@@ -97,6 +98,45 @@ public class SelectMode extends BaseMode implements Serializable {
         return getQuery().execute(parameters, this);
     }
 
+    /**
+     * Executes the query fetching the rows through a cursor and passes them to the consumer in batches, without
+     * ever loading the whole result in memory. Elaborators are not executed and rows are returned as maps.
+     * @param parameters Query parameters.
+     * @param batchSize number of rows passed to each call of the consumer
+     * @param consumer the consumer of each batch of rows
+     */
+    public void executeInBatches(Map<String, ?> parameters, int batchSize,
+                                 Consumer<DataResult<Map<String, Object>>> consumer) {
+        getQuery().executeInBatches(parameters, this, batchSize, consumer);
+    }
+
+    /**
+     * Executes the query fetching the rows through a cursor and passes them to the consumer one at a time, without
+     * ever loading the whole result in memory. Rows are instances of the class of the mode, or maps if it has none.
+     * Elaborators are not executed.
+     * @param parameters Query parameters.
+     * @param fetchSize number of rows fetched from the cursor at once
+     * @param consumer the consumer of each row
+     * @param <T> the type of the rows
+     */
+    public <T> void executeWithCursor(Map<String, ?> parameters, int fetchSize, Consumer<T> consumer) {
+        executeWithCursor(parameters, fetchSize, 0, consumer);
+    }
+
+    /**
+     * Executes the query fetching the rows through a cursor and passes at most maxRows of them to the consumer one
+     * at a time. Rows are instances of the class of the mode, or maps if it has none. Elaborators are not executed.
+     * @param parameters Query parameters.
+     * @param fetchSize number of rows fetched from the cursor at once
+     * @param maxRows maximum number of rows to read, 0 for no limit
+     * @param consumer the consumer of each row
+     * @param <T> the type of the rows
+     */
+    @SuppressWarnings("unchecked")
+    public <T> void executeWithCursor(Map<String, ?> parameters, int fetchSize, int maxRows, Consumer<T> consumer) {
+        getQuery().executeWithCursor(parameters, this, fetchSize, maxRows, true, row -> consumer.accept((T) row));
+    }
+
     /**
      * Executes the query with an IN clause.
      * @param inClause values to be included in the IN clause.
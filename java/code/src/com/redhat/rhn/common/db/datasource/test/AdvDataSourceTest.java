@@ -22,9 +22,13 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
 import com.redhat.rhn.common.ObjectCreateWrapperException;
+import com.redhat.rhn.common.conf.Config;
+import com.redhat.rhn.common.conf.ConfigDefaults;
 import com.redhat.rhn.common.db.datasource.CallableMode;
 import com.redhat.rhn.common.db.datasource.DataResult;
+import com.redhat.rhn.common.db.datasource.DataStream;
 import com.redhat.rhn.common.db.datasource.ModeFactory;
+import com.redhat.rhn.common.db.datasource.QueryStatistics;
 import com.redhat.rhn.common.db.datasource.Row;
 import com.redhat.rhn.common.db.datasource.SelectMode;
 import com.redhat.rhn.common.db.datasource.WriteMode;
@@ -151,6 +155,56 @@ public class AdvDataSourceTest extends RhnBaseTestCase {
         assertEquals(Row.class, obj.getClass());
     }
 
+    @Test
+    public void testDataStream() {
+        Map<String, Object> params = new HashMap<>();
+        List<TableData> expected = ModeFactory.getMode(TEST_QUERIES, "withClass_pg").execute(params);
+
+        // fetch less rows than the result size to read through the cursor more than once
+        Config.get().setString(ConfigDefaults.API_STREAMING_FETCH_SIZE, "2");
+        try {
+            DataStream<TableData> stream = new DataStream<>(ModeFactory.getMode(TEST_QUERIES, "withClass_pg"), params);
+            List<TableData> rows = new ArrayList<>();
+            stream.forEach(rows::add);
+
+            assertEquals(expected.size(), rows.size());
+            for (int i = 0; i < rows.size(); i++) {
+                assertEquals(expected.get(i).getTableName(), rows.get(i).getTableName());
+            }
+            // streams can be iterated again
+            assertEquals(expected.size(), stream.toList().size());
+        }
+        finally {
+            Config.get().remove(ConfigDefaults.API_STREAMING_FETCH_SIZE);
+        }
+    }
+
+    @Test
+    public void testDataStreamPrefetch() {
+        Map<String, Object> params = new HashMap<>();
+        List<TableData> expected = ModeFactory.getMode(TEST_QUERIES, "withClass_pg").execute(params);
+
+        try {
+            // a result larger than the first fetch is read again while iterating
+            Config.get().setString(ConfigDefaults.API_STREAMING_FETCH_SIZE, "1");
+            DataStream<TableData> stream = new DataStream<TableData>(
+                    ModeFactory.getMode(TEST_QUERIES, "withClass_pg"), params).prefetch();
+            assertEquals(expected.size(), stream.toList().size());
+
+            // a result fitting in the first fetch is kept
+            Config.get().setString(ConfigDefaults.API_STREAMING_FETCH_SIZE, String.valueOf(expected.size()));
+            stream = new DataStream<TableData>(ModeFactory.getMode(TEST_QUERIES, "withClass_pg"), params).prefetch();
+            List<TableData> rows = stream.toList();
+            assertEquals(expected.size(), rows.size());
+            for (int i = 0; i < rows.size(); i++) {
+                assertEquals(expected.get(i).getTableName(), rows.get(i).getTableName());
+            }
+        }
+        finally {
+            Config.get().remove(ConfigDefaults.API_STREAMING_FETCH_SIZE);
+        }
+    }
+
     @Test
     public void testInsert() {
         insert("insert_test", 3);
@@ -274,6 +328,65 @@ public class AdvDataSourceTest extends RhnBaseTestCase {
         }
     }
 
+    @Test
+    public void testElaborationStatements() {
+        int startId = 1000;
+        int endId = startId + 1200;
+
+        for (int i = startId; i < endId; i++) {
+            insert("foobar" + TestUtils.randomString(), i);
+        }
+        boolean arrayInClause = ConfigDefaults.get().isDbArrayInClauseEnabled();
+        try {
+            // the keys are bound as a single array: one statement for all the rows
+            Config.get().setBoolean(ConfigDefaults.DB_ARRAY_IN_CLAUSE, "true");
+            assertEquals(1, countElaboratorExecutions());
+
+            // the keys are expanded in batches of CachedStatement.BATCH_SIZE
+            Config.get().setBoolean(ConfigDefaults.DB_ARRAY_IN_CLAUSE, "false");
+            assertEquals(3, countElaboratorExecutions());
+        }
+        finally {
+            Config.get().setBoolean(ConfigDefaults.DB_ARRAY_IN_CLAUSE, String.valueOf(arrayInClause));
+        }
+    }
+
+    private long countElaboratorExecutions() {
+        long before = getExecutions("adv_elab");
+        SelectMode m = ModeFactory.getMode(TEST_QUERIES, "find_all_in_table");
+        DataResult<AdvDataSourceDto> dr = m.execute(Collections.emptyMap());
+        dr.elaborate();
+        for (AdvDataSourceDto row : dr) {
+            assertNotNull(row.getTestColumn());
+            assertNotNull(row.getPin());
+        }
+        return getExecutions("adv_elab") - before;
+    }
+
+    private long getExecutions(String query) {
+        QueryStatistics.Timing timing = QueryStatistics.getTimings().get(query);
+        return timing == null ? 0 : timing.getExecutions();
+    }
+
+    @Test
+    public void testInClauseWithoutArrays() {
+        boolean arrayInClause = ConfigDefaults.get().isDbArrayInClauseEnabled();
+        try {
+            List<Integer> params = List.of(1, 2, 3);
+            Config.get().setBoolean(ConfigDefaults.DB_ARRAY_IN_CLAUSE, "true");
+            DataResult<Map<String, Object>> arrayResult =
+                    ModeFactory.getMode(TEST_QUERIES, "select_in").execute(params);
+            Config.get().setBoolean(ConfigDefaults.DB_ARRAY_IN_CLAUSE, "false");
+            DataResult<Map<String, Object>> literalResult =
+                    ModeFactory.getMode(TEST_QUERIES, "select_in").execute(params);
+            assertNotEmpty(arrayResult);
+            assertEquals(literalResult, arrayResult);
+        }
+        finally {
+            Config.get().setBoolean(ConfigDefaults.DB_ARRAY_IN_CLAUSE, String.valueOf(arrayInClause));
+        }
+    }
+
     @Test
     public void testMaxRowsWithElaboration() {
         int startId = 1000;
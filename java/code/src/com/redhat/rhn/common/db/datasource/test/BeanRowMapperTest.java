@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2023 SUSE LLC
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.common.db.datasource.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.redhat.rhn.common.MethodInvocationException;
+import com.redhat.rhn.common.db.datasource.BeanRowMapper;
+import com.redhat.rhn.common.util.MethodNotFoundException;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class BeanRowMapperTest {
+
+    /**
+     * DTO with the kinds of properties found in the query DTOs
+     */
+    public static class ListDto {
+        private Long id;
+        private String name;
+        private boolean enabled;
+        private List<String> tags;
+
+        public Long getId() {
+            return id;
+        }
+
+        public void setId(Long idIn) {
+            id = idIn;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String nameIn) {
+            name = nameIn;
+        }
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabledIn) {
+            enabled = enabledIn;
+        }
+
+        public List<String> getTags() {
+            return tags;
+        }
+
+        public void setTags(List<String> tagsIn) {
+            tags = tagsIn;
+        }
+
+        public void setBroken(String value) {
+            throw new IllegalStateException("broken");
+        }
+    }
+
+    @Test
+    public void testSetColumns() {
+        List<String> columns = List.of("id", "name");
+        BeanRowMapper mapper = BeanRowMapper.forColumns(ListDto.class, columns);
+        assertSame(mapper, BeanRowMapper.forColumns(ListDto.class, new ArrayList<>(columns)));
+
+        ListDto dto = new ListDto();
+        mapper.setColumn(dto, 0, 42L);
+        mapper.setColumn(dto, 1, "foo");
+        assertEquals(42L, dto.getId());
+        assertEquals("foo", dto.getName());
+
+        mapper.setColumn(dto, 1, null);
+        assertNull(dto.getName());
+    }
+
+    @Test
+    public void testDuplicateColumns() {
+        BeanRowMapper mapper = BeanRowMapper.forColumns(ListDto.class, List.of("name", "id", "name", "tags", "tags"));
+        ListDto dto = new ListDto();
+        mapper.setColumn(dto, 0, "first");
+        mapper.setColumn(dto, 1, 42L);
+        mapper.setColumn(dto, 2, "second");
+        mapper.setColumn(dto, 3, "a");
+        mapper.setColumn(dto, 4, "b");
+        assertEquals("first", dto.getName());
+        assertEquals(42L, dto.getId());
+        assertEquals(List.of("a"), dto.getTags());
+    }
+
+    @Test
+    public void testConvertedValue() {
+        BeanRowMapper mapper = BeanRowMapper.forColumns(ListDto.class, List.of("enabled"));
+        ListDto dto = new ListDto();
+        mapper.setColumn(dto, 0, 1L);
+        assertTrue(dto.isEnabled());
+        mapper.setColumn(dto, 0, 0L);
+        assertFalse(dto.isEnabled());
+    }
+
+    @Test
+    public void testCollectionColumn() {
+        BeanRowMapper mapper = BeanRowMapper.forColumns(ListDto.class, List.of("tags"));
+        ListDto dto = new ListDto();
+        mapper.setColumn(dto, 0, "a");
+        mapper.setColumn(dto, 0, "b");
+        assertEquals(List.of("a", "b"), dto.getTags());
+    }
+
+    @Test
+    public void testErrors() {
+        BeanRowMapper mapper = BeanRowMapper.forColumns(ListDto.class, List.of("missing", "broken"));
+        ListDto dto = new ListDto();
+        assertThrows(MethodNotFoundException.class, () -> mapper.setColumn(dto, 0, "value"));
+        assertThrows(MethodInvocationException.class, () -> mapper.setColumn(dto, 1, "value"));
+    }
+}
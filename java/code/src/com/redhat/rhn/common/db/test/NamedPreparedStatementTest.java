@@ -16,6 +16,7 @@ package com.redhat.rhn.common.db.test;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
@@ -108,6 +109,20 @@ public class NamedPreparedStatementTest extends RhnBaseTestCase {
         assertTrue(pMap.isEmpty());
     }
 
+    @Test
+    public void testInlineBindParams() {
+        String query = "SELECT ':limit' AS label, id::text FROM web_contact " +
+                       "WHERE org_id = :org_id OFFSET :offset LIMIT :limit";
+
+        String inlined = NamedPreparedStatement.inlineBindParams(query,
+                Map.of("org_id", "1", "offset", "0", "limit", "NULL"));
+
+        assertEquals("SELECT ':limit' AS label, id::text FROM web_contact " +
+                     "WHERE org_id = 1 OFFSET 0 LIMIT NULL", inlined);
+        assertThrows(BindVariableNotFoundException.class,
+                () -> NamedPreparedStatement.inlineBindParams(query, Map.of("org_id", "1")));
+    }
+
     @Test
     public void testCreateSQL() {
         String jdbcQuery;
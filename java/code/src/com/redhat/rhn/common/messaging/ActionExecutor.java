@@ -16,6 +16,8 @@ package com.redhat.rhn.common.messaging;
 
 import com.redhat.rhn.frontend.events.TransactionHelper;
 
+import com.suse.manager.metrics.LatencyMetrics;
+
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -62,11 +64,19 @@ class ActionExecutor implements Runnable {
                     }
                     LOG.debug("Transaction finished.  Executing");
                 }
-                if (action.needsTransactionHandling()) {
-                    TransactionHelper.handlingTransaction(() -> action.execute(msg), action.getExceptionHandler());
+                long start = System.nanoTime();
+                try {
+                    if (action.needsTransactionHandling()) {
+                        TransactionHelper.handlingTransaction(() -> action.execute(msg),
+                                action.getExceptionHandler());
+                    }
+                    else {
+                        action.execute(msg);
+                    }
                 }
-                else {
-                    action.execute(msg);
+                finally {
+                    LatencyMetrics.observeSince(LatencyMetrics.MESSAGE_HANDLING, start,
+                            msg.getClass().getSimpleName(), action.getClass().getSimpleName());
                 }
             }
             catch (Throwable t) {
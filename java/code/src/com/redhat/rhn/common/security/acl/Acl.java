@@ -15,30 +15,32 @@
 
 package com.redhat.rhn.common.security.acl;
 
-import com.redhat.rhn.common.IllegalRegexException;
 import com.redhat.rhn.common.MethodInvocationException;
 import com.redhat.rhn.common.localization.LocalizationService;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import org.apache.oro.text.regex.MalformedPatternException;
-import org.apache.oro.text.regex.MatchResult;
-import org.apache.oro.text.regex.Pattern;
-import org.apache.oro.text.regex.PatternCompiler;
-import org.apache.oro.text.regex.PatternMatcher;
-import org.apache.oro.text.regex.Perl5Compiler;
-import org.apache.oro.text.regex.Perl5Matcher;
 
 import java.beans.BeanInfo;
 import java.beans.IntrospectionException;
 import java.beans.Introspector;
 import java.beans.MethodDescriptor;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * Class for handling ACLs.
@@ -166,7 +168,7 @@ public class Acl {
     private static final String EXPR_SPLIT_REGEX = "\\s+or\\s+";
 
     /** RegEx to parse statement to grab negation, function call, params */
-    private static final String STMT_PARSE_REGEX = "^(not +)?(.*)\\((.*)\\)$";
+    private static final Pattern STMT_PARSE_PATTERN = Pattern.compile("^(not +)?(.*)\\((.*)\\)$");
 
     /** RegEx to split params */
     private static final String PARAM_SPLIT_REGEX = "\\s*,\\s*";
@@ -177,34 +179,36 @@ public class Acl {
     private static final int HANDLERNAME_GROUP = 2;
     /** constant used to identify param regex group within statement */
     private static final int PARAM_GROUP = 3;
-    /** total number of regex groups expected in statement */
-    private static final int EXPECTED_GROUPS = 4;
 
     /** prefix of acl handler method names */
     private static final String ACL_PREFIX = "acl";
 
+    /**
+     * Upper bound for the number of compiled ACL strings kept around. ACL strings
+     * normally come from static configuration, but some callers build them with
+     * ids, so the cache must not grow without limits.
+     */
+    private static final int MAX_COMPILED_ACLS = 4096;
+
+    /** Type every acl handler method must have to be invoked through a method handle */
+    private static final MethodType HANDLER_TYPE = MethodType.methodType(Boolean.TYPE, Map.class, String[].class);
+
     /** The log instance for this class */
     private static Logger log = LogManager.getLogger(Acl.class);
 
-    /** Store acl handlers against keys referenced in acl statements */
-    private Map<String, InstanceMethodPair> handlers = new HashMap<>();
-
-    /** store the compiled regex that will be re-used for evalAcl invocations */
-    private static Pattern parsePattern = null;
+    /** Compiled ACL strings shared among all Acl instances */
+    private static final Map<String, List<List<Statement>>> COMPILED_ACLS = new ConcurrentHashMap<>();
 
-    // initialize the parse pattern
-    static {
-        PatternCompiler compiler = new Perl5Compiler();
-        try {
-            parsePattern = compiler.compile(STMT_PARSE_REGEX);
-        }
-        catch (MalformedPatternException e) {
-            // we assume our regex is sane and tested
-            // and that we don't get here
-            throw new IllegalRegexException("Invalid when constructing parse " +
-                                            "pattern for acls.", e);
+    /** Valid acl handler methods of each handler class, keyed by acl handler name */
+    private static final ClassValue<Map<String, Method>> HANDLER_METHODS = new ClassValue<>() {
+        @Override
+        protected Map<String, Method> computeValue(Class<?> clazz) {
+            return findHandlerMethods(clazz);
         }
-    }
+    };
+
+    /** Store acl handlers against keys referenced in acl statements */
+    private Map<String, InstanceMethodPair> handlers = new HashMap<>();
 
     /** Constructor for a new Acl instance without any default ACL handlers. */
     public Acl() {
@@ -281,10 +285,18 @@ public class Acl {
      * @param aclHandler AclHandler
      */
     public void registerHandler(AclHandler aclHandler) {
+        HANDLER_METHODS.get(aclHandler.getClass()).forEach((aclName, method) ->
+                handlers.put(aclName, new InstanceMethodPair(aclHandler, method)));
+    }
 
+    /**
+     * Finds all the acl* methods of the given handler class.
+     * @param clazz the handler class
+     * @return the valid acl handler methods, keyed by acl handler name
+     */
+    private static Map<String, Method> findHandlerMethods(Class<?> clazz) {
+        Map<String, Method> methods = new HashMap<>();
         try {
-            Class<? extends AclHandler> clazz = aclHandler.getClass();
-            // find all the acl* methods. and store them
             BeanInfo info = Introspector.getBeanInfo(clazz);
             MethodDescriptor[] methodDescriptors = info.getMethodDescriptors();
 
@@ -306,9 +318,7 @@ public class Acl {
                         continue;
                     }
 
-                    String aclName = methodNameToAclName(methodName);
-                    handlers.put(aclName,
-                            new InstanceMethodPair(aclHandler, method));
+                    methods.put(methodNameToAclName(methodName), method);
                 }
             }
         }
@@ -319,7 +329,7 @@ public class Acl {
             exc.initCause(e);
             throw exc;
         }
-
+        return Collections.unmodifiableMap(methods);
     }
 
     /**
@@ -328,7 +338,7 @@ public class Acl {
      * @param name The ACL name to convert
      * @return The corresponding method name.
      */
-    private String methodNameToAclName(String name) {
+    private static String methodNameToAclName(String name) {
 
         StringBuilder ret = new StringBuilder();
         boolean lastWasLower = false;
@@ -371,6 +381,23 @@ public class Acl {
      *  @see AclHandler
      */
     public boolean evalAcl(Map<String, Object> context, String acl) {
+        return evalAcl(context, acl, null);
+    }
+
+    /** Evaluates an ACL string within a given context, reusing handler results
+     *  already computed for the same context.
+     *  The memo stores the result of every handler invocation keyed by handler and
+     *  parameters, so it must only be shared among evaluations using the same,
+     *  unchanged context, e.g. while rendering a single page.
+     *  @param context context in which the acl string is evaluated
+     *  @param acl the ACL string.
+     *  @param memo handler results computed within the same context, or null to
+     *  always invoke the handlers
+     *  @return true if the ACL string and given context allow access,
+     *  false otherwise
+     *  @see AclHandler
+     */
+    public boolean evalAcl(Map<String, Object> context, String acl, Map<String, Boolean> memo) {
         log.debug("acl: {}", acl);
 
         // protect against nulls.
@@ -380,23 +407,11 @@ public class Acl {
                              "bad-syntax", acl));
         }
 
-        String[] expressions = acl.split(ACL_SPLIT_REGEX);
-        int exprLen = expressions.length;
-
         boolean result = false;
 
-        for (int exprIdx = 0; exprIdx < exprLen; ++exprIdx) {
-            String expression = expressions[exprIdx];
-            log.debug("expression[{}]: {}", exprIdx, expression);
-
-            String[] statements = expression.split(EXPR_SPLIT_REGEX);
-            int statementLen = statements.length;
-
-            for (int stmtIdx = 0; stmtIdx < statementLen; ++stmtIdx) {
-                String statement = statements[stmtIdx];
-                log.debug("statement[{}]: {}", stmtIdx, statement);
-
-                result = evalAclStatement(statement, context);
+        for (List<Statement> expression : compile(acl)) {
+            for (Statement statement : expression) {
+                result = evalAclStatement(statement, context, memo);
                 // break if we hit true, since we're in an or's loop
                 if (result) {
                     break;
@@ -414,91 +429,170 @@ public class Acl {
         return true;
     }
 
-    private boolean evalAclStatement(String statement, Map<String, Object> context) {
-        boolean result;
-        PatternMatcher matcher = new Perl5Matcher();
-        boolean itMatches = matcher.matches(statement, parsePattern);
-        MatchResult matchResult = matcher.getMatch();
-        if (!itMatches || matchResult == null || matchResult.groups() < EXPECTED_GROUPS) {
+    /**
+     * Returns the parsed form of an ACL string, parsing it only the first time it is seen.
+     * @param acl the ACL string
+     * @return the list of expressions to AND, each a list of statements to OR
+     */
+    private static List<List<Statement>> compile(String acl) {
+        List<List<Statement>> compiled = COMPILED_ACLS.get(acl);
+        if (compiled == null) {
+            compiled = new ArrayList<>();
+            for (String expression : acl.split(ACL_SPLIT_REGEX)) {
+                List<Statement> statements = new ArrayList<>();
+                for (String statement : expression.split(EXPR_SPLIT_REGEX)) {
+                    statements.add(Statement.parse(statement));
+                }
+                compiled.add(statements);
+            }
+            if (COMPILED_ACLS.size() < MAX_COMPILED_ACLS) {
+                COMPILED_ACLS.put(acl, compiled);
+            }
+        }
+        return compiled;
+    }
+
+    private boolean evalAclStatement(Statement statement, Map<String, Object> context, Map<String, Boolean> memo) {
+        log.debug("statement: {}", statement.getSource());
+        if (statement.getHandlerName() == null) {
             throw new IllegalArgumentException(
                     LocalizationService.getInstance().getMessage(
-                            "bad-syntax", statement));
+                            "bad-syntax", statement.getSource()));
         }
 
-        String negation = matchResult.group(NEGATION_GROUP);
-        String func = matchResult.group(HANDLERNAME_GROUP);
-        String params = matchResult.group(PARAM_GROUP);
-
-        log.debug("num groups: {}", matchResult.groups());
-        log.debug("not: {}", negation);
-        log.debug("handler: {}", func);
-        log.debug("params: {}", params);
-
-        boolean negated = negation != null;
-
-        InstanceMethodPair pair = handlers.get(func);
+        InstanceMethodPair pair = handlers.get(statement.getHandlerName());
 
         if (pair == null) {
             Object[] args = new Object[3];
-            args[0] = func;
-            args[1] = statement;
+            args[0] = statement.getHandlerName();
+            args[1] = statement.getSource();
             args[2] = new TreeSet<>(handlers.keySet()).toString();
             throw new IllegalArgumentException(
                     LocalizationService.getInstance().getMessage(
                             "bad-handler", args));
         }
 
-        Method handler = pair.getMethod();
-
-        String[] paramArray = params.split(PARAM_SPLIT_REGEX);
-
-        // if no args were givien, make sure we pass a 0-length array
-        if (paramArray.length == 1 && paramArray[0].trim().equals("")) {
-            paramArray = new String[0];
+        boolean result;
+        if (memo == null) {
+            result = invokeAcl(pair, statement, context);
+        }
+        else {
+            String key = pair.getInstance().getClass().getName() + "#" + statement.getInvocation();
+            Boolean memoized = memo.get(key);
+            if (memoized == null) {
+                memoized = invokeAcl(pair, statement, context);
+                memo.put(key, memoized);
+            }
+            result = memoized;
         }
 
-        result = invokeAcl(handler, pair.getInstance(), statement, context, paramArray);
-
-        if (negated) {
+        if (statement.isNegated()) {
             result = !result;
         }
         return result;
     }
 
-    private boolean invokeAcl(Method handler, Object instance, String statement,
-                              Map<String, Object> context, String[] paramArray) {
-        boolean result;
-        try {
-            result = (Boolean) handler.invoke(instance, context, paramArray);
-        }
-        // we shouldn't hit any of these exceptions, because the
-        // handler classes should have been adequately junit-tested
-        catch (IllegalAccessException iae) {
+    private boolean invokeAcl(InstanceMethodPair pair, Statement statement, Map<String, Object> context) {
+        MethodHandle handle = pair.getHandle();
+        if (handle == null) {
             Object[] args = new Object[3];
-            args[0] = handler.getName();
-            args[1] = statement;
-            args[2] = iae.getMessage();
+            args[0] = pair.getMethod().getName();
+            args[1] = statement.getSource();
+            args[2] = pair.getAccessError().getMessage();
 
             throw new MethodInvocationException(
                     LocalizationService.getInstance().getMessage(
-                            "illegal-access", args), iae);
+                            "illegal-access", args), pair.getAccessError());
         }
-        catch (InvocationTargetException ite) {
+        try {
+            // handlers get their own copy of the parameters as compiled statements are shared
+            return (boolean) handle.invokeExact(context, statement.getParams().clone());
+        }
+        // we shouldn't hit this exception, because the
+        // handler classes should have been adequately junit-tested
+        catch (Throwable t) {
+            InvocationTargetException ite = new InvocationTargetException(t);
             Object[] args = new Object[3];
-            args[0] = handler.getName();
-            args[1] = statement;
+            args[0] = pair.getMethod().getName();
+            args[1] = statement.getSource();
             args[2] = ite.getMessage();
 
             throw new MethodInvocationException(
                     LocalizationService.getInstance().getMessage(
                             "invocation-target-exception", args), ite);
         }
-        return result;
+    }
+
+    /**
+     * A single, parsed ACL statement like <code>not handler_name(param1, param2)</code>
+     */
+    private static final class Statement {
+        private final String source;
+        private final boolean negated;
+        private final String handlerName;
+        private final String[] params;
+        private final String invocation;
+
+        private Statement(String sourceIn, boolean negatedIn, String handlerNameIn, String[] paramsIn) {
+            source = sourceIn;
+            negated = negatedIn;
+            handlerName = handlerNameIn;
+            params = paramsIn;
+            invocation = handlerNameIn + "(" + String.join(",", paramsIn) + ")";
+        }
+
+        /**
+         * Parses a statement. Syntax errors are only reported once the statement is
+         * evaluated, as statements after a short-circuit never were.
+         * @param statement the statement string
+         * @return the parsed statement, with a null handler name on syntax errors
+         */
+        static Statement parse(String statement) {
+            Matcher matcher = STMT_PARSE_PATTERN.matcher(statement);
+            if (!matcher.matches()) {
+                return new Statement(statement, false, null, new String[0]);
+            }
+
+            String[] paramArray = matcher.group(PARAM_GROUP).split(PARAM_SPLIT_REGEX);
+
+            // if no args were givien, make sure we pass a 0-length array
+            if (paramArray.length == 1 && paramArray[0].trim().equals("")) {
+                paramArray = new String[0];
+            }
+
+            return new Statement(statement, matcher.group(NEGATION_GROUP) != null,
+                    matcher.group(HANDLERNAME_GROUP), paramArray);
+        }
+
+        String getSource() {
+            return source;
+        }
+
+        boolean isNegated() {
+            return negated;
+        }
+
+        String getHandlerName() {
+            return handlerName;
+        }
+
+        String[] getParams() {
+            return params;
+        }
+
+        /**
+         * @return the handler name and parameters, identifying the handler invocation
+         */
+        String getInvocation() {
+            return invocation;
+        }
     }
 
     private static class InstanceMethodPair {
         private Method method;
         private Object instance;
+        private MethodHandle handle;
+        private IllegalAccessException accessError;
         /**
          * Create a new InstanceMethodPair
          * @param obj The object on which to call the method
@@ -507,6 +601,16 @@ public class Acl {
         InstanceMethodPair(Object obj, Method meth) {
             instance = obj;
             method = meth;
+            try {
+                MethodHandle unbound = MethodHandles.lookup().unreflect(meth);
+                if (!Modifier.isStatic(meth.getModifiers())) {
+                    unbound = unbound.bindTo(obj);
+                }
+                handle = unbound.asType(HANDLER_TYPE);
+            }
+            catch (IllegalAccessException e) {
+                accessError = e;
+            }
         }
         /**
          * Get the object on which to invoke the method
@@ -522,5 +626,19 @@ public class Acl {
         public Method getMethod() {
             return method;
         }
+        /**
+         * Get the method handle bound to the instance
+         * @return the handle to invoke, null if the method is not accessible
+         */
+        public MethodHandle getHandle() {
+            return handle;
+        }
+        /**
+         * Get the reason why the method is not accessible
+         * @return the access error, null if the method is accessible
+         */
+        public IllegalAccessException getAccessError() {
+            return accessError;
+        }
     }
 }
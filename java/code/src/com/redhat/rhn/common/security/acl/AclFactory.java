@@ -17,19 +17,26 @@ package com.redhat.rhn.common.security.acl;
 
 import org.apache.commons.lang3.StringUtils;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 /**
  * Class to assist with creating Acls.  This Factory will setup
  * the Acl class as well as setup the default as well as the mixin AclHandlers
  * associated with the Acl.
  *
- * TODO - consider caching the Acl instances within the Factory so we don't have to
- * instantiate new ones each time. Not sure how to do this yet.
- *
+ * Acl instances are cached per list of mixins, as AclHandlers are stateless and the
+ * handler registration does not need to be repeated for every evaluation.
  */
 public class AclFactory {
 
+    /** key used to cache the Acl without any mixins */
+    private static final String NO_MIXINS = "";
+
     private final Access access;
 
+    private final Map<String, Acl> acls = new ConcurrentHashMap<>();
+
     /**
      * hidden constructor
      * @param accessIn
@@ -39,16 +46,21 @@ public class AclFactory {
     }
 
     /**
-     * Get an instance of an Acl
+     * Get an instance of an Acl. Instances are shared, so handlers must not be
+     * registered on the returned object.
      * @param mixinsIn the String with a comma separated list of classnames
      * @return Acl created
      */
     public Acl getAcl(String mixinsIn) {
+        return acls.computeIfAbsent(mixinsIn == null ? NO_MIXINS : mixinsIn, this::createAcl);
+    }
+
+    private Acl createAcl(String mixinsIn) {
         Acl aclObj = new Acl();
         aclObj.registerHandler(access);
 
         // Add the mixin handlers as well.
-        if (mixinsIn != null) {
+        if (!mixinsIn.isEmpty()) {
             String[] mixin = StringUtils.split(mixinsIn, ",");
             for (String sIn : mixin) {
                 if (!sIn.equals(Access.class.getName())) {
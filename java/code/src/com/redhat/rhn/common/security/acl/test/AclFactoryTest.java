@@ -15,6 +15,9 @@
 package com.redhat.rhn.common.security.acl.test;
 
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import com.redhat.rhn.common.security.acl.Access;
 import com.redhat.rhn.common.security.acl.Acl;
@@ -34,4 +37,15 @@ public class AclFactoryTest extends RhnBaseTestCase {
         Acl test = aclFactory.getAcl("  com.redhat.rhn.common.security.acl.test.MixinTestHandler  ");
         assertNotNull(test);
     }
+
+    @Test
+    public void testGetAclIsCached() {
+        AclFactory aclFactory = new AclFactory(new Access());
+        String mixins = MixinTestHandler.class.getName();
+        Acl acl = aclFactory.getAcl(mixins);
+        assertSame(acl, aclFactory.getAcl(mixins));
+        assertSame(aclFactory.getAcl(null), aclFactory.getAcl(null));
+        assertNotSame(acl, aclFactory.getAcl(null));
+        assertTrue(acl.getAclHandlerNames().contains("user_role"));
+    }
 }
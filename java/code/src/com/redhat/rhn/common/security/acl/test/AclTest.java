@@ -15,6 +15,7 @@
 
 package com.redhat.rhn.common.security.acl.test;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
@@ -228,6 +229,54 @@ public class AclTest extends RhnBaseTestCase {
         }
     }
 
+    /* Test that bad syntax is reported whenever the statement is reached,
+     * also when the acl has already been evaluated before.
+     */
+    @Test
+    public void testBadSyntaxAfterShortCircuit() {
+        String badAcl = "handler_zero(false); handler_zero(true) and handler_zero(true)";
+        assertFalse(acl.evalAcl(context, badAcl));
+        assertFalse(acl.evalAcl(context, badAcl));
+
+        String reachedAcl = "handler_zero(true); handler_zero(true) and handler_zero(true)";
+        for (int i = 0; i < 2; i++) {
+            try {
+                acl.evalAcl(context, reachedAcl);
+                fail("expected to fail");
+            }
+            catch (IllegalArgumentException e) {
+                // good
+            }
+        }
+    }
+
+    @Test
+    public void testMemo() {
+        CountingAclHandler counting = new CountingAclHandler();
+        acl.registerHandler(counting);
+        Map<String, Boolean> memo = new HashMap<>();
+
+        assertTrue(acl.evalAcl(context, "counted(true)", memo));
+        assertFalse(acl.evalAcl(context, "not counted(true)", memo));
+        assertTrue(acl.evalAcl(context, "counted(false) or counted(true)", memo));
+        assertEquals(2, counting.getCalls());
+
+        // without a memo the handler is always invoked
+        assertTrue(acl.evalAcl(context, "counted(true)"));
+        assertTrue(acl.evalAcl(context, "counted(true)"));
+        assertEquals(4, counting.getCalls());
+    }
+
+    @Test
+    public void testMemoSeparatesHandlers() {
+        Map<String, Boolean> memo = new HashMap<>();
+        Acl otherAcl = new Acl();
+        otherAcl.registerHandler(new OtherHandlerZero());
+
+        assertTrue(acl.evalAcl(context, "handler_zero(true)", memo));
+        assertFalse(otherAcl.evalAcl(context, "handler_zero(true)", memo));
+    }
+
     /** Makes sure that method names are properly converted to acl handler
      *  names.
      *  Tests the following:
@@ -310,6 +359,31 @@ public class AclTest extends RhnBaseTestCase {
 
 
     // HELPER CLASSES
+   /** A handler counting how often it gets invoked. Returns true if the
+    *  first parameter is "true".
+    */
+   public static class CountingAclHandler implements AclHandler {
+       private int calls = 0;
+
+       public boolean aclCounted(Map<String, Object> ctx, String[] params) {
+           calls++;
+           return params[0].equals("true");
+       }
+
+       public int getCalls() {
+           return calls;
+       }
+   }
+
+   /** A handler with the same acl name as {@link MockAclHandler} but
+    *  always returning false.
+    */
+   public static class OtherHandlerZero implements AclHandler {
+       public boolean aclHandlerZero(Map<String, Object> ctx, String[] params) {
+           return false;
+       }
+   }
+
 
     /* Mock AclHandler that can be used to check that the Acl class
      * is parsing parameters correctly.
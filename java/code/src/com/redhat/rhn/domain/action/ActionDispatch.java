@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2023 SUSE LLC
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.domain.action;
+
+import java.util.Optional;
+
+/**
+ * POJO for a suseActionDispatchQueue row: a request to execute an action on its Salt minions.
+ */
+public class ActionDispatch {
+    private final Long id;
+    private final long actionId;
+    private final boolean forcePackageListRefresh;
+    private final Long stagingServerId;
+    private final Long userId;
+    private final int attempts;
+
+    /**
+     * Constructor for a request which is not queued
+     * @param actionIdIn the id of the action to execute
+     * @param forcePackageListRefreshIn true to force a package list refresh after the action
+     * @param stagingServerIdIn the id of the minion to stage packages for, null if not a staging job
+     * @param userIdIn the id of the user subscribing channels, null if not relevant
+     */
+    public ActionDispatch(long actionIdIn, boolean forcePackageListRefreshIn, Long stagingServerIdIn,
+            Long userIdIn) {
+        this(null, actionIdIn, forcePackageListRefreshIn, stagingServerIdIn, userIdIn, 0);
+    }
+
+    /**
+     * Standard constructor
+     * @param idIn the id of the suseActionDispatchQueue row, null if not queued
+     * @param actionIdIn the id of the action to execute
+     * @param forcePackageListRefreshIn true to force a package list refresh after the action
+     * @param stagingServerIdIn the id of the minion to stage packages for, null if not a staging job
+     * @param userIdIn the id of the user subscribing channels, null if not relevant
+     * @param attemptsIn the number of failed attempts to execute the action
+     */
+    public ActionDispatch(Long idIn, long actionIdIn, boolean forcePackageListRefreshIn, Long stagingServerIdIn,
+            Long userIdIn, int attemptsIn) {
+        this.id = idIn;
+        this.actionId = actionIdIn;
+        this.forcePackageListRefresh = forcePackageListRefreshIn;
+        this.stagingServerId = stagingServerIdIn;
+        this.userId = userIdIn;
+        this.attempts = attemptsIn;
+    }
+
+    /**
+     * @return the id of the suseActionDispatchQueue row, if queued
+     */
+    public Optional<Long> getId() {
+        return Optional.ofNullable(id);
+    }
+
+    /**
+     * @return the id of the action to execute
+     */
+    public long getActionId() {
+        return actionId;
+    }
+
+    /**
+     * @return true to force a package list refresh after the action
+     */
+    public boolean isForcePackageListRefresh() {
+        return forcePackageListRefresh;
+    }
+
+    /**
+     * @return the id of the minion to stage packages for, if this is a staging job
+     */
+    public Optional<Long> getStagingServerId() {
+        return Optional.ofNullable(stagingServerId);
+    }
+
+    /**
+     * @return the id of the user subscribing channels, if any
+     */
+    public Optional<Long> getUserId() {
+        return Optional.ofNullable(userId);
+    }
+
+    /**
+     * @return the number of failed attempts to execute the action
+     */
+    public int getAttempts() {
+        return attempts;
+    }
+
+    @Override
+    public String toString() {
+        return "ActionDispatch{id=" + id + ", actionId=" + actionId + ", stagingServerId=" + stagingServerId +
+                ", attempts=" + attempts + "}";
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2023 SUSE LLC
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.domain.action;
+
+import com.redhat.rhn.common.hibernate.HibernateFactory;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.hibernate.type.StandardBasicTypes;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * Queues the execution of actions on Salt minions for Taskomatic (suseActionDispatchQueue).
+ *
+ * Rows are inserted in the transaction scheduling the action and a notification is sent on
+ * {@link #NOTIFY_CHANNEL}: Postgres delivers it on commit only, so Taskomatic never sees an action
+ * before it is visible.
+ */
+public class ActionDispatchFactory extends HibernateFactory {
+
+    /** The channel Taskomatic listens on for newly queued actions */
+    public static final String NOTIFY_CHANNEL = "suseActionDispatchQueue";
+
+    private static Logger log = LogManager.getLogger(ActionDispatchFactory.class);
+    private static ActionDispatchFactory singleton = new ActionDispatchFactory();
+
+    @Override
+    protected Logger getLogger() {
+        return log;
+    }
+
+    private ActionDispatchFactory() {
+    }
+
+    /**
+     * Queues the execution of actions at their earliest execution time.
+     * @param actions the actions
+     * @param forcePackageListRefresh true to force a package list refresh after the actions
+     */
+    public static void queueActions(Collection<Action> actions, boolean forcePackageListRefresh) {
+        if (actions.isEmpty()) {
+            return;
+        }
+        actions.forEach(action -> insert(action.getId(), action.getEarliestAction(), forcePackageListRefresh,
+                null, null, 0));
+        notifyTaskomatic();
+    }
+
+    /**
+     * Queues the staging of the packages of an action on a minion.
+     * @param actionId the action id
+     * @param serverId the minion server id
+     * @param stagingTime the time to stage the packages at
+     */
+    public static void queueStaging(long actionId, long serverId, Date stagingTime) {
+        queueStaging(Map.of(actionId, Map.of(serverId, stagingTime)));
+    }
+
+    /**
+     * Queues the staging of the packages of actions on minions.
+     * @param stagingTimes the staging time, by minion server id, by action id
+     */
+    public static void queueStaging(Map<Long, Map<Long, Date>> stagingTimes) {
+        if (stagingTimes.isEmpty()) {
+            return;
+        }
+        stagingTimes.forEach((actionId, times) ->
+                times.forEach((serverId, time) -> insert(actionId, time, false, serverId, null, 0)));
+        notifyTaskomatic();
+    }
+
+    /**
+     * Queues the execution of a channel subscription action, performed on behalf of a user.
+     * @param action the action
+     * @param userId the id of the user
+     */
+    public static void queueSubscribeChannels(Action action, long userId) {
+        insert(action.getId(), action.getEarliestAction(), false, null, userId, 0);
+        notifyTaskomatic();
+    }
+
+    /**
+     * Returns the queued actions that are due, up to limit, without removing them. Rows locked by a concurrent
+     * transaction, like the ones being executed, are skipped.
+     * @param limit the maximum number of actions to return
+     * @return the due actions, earliest first
+     */
+    public static List<ActionDispatch> listDueActions(int limit) {
+        List<Object[]> rows = singleton.listObjectsByNamedQuery("ActionDispatch.listDueActions",
+                Map.of("limit", limit));
+        return rows.stream()
+                .map(row -> new ActionDispatch((Long) row[0], (long) row[1], "Y".equals(row[2]), (Long) row[3],
+                        (Long) row[4], (int) row[5]))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Removes a queued action in the current transaction, which is expected to execute it: if the
+     * transaction is rolled back the action stays queued. Waits for a concurrent transaction holding the row.
+     * @param id the id of the queued row
+     * @return true if the row was removed, false if it was already removed by someone else
+     */
+    public static boolean claimAction(long id) {
+        return getSession().getNamedQuery("ActionDispatch.claimAction")
+                .setParameter("id", id)
+                .executeUpdate() > 0;
+    }
+
+    /**
+     * Queues again an action whose execution failed, at a later time, counting the failed attempt. The row is
+     * queued again if it was already removed.
+     * @param dispatch the queued action
+     * @param earliestAction the time to execute the action at
+     */
+    public static void postponeAction(ActionDispatch dispatch, Date earliestAction) {
+        int updated = dispatch.getId()
+                .map(id -> getSession().getNamedQuery("ActionDispatch.postponeAction")
+                        .setParameter("id", id)
+                        .setParameter("earliest_action", earliestAction, StandardBasicTypes.TIMESTAMP)
+                        .executeUpdate())
+                .orElse(0);
+        if (updated == 0) {
+            insert(dispatch.getActionId(), earliestAction, dispatch.isForcePackageListRefresh(),
+                    dispatch.getStagingServerId().orElse(null), dispatch.getUserId().orElse(null),
+                    dispatch.getAttempts() + 1);
+            notifyTaskomatic();
+        }
+    }
+
+    /**
+     * Returns the earliest execution time of the queued actions.
+     * @return the earliest execution time, empty if no action is queued
+     */
+    public static Optional<Date> nextEarliestAction() {
+        return Optional.ofNullable((Date) singleton.lookupObjectByNamedQuery("ActionDispatch.nextEarliestAction",
+                Map.of()));
+    }
+
+    /**
+     * Removes queued actions, so that they are never executed.
+     * @param actionIds the action ids
+     * @return the number of removed rows
+     */
+    public static int deleteActions(Collection<Long> actionIds) {
+        if (actionIds.isEmpty()) {
+            return 0;
+        }
+        return getSession().getNamedQuery("ActionDispatch.deleteActions")
+                .setParameterList("action_ids", actionIds)
+                .executeUpdate();
+    }
+
+    private static void insert(long actionId, Date earliestAction, boolean forcePackageListRefresh,
+            Long stagingServerId, Long userId, int attempts) {
+        getSession().getNamedQuery("ActionDispatch.insert")
+                .setParameter("action_id", actionId)
+                .setParameter("earliest_action", earliestAction, StandardBasicTypes.TIMESTAMP)
+                .setParameter("force_pkg_list_refresh", forcePackageListRefresh ? "Y" : "N")
+                .setParameter("staging_server_id", stagingServerId, StandardBasicTypes.LONG)
+                .setParameter("user_id", userId, StandardBasicTypes.LONG)
+                .setParameter("attempts", attempts)
+                .executeUpdate();
+    }
+
+    private static void notifyTaskomatic() {
+        getSession().getNamedQuery("ActionDispatch.notify").executeUpdate();
+    }
+}
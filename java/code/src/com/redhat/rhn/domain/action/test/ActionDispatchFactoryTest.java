@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2023 SUSE LLC
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.domain.action.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.redhat.rhn.common.hibernate.HibernateFactory;
+import com.redhat.rhn.domain.action.Action;
+import com.redhat.rhn.domain.action.ActionDispatch;
+import com.redhat.rhn.domain.action.ActionDispatchFactory;
+import com.redhat.rhn.domain.action.ActionFactory;
+import com.redhat.rhn.domain.server.MinionServer;
+import com.redhat.rhn.domain.server.test.MinionServerFactoryTest;
+import com.redhat.rhn.testing.BaseTestCaseWithUser;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * Tests for {@link ActionDispatchFactory}.
+ */
+public class ActionDispatchFactoryTest extends BaseTestCaseWithUser {
+
+    @Test
+    public void testQueueListAndClaimDueActions() {
+        Action due = createAction(Date.from(Instant.now().minus(1, ChronoUnit.MINUTES)));
+        Action later = createAction(Date.from(Instant.now().plus(1, ChronoUnit.HOURS)));
+
+        ActionDispatchFactory.queueActions(List.of(due, later), true);
+
+        List<ActionDispatch> listed = listFor(due, later);
+        assertEquals(1, listed.size());
+        assertEquals(due.getId(), listed.get(0).getActionId());
+        assertTrue(listed.get(0).getId().isPresent());
+        assertTrue(listed.get(0).isForcePackageListRefresh());
+        assertFalse(listed.get(0).getStagingServerId().isPresent());
+        assertFalse(listed.get(0).getUserId().isPresent());
+        assertEquals(0, listed.get(0).getAttempts());
+
+        // listed actions stay queued until claimed, future actions stay queued
+        assertEquals(1, listFor(due, later).size());
+        assertTrue(ActionDispatchFactory.claimAction(listed.get(0).getId().get()));
+        assertFalse(ActionDispatchFactory.claimAction(listed.get(0).getId().get()));
+        assertTrue(listFor(due, later).isEmpty());
+        Optional<Date> next = ActionDispatchFactory.nextEarliestAction();
+        assertTrue(next.isPresent());
+        assertEquals(later.getEarliestAction().getTime() / 1000, next.get().getTime() / 1000);
+    }
+
+    @Test
+    public void testPostponeAction() {
+        Action action = createAction(Date.from(Instant.now().minus(1, ChronoUnit.MINUTES)));
+        ActionDispatchFactory.queueActions(List.of(action), true);
+        ActionDispatch dispatch = listFor(action).get(0);
+        Date retry = Date.from(Instant.now().minus(1, ChronoUnit.SECONDS));
+
+        // a queued action is postponed
+        ActionDispatchFactory.postponeAction(dispatch, Date.from(Instant.now().plus(1, ChronoUnit.HOURS)));
+        assertTrue(listFor(action).isEmpty());
+
+        // a claimed action is queued again
+        assertTrue(ActionDispatchFactory.claimAction(dispatch.getId().get()));
+        ActionDispatchFactory.postponeAction(dispatch, retry);
+        List<ActionDispatch> listed = listFor(action);
+        assertEquals(1, listed.size());
+        assertTrue(listed.get(0).isForcePackageListRefresh());
+        assertEquals(1, listed.get(0).getAttempts());
+
+        // each postponement counts a failed attempt
+        ActionDispatchFactory.postponeAction(listed.get(0), retry);
+        assertEquals(2, listFor(action).get(0).getAttempts());
+    }
+
+    @Test
+    public void testQueueStagingAndSubscribeChannels() throws Exception {
+        MinionServer minion = MinionServerFactoryTest.createTestMinionServer(user);
+        Action staged = createAction(Date.from(Instant.now().plus(1, ChronoUnit.HOURS)));
+        Action subscribe = createAction(Date.from(Instant.now().minus(1, ChronoUnit.MINUTES)));
+
+        ActionDispatchFactory.queueStaging(staged.getId(), minion.getId(),
+                Date.from(Instant.now().minus(2, ChronoUnit.MINUTES)));
+        ActionDispatchFactory.queueSubscribeChannels(subscribe, user.getId());
+
+        List<ActionDispatch> listed = listFor(staged, subscribe);
+        assertEquals(2, listed.size());
+        // staging is queued at the staging time, earlier than the action itself
+        assertEquals(staged.getId(), listed.get(0).getActionId());
+        assertEquals(Optional.of(minion.getId()), listed.get(0).getStagingServerId());
+        assertEquals(subscribe.getId(), listed.get(1).getActionId());
+        assertEquals(Optional.of(user.getId()), listed.get(1).getUserId());
+    }
+
+    @Test
+    public void testDeleteActions() {
+        Action action = createAction(Date.from(Instant.now().minus(1, ChronoUnit.MINUTES)));
+        ActionDispatchFactory.queueActions(List.of(action), false);
+
+        assertEquals(1, ActionDispatchFactory.deleteActions(List.of(action.getId())));
+        assertTrue(listFor(action).isEmpty());
+    }
+
+    private Action createAction(Date earliest) {
+        Action action = ActionFactoryTest.createEmptyAction(user, ActionFactory.TYPE_REBOOT);
+        action.setEarliestAction(earliest);
+        ActionFactory.save(action);
+        HibernateFactory.getSession().flush();
+        return action;
+    }
+
+    private List<ActionDispatch> listFor(Action... actions) {
+        List<Long> ids = Arrays.stream(actions).map(Action::getId).collect(Collectors.toList());
+        return ActionDispatchFactory.listDueActions(1000).stream()
+                .filter(dispatch -> ids.contains(dispatch.getActionId()))
+                .collect(Collectors.toList());
+    }
+}
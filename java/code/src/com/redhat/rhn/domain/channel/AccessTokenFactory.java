@@ -17,6 +17,7 @@ package com.redhat.rhn.domain.channel;
 import com.redhat.rhn.common.hibernate.HibernateFactory;
 import com.redhat.rhn.domain.server.MinionServer;
 
+import com.suse.manager.webui.utils.DownloadCache;
 import com.suse.manager.webui.utils.DownloadTokenBuilder;
 import com.suse.utils.Opt;
 
@@ -93,6 +94,9 @@ public class AccessTokenFactory extends HibernateFactory {
      */
     public static AccessToken save(AccessToken accessToken) {
         singleton.saveObject(accessToken);
+        if (!accessToken.getValid()) {
+            DownloadCache.invalidateToken(accessToken.getToken());
+        }
         return accessToken;
     }
 
@@ -228,6 +232,7 @@ public class AccessTokenFactory extends HibernateFactory {
      */
     public static void delete(AccessToken token) {
         HibernateFactory.getSession().delete(token);
+        DownloadCache.invalidateToken(token.getToken());
     }
 
     /**
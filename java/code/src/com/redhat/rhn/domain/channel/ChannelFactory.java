@@ -31,6 +31,8 @@ import com.redhat.rhn.domain.server.Server;
 import com.redhat.rhn.domain.user.User;
 import com.redhat.rhn.manager.ssm.SsmChannelDto;
 
+import com.suse.manager.webui.utils.DownloadCache;
+
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.hibernate.Criteria;
@@ -555,6 +557,29 @@ public class ChannelFactory extends HibernateFactory {
         m.executeUpdate(params);
     }
 
+    /**
+     * Adds packages to a channel, skipping those already in the channel. The packages collection of the channel
+     * is not updated.
+     *
+     * @param channel the channel
+     * @param packageIds the ids of the packages to add
+     */
+    public static void addPackages(Channel channel, Collection<Long> packageIds) {
+        WriteMode m = ModeFactory.getWriteMode(CHANNEL_QUERIES, "add_channel_packages");
+        m.executeUpdate(Map.of("cid", channel.getId()), new ArrayList<>(packageIds));
+    }
+
+    /**
+     * Removes packages from a channel. The packages collection of the channel is not updated.
+     *
+     * @param channel the channel
+     * @param packageIds the ids of the packages to remove
+     */
+    public static void removePackages(Channel channel, Collection<Long> packageIds) {
+        WriteMode m = ModeFactory.getWriteMode(CHANNEL_QUERIES, "remove_packages");
+        m.executeUpdate(Map.of("cid", channel.getId()), new ArrayList<>(packageIds));
+    }
+
     /**
      * Creates empty SSL set for repository
      * @return empty SSL set
@@ -589,6 +614,7 @@ public class ChannelFactory extends HibernateFactory {
         inParams.put(LABEL, label);
 
         m.execute(inParams, new HashMap<>());
+        DownloadCache.invalidateChannels();
     }
 
     /**
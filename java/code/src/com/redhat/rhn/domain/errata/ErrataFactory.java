@@ -110,6 +110,16 @@ public class ErrataFactory extends HibernateFactory {
 
 
 
+    /**
+     * List the ids of the packages of the given errata
+     * @param eids the errata ids
+     * @return set of package ids
+     */
+    public static Set<Long> listPackageIdsByErrata(Collection<Long> eids) {
+        List<Long> pids = singleton.listObjectsByNamedQuery("Errata.listPackageIdsByErrata", Map.of(), eids, "eids");
+        return new HashSet<>(pids);
+    }
+
     /**
      * Tries to locate errata based on either the errataum's id or the
      * CVE/CAN identifier string.
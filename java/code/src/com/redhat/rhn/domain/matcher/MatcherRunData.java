@@ -18,6 +18,11 @@ package com.redhat.rhn.domain.matcher;
 import static com.redhat.rhn.common.hibernate.HibernateFactory.getByteArrayContents;
 import static com.redhat.rhn.common.hibernate.HibernateFactory.stringToByteArray;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+
 /**
  * Data corresponding to one Subscription Matcher run (contents of I/O files).
  */
@@ -80,6 +85,14 @@ public class MatcherRunData {
         return getByteArrayContents(getInputBinary());
     }
 
+    /**
+     * Gets a reader over the input, to parse it without copying it into a string first
+     * @return input reader
+     */
+    public Reader getInputReader() {
+        return toReader(getInputBinary());
+    }
+
     /**
      * Sets the input
      * @param inputIn the input
@@ -96,6 +109,14 @@ public class MatcherRunData {
         return getByteArrayContents(getOutputBinary());
     }
 
+    /**
+     * Gets a reader over the output, to parse it without copying it into a string first
+     * @return output reader
+     */
+    public Reader getOutputReader() {
+        return toReader(getOutputBinary());
+    }
+
     /**
      * Sets the output
      * @param outputIn the output
@@ -231,4 +252,9 @@ public class MatcherRunData {
     protected void setUnmatchedProductReportBinary(byte[] unmatchedProductReportIn) {
         unmatchedProductReportBinary = unmatchedProductReportIn;
     }
+
+    private static Reader toReader(byte[] barr) {
+        return new InputStreamReader(new ByteArrayInputStream(barr == null ? new byte[0] : barr),
+                StandardCharsets.UTF_8);
+    }
 }
@@ -73,6 +73,22 @@ public class SaltEventFactory extends HibernateFactory {
                 .map(o -> new SaltEvent((long)o[0], (String)o[1], (String)o[2], (int)o[3]));
     }
 
+    /**
+     * Returns Salt events, if any, up to limit, without removing them.
+     * @param limit the maximum count of events to return
+     * @param queue the thread to list events for, 0 for those associated with no particular queue.
+     * @param after only events with a greater id are returned
+     * @return events, ordered by id
+     */
+    public static List<SaltEvent> listSaltEvents(int limit, int queue, long after) {
+        List<Object[]> eventObjects = singleton.listObjectsByNamedQuery("SaltEvent.listSaltEvents",
+                Map.of("limit", limit, "queue", queue, "after", after));
+
+        return eventObjects.stream()
+                .map(o -> new SaltEvent((long)o[0], (String)o[1], (String)o[2], (int)o[3]))
+                .collect(Collectors.toList());
+    }
+
     /**
      * Deletes SaltEvents
      * @param ids event ids
@@ -84,8 +84,9 @@ public class PackageEvrFactory {
      * @return Returns a committed PackageEvr
      */
     public static PackageEvr lookupOrCreatePackageEvr(String e, String v, String r, PackageType type) {
-        Long id = lookupPackageEvr(e, v, r, type.getDbString());
-        return lookupPackageEvrById(id);
+        Long id = PackageReferenceCache.getEvrId(e, v, r, type.getDbString(),
+                () -> lookupPackageEvr(e, v, r, type.getDbString()));
+        return HibernateFactory.getSession().get(PackageEvr.class, id);
     }
 
     /**
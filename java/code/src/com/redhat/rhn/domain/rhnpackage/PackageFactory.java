@@ -233,7 +233,12 @@ public class PackageFactory extends HibernateFactory {
         if (label == null) {
             return null;
         }
-        return singleton.lookupObjectByNamedQuery("PackageArch.findByLabel", Map.of("label", label), true);
+        Long id = PackageReferenceCache.getArchId(label, () -> {
+            PackageArch arch = singleton.lookupObjectByNamedQuery("PackageArch.findByLabel",
+                    Map.of("label", label), true);
+            return arch == null ? null : arch.getId();
+        });
+        return id == null ? null : HibernateFactory.getSession().get(PackageArch.class, id);
     }
 
     /**
@@ -268,7 +273,7 @@ public class PackageFactory extends HibernateFactory {
      */
     public static PackageName lookupOrCreatePackageByName(String pn) {
         long id = lookupOrCreatePackageNameId(pn);
-        return lookupPackageName(id);
+        return HibernateFactory.getSession().get(PackageName.class, id);
     }
 
     /**
@@ -277,6 +282,10 @@ public class PackageFactory extends HibernateFactory {
      * @return a package name id
      */
     public static long lookupOrCreatePackageNameId(String name) {
+        return PackageReferenceCache.getNameId(name, () -> callLookupPackageName(name));
+    }
+
+    private static Long callLookupPackageName(String name) {
         CallableMode m = ModeFactory.getCallableMode("Package_queries", "lookup_package_name");
 
         Map<String, Object> inParams = new HashMap<>();
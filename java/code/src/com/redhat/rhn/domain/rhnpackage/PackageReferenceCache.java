@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2023 SUSE LLC
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.domain.rhnpackage;
+
+import com.redhat.rhn.common.conf.ConfigDefaults;
+import com.redhat.rhn.common.hibernate.HibernateFactory;
+
+import com.suse.manager.metrics.PrometheusExporter;
+import com.suse.utils.ExpiringCache;
+
+import org.hibernate.Transaction;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+
+/**
+ * Process wide caches of the ids of package names, EVRs and arches, so that the lookup
+ * functions and queries do not need to be called again for the same values.
+ *
+ * Nothing invalidates the cached ids: an entry stays valid only as long as the row with its
+ * id keeps the same values. The application never changes nor deletes these rows, and
+ * updates and deletes of EVRs are rejected by a trigger, but schema upgrades do change and
+ * merge EVRs and arch rows can be updated. Such changes are noticed after a restart or once
+ * the entries expire after java.package_reference_cache_lifetime seconds.
+ *
+ * Ids are only cached once the transaction which looked them up is committed: a row
+ * created by a transaction which is rolled back must not be referenced later.
+ */
+public class PackageReferenceCache {
+
+    private static final int SIZE = ConfigDefaults.get().getPackageReferenceCacheSize();
+    private static final int LIFETIME = ConfigDefaults.get().getPackageReferenceCacheLifetime();
+
+    private static final ExpiringCache<String, Long> NAME_IDS = new ExpiringCache<>(SIZE, LIFETIME, TimeUnit.SECONDS);
+    // keyed by type, epoch, version and release
+    private static final ExpiringCache<List<String>, Long> EVR_IDS =
+            new ExpiringCache<>(SIZE, LIFETIME, TimeUnit.SECONDS);
+    private static final ExpiringCache<String, Long> ARCH_IDS = new ExpiringCache<>(SIZE, LIFETIME, TimeUnit.SECONDS);
+
+    static {
+        PrometheusExporter.INSTANCE.registerCache(NAME_IDS, "package_name");
+        PrometheusExporter.INSTANCE.registerCache(EVR_IDS, "package_evr");
+        PrometheusExporter.INSTANCE.registerCache(ARCH_IDS, "package_arch");
+    }
+
+    private PackageReferenceCache() {
+    }
+
+    /**
+     * Returns the id of a package name, looking it up if not cached
+     * @param name the package name
+     * @param loader looks up, and creates if needed, the id
+     * @return the id
+     */
+    public static Long getNameId(String name, Supplier<Long> loader) {
+        return get(NAME_IDS, name, loader);
+    }
+
+    /**
+     * Returns the id of an EVR, looking it up if not cached
+     * @param epoch the epoch, can be null
+     * @param version the version
+     * @param release the release
+     * @param type the package type, as stored in the database
+     * @param loader looks up, and creates if needed, the id
+     * @return the id
+     */
+    public static Long getEvrId(String epoch, String version, String release, String type, Supplier<Long> loader) {
+        return get(EVR_IDS, Arrays.asList(type, epoch, version, release), loader);
+    }
+
+    /**
+     * Returns the id of a package arch, looking it up if not cached
+     * @param label the arch label
+     * @param loader looks up the id, returns null if the arch does not exist
+     * @return the id, or null if the arch does not exist
+     */
+    public static Long getArchId(String label, Supplier<Long> loader) {
+        return get(ARCH_IDS, label, loader);
+    }
+
+    private static <K> Long get(ExpiringCache<K, Long> cache, K key, Supplier<Long> loader) {
+        Optional<Long> cached = cache.get(key);
+        if (cached.isPresent()) {
+            return cached.get();
+        }
+        Long id = loader.get();
+        if (id != null) {
+            putOnCommit(cache, key, id);
+        }
+        return id;
+    }
+
+    private static <K> void putOnCommit(ExpiringCache<K, Long> cache, K key, Long id) {
+        Transaction transaction = HibernateFactory.getSession().getTransaction();
+        if (!transaction.isActive()) {
+            return;
+        }
+        transaction.registerSynchronization(new Synchronization() {
+            @Override
+            public void beforeCompletion() {
+                // nothing to do
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status == Status.STATUS_COMMITTED) {
+                    cache.put(key, id);
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2023 SUSE LLC
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.domain.rhnpackage.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.redhat.rhn.common.hibernate.HibernateFactory;
+import com.redhat.rhn.domain.rhnpackage.PackageReferenceCache;
+import com.redhat.rhn.testing.RhnBaseTestCase;
+import com.redhat.rhn.testing.TestUtils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Tests for PackageReferenceCache class.
+ */
+public class PackageReferenceCacheTest extends RhnBaseTestCase {
+
+    private final AtomicInteger lookups = new AtomicInteger();
+
+    private Supplier<Long> loader(long id) {
+        return () -> {
+            lookups.incrementAndGet();
+            return id;
+        };
+    }
+
+    /**
+     * An id is cached once the transaction which looked it up is committed.
+     */
+    @Test
+    public void testCachedOnCommit() {
+        String name = "cache-test-" + TestUtils.randomString();
+
+        assertEquals(1L, PackageReferenceCache.getNameId(name, loader(1L)));
+        // not committed yet: looked up again
+        assertEquals(1L, PackageReferenceCache.getNameId(name, loader(1L)));
+        assertEquals(2, lookups.get());
+
+        HibernateFactory.commitTransaction();
+
+        assertEquals(1L, PackageReferenceCache.getNameId(name, loader(2L)));
+        assertEquals(2, lookups.get());
+    }
+
+    /**
+     * An id looked up by a transaction which is rolled back is not cached, as it might refer to a row
+     * created by that transaction.
+     */
+    @Test
+    public void testNotCachedOnRollback() {
+        String version = TestUtils.randomString();
+
+        assertEquals(1L, PackageReferenceCache.getEvrId(null, version, "1", "rpm", loader(1L)));
+
+        HibernateFactory.rollbackTransaction();
+
+        assertEquals(2L, PackageReferenceCache.getEvrId(null, version, "1", "rpm", loader(2L)));
+        assertEquals(2, lookups.get());
+    }
+}
@@ -36,6 +36,7 @@ import com.redhat.rhn.domain.entitlement.Entitlement;
 import com.redhat.rhn.domain.org.CustomDataKey;
 import com.redhat.rhn.domain.org.Org;
 import com.redhat.rhn.domain.product.Tuple2;
+import com.redhat.rhn.domain.rhnpackage.PackageArch;
 import com.redhat.rhn.domain.rhnpackage.PackageEvr;
 import com.redhat.rhn.domain.user.User;
 import com.redhat.rhn.frontend.dto.HistoryEvent;
@@ -63,6 +64,8 @@ import org.hibernate.criterion.Subqueries;
 import org.hibernate.query.Query;
 import org.hibernate.type.StandardBasicTypes;
 
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -751,6 +754,18 @@ public class ServerFactory extends HibernateFactory {
         return null;
     }
 
+    /**
+     * List the foreign_entitled systems whose digital server id starts with the given prefix
+     *
+     * @param prefix the digital server id prefix
+     * @return the servers with a digital server id starting with the prefix
+     */
+    public static List<Server> listForeignSystemsByDigitalServerIdPrefix(String prefix) {
+        return getSession().createNamedQuery("Server.listForeignSystemsByDigitalServerIdPrefix", Server.class)
+                .setParameter("prefix", prefix + "%")
+                .list();
+    }
+
     /**
      * Lookup Servers by their ids
      * @param ids the ids to search for
@@ -1378,6 +1393,83 @@ public class ServerFactory extends HibernateFactory {
                 .getResultStream();
     }
 
+    /**
+     * Replaces the installed packages of a server with a single statement: packages which
+     * are not part of the new list are removed and the missing ones are added, unchanged
+     * packages are left alone. Names and EVRs are resolved, and created if needed, in the
+     * database, so the given packages only need to carry a name, an EVR and an arch.
+     *
+     * The packages collection of the server must not be loaded, it would not reflect the
+     * changes.
+     *
+     * @param server the server
+     * @param packages the packages currently installed on the server
+     */
+    public static void replaceInstalledPackages(Server server, Collection<InstalledPackage> packages) {
+        int size = packages.size();
+        String[] names = new String[size];
+        String[] epochs = new String[size];
+        String[] versions = new String[size];
+        String[] releases = new String[size];
+        String[] types = new String[size];
+        Long[] archIds = new Long[size];
+        Timestamp[] installTimes = new Timestamp[size];
+        int i = 0;
+        for (InstalledPackage pkg : packages) {
+            names[i] = pkg.getName().getName();
+            epochs[i] = pkg.getEvr().getEpoch();
+            versions[i] = pkg.getEvr().getVersion();
+            releases[i] = pkg.getEvr().getRelease();
+            types[i] = pkg.getEvr().getType();
+            archIds[i] = Optional.ofNullable(pkg.getArch()).map(PackageArch::getId).orElse(null);
+            installTimes[i] = Optional.ofNullable(pkg.getInstallTime()).map(t -> new Timestamp(t.getTime()))
+                    .orElse(null);
+            i++;
+        }
+
+        // the insert does not see the rows removed by the delete, both work on the rows
+        // present before the statement
+        String sql = "WITH incoming AS (" +
+                "  SELECT DISTINCT ON (name_id, evr_id, arch_id) * FROM (" +
+                "    SELECT lookup_package_name(p.name) AS name_id," +
+                "           lookup_evr(p.epoch, p.version, p.release, p.type) AS evr_id," +
+                "           p.arch_id, p.installtime" +
+                "      FROM unnest(?::varchar[], ?::varchar[], ?::varchar[], ?::varchar[], ?::varchar[]," +
+                "                  ?::numeric[], ?::timestamptz[])" +
+                "           AS p(name, epoch, version, release, type, arch_id, installtime)" +
+                "  ) resolved" +
+                "), removed AS (" +
+                "  DELETE FROM rhnServerPackage sp" +
+                "   WHERE sp.server_id = ?" +
+                "     AND NOT EXISTS (SELECT 1 FROM incoming i" +
+                "                      WHERE i.name_id = sp.name_id AND i.evr_id = sp.evr_id" +
+                "                        AND i.arch_id IS NOT DISTINCT FROM sp.package_arch_id)" +
+                ") " +
+                "INSERT INTO rhnServerPackage (server_id, name_id, evr_id, package_arch_id, installtime)" +
+                "  SELECT ?, i.name_id, i.evr_id, i.arch_id, i.installtime" +
+                "    FROM incoming i" +
+                "   WHERE NOT EXISTS (SELECT 1 FROM rhnServerPackage sp" +
+                "                      WHERE sp.server_id = ? AND sp.name_id = i.name_id AND sp.evr_id = i.evr_id" +
+                "                        AND sp.package_arch_id IS NOT DISTINCT FROM i.arch_id)";
+
+        int added = HibernateFactory.getSession().doReturningWork(connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(sql)) {
+                ps.setArray(1, connection.createArrayOf("varchar", names));
+                ps.setArray(2, connection.createArrayOf("varchar", epochs));
+                ps.setArray(3, connection.createArrayOf("varchar", versions));
+                ps.setArray(4, connection.createArrayOf("varchar", releases));
+                ps.setArray(5, connection.createArrayOf("varchar", types));
+                ps.setArray(6, connection.createArrayOf("numeric", archIds));
+                ps.setArray(7, connection.createArrayOf("timestamptz", installTimes));
+                ps.setLong(8, server.getId());
+                ps.setLong(9, server.getId());
+                ps.setLong(10, server.getId());
+                return ps.executeUpdate();
+            }
+        });
+        log.debug("Replaced installed packages of server {}: {} packages, {} added", server.getId(), size, added);
+    }
+
     /**
      * List errata names for a given set of servers and errata.
      *
@@ -22,10 +22,13 @@ import org.apache.logging.log4j.Logger;
 import org.hibernate.Session;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 /**
  * VirtualInstanceFactory provides data access operations for virtual instances.
@@ -357,6 +360,17 @@ public class VirtualInstanceFactory extends HibernateFactory {
             .list();
     }
 
+    /**
+     * Returns the VirtualInstances with any of the given uuids, grouped by uuid.
+     * @param uuids - uuids of the vms
+     * @return map from uuid to the VirtualInstances with that uuid
+     */
+    public Map<String, List<VirtualInstance>> lookupVirtualInstancesByUuids(Collection<String> uuids) {
+        List<VirtualInstance> instances = findByIds(new ArrayList<>(uuids),
+                "VirtualInstance.lookupVirtualInstancesByUuids", "uuids");
+        return instances.stream().collect(Collectors.groupingBy(VirtualInstance::getUuid));
+    }
+
     /**
      * Returns a VirtualInstance that is linked to the host system with given id.
      * @param hostId - id of the host system
@@ -369,6 +383,18 @@ public class VirtualInstanceFactory extends HibernateFactory {
             .uniqueResult();
     }
 
+    /**
+     * Returns the VirtualInstances that are linked to the host systems with given ids.
+     * @param hostIds - ids of the host systems
+     * @return map from host system id to the VirtualInstance linked to it
+     */
+    public Map<Long, VirtualInstance> lookupHostVirtInstancesByHostIds(List<Long> hostIds) {
+        List<VirtualInstance> instances = findByIds(hostIds,
+                "VirtualInstance.lookupHostVirtInstancesByHostIds", "hostIds");
+        return instances.stream().collect(Collectors.toMap(vi -> vi.getHostSystem().getId(), vi -> vi,
+                (vi1, vi2) -> vi1));
+    }
+
     /**
      * Returns a VirtualInstance with given uuid and host id.
      * @param hostId - id of the host system
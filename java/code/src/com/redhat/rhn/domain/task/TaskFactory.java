@@ -14,6 +14,10 @@
  */
 package com.redhat.rhn.domain.task;
 
+import com.redhat.rhn.common.db.datasource.DataResult;
+import com.redhat.rhn.common.db.datasource.ModeFactory;
+import com.redhat.rhn.common.db.datasource.SelectMode;
+import com.redhat.rhn.common.db.datasource.WriteMode;
 import com.redhat.rhn.common.hibernate.HibernateFactory;
 import com.redhat.rhn.domain.org.Org;
 import com.redhat.rhn.taskomatic.task.errata.ErrataCacheWorker;
@@ -22,8 +26,12 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.hibernate.Session;
 
+import java.util.Comparator;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaDelete;
@@ -37,6 +45,7 @@ public class TaskFactory extends HibernateFactory {
 
     private static TaskFactory singleton = new TaskFactory();
     private static Logger log = LogManager.getLogger(TaskFactory.class);
+    private static final String TASK_QUERIES = "Task_queries";
 
     private TaskFactory() {
         super();
@@ -68,6 +77,22 @@ public class TaskFactory extends HibernateFactory {
         return reload(t);
     }
 
+    /**
+     * Queues a new task unless the same task is already waiting in the queue.
+     * @param org The org to which this task will belong
+     * @param name A name for the task
+     * @param data The data for this task (usually corresponds to an object id)
+     * @return true if a task was inserted, false if it was already queued
+     */
+    public static boolean queueTask(Org org, String name, Long data) {
+        WriteMode m = ModeFactory.getWriteMode(TASK_QUERIES, "queue_task");
+        Map<String, Object> params = new HashMap<>();
+        params.put("org_id", org.getId());
+        params.put("task_name", name);
+        params.put("task_data", data);
+        return m.executeUpdate(params) > 0;
+    }
+
     /**
      * Saves the object to the db
      * @param taskIn The task to save
@@ -149,6 +174,66 @@ public class TaskFactory extends HibernateFactory {
 
 
 
+    /**
+     * Remove the duplicate entries of the tasks with the given name, keeping only the one
+     * with the highest priority for each org and data.
+     * @param name the tasks name
+     * @return number of removed tasks
+     */
+    public static int collapseDuplicateTasks(String name) {
+        WriteMode m = ModeFactory.getWriteMode(TASK_QUERIES, "collapse_duplicate_tasks");
+        return m.executeUpdate(Map.of("task_name", name));
+    }
+
+    /**
+     * Remove up to limit tasks with the given name from the queue and return their data,
+     * highest priority and oldest first. Tasks locked by other transactions are skipped, so
+     * concurrent callers never claim the same tasks. The tasks get back to the queue if the
+     * current transaction is rolled back.
+     * @param name the tasks name
+     * @param limit maximum number of tasks to claim
+     * @return the distinct data of the claimed tasks
+     */
+    public static List<Long> claimTasks(String name, int limit) {
+        SelectMode m = ModeFactory.getMode(TASK_QUERIES, "claim_tasks");
+        Map<String, Object> params = new HashMap<>();
+        params.put("task_name", name);
+        params.put("limit", limit);
+        DataResult<Map<String, Object>> rows = m.execute(params);
+        return rows.stream()
+                .sorted(Comparator.comparing((Map<String, Object> row) -> (Long) row.get("priority")).reversed()
+                        .thenComparing(row -> (Date) row.get("earliest"))
+                        .thenComparing(row -> (Long) row.get("id")))
+                .map(row -> (Long) row.get("task_data"))
+                .distinct()
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Remove all the queued tasks with the given name and data, for any org and priority.
+     * As for {@link #claimTasks(String, int)}, the tasks get back to the queue if the current
+     * transaction is rolled back.
+     * @param name the tasks name
+     * @param data the tasks data
+     * @return true if at least a task was removed, false if none was queued
+     */
+    public static boolean claimTask(String name, Long data) {
+        WriteMode m = ModeFactory.getWriteMode(TASK_QUERIES, "claim_task");
+        Map<String, Object> params = new HashMap<>();
+        params.put("task_name", name);
+        params.put("task_data", data);
+        return m.executeUpdate(params) > 0;
+    }
+
+    /**
+     * Returns the number of queued tasks and the age in seconds of the oldest one, by task name.
+     * @return rows with task_name, depth and oldest_age
+     */
+    public static DataResult<Map<String, Object>> getQueueStatistics() {
+        SelectMode m = ModeFactory.getMode(TASK_QUERIES, "task_queue_statistics");
+        return m.execute();
+    }
+
     /**
      * Lookup a list of Tasks who's name start with passed in param
      * @param nameIn to lookup
@@ -84,4 +84,32 @@ public class TaskTest extends RhnBaseTestCase {
         assertNotNull(lookedup.get(0));
         assertTrue(lookedup.get(0) instanceof Task);
     }
+
+    @Test
+    public void testQueueTask() {
+        Org org = UserTestUtils.findNewOrg("testOrg" + this.getClass().getSimpleName());
+        String testname = "task_object_unit_test_" + TestUtils.randomString();
+
+        assertTrue(TaskFactory.queueTask(org, testname, 42L));
+        assertFalse(TaskFactory.queueTask(org, testname, 42L));
+        assertTrue(TaskFactory.queueTask(org, testname, 43L));
+        assertEquals(2, TaskFactory.getTaskListByNameLike(testname).size());
+    }
+
+    @Test
+    public void testCollapseAndClaimTasks() {
+        Org org = UserTestUtils.findNewOrg("testOrg" + this.getClass().getSimpleName());
+        String testname = "task_object_unit_test_" + TestUtils.randomString();
+        TaskFactory.createTask(org, testname, 1L);
+        TaskFactory.createTask(org, testname, 2L);
+        TaskFactory.createTask(org, testname, 2L);
+        TaskFactory.createTask(org, testname, 3L);
+
+        assertEquals(1, TaskFactory.collapseDuplicateTasks(testname));
+        assertEquals(3, TaskFactory.getTaskListByNameLike(testname).size());
+
+        assertEquals(List.of(1L, 2L), TaskFactory.claimTasks(testname, 2));
+        assertEquals(List.of(3L), TaskFactory.claimTasks(testname, 2));
+        assertTrue(TaskFactory.claimTasks(testname, 2).isEmpty());
+    }
 }
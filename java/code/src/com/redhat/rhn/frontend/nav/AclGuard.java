@@ -17,6 +17,7 @@ package com.redhat.rhn.frontend.nav;
 import com.redhat.rhn.common.security.acl.Acl;
 import com.redhat.rhn.common.security.acl.AclFactory;
 
+import java.util.HashMap;
 import java.util.Map;
 
 /**
@@ -26,6 +27,8 @@ public class AclGuard implements RenderGuard {
     private Map<String, Object> context;
     private String mixins;
     private final AclFactory aclFactory;
+    /** handler results for the context, nodes of a tree mostly share the same checks */
+    private final Map<String, Boolean> memo = new HashMap<>();
 
 
     /**
@@ -70,7 +73,7 @@ public class AclGuard implements RenderGuard {
         }
 
         Acl acl = aclFactory.getAcl(mixins);
-        return acl.evalAcl(context, aclStr);
+        return acl.evalAcl(context, aclStr, memo);
     }
 }
 
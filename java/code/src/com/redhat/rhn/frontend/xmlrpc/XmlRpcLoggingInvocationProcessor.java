@@ -117,6 +117,7 @@ public class XmlRpcLoggingInvocationProcessor extends LoggingInvocationProcessor
             buf.append(") TIME: ");
 
             getStopWatch().stop();
+            observeCall(invocation.getHandlerName(), invocation.getMethodName(), false, getStopWatch().getTime());
 
             buf.append(getStopWatch().getTime() / 1000.00);
             buf.append(" seconds");
@@ -131,6 +132,11 @@ public class XmlRpcLoggingInvocationProcessor extends LoggingInvocationProcessor
         }
     }
 
+    @Override
+    protected String getApiName() {
+        return "xmlrpc";
+    }
+
     private StringBuilder processArguments(String handler, String method,
                                   List arguments) {
         StringBuilder ret = new StringBuilder();
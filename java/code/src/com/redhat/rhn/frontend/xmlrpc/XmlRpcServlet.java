@@ -16,6 +16,7 @@
 package com.redhat.rhn.frontend.xmlrpc;
 
 import com.redhat.rhn.frontend.xmlrpc.serializer.BigDecimalSerializer;
+import com.redhat.rhn.frontend.xmlrpc.serializer.DataStreamSerializer;
 import com.redhat.rhn.frontend.xmlrpc.serializer.ObjectSerializer;
 import com.redhat.rhn.frontend.xmlrpc.serializer.SerializerFactory;
 
@@ -93,6 +94,7 @@ public class XmlRpcServlet extends HttpServlet {
         XmlRpcSerializer serializer = srvr.getSerializer();
         serializer.addCustomSerializer(new ObjectSerializer());
         serializer.addCustomSerializer(new BigDecimalSerializer());
+        serializer.addCustomSerializer(new DataStreamSerializer());
 
         // find the configured serializers...
         serializerFactory.getSerializers().forEach(serializer::addCustomSerializer);
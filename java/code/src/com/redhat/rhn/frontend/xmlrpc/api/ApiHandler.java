@@ -16,6 +16,7 @@ package com.redhat.rhn.frontend.xmlrpc.api;
 
 import com.redhat.rhn.common.conf.Config;
 import com.redhat.rhn.common.conf.ConfigDefaults;
+import com.redhat.rhn.common.db.datasource.DataStream;
 import com.redhat.rhn.common.util.StringUtil;
 import com.redhat.rhn.domain.user.User;
 import com.redhat.rhn.frontend.xmlrpc.BaseHandler;
@@ -202,6 +203,7 @@ public class ApiHandler extends BaseHandler {
         }
         else if ((classType.equals(List.class)) ||
                  (classType.equals(Set.class)) ||
+                 (classType.equals(DataStream.class)) ||
                  (classType.toString().contains("class [L")) ||
                  (classType.toString().contains("class [I"))) {
             return "array";
@@ -15,6 +15,7 @@
 package com.redhat.rhn.frontend.xmlrpc.api.test;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 
 import com.redhat.rhn.common.conf.Config;
 import com.redhat.rhn.common.conf.ConfigDefaults;
@@ -25,6 +26,10 @@ import com.redhat.rhn.testing.RhnBaseTestCase;
 
 import org.junit.jupiter.api.Test;
 
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
 public class ApiHandlerTest extends RhnBaseTestCase {
 
     @Test
@@ -47,4 +52,17 @@ public class ApiHandlerTest extends RhnBaseTestCase {
         String version = Config.get().getString("java.apiversion");
         assertEquals(version, handler.getVersion());
     }
+
+    @Test
+    public void testStreamedReturnTypeIsArray() {
+        ApiHandler handler = new ApiHandler(HandlerFactory.getDefaultHandlerFactory());
+        Map<String, Map<String, Object>> methods = handler.getApiNamespaceCallList(null, "channel.software");
+
+        List<Object> returnTypes = methods.values().stream()
+                .filter(method -> "listAllPackages".equals(method.get("name")))
+                .map(method -> method.get("return"))
+                .collect(Collectors.toList());
+        assertFalse(returnTypes.isEmpty());
+        returnTypes.forEach(type -> assertEquals("array", type));
+    }
 }
@@ -20,6 +20,7 @@ import static com.redhat.rhn.manager.channel.CloneChannelCommand.CloneBehavior.O
 import com.redhat.rhn.FaultException;
 import com.redhat.rhn.common.client.InvalidCertificateException;
 import com.redhat.rhn.common.db.datasource.DataResult;
+import com.redhat.rhn.common.db.datasource.DataStream;
 import com.redhat.rhn.common.hibernate.LookupException;
 import com.redhat.rhn.common.messaging.MessageQueue;
 import com.redhat.rhn.common.security.PermissionException;
@@ -291,11 +292,11 @@ public class ChannelSoftwareHandler extends BaseHandler {
      *      #array_end()
      */
     @ReadOnly
-    public List<PackageDto> listAllPackages(User loggedInUser, String channelLabel,
+    public DataStream<PackageDto> listAllPackages(User loggedInUser, String channelLabel,
             Date startDate, Date endDate) throws NoSuchChannelException {
 
         Channel channel = lookupChannelByLabel(loggedInUser, channelLabel);
-        return ChannelManager.listAllPackages(channel, startDate, endDate);
+        return ChannelManager.streamAllPackages(channel, startDate, endDate).prefetch();
     }
 
     /**
@@ -319,7 +320,7 @@ public class ChannelSoftwareHandler extends BaseHandler {
      *      #array_end()
      */
     @ReadOnly
-    public List<PackageDto> listAllPackages(User loggedInUser, String channelLabel,
+    public DataStream<PackageDto> listAllPackages(User loggedInUser, String channelLabel,
             Date startDate) throws NoSuchChannelException {
         return listAllPackages(loggedInUser, channelLabel, startDate, null);
     }
@@ -340,11 +341,11 @@ public class ChannelSoftwareHandler extends BaseHandler {
      *      #array_end()
      */
     @ReadOnly
-    public List<PackageDto> listAllPackages(User loggedInUser, String channelLabel)
+    public DataStream<PackageDto> listAllPackages(User loggedInUser, String channelLabel)
         throws NoSuchChannelException {
 
         Channel channel = lookupChannelByLabel(loggedInUser, channelLabel);
-        return ChannelManager.listAllPackages(channel);
+        return ChannelManager.streamAllPackages(channel, null, null).prefetch();
     }
 
     /**
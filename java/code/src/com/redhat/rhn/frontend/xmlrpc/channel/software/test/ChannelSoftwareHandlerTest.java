@@ -1163,18 +1163,18 @@ public class ChannelSoftwareHandlerTest extends BaseHandlerTestCase {
         Calendar cal = Calendar.getInstance();
         cal.add(Calendar.YEAR, -5);
 
-        List<PackageDto> list = handler.listAllPackages(admin, chan.getLabel());
+        List<PackageDto> list = handler.listAllPackages(admin, chan.getLabel()).toList();
         assertEquals(1, list.size());
 
         SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
         Date startDate = sdf.parse("2004-08-20 08:00:00");
         Date endDate = sdf.parse("3004-08-20 08:00:00");
 
-        list = handler.listAllPackages(admin, chan.getLabel(), startDate);
+        list = handler.listAllPackages(admin, chan.getLabel(), startDate).toList();
         assertEquals(1, list.size());
 
         list = handler.listAllPackages(admin, chan.getLabel(), startDate,
-                endDate);
+                endDate).toList();
         assertEquals(1, list.size());
     }
 
@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2023 SUSE LLC
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.frontend.xmlrpc.serializer;
+
+import com.redhat.rhn.common.RhnRuntimeException;
+import com.redhat.rhn.common.db.datasource.DataStream;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import redstone.xmlrpc.XmlRpcException;
+import redstone.xmlrpc.XmlRpcSerializer;
+
+/**
+ * Serializes a {@link DataStream} as an array, writing each row to the response as soon as it is read from the
+ * database. Rows are serialized by the serializers registered for their type. The response is already being sent
+ * at that point: an error reading the rows aborts it and the client receives truncated XML instead of a fault,
+ * see {@link DataStream#prefetch()}.
+ */
+public class DataStreamSerializer extends RhnXmlRpcCustomSerializer {
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Class getSupportedClass() {
+        return DataStream.class;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void doSerialize(Object value, Writer output, XmlRpcSerializer serializer)
+        throws XmlRpcException, IOException {
+        output.write("<array><data>");
+        ((DataStream<?>) value).forEach(row -> {
+            try {
+                serializer.serialize(row, output);
+            }
+            catch (Exception e) {
+                throw new RhnRuntimeException("Cannot serialize row " + row, e);
+            }
+        });
+        output.write("</data></array>");
+    }
+}
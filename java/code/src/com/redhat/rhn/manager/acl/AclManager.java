@@ -66,11 +66,6 @@ public class AclManager {
         if (acl == null || "".equals(acl)) {
             return true;
         }
-        // TODO: Lifecycle issue
-        // It's not cool that we're instantiating a new
-        // Acl everytime we need to use it. We should register
-        // the acl handlers at startup and simply call acl.evalAcl()
-        // when needed.
         Acl aclObj = ACL_FACTORY.getAcl(mixins);
         if (context == null) {
            context = new HashMap<>();
@@ -22,6 +22,7 @@ import com.redhat.rhn.common.conf.Config;
 import com.redhat.rhn.common.conf.ConfigDefaults;
 import com.redhat.rhn.common.db.datasource.CallableMode;
 import com.redhat.rhn.common.db.datasource.DataResult;
+import com.redhat.rhn.common.db.datasource.DataStream;
 import com.redhat.rhn.common.db.datasource.ModeFactory;
 import com.redhat.rhn.common.db.datasource.Row;
 import com.redhat.rhn.common.db.datasource.SelectMode;
@@ -1018,8 +1019,29 @@ public class ChannelManager extends BaseManager {
      */
     public static List<PackageDto> listAllPackages(Channel channel, String startDate,
             String endDate) {
-        String mode = "all_packages_in_channel";
         Map<String, Object> params = new HashMap<>();
+        SelectMode m = allPackagesMode(channel, startDate, endDate, params);
+
+        return m.execute(params);
+    }
+
+    /**
+     * Returns the packages in channel, read from the database only while the result is serialized
+     * @param channel channel whose packages are sought
+     * @param startDate package start date, or null
+     * @param endDate package end date, or null
+     * @return stream of packages in channel
+     */
+    public static DataStream<PackageDto> streamAllPackages(Channel channel, Date startDate, Date endDate) {
+        Map<String, Object> params = new HashMap<>();
+        SelectMode m = allPackagesMode(channel, formatPackageDate(startDate), formatPackageDate(endDate), params);
+
+        return new DataStream<>(m, params);
+    }
+
+    private static SelectMode allPackagesMode(Channel channel, String startDate, String endDate,
+            Map<String, Object> params) {
+        String mode = "all_packages_in_channel";
         params.put("cid", channel.getId());
 
         if (!StringUtils.isEmpty(startDate)) {
@@ -1032,9 +1054,12 @@ public class ChannelManager extends BaseManager {
             mode = "all_packages_in_channel_between";
         }
 
-        SelectMode m = ModeFactory.getMode("Package_queries", mode);
+        return ModeFactory.getMode("Package_queries", mode);
+    }
 
-        return m.execute(params);
+    private static String formatPackageDate(Date date) {
+        // string representation that can be used in the db query
+        return date == null ? null : new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(date);
     }
 
     /**
@@ -1062,21 +1087,7 @@ public class ChannelManager extends BaseManager {
     public static List<PackageDto> listAllPackages(Channel channel, Date startDate,
             Date endDate) {
 
-        // convert the start and end dates to a string representation
-        // that can be used in the db query...
-        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
-
-        String startDateStr = null;
-        String endDateStr = null;
-
-        if (startDate != null) {
-            startDateStr = sdf.format(startDate);
-        }
-        if (endDate != null) {
-            endDateStr = sdf.format(endDate);
-        }
-
-        return listAllPackages(channel, startDateStr, endDateStr);
+        return listAllPackages(channel, formatPackageDate(startDate), formatPackageDate(endDate));
     }
 
     /**
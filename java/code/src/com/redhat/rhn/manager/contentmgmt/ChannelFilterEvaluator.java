@@ -0,0 +1,453 @@
+/*
+ * Copyright (c) 2023 SUSE LLC
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.manager.contentmgmt;
+
+import static java.util.stream.Collectors.joining;
+import static java.util.stream.Collectors.toList;
+
+import com.redhat.rhn.common.hibernate.HibernateFactory;
+import com.redhat.rhn.domain.channel.Channel;
+import com.redhat.rhn.domain.contentmgmt.ContentFilter;
+import com.redhat.rhn.domain.contentmgmt.ErrataFilter;
+import com.redhat.rhn.domain.contentmgmt.FilterCriteria;
+import com.redhat.rhn.domain.contentmgmt.ModularPackageFilter;
+import com.redhat.rhn.domain.contentmgmt.PackageFilter;
+import com.redhat.rhn.domain.errata.Errata;
+import com.redhat.rhn.domain.rhnpackage.Package;
+
+import org.apache.commons.lang3.tuple.Pair;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.hibernate.Session;
+import org.hibernate.query.NativeQuery;
+
+import java.sql.Timestamp;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Evaluates {@link ContentFilter}s against the packages or the errata of a {@link Channel}.
+ * <p>
+ * Filter criteria are translated to SQL conditions wherever possible, so that the database selects the matching
+ * entities without loading them in the session. Criteria that cannot be expressed in SQL are evaluated in Java,
+ * either:
+ * <ul>
+ * <li>on a single column streamed from the database (regular expressions), or</li>
+ * <li>on the entities themselves, loaded in batches and restricted to the candidates selected by a coarser SQL
+ * condition (EVR comparisons, restricted to the packages with the right name)</li>
+ * </ul>
+ * <p>
+ * The outcome is the same as testing every filter against every entity: an entity is denied when any DENY filter
+ * matches it and no ALLOW filter does.
+ */
+public class ChannelFilterEvaluator {
+
+    private static final Logger LOG = LogManager.getLogger(ChannelFilterEvaluator.class);
+
+    private static final int FETCH_SIZE = 1000;
+    private static final int BATCH_SIZE = 500;
+
+    // same formatting as PackageEvr.toString() and Package.getNevraWithEpoch()
+    private static final String EPOCH = "CASE WHEN PE.epoch ~ '^[0-9]+$' THEN PE.epoch || ':' ELSE '' END";
+    private static final String EPOCH_OR_ZERO = "CASE WHEN PE.epoch IS NULL OR PE.epoch = '' THEN '0:' " +
+            "WHEN PE.epoch ~ '^[0-9]+$' THEN PE.epoch || ':' ELSE '' END";
+    private static final String NEVR = "PN.name || '-' || " + EPOCH + " || PE.version || '-' || PE.release";
+    private static final String NEVRA = "PN.name || '-' || " + EPOCH_OR_ZERO +
+            " || PE.version || '-' || PE.release || '.' || PA.label";
+
+    private static final Source<Package> PACKAGES = new Source<>(Package.class, "P.id",
+            "FROM rhnChannelPackage CP " +
+            "JOIN rhnPackage P ON P.id = CP.package_id " +
+            "JOIN rhnPackageName PN ON PN.id = P.name_id " +
+            "JOIN rhnPackageEVR PE ON PE.id = P.evr_id " +
+            "JOIN rhnPackageArch PA ON PA.id = P.package_arch_id ",
+            "WHERE CP.channel_id = :cid");
+
+    private static final Source<Errata> ERRATA = new Source<>(Errata.class, "E.id",
+            "FROM rhnChannelErrata CE " +
+            "JOIN rhnErrata E ON E.id = CE.errata_id ",
+            "WHERE CE.channel_id = :cid");
+
+    private static final String ERRATA_PACKAGE_JOINS =
+            "JOIN rhnErrataPackage EP ON EP.errata_id = E.id " +
+            "JOIN rhnPackage P ON P.id = EP.package_id " +
+            "JOIN rhnPackageName PN ON PN.id = P.name_id ";
+
+    private int paramCount = 0;
+
+    /**
+     * Returns the ids of the packages of a channel that are filtered out by the given filters
+     *
+     * @param channel the channel
+     * @param filters the package filters
+     * @return the ids of the denied packages
+     */
+    public Set<Long> deniedPackageIds(Channel channel, Collection<? extends ContentFilter<Package>> filters) {
+        return denied(PACKAGES, channel, filters, this::translatePackageFilter);
+    }
+
+    /**
+     * Returns the ids of the errata of a channel that are filtered out by the given filters
+     *
+     * @param channel the channel
+     * @param filters the errata filters
+     * @return the ids of the denied errata
+     */
+    public Set<Long> deniedErrataIds(Channel channel, Collection<? extends ContentFilter<Errata>> filters) {
+        return denied(ERRATA, channel, filters, this::translateErrataFilter);
+    }
+
+    private <T> Set<Long> denied(Source<T> source, Channel channel, Collection<? extends ContentFilter<T>> filters,
+            Function<ContentFilter<T>, Condition> translator) {
+        List<ContentFilter<T>> denyFilters = new ArrayList<>();
+        List<ContentFilter<T>> allowFilters = new ArrayList<>();
+        for (ContentFilter<T> filter : filters) {
+            if (filter.getRule() == ContentFilter.Rule.DENY) {
+                denyFilters.add(filter);
+            }
+            else if (filter.getRule() == ContentFilter.Rule.ALLOW) {
+                allowFilters.add(filter);
+            }
+        }
+        if (denyFilters.isEmpty()) {
+            return new HashSet<>();
+        }
+
+        Set<Long> denied = match(source, channel.getId(), denyFilters, translator, null);
+        // ALLOW filters only need to be checked against the denied entities
+        if (!denied.isEmpty() && !allowFilters.isEmpty()) {
+            denied.removeAll(match(source, channel.getId(), allowFilters, translator, denied));
+        }
+        LOG.debug("{} {} entities of channel {} denied by {} filter(s)", denied.size(),
+                source.type.getSimpleName(), channel.getLabel(), filters.size());
+        return denied;
+    }
+
+    /**
+     * Returns the ids of the entities of a channel matched by any of the given filters
+     */
+    private <T> Set<Long> match(Source<T> source, Long channelId, List<ContentFilter<T>> filters,
+            Function<ContentFilter<T>, Condition> translator, Set<Long> restriction) {
+        List<Condition> exact = new ArrayList<>();
+        Map<String, List<Condition>> columns = new LinkedHashMap<>();
+        List<Pair<ContentFilter<T>, Condition>> entities = new ArrayList<>();
+        for (ContentFilter<T> filter : filters) {
+            Condition condition = translator.apply(filter);
+            switch (condition.kind) {
+                case EXACT:
+                    exact.add(condition);
+                    break;
+                case COLUMN:
+                    columns.computeIfAbsent(condition.joins + condition.sql, k -> new ArrayList<>()).add(condition);
+                    break;
+                default:
+                    entities.add(Pair.of(filter, condition));
+            }
+        }
+
+        Set<Long> matched = new HashSet<>();
+        if (!exact.isEmpty()) {
+            Map<String, Object> params = new HashMap<>();
+            exact.forEach(c -> params.putAll(c.params));
+            matched.addAll(selectIds(source, channelId, exact.stream()
+                    .map(c -> "(" + c.sql + ")")
+                    .collect(joining(" OR ")), params));
+        }
+        // conditions on the same column are evaluated in a single pass
+        columns.values().forEach(group -> matchColumn(source, channelId, group, matched));
+        entities.forEach(e -> matchEntities(source, channelId, e.getLeft(), e.getRight(), restriction, matched));
+
+        if (restriction != null) {
+            matched.retainAll(restriction);
+        }
+        return matched;
+    }
+
+    private <T> void matchColumn(Source<T> source, Long channelId, List<Condition> conditions, Set<Long> matched) {
+        Condition first = conditions.get(0);
+        NativeQuery<Object[]> query = createQuery("SELECT " + source.id + ", " + first.sql + " " +
+                source.from + first.joins + source.where, channelId, Map.of());
+        query.setFetchSize(FETCH_SIZE);
+        try (Stream<Object[]> rows = query.stream()) {
+            rows.filter(row -> row[1] != null)
+                    .filter(row -> conditions.stream().anyMatch(c -> c.predicate.test((String) row[1])))
+                    .forEach(row -> matched.add(((Number) row[0]).longValue()));
+        }
+    }
+
+    private <T> void matchEntities(Source<T> source, Long channelId, ContentFilter<T> filter, Condition condition,
+            Set<Long> restriction, Set<Long> matched) {
+        List<Long> candidates = selectIds(source, channelId, condition.sql, condition.params).stream()
+                .filter(id -> !matched.contains(id) && (restriction == null || restriction.contains(id)))
+                .collect(toList());
+        LOG.debug("Testing {} candidate(s) against filter {}", candidates.size(), filter.getName());
+
+        Session session = HibernateFactory.getSession();
+        for (int i = 0; i < candidates.size(); i += BATCH_SIZE) {
+            List<Long> batch = candidates.subList(i, Math.min(i + BATCH_SIZE, candidates.size()));
+            List<T> loaded = session.byMultipleIds(source.type).multiLoad(batch);
+            for (int j = 0; j < batch.size(); j++) {
+                T entity = loaded.get(j);
+                if (entity != null && filter.test(entity)) {
+                    matched.add(batch.get(j));
+                }
+            }
+        }
+    }
+
+    private <T> List<Long> selectIds(Source<T> source, Long channelId, String condition,
+            Map<String, Object> params) {
+        NativeQuery<Number> query = createQuery("SELECT DISTINCT " + source.id + " " + source.from + source.where +
+                " AND (" + condition + ")", channelId, params);
+        return query.getResultList().stream().map(Number::longValue).collect(toList());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <R> NativeQuery<R> createQuery(String sql, Long channelId, Map<String, Object> params) {
+        NativeQuery<R> query = HibernateFactory.getSession().createNativeQuery(sql);
+        query.setParameter("cid", channelId);
+        params.forEach(query::setParameter);
+        return query;
+    }
+
+    private Condition translatePackageFilter(ContentFilter<Package> filter) {
+        Map<String, Object> params = new HashMap<>();
+        if (filter instanceof ModularPackageFilter) {
+            return Condition.exact("strpos(PE.release, '.module') > 0", params);
+        }
+        if (!(filter instanceof PackageFilter)) {
+            return Condition.entities("TRUE", params);
+        }
+
+        FilterCriteria.Matcher matcher = filter.getCriteria().getMatcher();
+        String field = filter.getCriteria().getField();
+        String value = filter.getCriteria().getValue();
+        String column = packageColumn(field);
+        switch (matcher) {
+            case CONTAINS:
+                if (column != null) {
+                    return Condition.exact("strpos(" + column + ", " + bind(params, value) + ") > 0", params);
+                }
+                break;
+            case EQUALS:
+                if (column != null) {
+                    return Condition.exact(column + " = " + bind(params, value), params);
+                }
+                break;
+            case MATCHES:
+                if (column != null) {
+                    return Condition.column("", column, matches(value));
+                }
+                break;
+            case PROVIDES_NAME:
+                return Condition.exact("EXISTS (SELECT 1 FROM rhnPackageProvides PP " +
+                        "JOIN rhnPackageCapability PC ON PC.id = PP.capability_id " +
+                        "WHERE PP.package_id = P.id AND PC.name = " + bind(params, value) + ")", params);
+            case LOWER:
+            case LOWEREQ:
+            case GREATEREQ:
+            case GREATER:
+                // EVR comparison is done in Java, on the packages with the same name (and architecture)
+                if ("nevr".equals(field)) {
+                    return Condition.entities("PN.name = " +
+                            bind(params, value.replaceAll("(.*)-(.*:)?(.*)-(.*)", "$1")), params);
+                }
+                if ("nevra".equals(field)) {
+                    return Condition.entities("PN.name || PA.label = " +
+                            bind(params, value.replaceAll("(.*)-(.*:)?(.*)-(.*)\\.(.*)", "$1$5")), params);
+                }
+                break;
+            default:
+                break;
+        }
+        // unknown combinations are left to the filter itself
+        return Condition.entities("TRUE", params);
+    }
+
+    private static String packageColumn(String field) {
+        switch (field) {
+            case "name":
+                return "PN.name";
+            case "nevr":
+                return NEVR;
+            case "nevra":
+                return NEVRA;
+            default:
+                return null;
+        }
+    }
+
+    private Condition translateErrataFilter(ContentFilter<Errata> filter) {
+        Map<String, Object> params = new HashMap<>();
+        if (!(filter instanceof ErrataFilter)) {
+            return Condition.entities("TRUE", params);
+        }
+
+        FilterCriteria.Matcher matcher = filter.getCriteria().getMatcher();
+        String field = filter.getCriteria().getField();
+        String value = filter.getCriteria().getValue();
+        switch (field) {
+            case "issue_date":
+                if (matcher == FilterCriteria.Matcher.GREATEREQ) {
+                    return Condition.exact("E.issue_date >= " + bind(params, parseDate(value)), params);
+                }
+                if (matcher == FilterCriteria.Matcher.GREATER) {
+                    return Condition.exact("E.issue_date > " + bind(params, parseDate(value)), params);
+                }
+                break;
+            case "advisory_name":
+            case "advisory_type":
+            case "synopsis":
+                String column = "E." + field;
+                if (matcher == FilterCriteria.Matcher.EQUALS) {
+                    return Condition.exact(column + " = " + bind(params, value), params);
+                }
+                if (matcher == FilterCriteria.Matcher.CONTAINS && field.equals("synopsis")) {
+                    return Condition.exact("strpos(" + column + ", " + bind(params, value) + ") > 0", params);
+                }
+                if (matcher == FilterCriteria.Matcher.MATCHES && !field.equals("advisory_type")) {
+                    return Condition.column("", column, matches(value));
+                }
+                break;
+            case "package_name":
+                if (matcher == FilterCriteria.Matcher.CONTAINS_PKG_NAME) {
+                    return Condition.exact(errataPackageExists("PN.name = " + bind(params, value)), params);
+                }
+                if (matcher == FilterCriteria.Matcher.MATCHES_PKG_NAME) {
+                    return Condition.column(ERRATA_PACKAGE_JOINS, "PN.name", matches(value));
+                }
+                break;
+            case "package_nevr":
+                String[] nameAndEvr = value.split(" ");
+                if (nameAndEvr.length == 2) {
+                    // EVR comparison is done in Java, on the errata with a package of the same name
+                    return Condition.entities(errataPackageExists("PN.name = " + bind(params, nameAndEvr[0])),
+                            params);
+                }
+                break;
+            case "keyword":
+                if (matcher == FilterCriteria.Matcher.CONTAINS) {
+                    return Condition.exact("EXISTS (SELECT 1 FROM rhnErrataKeyword EK " +
+                            "WHERE EK.errata_id = E.id AND EK.keyword = " + bind(params, value) + ")", params);
+                }
+                break;
+            case "package_provides_name":
+                if (matcher == FilterCriteria.Matcher.CONTAINS_PROVIDES_NAME) {
+                    return Condition.exact("EXISTS (SELECT 1 FROM rhnErrataPackage EP " +
+                            "JOIN rhnPackageProvides PP ON PP.package_id = EP.package_id " +
+                            "JOIN rhnPackageCapability PC ON PC.id = PP.capability_id " +
+                            "WHERE EP.errata_id = E.id AND PC.name = " + bind(params, value) + ")", params);
+                }
+                break;
+            default:
+                break;
+        }
+        // unknown combinations are left to the filter itself
+        return Condition.entities("TRUE", params);
+    }
+
+    private static String errataPackageExists(String condition) {
+        return "EXISTS (SELECT 1 FROM rhnErrataPackage EP " +
+                "JOIN rhnPackage P ON P.id = EP.package_id " +
+                "JOIN rhnPackageName PN ON PN.id = P.name_id " +
+                "WHERE EP.errata_id = E.id AND " + condition + ")";
+    }
+
+    private static Timestamp parseDate(String value) {
+        return Timestamp.from(ZonedDateTime.parse(value, DateTimeFormatter.ISO_OFFSET_DATE_TIME).toInstant());
+    }
+
+    // Java and PostgreSQL regular expressions differ, so they are always evaluated in Java
+    private static Predicate<String> matches(String regex) {
+        Pattern pattern = Pattern.compile(regex);
+        return s -> pattern.matcher(s).matches();
+    }
+
+    private String bind(Map<String, Object> params, Object value) {
+        String name = "p" + paramCount++;
+        params.put(name, value);
+        return ":" + name;
+    }
+
+    /**
+     * The tables an entity type is selected from
+     */
+    private static final class Source<T> {
+        private final Class<T> type;
+        private final String id;
+        private final String from;
+        private final String where;
+
+        Source(Class<T> typeIn, String idIn, String fromIn, String whereIn) {
+            type = typeIn;
+            id = idIn;
+            from = fromIn;
+            where = whereIn;
+        }
+    }
+
+    private enum Kind {
+        EXACT, COLUMN, ENTITIES
+    }
+
+    /**
+     * The translation of a filter criteria. Depending on the kind, this is either:
+     * <ul>
+     * <li>EXACT: a SQL condition selecting exactly the matching entities</li>
+     * <li>COLUMN: a SQL column (and its joins) whose values are tested by a Java predicate</li>
+     * <li>ENTITIES: a SQL condition selecting the candidates to be tested by the filter</li>
+     * </ul>
+     */
+    private static final class Condition {
+        private final Kind kind;
+        private final String sql;
+        private final String joins;
+        private final Predicate<String> predicate;
+        private final Map<String, Object> params;
+
+        private Condition(Kind kindIn, String sqlIn, String joinsIn, Predicate<String> predicateIn,
+                Map<String, Object> paramsIn) {
+            kind = kindIn;
+            sql = sqlIn;
+            joins = joinsIn;
+            predicate = predicateIn;
+            params = paramsIn;
+        }
+
+        static Condition exact(String sql, Map<String, Object> params) {
+            return new Condition(Kind.EXACT, sql, "", null, params);
+        }
+
+        static Condition column(String joins, String column, Predicate<String> predicate) {
+            return new Condition(Kind.COLUMN, column, joins, predicate, Map.of());
+        }
+
+        static Condition entities(String sql, Map<String, Object> params) {
+            return new Condition(Kind.ENTITIES, sql, "", null, params);
+        }
+    }
+}
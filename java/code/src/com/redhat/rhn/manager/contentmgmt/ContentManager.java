@@ -78,6 +78,7 @@ import org.apache.commons.lang3.tuple.Pair;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashSet;
@@ -86,7 +87,6 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
-import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 /**
@@ -967,7 +967,9 @@ public class ContentManager {
         List<PackageFilter> packageFilters = extractFiltersOfType(filters, PackageFilter.class);
         List<ErrataFilter> errataFilters = extractFiltersOfType(filters, ErrataFilter.class);
 
-        Set<Package> oldTgtPackages = new HashSet<>(tgt.getPackages());
+        // the alignment works on the database content, make sure it is up-to-date
+        HibernateFactory.getSession().flush();
+        Set<Long> oldTgtPackageIds = new HashSet<>(ChannelFactory.getPackageIds(tgt.getId()));
 
         // align packages
         alignPackages(src, tgt, packageFilters);
@@ -978,7 +980,7 @@ public class ContentManager {
         // align the package cache
         // this must be done after aligning errata since some packages may belong to a retracted erratum and we don't
         // want them in the cache. For this we need the errata to be up-to-date in target
-        alignPackageCache(tgt, oldTgtPackages);
+        alignPackageCache(tgt, oldTgtPackageIds);
 
         // a lot was inserted into tables at this point. Make sure stats are up-to-date before continuing
         analyzeAlignTables();
@@ -1012,16 +1014,18 @@ public class ContentManager {
         ChannelFactory.analyzeServerNeededCache();
     }
 
-    private void alignPackageCache(Channel channel, Set<Package> oldChannelPackages) {
+    private void alignPackageCache(Channel channel, Set<Long> oldChannelPackageIds) {
+        Set<Long> channelPackageIds = new HashSet<>(ChannelFactory.getPackageIds(channel.getId()));
+
         // remove entries for deleted packages
-        Set<Package> removedPackages = new HashSet<>(oldChannelPackages);
-        removedPackages.removeAll(channel.getPackages());
-        ErrataCacheManager.deleteCacheEntriesForChannelPackages(channel.getId(), extractPackageIds(removedPackages));
+        Set<Long> removedPackageIds = new HashSet<>(oldChannelPackageIds);
+        removedPackageIds.removeAll(channelPackageIds);
+        ErrataCacheManager.deleteCacheEntriesForChannelPackages(channel.getId(), new ArrayList<>(removedPackageIds));
 
         // add cache entries for new ones
-        Set<Package> newTgtPackages = new HashSet<>(channel.getPackages());
-        newTgtPackages.removeAll(oldChannelPackages);
-        ErrataCacheManager.insertCacheForChannelPackages(channel.getId(), null, extractPackageIds(newTgtPackages));
+        Set<Long> newPackageIds = new HashSet<>(channelPackageIds);
+        newPackageIds.removeAll(oldChannelPackageIds);
+        ErrataCacheManager.insertCacheForChannelPackages(channel.getId(), null, new ArrayList<>(newPackageIds));
     }
 
     // helper for extracting certain filter types
@@ -1033,12 +1037,31 @@ public class ContentManager {
                 .collect(toList());
     }
 
+    /**
+     * Align {@link Package}s of a target {@link Channel} to the source {@link Channel}
+     *
+     * Filters are evaluated in the database where possible (see {@link ChannelFilterEvaluator}) and only the
+     * difference between the current and the new content of the target channel is written.
+     *
+     * @param srcChannel the source {@link Channel}
+     * @param tgtChannel the target {@link Channel}
+     * @param filters the {@link PackageFilter}s
+     */
     private void alignPackages(Channel srcChannel, Channel tgtChannel, Collection<PackageFilter> filters) {
-        tgtChannel.getPackages().clear();
-        LOG.debug("Filtering {} entities through {} filter(s)", srcChannel.getPackages().size(), filters.size());
-        Set<Package> newPackages = filterEntities(srcChannel.getPackages(), filters).getLeft();
-        tgtChannel.getPackages().addAll(newPackages);
-        ChannelFactory.save(tgtChannel);
+        Set<Long> newPackageIds = new HashSet<>(ChannelFactory.getPackageIds(srcChannel.getId()));
+        LOG.debug("Filtering {} entities through {} filter(s)", newPackageIds.size(), filters.size());
+        newPackageIds.removeAll(new ChannelFilterEvaluator().deniedPackageIds(srcChannel, filters));
+
+        Set<Long> oldPackageIds = new HashSet<>(ChannelFactory.getPackageIds(tgtChannel.getId()));
+        Set<Long> removedPackageIds = new HashSet<>(oldPackageIds);
+        removedPackageIds.removeAll(newPackageIds);
+        newPackageIds.removeAll(oldPackageIds);
+        LOG.debug("Adding {} and removing {} package(s) in {}", newPackageIds.size(), removedPackageIds.size(),
+                tgtChannel.getLabel());
+
+        ChannelFactory.removePackages(tgtChannel, removedPackageIds);
+        ChannelFactory.addPackages(tgtChannel, newPackageIds);
+        HibernateFactory.getSession().refresh(tgtChannel);
     }
 
     /**
@@ -1058,9 +1081,11 @@ public class ContentManager {
      */
     private void alignErrata(Channel src, Channel tgt, Collection<ErrataFilter> errataFilters, User user) {
         LOG.debug("Filtering {} entities through {} filter(s)", src.getErratas().size(), errataFilters.size());
-        Pair<Set<Errata>, Set<Errata>> partitionedErrata = filterEntities(src.getErratas(), errataFilters);
-        Set<Errata> includedErrata = partitionedErrata.getLeft();
-        Set<Errata> excludedErrata = partitionedErrata.getRight();
+        Set<Long> deniedErrataIds = new ChannelFilterEvaluator().deniedErrataIds(src, errataFilters);
+        Map<Boolean, Set<Errata>> partitionedErrata = src.getErratas().stream()
+                .collect(partitioningBy(e -> deniedErrataIds.contains(e.getId()), toSet()));
+        Set<Errata> includedErrata = partitionedErrata.get(false);
+        Set<Errata> excludedErrata = partitionedErrata.get(true);
 
         // Truncate extra errata in target channel
         ErrataManager.truncateErrata(includedErrata, tgt, user);
@@ -1070,46 +1095,6 @@ public class ContentManager {
         ErrataManager.mergeErrataToChannel(user, includedErrata, tgt, src, false, false);
     }
 
-    /**
-     * Filters given entities based on given filters.
-     *
-     * Returns a Pair containing:
-     * - Left side: set of entities that are kept (not filtered out)
-     * - Right side: set of entities that are filtered out
-     *
-     * Entities are processed one-by-one by filters as follows:
-     * - when any DENY filter is satisfied for an entity -> this entity gets filtered out
-     * - when an ALLOW is satisfied for an entity -> this entity gets NOT filtered out (even if it had been filtered out
-     *   by a DENY filter = ALLOW filters have higher priority)
-     *
-     * @param entities entities, e.g. packages
-     * @param filters filters, e.g. package filters
-     * @param <T> the type of the entity (e.g. Package)
-     * @return Pair containing (left side) a set of entities not filtered-out
-     * and (right side) a set of entities filtered out
-     */
-    private <T> Pair<Set<T>, Set<T>> filterEntities(Set<T> entities, Collection<? extends ContentFilter<T>> filters) {
-        Map<ContentFilter.Rule, List<ContentFilter<T>>> filtersByRule = filters.stream()
-                .collect(groupingBy(ContentFilter::getRule));
-        List<ContentFilter<T>> denyFilters = filtersByRule.getOrDefault(ContentFilter.Rule.DENY, emptyList());
-        List<ContentFilter<T>> allowFilters = filtersByRule.getOrDefault(ContentFilter.Rule.ALLOW, emptyList());
-
-        // First add the denied packages by testing all DENY filters against a package, and then filter out any package
-        // that is explicitly allowed by testing all ALLOW filters against the same package and negating the result.
-        Set<T> denied = entities.stream().filter(
-                e -> denyFilters.stream().anyMatch(f -> f.test(e)) &&
-                allowFilters.stream().noneMatch(f -> f.test(e))
-        ).collect(Collectors.toUnmodifiableSet());
-
-        Set<T> allowed = new HashSet<>(entities);
-        allowed.removeAll(denied);
-        return Pair.of(allowed, denied);
-    }
-
-    private static List<Long> extractPackageIds(Collection<Package> packages) {
-        return packages.stream().map(Package::getId).collect(toList());
-    }
-
     /**
      * Ensures that given user has the Org admin role
      *
@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2023 SUSE LLC
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+
+package com.redhat.rhn.manager.contentmgmt.test;
+
+import static com.redhat.rhn.domain.contentmgmt.ContentFilter.Rule.ALLOW;
+import static com.redhat.rhn.domain.contentmgmt.ContentFilter.Rule.DENY;
+import static java.util.stream.Collectors.toSet;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.redhat.rhn.common.hibernate.HibernateFactory;
+import com.redhat.rhn.domain.channel.Channel;
+import com.redhat.rhn.domain.channel.test.ChannelFactoryTest;
+import com.redhat.rhn.domain.contentmgmt.ContentFilter;
+import com.redhat.rhn.domain.contentmgmt.ErrataFilter;
+import com.redhat.rhn.domain.contentmgmt.FilterCriteria;
+import com.redhat.rhn.domain.contentmgmt.ModularPackageFilter;
+import com.redhat.rhn.domain.contentmgmt.PackageFilter;
+import com.redhat.rhn.domain.errata.Errata;
+import com.redhat.rhn.domain.errata.test.ErrataFactoryTest;
+import com.redhat.rhn.domain.rhnpackage.Package;
+import com.redhat.rhn.domain.rhnpackage.PackageType;
+import com.redhat.rhn.domain.rhnpackage.test.PackageEvrFactoryTest;
+import com.redhat.rhn.domain.rhnpackage.test.PackageTest;
+import com.redhat.rhn.manager.contentmgmt.ChannelFilterEvaluator;
+import com.redhat.rhn.testing.BaseTestCaseWithUser;
+import com.redhat.rhn.testing.TestUtils;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * Tests for {@link ChannelFilterEvaluator}: filters evaluated in the database must match the same entities as
+ * {@link ContentFilter#test(Object)}
+ */
+public class ChannelFilterEvaluatorTest extends BaseTestCaseWithUser {
+
+    private Channel channel;
+    private Package pkg;
+    private Package noEpochPkg;
+    private Package modularPkg;
+    private Errata errata;
+
+    @Override
+    @BeforeEach
+    public void setUp() throws Exception {
+        super.setUp();
+        String suffix = TestUtils.randomString();
+
+        pkg = PackageTest.createTestPackage(user.getOrg(), "evaluator-" + suffix);
+        noEpochPkg = PackageTest.createTestPackage(user.getOrg(), "evaluator-noepoch-" + suffix);
+        noEpochPkg.setPackageEvr(PackageEvrFactoryTest.createTestPackageEvr(null, "2.0", "3", PackageType.RPM));
+        modularPkg = PackageTest.createTestPackage(user.getOrg(), "other-" + suffix);
+        modularPkg.setPackageEvr(PackageEvrFactoryTest.createTestPackageEvr("1", "1.0", "1.module_el8",
+                PackageType.RPM));
+
+        errata = ErrataFactoryTest.createTestErrata(user.getOrg().getId());
+        errata.setSynopsis("Security update for evaluator-" + suffix);
+        errata.addPackage(pkg);
+        Errata otherErrata = ErrataFactoryTest.createTestErrata(user.getOrg().getId());
+        otherErrata.addPackage(modularPkg);
+
+        channel = ChannelFactoryTest.createTestChannel(user, false);
+        channel.addPackage(pkg);
+        channel.addPackage(noEpochPkg);
+        channel.addPackage(modularPkg);
+        channel.addErrata(errata);
+        channel.addErrata(otherErrata);
+        HibernateFactory.getSession().flush();
+    }
+
+    /**
+     * Test that package filters translated to SQL match the same packages as the filters themselves
+     */
+    @Test
+    public void testPackageFilters() {
+        List<FilterCriteria> criteria = List.of(
+                new FilterCriteria(FilterCriteria.Matcher.EQUALS, "name", pkg.getPackageName().getName()),
+                new FilterCriteria(FilterCriteria.Matcher.CONTAINS, "name", "evaluator-"),
+                new FilterCriteria(FilterCriteria.Matcher.MATCHES, "name", "evaluator-(noepoch-)?.*"),
+                new FilterCriteria(FilterCriteria.Matcher.EQUALS, "nevr", pkg.getNameEvr()),
+                new FilterCriteria(FilterCriteria.Matcher.EQUALS, "nevr", noEpochPkg.getNameEvr()),
+                new FilterCriteria(FilterCriteria.Matcher.EQUALS, "nevra", pkg.getNevraWithEpoch()),
+                new FilterCriteria(FilterCriteria.Matcher.EQUALS, "nevra", noEpochPkg.getNevraWithEpoch()),
+                new FilterCriteria(FilterCriteria.Matcher.GREATEREQ, "nevr", noEpochPkg.getNameEvr()),
+                new FilterCriteria(FilterCriteria.Matcher.LOWER, "nevra",
+                        noEpochPkg.getPackageName().getName() + "-3.0-1." + noEpochPkg.getPackageArch().getLabel()));
+
+        for (FilterCriteria c : criteria) {
+            PackageFilter filter = new PackageFilter();
+            filter.setRule(DENY);
+            filter.setCriteria(c);
+            assertEquals(expected(channel.getPackages(), filter, Package::getId),
+                    new ChannelFilterEvaluator().deniedPackageIds(channel, List.of(filter)), c.toString());
+        }
+
+        ModularPackageFilter modularFilter = new ModularPackageFilter();
+        assertEquals(Set.of(modularPkg.getId()),
+                new ChannelFilterEvaluator().deniedPackageIds(channel, List.of(modularFilter)));
+    }
+
+    /**
+     * Test that ALLOW filters override DENY filters
+     */
+    @Test
+    public void testAllowOverridesDeny() {
+        PackageFilter deny = new PackageFilter();
+        deny.setRule(DENY);
+        deny.setCriteria(new FilterCriteria(FilterCriteria.Matcher.CONTAINS, "name", "evaluator-"));
+        PackageFilter allow = new PackageFilter();
+        allow.setRule(ALLOW);
+        allow.setCriteria(new FilterCriteria(FilterCriteria.Matcher.MATCHES, "nevra",
+                ".*-noepoch-.*"));
+
+        assertEquals(Set.of(pkg.getId()), new ChannelFilterEvaluator().deniedPackageIds(channel, List.of(deny, allow)));
+        assertEquals(Set.of(), new ChannelFilterEvaluator().deniedPackageIds(channel, List.of(allow)));
+    }
+
+    /**
+     * Test that errata filters translated to SQL match the same errata as the filters themselves
+     */
+    @Test
+    public void testErrataFilters() {
+        List<FilterCriteria> criteria = List.of(
+                new FilterCriteria(FilterCriteria.Matcher.EQUALS, "advisory_name", errata.getAdvisoryName()),
+                new FilterCriteria(FilterCriteria.Matcher.MATCHES, "advisory_name",
+                        Pattern.quote(errata.getAdvisoryName()) + ".*"),
+                new FilterCriteria(FilterCriteria.Matcher.EQUALS, "advisory_type", errata.getAdvisoryType()),
+                new FilterCriteria(FilterCriteria.Matcher.CONTAINS, "synopsis", "evaluator-"),
+                new FilterCriteria(FilterCriteria.Matcher.CONTAINS_PKG_NAME, "package_name",
+                        pkg.getPackageName().getName()),
+                new FilterCriteria(FilterCriteria.Matcher.MATCHES_PKG_NAME, "package_name", "other-.*"),
+                new FilterCriteria(FilterCriteria.Matcher.CONTAINS_PKG_GE_EVR, "package_nevr",
+                        pkg.getPackageName().getName() + " " + pkg.getPackageEvr().toString()),
+                new FilterCriteria(FilterCriteria.Matcher.CONTAINS_PKG_LT_EVR, "package_nevr",
+                        pkg.getPackageName().getName() + " " + pkg.getPackageEvr().toString()));
+
+        for (FilterCriteria c : criteria) {
+            ErrataFilter filter = new ErrataFilter();
+            filter.setRule(DENY);
+            filter.setCriteria(c);
+            assertEquals(expected(channel.getErratas(), filter, Errata::getId),
+                    new ChannelFilterEvaluator().deniedErrataIds(channel, List.of(filter)), c.toString());
+        }
+    }
+
+    private static <T> Set<Long> expected(Collection<T> entities, ContentFilter<T> filter,
+            Function<T, Long> id) {
+        return entities.stream().filter(filter::test).map(id).collect(toSet());
+    }
+}
@@ -52,7 +52,6 @@ import com.redhat.rhn.domain.image.ImageInfo;
 import com.redhat.rhn.domain.org.Org;
 import com.redhat.rhn.domain.org.OrgFactory;
 import com.redhat.rhn.domain.product.Tuple2;
-import com.redhat.rhn.domain.rhnpackage.Package;
 import com.redhat.rhn.domain.rhnset.RhnSet;
 import com.redhat.rhn.domain.role.RoleFactory;
 import com.redhat.rhn.domain.server.ManagedServerGroup;
@@ -1288,12 +1287,12 @@ public class ErrataManager extends BaseManager {
         ErrataCacheManager.deleteCacheEntriesForChannelErrata(chan.getId(), eList);
 
         //Packages to remove should be all of excluded errata except if it is also present in any included errata.
-        Set<Package> packagesToRemove = excludedErrata.stream().flatMap(
-            e -> e.getPackages().stream().filter(
-                p -> includedErrata.stream().noneMatch(included -> included.getPackages().contains(p))
-            )
-        ).collect(Collectors.toUnmodifiableSet());
-        List<Long> pids = packagesToRemove.stream().map(Package::getId).collect(Collectors.toList());
+        Set<Long> packagesToRemove = ErrataFactory.listPackageIdsByErrata(eList);
+        if (!packagesToRemove.isEmpty()) {
+            packagesToRemove.removeAll(ErrataFactory.listPackageIdsByErrata(
+                    includedErrata.stream().map(Errata::getId).collect(toList())));
+        }
+        List<Long> pids = new ArrayList<>(packagesToRemove);
         ErrataCacheManager.deleteCacheEntriesForChannelPackages(chan.getId(), pids);
 
         // remove packages
@@ -2125,34 +2124,34 @@ public class ErrataManager extends BaseManager {
     }
 
     /**
-     * Insert an errata cache task for a given channel, will be picked up by taskomatic on
-     * the next run (runs every minute per default).
+     * Insert an errata cache task for a given channel unless one is already queued, will be
+     * picked up by taskomatic on the next run (runs every minute per default).
      *
      * @param channel the channel
      */
     public static void insertErrataCacheTask(Channel channel) {
-        TaskFactory.createTask(ofNullable(channel.getOrg()).orElse(OrgFactory.getSatelliteOrg()),
+        TaskFactory.queueTask(ofNullable(channel.getOrg()).orElse(OrgFactory.getSatelliteOrg()),
                 ErrataCacheWorker.BY_CHANNEL, channel.getId());
     }
 
     /**
-     * Insert an errata cache task for a given server, will be picked up by taskomatic on
-     * the next run (runs every minute per default).
+     * Insert an errata cache task for a given server unless one is already queued, will be
+     * picked up by taskomatic on the next run (runs every minute per default).
      *
      * @param server the server
      */
     public static void insertErrataCacheTask(Server server) {
-        TaskFactory.createTask(server.getOrg(), ErrataCacheWorker.FOR_SERVER, server.getId());
+        TaskFactory.queueTask(server.getOrg(), ErrataCacheWorker.FOR_SERVER, server.getId());
     }
 
     /**
-     * Insert an errata cache task for a given image, will be picked up by taskomatic on
-     * the next run (runs every minute per default).
+     * Insert an errata cache task for a given image unless one is already queued, will be
+     * picked up by taskomatic on the next run (runs every minute per default).
      *
      * @param image the image
      */
     public static void insertErrataCacheTask(ImageInfo image) {
-        TaskFactory.createTask(image.getOrg(), ErrataCacheWorker.FOR_IMAGE, image.getId());
+        TaskFactory.queueTask(image.getOrg(), ErrataCacheWorker.FOR_IMAGE, image.getId());
     }
 
     /**
@@ -17,6 +17,7 @@ package com.redhat.rhn.manager.errata.cache;
 import com.redhat.rhn.common.db.datasource.CallableMode;
 import com.redhat.rhn.common.db.datasource.DataResult;
 import com.redhat.rhn.common.db.datasource.ModeFactory;
+import com.redhat.rhn.common.db.datasource.SelectMode;
 import com.redhat.rhn.common.db.datasource.WriteMode;
 import com.redhat.rhn.common.hibernate.HibernateFactory;
 import com.redhat.rhn.common.messaging.MessageQueue;
@@ -208,6 +209,53 @@ public class ErrataCacheManager extends HibernateFactory {
         return m.executeUpdate(params);
     }
 
+    /**
+     * Recompute and store the profile fingerprint of the given servers. The fingerprint is
+     * a hash over the subscribed channels and the installed packages, so servers sharing it
+     * have the same needed cache.
+     * @param sids Server Ids
+     * @return map of server id to its current fingerprint
+     */
+    public static Map<Long, String> updateProfileFingerprints(List<Long> sids) {
+        Map<Long, String> result = new HashMap<>();
+        if (sids.isEmpty()) {
+            return result;
+        }
+        WriteMode m = ModeFactory.getWriteMode("ErrataCache_queries",
+                "update_server_profile_fingerprints");
+        m.executeUpdate(new HashMap<>(), sids);
+
+        SelectMode s = ModeFactory.getMode("ErrataCache_queries",
+                "server_profile_fingerprints");
+        DataResult<Map<String, Object>> dr = s.execute(sids);
+        for (Map<String, Object> row : dr) {
+            result.put((Long) row.get("server_id"), (String) row.get("fingerprint"));
+        }
+        return result;
+    }
+
+    /**
+     * Replace the needed cache of the target servers with a copy of the needed cache of
+     * the source server. Only valid if all servers share the same profile fingerprint.
+     * @param sid Server Id to copy the cache from
+     * @param targetSids Server Ids receiving the copy
+     * @return number of rows inserted.
+     */
+    public static int copyNeededCache(Long sid, List<Long> targetSids) {
+        if (targetSids.isEmpty()) {
+            return 0;
+        }
+        WriteMode d = ModeFactory.getWriteMode("ErrataCache_queries",
+                "delete_needed_cache_for_servers");
+        d.executeUpdate(new HashMap<>(), targetSids);
+
+        WriteMode m = ModeFactory.getWriteMode("ErrataCache_queries",
+                "copy_needed_cache_to_servers");
+        Map<String, Object> params = new HashMap<>();
+        params.put("server_id", sid);
+        return m.executeUpdate(params, targetSids);
+    }
+
     /**
      * Asynchronusly updates the errata caches for the channels passed in.
      * Deletes the entire cache for All servers in the channel VERY INEFFICIENT
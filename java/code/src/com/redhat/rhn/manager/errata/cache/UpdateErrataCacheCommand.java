@@ -31,7 +31,10 @@ import com.redhat.rhn.manager.system.SystemManager;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -117,6 +120,37 @@ public class UpdateErrataCacheCommand extends BaseTransactionCommand {
         log.info("Finished errata cache for server [{}]", serverId);
     }
 
+    /**
+     * Updates the errata cache for the given servers. The needed cache is computed once
+     * per distinct profile fingerprint and copied to the other servers sharing it.
+     * Errors are not handled, the caller is expected to roll back the transaction.
+     * @param serverIds Server ids which need to get updated.
+     */
+    public void updateErrataCacheForServers(List<Long> serverIds) {
+        log.info("Updating errata cache for {} servers", serverIds.size());
+        Map<Long, String> fingerprints = serverIds.size() > 1 ?
+                ErrataCacheManager.updateProfileFingerprints(serverIds) : Collections.emptyMap();
+        Map<String, List<Long>> profiles = new LinkedHashMap<>();
+        for (Long sid : serverIds) {
+            profiles.computeIfAbsent(fingerprints.getOrDefault(sid, "server-" + sid), f -> new ArrayList<>())
+                    .add(sid);
+        }
+
+        for (List<Long> sids : profiles.values()) {
+            Long leaderId = sids.get(0);
+            List<Long> followers = sids.subList(1, sids.size());
+            processServer(leaderId);
+            SystemManager.updateSystemOverview(leaderId);
+            ErrataCacheManager.copyNeededCache(leaderId, followers);
+            for (Long sid : followers) {
+                ErrataManager.updateErrataSet(sid);
+                SystemManager.updateSystemOverview(sid);
+            }
+        }
+        log.info("Finished errata cache for {} servers with {} distinct profiles", serverIds.size(),
+                profiles.size());
+    }
+
     /**
      * Updates the errata cache for the given image.
      * @param imageId Image id which needs to get updated.
@@ -139,6 +173,19 @@ public class UpdateErrataCacheCommand extends BaseTransactionCommand {
         log.info("Finished errata cache for image [{}]", imageId);
     }
 
+    /**
+     * Updates the errata cache for the given images.
+     * Errors are not handled, the caller is expected to roll back the transaction.
+     * @param imageIds Image ids which need to get updated.
+     */
+    public void updateErrataCacheForImages(List<Long> imageIds) {
+        for (Long imageId : imageIds) {
+            log.info("Updating errata cache for image [{}]", imageId);
+            processImage(imageId);
+            log.info("Finished errata cache for image [{}]", imageId);
+        }
+    }
+
     /**
      * Updates the needed cache for particular packages within a channel
      *  This isn't a full regeneration, only the changes are handled
@@ -191,6 +238,19 @@ public class UpdateErrataCacheCommand extends BaseTransactionCommand {
         log.info("Finished with servers in channel [{}]", cid);
     }
 
+    /**
+     * Updates the errata cache for all the servers in the given channels.
+     * Errors are not handled, the caller is expected to roll back the transaction.
+     * @param cids Channel ids whose servers need their cache updated.
+     */
+    public void updateErrataCacheForChannels(List<Long> cids) {
+        for (Long cid : cids) {
+            log.info("Updating errata cache for servers in channel [{}]", cid);
+            ErrataCacheManager.updateErrataAndPackageCacheForChannel(cid);
+            log.info("Finished with servers in channel [{}]", cid);
+        }
+    }
+
     private void processServer(Long serverId) {
         ServerFactory.updateServerNeededCache(serverId);
         ErrataManager.updateErrataSet(serverId);
@@ -16,6 +16,7 @@ package com.redhat.rhn.manager.errata.cache.test;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -49,6 +50,7 @@ import org.junit.jupiter.api.Test;
 import java.sql.ResultSet;
 import java.sql.Statement;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -130,6 +132,43 @@ public class ErrataCacheManagerTest extends RhnBaseTestCase {
         });
     }
 
+    @Test
+    public void testProfileFingerprintsAndCopyNeededCache() throws Exception {
+        Long oid = UserTestUtils.createOrg("testOrg" + this.getClass().getSimpleName());
+        Org org = OrgFactory.lookupById(oid);
+        User user = UserTestUtils.createUser("testUser", oid);
+        Server leader = ServerFactoryTest.createTestServer(user);
+        Server clone = ServerFactoryTest.createTestServer(user);
+        Server other = ServerFactoryTest.createTestServer(user);
+        Package pkg = PackageTest.createTestPackage(org);
+        Errata e = ErrataFactoryTest.createTestErrata(oid);
+
+        for (Server s : List.of(leader, clone)) {
+            InstalledPackage ip = new InstalledPackage();
+            ip.setServer(s);
+            ip.setArch(pkg.getPackageArch());
+            ip.setEvr(pkg.getPackageEvr());
+            ip.setName(pkg.getPackageName());
+            HibernateFactory.getSession().save(ip);
+        }
+        HibernateFactory.getSession().flush();
+
+        Map<Long, String> fingerprints = ErrataCacheManager.updateProfileFingerprints(
+                List.of(leader.getId(), clone.getId(), other.getId()));
+        assertEquals(3, fingerprints.size());
+        assertEquals(fingerprints.get(leader.getId()), fingerprints.get(clone.getId()));
+        assertNotEquals(fingerprints.get(leader.getId()), fingerprints.get(other.getId()));
+
+        ErrataCacheManager.insertNeededErrataCache(leader.getId(), e.getId(), pkg.getId());
+        ErrataCacheManager.insertNeededErrataCache(clone.getId(), null, pkg.getId());
+        assertEquals(1, ErrataCacheManager.copyNeededCache(leader.getId(), List.of(clone.getId())));
+
+        DataResult<ErrataCacheDto> dr = ErrataCacheManager.packagesNeedingUpdates(clone.getId());
+        assertEquals(1, dr.size());
+        assertEquals(e.getId(), dr.get(0).getErrataId());
+        assertEquals(pkg.getId(), dr.get(0).getPackageId());
+    }
+
     public static Map<String, Object> createServerNeededCache(User userIn, String errataType) throws Exception {
         Map<String, Object> retval = new HashMap<>();
         Errata e = ErrataFactoryTest.createTestErrata(userIn.getOrg().getId());
@@ -3960,9 +3960,8 @@ public class SystemManager extends BaseManager {
      */
     public static void updateSystemOverview(Long sid) {
         // We need the server to be already in the database to update it
-        if (sid != null &&
-                TaskFactory.lookup(OrgFactory.getSatelliteOrg(), SystemsOverviewUpdateDriver.TASK_NAME, sid) == null) {
-            TaskFactory.createTask(OrgFactory.getSatelliteOrg(), SystemsOverviewUpdateDriver.TASK_NAME, sid);
+        if (sid != null) {
+            TaskFactory.queueTask(OrgFactory.getSatelliteOrg(), SystemsOverviewUpdateDriver.TASK_NAME, sid);
         }
     }
 
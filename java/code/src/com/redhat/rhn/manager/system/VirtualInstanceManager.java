@@ -29,9 +29,15 @@ import com.suse.manager.webui.websocket.VirtNotifications;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 /**
@@ -58,9 +64,19 @@ public class VirtualInstanceManager extends BaseManager {
      * @param type the virtual instance type
      */
     public static void updateHostVirtualInstance(Server server, VirtualInstanceType type) {
-        VirtualInstance serverVirtInstance = VirtualInstanceFactory.getInstance()
-                .lookupHostVirtInstanceByHostId(server.getId());
+        updateHostVirtualInstance(server, type, VirtualInstanceFactory.getInstance()
+                .lookupHostVirtInstanceByHostId(server.getId()));
+    }
 
+    /**
+     * Update Virtual Instance of type host, given the one already linked to the server
+     *
+     * @param server the server
+     * @param type the virtual instance type
+     * @param serverVirtInstance the host virtual instance of the server or null if it has none
+     */
+    public static void updateHostVirtualInstance(Server server, VirtualInstanceType type,
+            VirtualInstance serverVirtInstance) {
         if (serverVirtInstance == null) {
             serverVirtInstance = new VirtualInstance();
             serverVirtInstance.setHostSystem(server);
@@ -139,6 +155,9 @@ public class VirtualInstanceManager extends BaseManager {
      * (Server - guests mapping)
      * This function expect to always get a full list of guests running on the host
      *
+     * The existing VirtualInstances for all the reported and removed vms are loaded at once, so that
+     * vms whose mapping did not change cost no query at all.
+     *
      * @param server to be processed
      * @param type - virtualization type to be set to the guests
      * @param vms - guests to be mapped to this server
@@ -147,38 +166,49 @@ public class VirtualInstanceManager extends BaseManager {
     public static void updateGuestsVirtualInstances(Server server, VirtualInstanceType type,
             Map<String, String> vms, Map<String, Map<String, String>> optionalVmData) {
         VirtualInstanceFactory vinst = VirtualInstanceFactory.getInstance();
-        List<String> uuidsToRemove = server.getGuests().stream().map(VirtualInstance::getUuid)
-                .collect(Collectors.toList());
-        vms.entrySet().stream().forEach(
-                vmEntry -> {
-                    String name = vmEntry.getKey();
-                    String guid = vmEntry.getValue().replaceAll("-", "");
-
-                    guid = fixUuidIfSwappedUuidExists(guid);
-                    uuidsToRemove.remove(guid);
-                    List<VirtualInstance> virtualInstances =
-                            vinst.lookupVirtualInstanceByUuid(guid);
-
-                    Map<String, String> vmData = optionalVmData.get(name);
-                    VirtualInstanceState st = (vmData != null && vmData.get("vmState") != null) ?
-                            vinst.getState(vmData.get("vmState"))
-                                    .orElse(vinst.getUnknownState()) : vinst.getUnknownState();
-
-                    if (virtualInstances.isEmpty()) {
-                        addGuestVirtualInstance(guid, name, type, st, server, null);
-                    }
-                    else {
-                        virtualInstances.stream().forEach(virtualInstance ->
-                            updateGuestVirtualInstance(virtualInstance, name, st, server,
-                                    virtualInstance.getGuestSystem()));
-                    }
-                });
+        Set<String> uuidsToRemove = server.getGuests().stream().map(VirtualInstance::getUuid)
+                .collect(Collectors.toCollection(HashSet::new));
+
+        Map<String, String> guids = new LinkedHashMap<>();
+        vms.forEach((name, guid) -> guids.put(name, guid.replaceAll("-", "")));
+        Set<String> candidates = new HashSet<>(guids.values());
+        guids.values().forEach(guid -> swapUuid(guid).ifPresent(candidates::add));
+        // instances created below are added too, so that vms reporting the same uuid share one instance
+        Map<String, List<VirtualInstance>> existing = new HashMap<>(vinst.lookupVirtualInstancesByUuids(candidates));
+
+        VirtualInstanceState unknownState = vinst.getUnknownState();
+        Map<String, VirtualInstanceState> states = new HashMap<>();
+        guids.forEach((name, reportedGuid) -> {
+            String guid = swapUuid(reportedGuid)
+                    .filter(existing::containsKey)
+                    .map(swapped -> {
+                        log.warn("Detected swapped UUID for a virtual instance: Coercing [{}] -> [{}]",
+                                reportedGuid, swapped);
+                        return swapped;
+                    })
+                    .orElse(reportedGuid);
+            uuidsToRemove.remove(guid);
+            List<VirtualInstance> virtualInstances = existing.getOrDefault(guid, Collections.emptyList());
+
+            Map<String, String> vmData = optionalVmData.get(name);
+            VirtualInstanceState st = (vmData != null && vmData.get("vmState") != null) ?
+                    states.computeIfAbsent(vmData.get("vmState"),
+                            label -> vinst.getState(label).orElse(unknownState)) : unknownState;
+
+            if (virtualInstances.isEmpty()) {
+                createGuestVirtualInstance(guid, name, type, st, server, null, 0, 0)
+                        .ifPresent(created -> existing.put(guid, List.of(created)));
+            }
+            else {
+                virtualInstances.forEach(virtualInstance ->
+                    updateGuestVirtualInstance(virtualInstance, name, st, server,
+                            virtualInstance.getGuestSystem()));
+            }
+        });
 
-        for (String uuid : uuidsToRemove) {
-            List<VirtualInstance> virtualInstances =
-                    vinst.lookupVirtualInstanceByUuid(uuid);
-            virtualInstances.stream().forEach(VirtualInstanceManager::deleteGuestVirtualInstance);
-        }
+        vinst.lookupVirtualInstancesByUuids(uuidsToRemove).values().stream()
+                .flatMap(List::stream)
+                .forEach(VirtualInstanceManager::deleteGuestVirtualInstance);
     }
 
     /**
@@ -230,6 +260,16 @@ public class VirtualInstanceManager extends BaseManager {
     public static void addGuestVirtualInstance(String vmGuid, String name,
             VirtualInstanceType type, VirtualInstanceState state,
             Server host, Server guest, int vCpus, long memory) {
+        createGuestVirtualInstance(vmGuid, name, type, state, host, guest, vCpus, memory);
+    }
+
+    /**
+     * Creates a new (guest) VirtualInstance for given VM GUID and returns it, or returns empty
+     * if a VirtualInstance already exists for the GUID.
+     */
+    private static Optional<VirtualInstance> createGuestVirtualInstance(String vmGuid, String name,
+            VirtualInstanceType type, VirtualInstanceState state,
+            Server host, Server guest, int vCpus, long memory) {
 
         List<VirtualInstance> virtualInstances = VirtualInstanceFactory
                 .getInstance().lookupVirtualInstanceByUuid(vmGuid);
@@ -268,10 +308,10 @@ public class VirtualInstanceManager extends BaseManager {
                     .saveVirtualInstance(virtualInstance);
 
             VirtNotifications.spreadRefresh("guest");
+            return Optional.of(virtualInstance);
         }
-        else {
-            log.warn("Preventing creation of a duplicated VirtualInstance for 'uuid': {}", vmGuid);
-        }
+        log.warn("Preventing creation of a duplicated VirtualInstance for 'uuid': {}", vmGuid);
+        return Optional.empty();
     }
 
     /**
@@ -363,16 +403,24 @@ public class VirtualInstanceManager extends BaseManager {
         // The "uuid" might not be following "xxxxxxxx-xxxx-xxxx-xxxx-xxxxxxxxxxxx"
         // format in case of instances that are running on the Public Cloud.
         // In such cases, we don't check if a swapped version exists.
+        Optional<String> virtUuidSwapped = swapUuid(uuid)
+                .filter(swapped -> !VirtualInstanceFactory.getInstance()
+                        .lookupVirtualInstanceByUuid(swapped).isEmpty());
+        virtUuidSwapped.ifPresent(swapped ->
+                log.warn("Detected swapped UUID for a virtual instance: Coercing [{}] -> [{}]", uuid, swapped));
+        return virtUuidSwapped.orElse(uuid);
+    }
+
+    /**
+     * Returns the little endian version of a uuid, or empty if the uuid is not in the
+     * "xxxxxxxx-xxxx-xxxx-xxxx-xxxxxxxxxxxx" format (e.g. for Public Cloud instances).
+     */
+    private static Optional<String> swapUuid(String uuid) {
         try {
-            String virtUuidSwapped = SaltUtils.uuidToLittleEndian(uuid);
-            if (!VirtualInstanceFactory.getInstance()
-                    .lookupVirtualInstanceByUuid(virtUuidSwapped).isEmpty()) {
-                log.warn("Detected swapped UUID for a virtual instance: Coercing [{}] -> [{}]", uuid, virtUuidSwapped);
-                return virtUuidSwapped;
-            }
+            return Optional.of(SaltUtils.uuidToLittleEndian(uuid));
         }
         catch (IllegalArgumentException e) {
+            return Optional.empty();
         }
-        return uuid;
     }
 }
@@ -391,4 +391,24 @@ public class VirtualInstanceManagerTest extends RhnBaseTestCase {
             }
         }
     }
+
+    @Test
+    public void testUpdateGuestVirtualInstancesWithDuplicatedUuid() {
+
+        Long id = server.getId();
+        Map<String, String> vms = new HashMap<>();
+        VirtualInstanceType type = VirtualInstanceFactory.getInstance()
+                .getVirtualInstanceType("vmware");
+
+        vms.put("SUSE-Manager-Test-VM-1", "564d09ec-41b9-c894-566b-30248333e6d3");
+        vms.put("SUSE-Manager-Test-VM-1-clone", "564d09ec-41b9-c894-566b-30248333e6d3");
+
+        VirtualInstanceManager.updateGuestsVirtualInstances(server, type, vms, new HashMap<>());
+
+        Server test = SystemManager.lookupByIdAndUser(id, user);
+        assertNotNull(test);
+        assertEquals(1, test.getGuests().size());
+        assertEquals(1, VirtualInstanceFactory.getInstance()
+                .lookupVirtualInstanceByUuid("564d09ec41b9c894566b30248333e6d3").size());
+    }
 }
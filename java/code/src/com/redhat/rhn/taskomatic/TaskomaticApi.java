@@ -23,6 +23,7 @@ import com.redhat.rhn.common.validator.ValidatorException;
 import com.redhat.rhn.domain.action.Action;
 import com.redhat.rhn.domain.action.ActionChain;
 import com.redhat.rhn.domain.action.ActionChainFactory;
+import com.redhat.rhn.domain.action.ActionDispatchFactory;
 import com.redhat.rhn.domain.action.channel.SubscribeChannelsAction;
 import com.redhat.rhn.domain.action.server.ServerAction;
 import com.redhat.rhn.domain.channel.Channel;
@@ -65,10 +66,6 @@ import redstone.xmlrpc.XmlRpcFault;
  */
 public class TaskomaticApi {
 
-    public static final String MINION_ACTION_BUNCH_LABEL = "minion-action-executor-bunch";
-    public static final String MINION_ACTION_JOB_PREFIX = "minion-action-executor-";
-    public static final String MINION_ACTION_JOB_DOWNLOAD_PREFIX =
-            MINION_ACTION_JOB_PREFIX + "download-";
     public static final String MINION_ACTIONCHAIN_BUNCH_LABEL = "minion-action-chain-executor-bunch";
     public static final String MINION_ACTIONCHAIN_JOB_PREFIX = "minion-action-chain-executor-";
     private static final Logger LOG = LogManager.getLogger(TaskomaticApi.class);
@@ -127,14 +124,34 @@ public class TaskomaticApi {
      */
     public void scheduleSSHActionExecution(Action actionIn, MinionServer sshMinion, boolean forcePackageListRefresh)
             throws TaskomaticApiException {
+        scheduleSSHActionExecutions(actionIn, singletonList(sshMinion), forcePackageListRefresh);
+    }
+
+    /**
+     * Schedule an action on several ssh minions at once. A single job executes the action on all minions,
+     * in parallel up to taskomatic.sshminion_action_executor.parallel_threads minions at a time.
+     * @param actionIn the action
+     * @param sshMinions the Salt ssh minions
+     * @param forcePackageListRefresh force package list refresh when set to true
+     * @throws TaskomaticApiException if there was an error
+     */
+    public void scheduleSSHActionExecutions(Action actionIn, List<MinionServer> sshMinions,
+            boolean forcePackageListRefresh) throws TaskomaticApiException {
+        if (sshMinions.isEmpty()) {
+            return;
+        }
         Map<String, String> scheduleParams = new HashMap<>();
         scheduleParams.put("action_id", Long.toString(actionIn.getId()));
         scheduleParams.put("force_pkg_list_refresh", Boolean.toString(forcePackageListRefresh));
-        scheduleParams.put("ssh_minion_id", sshMinion.getMinionId());
+        scheduleParams.put("ssh_minion_ids", sshMinions.stream()
+                .map(MinionServer::getMinionId)
+                .collect(Collectors.joining(",")));
+        String label = sshMinions.size() == 1 ?
+                "ssh-minion-action-executor-" + actionIn.getId() + "-" + sshMinions.get(0).getId() :
+                "ssh-minion-action-executor-" + actionIn.getId();
         invoke("tasko.scheduleSingleSatBunchRun",
                 "ssh-minion-action-executor-bunch",
-                StringUtils.substring(
-                        "ssh-minion-action-executor-" + actionIn.getId() + "-" + sshMinion.getId(), 0, 50),
+                StringUtils.substring(label, 0, 50),
                 scheduleParams,
                 new Date());
     }
@@ -602,21 +619,16 @@ public class TaskomaticApi {
     /**
      * Schedule Actions execution for Salt minions.
      *
+     * The actions are queued in the database within the current transaction: Taskomatic is notified
+     * and executes them once the transaction is committed and their earliest execution time is reached.
+     *
      * @param actions the list of actions to be executed
      * @param forcePackageListRefresh is a package list is requested
      * @throws TaskomaticApiException if there was an error
      */
     public void scheduleMinionActionExecutions(List<Action> actions, boolean forcePackageListRefresh)
             throws TaskomaticApiException {
-        List<Map<String, String>> paramsList = new ArrayList<>();
-        for (Action action: actions) {
-            Map<String, String> params = new HashMap<>();
-            params.put("action_id", Long.toString(action.getId()));
-            params.put("force_pkg_list_refresh", Boolean.toString(forcePackageListRefresh));
-            params.put("earliest_action", action.getEarliestAction().toInstant().toString());
-            paramsList.add(params);
-        }
-        invoke("tasko.scheduleRuns", MINION_ACTION_BUNCH_LABEL, MINION_ACTION_JOB_PREFIX, paramsList);
+        ActionDispatchFactory.queueActions(actions, forcePackageListRefresh);
     }
 
     /**
@@ -651,14 +663,7 @@ public class TaskomaticApi {
      */
     public void scheduleStagingJob(Long actionId, Long minionId, Date stagingDateTime)
         throws TaskomaticApiException {
-        Map<String, String> params = new HashMap<>();
-        params.put("action_id", Long.toString(actionId));
-        params.put("staging_job", "true");
-        params.put("staging_job_minion_server_id", Long.toString(minionId));
-
-        invoke("tasko.scheduleSingleSatBunchRun", MINION_ACTION_BUNCH_LABEL,
-                MINION_ACTION_JOB_DOWNLOAD_PREFIX + actionId + "-" + minionId, params,
-                stagingDateTime);
+        ActionDispatchFactory.queueStaging(actionId, minionId, stagingDateTime);
     }
 
     /**
@@ -667,18 +672,11 @@ public class TaskomaticApi {
      * @throws TaskomaticApiException if there was an error
      */
     public void scheduleStagingJobs(Map<Long, Map<Long, ZonedDateTime>> actionData) throws TaskomaticApiException {
-        List<Map<String, String>> paramList = actionData.entrySet()
-                .stream()
-                .flatMap(actionEntry -> actionEntry.getValue().entrySet().stream()
-                        .map(minionData -> {
-                            Map<String, String> params = new HashMap<>();
-                            params.put("action_id", Long.toString(actionEntry.getKey()));
-                            params.put("staging_job", "true");
-                            params.put("staging_job_minion_server_id", Long.toString(minionData.getKey()));
-                            params.put("earliest_action", minionData.getValue().toInstant().toString());
-                            return params;
-                        })).collect(Collectors.toList());
-        invoke("tasko.scheduleRuns", MINION_ACTION_BUNCH_LABEL, MINION_ACTION_JOB_DOWNLOAD_PREFIX, paramList);
+        Map<Long, Map<Long, Date>> stagingTimes = actionData.entrySet().stream()
+                .collect(Collectors.toMap(Map.Entry::getKey, actionEntry -> actionEntry.getValue().entrySet()
+                        .stream()
+                        .collect(Collectors.toMap(Map.Entry::getKey, e -> Date.from(e.getValue().toInstant())))));
+        ActionDispatchFactory.queueStaging(stagingTimes);
     }
 
     /**
@@ -714,12 +712,7 @@ public class TaskomaticApi {
      */
     public void scheduleSubscribeChannels(User user, SubscribeChannelsAction action)
             throws TaskomaticApiException {
-        Map<String, String> params = new HashMap<>();
-        params.put("action_id", Long.toString(action.getId()));
-        params.put("user_id", Long.toString(user.getId()));
-        invoke("tasko.scheduleSingleSatBunchRun", MINION_ACTION_BUNCH_LABEL,
-                MINION_ACTION_JOB_PREFIX + action.getId(), params,
-                action.getEarliestAction());
+        ActionDispatchFactory.queueSubscribeChannels(action, user.getId());
     }
 
     /**
@@ -741,13 +734,13 @@ public class TaskomaticApi {
             )
             .map(Map.Entry::getKey);
 
-        List<String> jobLabels = actionsToBeUnscheduled
-                .map(a -> MINION_ACTION_JOB_PREFIX + a.getId())
+        List<Long> actionIds = actionsToBeUnscheduled
+                .map(Action::getId)
                 .collect(Collectors.toList());
 
-        if (!jobLabels.isEmpty()) {
-            LOG.debug("Unscheduling jobs: {}", jobLabels);
-            invoke("tasko.unscheduleSatBunches", jobLabels);
+        if (!actionIds.isEmpty()) {
+            LOG.debug("Unscheduling actions: {}", actionIds);
+            ActionDispatchFactory.deleteActions(actionIds);
         }
     }
 
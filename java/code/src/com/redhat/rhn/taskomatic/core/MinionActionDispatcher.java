@@ -0,0 +1,316 @@
+/*
+ * Copyright (c) 2023 SUSE LLC
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.taskomatic.core;
+
+import com.redhat.rhn.common.conf.Config;
+import com.redhat.rhn.common.conf.ConfigDefaults;
+import com.redhat.rhn.common.hibernate.HibernateFactory;
+import com.redhat.rhn.common.localization.LocalizationService;
+import com.redhat.rhn.domain.action.ActionDispatch;
+import com.redhat.rhn.domain.action.ActionDispatchFactory;
+import com.redhat.rhn.domain.action.ActionFactory;
+import com.redhat.rhn.frontend.events.TransactionHelper;
+import com.redhat.rhn.taskomatic.task.MinionActionExecutor;
+
+import com.suse.manager.metrics.PrometheusExporter;
+
+import com.impossibl.postgres.api.jdbc.PGConnection;
+import com.impossibl.postgres.api.jdbc.PGNotificationListener;
+import com.impossibl.postgres.jdbc.PGDataSource;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+/**
+ * Executes the minion actions queued in suseActionDispatchQueue.
+ *
+ * The queue is checked whenever the database notifies that actions were queued, when the earliest
+ * execution time of a queued action is reached and at least every java.action_dispatch_poll_interval
+ * seconds. Due actions are handed over to the taskomatic.minion_action_executor.parallel_threads workers as soon
+ * as they have room, up to java.action_dispatch_batch_size at a time, so that a slow action never holds back
+ * the others.
+ *
+ * Each action is removed from the queue by the transaction executing it: if Taskomatic stops before the commit
+ * the action is dispatched again. An action whose execution fails before it is sent to Salt is queued again
+ * after the poll interval, up to {@link #MAX_ATTEMPTS} times: then its queued server actions are failed. An
+ * action failing once sent to Salt is never queued again, so that minions do not get the same job twice.
+ */
+public class MinionActionDispatcher implements PGNotificationListener {
+
+    private static final Logger LOG = LogManager.getLogger(MinionActionDispatcher.class);
+
+    // wait before checking again for actions that are due but were not taken, eg. locked by a rollback
+    private static final long MIN_WAIT_MILLIS = 1_000;
+
+    /** Maximum number of times the execution of an action is attempted */
+    public static final int MAX_ATTEMPTS = 3;
+
+    private final int batchSize = ConfigDefaults.get().getActionDispatchBatchSize();
+    private final long pollIntervalMillis = ConfigDefaults.get().getActionDispatchPollInterval() * 1_000L;
+
+    private final MinionActionExecutor executor;
+    private final ThreadPoolExecutor workers;
+
+    // ids of the queued rows handed over to the workers and not executed yet
+    private final Set<Long> inFlight = ConcurrentHashMap.newKeySet();
+
+    private final Object lock = new Object();
+    // guarded by lock, true if actions may have been queued since the last check
+    private boolean notified = true;
+
+    private volatile boolean running;
+    private volatile PGConnection connection;
+
+    /**
+     * Default constructor.
+     */
+    public MinionActionDispatcher() {
+        this(new MinionActionExecutor());
+    }
+
+    /**
+     * Constructs an instance specifying the executor. Meant to be used only for unit test.
+     * @param executorIn the action executor
+     */
+    public MinionActionDispatcher(MinionActionExecutor executorIn) {
+        executor = executorIn;
+        int threads = executorIn.getParallelThreads();
+        workers = new ThreadPoolExecutor(
+            threads,
+            threads,
+            0L,
+            TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<>(),
+            new BasicThreadFactory.Builder()
+                .namingPattern("minion-action-dispatch-thread-%d")
+                .build()
+        );
+    }
+
+    /**
+     * Starts listening for queued actions and dispatching them in a background thread.
+     */
+    public void start() {
+        running = true;
+        PrometheusExporter.INSTANCE.registerThreadPool(workers, "minion_action_dispatch");
+        Thread thread = new Thread(this::run, "minion-action-dispatcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops dispatching actions. Actions already taken from the queue are still executed.
+     */
+    public void stop() {
+        running = false;
+        wakeUp();
+        closeConnection();
+        workers.shutdown();
+    }
+
+    @Override
+    public void notification(int processId, String channelName, String payload) {
+        LOG.trace("Got notification on {}", channelName);
+        wakeUp();
+    }
+
+    @Override
+    public void closed() {
+        if (running) {
+            LOG.warn("Postgres notification connection was lost, reconnecting");
+        }
+        connection = null;
+        wakeUp();
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                if (connection == null) {
+                    listen();
+                }
+                dispatchDueActions();
+                waitForActions(millisToNextAction());
+            }
+            catch (Exception e) {
+                LOG.error("Unexpected error while dispatching minion actions", e);
+                closeConnection();
+                waitForActions(pollIntervalMillis);
+            }
+        }
+    }
+
+    /**
+     * Hands over the due actions to the workers, as long as they have room. The dispatcher is woken up again
+     * whenever an action completes.
+     */
+    public void dispatchDueActions() {
+        int room = batchSize - inFlight.size();
+        if (room <= 0) {
+            return;
+        }
+        // the rows handed over but not claimed yet by a worker are listed again
+        List<ActionDispatch> dispatched = listDueActions(batchSize + inFlight.size()).stream()
+                .filter(dispatch -> !inFlight.contains(dispatch.getId().orElseThrow()))
+                .limit(room)
+                .collect(Collectors.toList());
+        if (!dispatched.isEmpty()) {
+            LOG.debug("Dispatching {} minion actions", dispatched.size());
+            dispatched.forEach(this::submit);
+        }
+    }
+
+    private List<ActionDispatch> listDueActions(int limit) {
+        List<ActionDispatch> due = new ArrayList<>();
+        TransactionHelper.handlingTransaction(
+            () -> due.addAll(ActionDispatchFactory.listDueActions(limit)),
+            e -> {
+                LOG.error("Unable to list the queued minion actions", e);
+                due.clear();
+            });
+        return due;
+    }
+
+    private void submit(ActionDispatch dispatch) {
+        long id = dispatch.getId().orElseThrow();
+        inFlight.add(id);
+        workers.execute(() -> {
+            try {
+                execute(dispatch);
+            }
+            finally {
+                inFlight.remove(id);
+                wakeUp();
+            }
+        });
+    }
+
+    private void execute(ActionDispatch dispatch) {
+        AtomicBoolean sentToSalt = new AtomicBoolean(false);
+        TransactionHelper.handlingTransaction(
+            () -> {
+                if (ActionDispatchFactory.claimAction(dispatch.getId().orElseThrow())) {
+                    executor.execute(dispatch, () -> sentToSalt.set(true));
+                }
+            },
+            e -> handleFailure(dispatch, sentToSalt.get(), e));
+    }
+
+    /**
+     * Handles the failed execution of an action, whose transaction was rolled back: the action is still queued.
+     */
+    private void handleFailure(ActionDispatch dispatch, boolean sentToSalt, Exception e) {
+        if (sentToSalt) {
+            LOG.error("Unable to execute {} after sending it to Salt, it will not be retried", dispatch, e);
+            ActionDispatchFactory.claimAction(dispatch.getId().orElseThrow());
+        }
+        else if (dispatch.getAttempts() + 1 >= MAX_ATTEMPTS) {
+            LOG.error("Unable to execute {}, giving up after {} attempts", dispatch, MAX_ATTEMPTS, e);
+            ActionDispatchFactory.claimAction(dispatch.getId().orElseThrow());
+            // a failed staging only means the packages are downloaded when the action runs
+            if (dispatch.getStagingServerId().isEmpty()) {
+                ActionFactory.rejectScheduledActions(List.of(dispatch.getActionId()),
+                        LocalizationService.getInstance().getMessage("task.action.dispatch.failed", MAX_ATTEMPTS));
+            }
+        }
+        else {
+            LOG.error("Unable to execute {}, it will be retried in {} seconds", dispatch,
+                    pollIntervalMillis / 1_000, e);
+            ActionDispatchFactory.postponeAction(dispatch,
+                    new Date(System.currentTimeMillis() + pollIntervalMillis));
+        }
+    }
+
+    private long millisToNextAction() {
+        try {
+            return ActionDispatchFactory.nextEarliestAction()
+                    .map(next -> next.getTime() - new Date().getTime())
+                    .map(wait -> wait <= 0 ? MIN_WAIT_MILLIS : Math.min(wait, pollIntervalMillis))
+                    .orElse(pollIntervalMillis);
+        }
+        finally {
+            HibernateFactory.closeSession();
+        }
+    }
+
+    private void waitForActions(long millis) {
+        synchronized (lock) {
+            try {
+                if (!notified && running) {
+                    lock.wait(millis);
+                }
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            }
+            notified = false;
+        }
+    }
+
+    private void wakeUp() {
+        synchronized (lock) {
+            notified = true;
+            lock.notifyAll();
+        }
+    }
+
+    private void listen() throws SQLException {
+        PGDataSource dataSource = new PGDataSource();
+        Config config = Config.get();
+        dataSource.setHost(config.getString(ConfigDefaults.DB_HOST));
+        dataSource.setPort(config.getInt(ConfigDefaults.DB_PORT));
+        dataSource.setDatabaseName(config.getString(ConfigDefaults.DB_NAME));
+        dataSource.setUser(config.getString(ConfigDefaults.DB_USER));
+        dataSource.setPassword(config.getString(ConfigDefaults.DB_PASSWORD));
+        dataSource.setSslMode("allow");
+        dataSource.setProtocolIoMode("nio");
+
+        PGConnection newConnection = (PGConnection) dataSource.getConnection();
+        newConnection.addNotificationListener(this);
+        try (Statement stmt = newConnection.createStatement()) {
+            stmt.execute("LISTEN " + ActionDispatchFactory.NOTIFY_CHANNEL);
+        }
+        connection = newConnection;
+        LOG.debug("Listening for queued minion actions");
+    }
+
+    private void closeConnection() {
+        PGConnection current = connection;
+        connection = null;
+        if (current != null) {
+            try {
+                current.close();
+            }
+            catch (SQLException e) {
+                LOG.debug("Error closing the notification connection", e);
+            }
+        }
+    }
+}
@@ -60,6 +60,7 @@ public class SchedulerKernel {
     private static SchedulerFactory factory = null;
     private static Scheduler scheduler = null;
     private static TaskoXmlRpcServer xmlrpcServer = null;
+    private MinionActionDispatcher minionActionDispatcher = null;
     private ChainedListener chainedTriggerListener = null;
     private String dataSourceConfigPath = "org.quartz.jobStore.dataSource";
     private String dataSourcePrefix = "org.quartz.dataSource";
@@ -134,6 +135,8 @@ public class SchedulerKernel {
         }
         MessageQueue.startMessaging();
         MessageQueue.configureDefaultActions(GlobalInstanceHolder.SALT_API);
+        minionActionDispatcher = new MinionActionDispatcher();
+        minionActionDispatcher.start();
         try {
             SchedulerKernel.scheduler.start();
             initializeAllSatSchedules();
@@ -173,6 +176,9 @@ public class SchedulerKernel {
             log.warn("Failed to cleanly stop the scheduler", e);
         }
         finally {
+            if (minionActionDispatcher != null) {
+                minionActionDispatcher.stop();
+            }
             MessageQueue.stopMessaging();
             HibernateFactory.closeSessionFactory();
             // Wake up thread waiting in startup() so it can exit
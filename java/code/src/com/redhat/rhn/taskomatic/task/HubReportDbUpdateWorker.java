@@ -15,6 +15,8 @@
 package com.redhat.rhn.taskomatic.task;
 
 import static com.redhat.rhn.common.conf.ConfigDefaults.REPORT_DB_BATCH_SIZE;
+import static com.redhat.rhn.common.conf.ConfigDefaults.REPORT_DB_BULK_LOAD;
+import static com.redhat.rhn.taskomatic.task.ReportDBHelper.LOCAL_MGM_ID;
 
 import com.redhat.rhn.common.conf.Config;
 import com.redhat.rhn.common.conf.ConfigDefaults;
@@ -36,6 +38,7 @@ import com.redhat.rhn.taskomatic.task.threaded.TaskQueue;
 import org.apache.logging.log4j.Logger;
 import org.hibernate.Session;
 
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
@@ -46,6 +49,7 @@ import java.util.stream.Collectors;
 public class HubReportDbUpdateWorker implements QueueWorker {
 
     private final int batchSize;
+    private final boolean bulkLoad;
     private final ReportDBHelper dbHelper;
     private TaskQueue parentQueue;
     private final MgrServerInfo mgrServerInfo;
@@ -66,7 +70,8 @@ public class HubReportDbUpdateWorker implements QueueWorker {
      * @param mgrServerInfoIn mgr server to query data from
      */
     public HubReportDbUpdateWorker(Logger loggerIn, MgrServerInfo mgrServerInfoIn) {
-        this(loggerIn, mgrServerInfoIn, ReportDBHelper.INSTANCE, Config.get().getInt(REPORT_DB_BATCH_SIZE, 2000));
+        this(loggerIn, mgrServerInfoIn, ReportDBHelper.INSTANCE, Config.get().getInt(REPORT_DB_BATCH_SIZE, 2000),
+            Config.get().getBoolean(REPORT_DB_BULK_LOAD));
     }
 
     /**
@@ -78,10 +83,24 @@ public class HubReportDbUpdateWorker implements QueueWorker {
      */
     public HubReportDbUpdateWorker(Logger loggerIn, MgrServerInfo mgrServerInfoIn, ReportDBHelper dbHelperIn,
                                       int batchSizeIn) {
+        this(loggerIn, mgrServerInfoIn, dbHelperIn, batchSizeIn, false);
+    }
+
+    /**
+     * Test constructor for Hub Reporting DB Worker.
+     * @param loggerIn logger
+     * @param mgrServerInfoIn mgr server to query data from
+     * @param dbHelperIn the {@link ReportDBHelper}
+     * @param batchSizeIn the batch size
+     * @param bulkLoadIn true to stream the data with COPY instead of extracting and inserting it in batches
+     */
+    public HubReportDbUpdateWorker(Logger loggerIn, MgrServerInfo mgrServerInfoIn, ReportDBHelper dbHelperIn,
+                                      int batchSizeIn, boolean bulkLoadIn) {
         this.mgrServerInfo = mgrServerInfoIn;
         this.log = loggerIn;
         this.dbHelper = dbHelperIn;
         this.batchSize = batchSizeIn;
+        this.bulkLoad = bulkLoadIn;
     }
 
     @Override
@@ -106,6 +125,11 @@ public class HubReportDbUpdateWorker implements QueueWorker {
     }
 
     private void updateRemoteData(Session remoteSession, Session localSession, String tableName, long mgmId) {
+        if (bulkLoad) {
+            copyRemoteData(remoteSession, localSession, tableName, mgmId);
+            return;
+        }
+
         TimeUtils.logTime(log, "Refreshing table " + tableName, () -> {
             SelectMode query = dbHelper.generateQuery(remoteSession, tableName, log);
 
@@ -140,6 +164,29 @@ public class HubReportDbUpdateWorker implements QueueWorker {
         });
     }
 
+    private void copyRemoteData(Session remoteSession, Session localSession, String tableName, long mgmId) {
+        TimeUtils.logTime(log, "Copying table " + tableName, () -> {
+            // Remove all the existing data
+            log.debug("Deleting existing data in table {}", tableName);
+            WriteMode delete = dbHelper.generateDelete(localSession, tableName);
+            delete.executeUpdate(Map.of("mgm_id", mgmId));
+
+            // Stream the local rows of the remote server, replacing their mgm_id
+            List<String> columns = dbHelper.getQueryColumns(remoteSession, "SELECT * FROM " + tableName).stream()
+                    .filter(column -> !"mgm_id".equals(column))
+                    .collect(Collectors.toList());
+            String sql = String.format("SELECT %s, %s FROM %s WHERE mgm_id = %s",
+                    mgmId, String.join(",", columns), tableName, LOCAL_MGM_ID);
+
+            List<String> targetColumns = new ArrayList<>();
+            targetColumns.add("mgm_id");
+            targetColumns.addAll(columns);
+
+            long copied = dbHelper.copy(remoteSession, sql, localSession, tableName, targetColumns);
+            log.debug("Copied {} rows for table {}", copied, tableName);
+        });
+    }
+
     @Override
     public void run() {
         try {
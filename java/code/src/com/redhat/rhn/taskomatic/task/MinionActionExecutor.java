@@ -17,6 +17,7 @@ package com.redhat.rhn.taskomatic.task;
 import com.redhat.rhn.GlobalInstanceHolder;
 import com.redhat.rhn.common.localization.LocalizationService;
 import com.redhat.rhn.domain.action.Action;
+import com.redhat.rhn.domain.action.ActionDispatch;
 import com.redhat.rhn.domain.action.ActionFactory;
 import com.redhat.rhn.domain.action.channel.SubscribeChannelsAction;
 import com.redhat.rhn.domain.action.server.ServerAction;
@@ -28,6 +29,7 @@ import com.redhat.rhn.manager.system.SystemManager;
 import com.suse.manager.webui.services.SaltServerActionService;
 
 import org.apache.commons.collections.CollectionUtils;
+import org.quartz.JobDataMap;
 import org.quartz.JobExecutionContext;
 
 import java.time.Duration;
@@ -42,8 +44,6 @@ import java.util.Optional;
  */
 public class MinionActionExecutor extends RhnJavaJob {
 
-    public static final int ACTION_DATABASE_GRACE_TIME = 600_000;
-    public static final int ACTION_DATABASE_POLL_TIME = 100;
     public static final long MAXIMUM_TIMEDELTA_FOR_SCHEDULED_ACTIONS = 24; // hours
     private static final LocalizationService LOCALIZATION = LocalizationService.getInstance();
 
@@ -75,54 +75,60 @@ public class MinionActionExecutor extends RhnJavaJob {
     }
 
     /**
+     * Executes an action scheduled as a Quartz job. Actions are now dispatched by the
+     * {@link com.redhat.rhn.taskomatic.core.MinionActionDispatcher}, this only handles the jobs scheduled
+     * before the upgrade.
      * @param context the job execution context
      * @see org.quartz.Job#execute(JobExecutionContext)
      */
     @Override
     public void execute(JobExecutionContext context) {
-        if (log.isDebugEnabled()) {
-            log.debug("Start minion action executor");
-        }
-
-        // Measure time to calculate the total duration
-        long start = System.currentTimeMillis();
-        boolean forcePackageListRefresh = false;
-        long actionId = context.getJobDetail()
-                .getJobDataMap().getLongValueFromString("action_id");
-        User user = Optional.ofNullable(context.getJobDetail().getJobDataMap().get("user_id"))
+        JobDataMap data = context.getJobDetail().getJobDataMap();
+        long actionId = data.getLongValueFromString("action_id");
+        Long userId = Optional.ofNullable(data.get("user_id"))
                 .map(id -> Long.parseLong(id.toString()))
-                .map(UserFactory::lookupById)
                 .orElse(null);
 
-        boolean isStagingJob =
-                context.getJobDetail().getJobDataMap().getBooleanValue("staging_job");
+        boolean isStagingJob = data.getBooleanValue("staging_job");
         Long stagingJobMinionServerId = null;
+        boolean forcePackageListRefresh = false;
         if (isStagingJob) {
-            stagingJobMinionServerId = context.getJobDetail().getJobDataMap()
-                    .getLong("staging_job_minion_server_id");
+            stagingJobMinionServerId = data.getLong("staging_job_minion_server_id");
         }
         else {
-            forcePackageListRefresh = context.getJobDetail().getJobDataMap()
-                    .getBooleanValue("force_pkg_list_refresh");
+            forcePackageListRefresh = data.getBooleanValue("force_pkg_list_refresh");
         }
 
-        Action action = ActionFactory.lookupById(actionId);
+        execute(new ActionDispatch(actionId, forcePackageListRefresh, stagingJobMinionServerId, userId));
+    }
+
+    /**
+     * Executes an action on its Salt minions.
+     * @param dispatch the action to execute
+     */
+    public void execute(ActionDispatch dispatch) {
+        execute(dispatch, () -> { });
+    }
 
-        // HACK: it is possible that this Taskomatic task triggered before the corresponding Action was really
-        // COMMITted in the database. Wait for some minutes checking if it appears
-        int waitedTime = 0;
-        while (countQueuedServerActions(action) == 0 && waitedTime < ACTION_DATABASE_GRACE_TIME) {
-            action = ActionFactory.lookupById(actionId);
-            try {
-                Thread.sleep(ACTION_DATABASE_POLL_TIME);
-            }
-            catch (InterruptedException e) {
-                // never happens
-                Thread.currentThread().interrupt();
-            }
-            waitedTime += ACTION_DATABASE_POLL_TIME;
+    /**
+     * Executes an action on its Salt minions.
+     * @param dispatch the action to execute
+     * @param beforeSaltCall called right before the action is sent to Salt, from then on the action must
+     * not be executed again
+     */
+    public void execute(ActionDispatch dispatch, Runnable beforeSaltCall) {
+        if (log.isDebugEnabled()) {
+            log.debug("Start minion action executor");
         }
 
+        // Measure time to calculate the total duration
+        long start = System.currentTimeMillis();
+        long actionId = dispatch.getActionId();
+        User user = dispatch.getUserId()
+                .map(UserFactory::lookupById)
+                .orElse(null);
+
+        Action action = ActionFactory.lookupById(actionId);
         if (action == null) {
             log.error("Action not found: {}", actionId);
             return;
@@ -133,8 +139,6 @@ public class MinionActionExecutor extends RhnJavaJob {
             return;
         }
 
-        log.debug("Action {} found after: {}ms", actionId, waitedTime);
-
         // calculate offset between scheduled time of
         // actions and (now)
         ZonedDateTime earliestInstant = ZonedDateTime.ofInstant(action.getEarliestAction().toInstant(),
@@ -157,8 +161,9 @@ public class MinionActionExecutor extends RhnJavaJob {
             handleTraditionalClients(user, (SubscribeChannelsAction) action);
         }
 
-        saltServerActionService.execute(action, forcePackageListRefresh,
-                isStagingJob, Optional.ofNullable(stagingJobMinionServerId));
+        beforeSaltCall.run();
+        saltServerActionService.execute(action, dispatch.isForcePackageListRefresh(),
+                dispatch.getStagingServerId().isPresent(), dispatch.getStagingServerId());
 
         if (log.isDebugEnabled()) {
             long duration = System.currentTimeMillis() - start;
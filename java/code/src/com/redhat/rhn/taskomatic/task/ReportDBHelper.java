@@ -14,6 +14,7 @@
  */
 package com.redhat.rhn.taskomatic.task;
 
+import com.redhat.rhn.common.db.NamedPreparedStatement;
 import com.redhat.rhn.common.db.datasource.DataResult;
 import com.redhat.rhn.common.db.datasource.GeneratedSelectMode;
 import com.redhat.rhn.common.db.datasource.GeneratedWriteMode;
@@ -23,15 +24,27 @@ import com.redhat.rhn.common.db.datasource.WriteMode;
 
 import org.apache.logging.log4j.Logger;
 import org.hibernate.Session;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.CopyOut;
 
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import javax.persistence.FlushModeType;
+
 public class ReportDBHelper {
 
     /** The mgm_id used in the reporting database to indicate the data local which belong to the local server. */
@@ -39,6 +52,8 @@ public class ReportDBHelper {
 
     public static final ReportDBHelper INSTANCE = new ReportDBHelper();
 
+    private static final Pattern SNAPSHOT_ID = Pattern.compile("[0-9A-F]+(-[0-9A-F]+)+");
+
     /**
      * Default constructor to allow unit test sub-classes
      */
@@ -172,6 +187,264 @@ public class ReportDBHelper {
         return new GeneratedWriteMode("insert." + table, session, sqlStatement, params);
     }
 
+    /**
+     * Returns the name of the temporary table used to stage the rows of a report db table during an incremental
+     * refresh
+     * @param table table name
+     * @return the staging table name
+     */
+    public String getStagingTable(String table) {
+        return "staging_" + table;
+    }
+
+    /**
+     * Generates a statement creating a temporary table with the same structure of a report db table, to be used
+     * for staging the extracted rows. The table is dropped at the end of the transaction. Since LIKE copies the NOT
+     * NULL constraints, the rows loaded into it must provide a mgm_id.
+     * @param session session the query should use
+     * @param table table name
+     * @return write mode query
+     */
+    public WriteMode generateCreateStagingTable(Session session, String table) {
+        final String sqlStatement = String.format(
+                "CREATE TEMPORARY TABLE %s (LIKE %s) ON COMMIT DROP",
+                getStagingTable(table),
+                table
+        );
+
+        return new GeneratedWriteMode("createstaging." + table, session, sqlStatement, List.of());
+    }
+
+    /**
+     * Generates a statement creating an unlogged table with the same structure of a report db table, to be used
+     * for staging the extracted rows when they are loaded on a different connection than the one refreshing the
+     * report db table. Unlike the temporary staging table, it must be dropped explicitly.
+     * @param session session the query should use
+     * @param table table name
+     * @return write mode query
+     */
+    public WriteMode generateCreateSharedStagingTable(Session session, String table) {
+        final String sqlStatement = String.format(
+                "CREATE UNLOGGED TABLE %s (LIKE %s)",
+                getStagingTable(table),
+                table
+        );
+
+        return new GeneratedWriteMode("createsharedstaging." + table, session, sqlStatement, List.of());
+    }
+
+    /**
+     * Generates a statement dropping the staging table of a report db table, if it exists
+     * @param session session the query should use
+     * @param table table name
+     * @return write mode query
+     */
+    public WriteMode generateDropStagingTable(Session session, String table) {
+        final String sqlStatement = "DROP TABLE IF EXISTS " + getStagingTable(table);
+
+        return new GeneratedWriteMode("dropstaging." + table, session, sqlStatement, List.of());
+    }
+
+    /**
+     * Generates a statement analyzing the staging table of a report db table, as temporary tables are never
+     * analyzed automatically
+     * @param session session the query should use
+     * @param table table name
+     * @return write mode query
+     */
+    public WriteMode generateAnalyzeStagingTable(Session session, String table) {
+        final String sqlStatement = "ANALYZE " + getStagingTable(table);
+
+        return new GeneratedWriteMode("analyzestaging." + table, session, sqlStatement, List.of());
+    }
+
+    /**
+     * Generates a delete statement for all the rows of a report db table which are not present anymore in its
+     * staging table, or whose values have changed.
+     * @param session session the query should use
+     * @param table table name
+     * @param params table column names to compare (excluding mgm_id and synced_date)
+     * @return write mode query taking mgm_id as parameter
+     */
+    public WriteMode generateDeleteRemoved(Session session, String table, Collection<String> params) {
+        final String sqlStatement = String.format(
+                "DELETE FROM %1$s t " +
+                "      WHERE t.mgm_id = :mgm_id " +
+                "        AND NOT EXISTS (SELECT 1 FROM %2$s s WHERE %3$s = %4$s)",
+                table,
+                getStagingTable(table),
+                rowHash("s", params),
+                rowHash("t", params)
+        );
+
+        return new GeneratedWriteMode("deleteremoved." + table, session, sqlStatement, List.of("mgm_id"));
+    }
+
+    /**
+     * Generates an insert statement copying all the rows of the staging table of a report db table that are new or
+     * whose values have changed. The synced_date of the inserted rows is set to current_timestamp.
+     * @param session session the query should use
+     * @param table table name
+     * @param params table column names to compare and insert (excluding mgm_id and synced_date)
+     * @return write mode query taking mgm_id as parameter
+     */
+    public WriteMode generateInsertChanged(Session session, String table, Collection<String> params) {
+        final String sqlStatement = String.format(
+                "INSERT INTO %1$s (mgm_id, synced_date, %3$s) " +
+                "     SELECT :mgm_id, current_timestamp, %4$s " +
+                "       FROM %2$s s " +
+                "      WHERE NOT EXISTS (SELECT 1 FROM %1$s t WHERE t.mgm_id = :mgm_id AND %5$s = %6$s) " +
+                "ON CONFLICT DO NOTHING",
+                table,
+                getStagingTable(table),
+                String.join(",", params),
+                params.stream().map(p -> "s." + p).collect(Collectors.joining(",")),
+                rowHash("t", params),
+                rowHash("s", params)
+        );
+
+        return new GeneratedWriteMode("insertchanged." + table, session, sqlStatement, List.of("mgm_id"));
+    }
+
+    // The text representation of a row distinguishes NULLs from empty values, and hashing it lets PostgreSQL
+    // compare the two tables with a hashed anti-join on a single column
+    private static String rowHash(String alias, Collection<String> params) {
+        return params.stream()
+                .map(p -> alias + "." + p)
+                .collect(Collectors.joining(",", "md5(ROW(", ")::text)"));
+    }
+
+    /**
+     * Returns the sql of a paginated report query with its pagination removed, so that it can be run in a single
+     * pass, for example as part of a COPY statement
+     * @param query the report query, taking offset and limit as parameters
+     * @return the sql statement extracting all the rows
+     */
+    public String getUnpaginatedSql(SelectMode query) {
+        // COPY does not take bind parameters: inline them, a NULL limit being the same as no limit at all
+        return NamedPreparedStatement.inlineBindParams(query.getQuery().getOrigQuery(),
+                Map.of("offset", "0", "limit", "NULL"));
+    }
+
+    /**
+     * Exports the snapshot of the current transaction, so that other transactions can read the same data. The
+     * snapshot can be imported as long as the exporting transaction stays open.
+     * @param session session of the exporting transaction
+     * @return the snapshot identifier
+     */
+    public String exportSnapshot(Session session) {
+        return session.doReturningWork(connection -> {
+            try (PreparedStatement ps = connection.prepareStatement("SELECT pg_export_snapshot()");
+                 ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                return rs.getString(1);
+            }
+        });
+    }
+
+    /**
+     * Makes the current transaction read the data of a snapshot exported by another one. It must be called before
+     * the transaction runs any query.
+     * @param session session of the importing transaction
+     * @param snapshot the snapshot identifier returned by {@link #exportSnapshot(Session)}
+     */
+    public void importSnapshot(Session session, String snapshot) {
+        if (!SNAPSHOT_ID.matcher(snapshot).matches()) {
+            throw new IllegalArgumentException("Invalid snapshot identifier: " + snapshot);
+        }
+
+        session.doWork(connection -> {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("SET TRANSACTION ISOLATION LEVEL REPEATABLE READ");
+                statement.execute("SET TRANSACTION SNAPSHOT '" + snapshot + "'");
+            }
+        });
+    }
+
+    /**
+     * Returns the names of the columns returned by a query, without extracting any row
+     * @param session session the query should use
+     * @param sql the sql statement
+     * @return the lower case column names, in the order they are returned
+     */
+    public List<String> getQueryColumns(Session session, String sql) {
+        return session.doReturningWork(connection -> {
+            try (PreparedStatement ps = connection.prepareStatement("SELECT * FROM (" + sql + ") q LIMIT 0");
+                 ResultSet rs = ps.executeQuery()) {
+                ResultSetMetaData metaData = rs.getMetaData();
+                List<String> columns = new ArrayList<>();
+                for (int i = 1; i <= metaData.getColumnCount(); i++) {
+                    columns.add(metaData.getColumnName(i).toLowerCase());
+                }
+                return columns;
+            }
+        });
+    }
+
+    /**
+     * Streams the result of a query into a table using the PostgreSQL COPY protocol. Rows are piped from the
+     * source connection to the target one as they are produced, without ever being converted to java objects.
+     * @param sourceSession session the query should use
+     * @param sql the sql statement extracting the rows
+     * @param targetSession session of the database to load
+     * @param table the table to load
+     * @param columns the columns of the table to load, in the order they are returned by the query
+     * @return the number of rows copied
+     */
+    public long copy(Session sourceSession, String sql, Session targetSession, String table, List<String> columns) {
+        final String copyOutStatement = "COPY (" + sql + ") TO STDOUT";
+        final String copyInStatement = String.format("COPY %s (%s) FROM STDIN", table, String.join(",", columns));
+
+        // make sure the extraction sees the changes pending in the source session
+        if (sourceSession.getFlushMode().equals(FlushModeType.AUTO)) {
+            sourceSession.flush();
+        }
+
+        return sourceSession.doReturningWork(source -> targetSession.doReturningWork(target -> {
+            CopyOut copyOut = source.unwrap(PGConnection.class).getCopyAPI().copyOut(copyOutStatement);
+            CopyIn copyIn = null;
+            try {
+                copyIn = target.unwrap(PGConnection.class).getCopyAPI().copyIn(copyInStatement);
+
+                byte[] buffer;
+                while ((buffer = copyOut.readFromCopy()) != null) {
+                    copyIn.writeToCopy(buffer, 0, buffer.length);
+                }
+                return copyIn.endCopy();
+            }
+            finally {
+                if (copyOut.isActive()) {
+                    copyOut.cancelCopy();
+                }
+                if (copyIn != null && copyIn.isActive()) {
+                    copyIn.cancelCopy();
+                }
+            }
+        }));
+    }
+
+    /**
+     * Generates an insert statement copying all the rows of the staging table of a report db table. The
+     * synced_date of the inserted rows is set to current_timestamp.
+     * @param session session the query should use
+     * @param table table name
+     * @param params table column names to insert (excluding mgm_id and synced_date)
+     * @return write mode query taking mgm_id as parameter
+     */
+    public WriteMode generateInsertFromStaging(Session session, String table, Collection<String> params) {
+        final String sqlStatement = String.format(
+                "INSERT INTO %1$s (mgm_id, synced_date, %3$s) " +
+                "     SELECT :mgm_id, current_timestamp, %3$s " +
+                "       FROM %2$s " +
+                "ON CONFLICT DO NOTHING",
+                table,
+                getStagingTable(table),
+                String.join(",", params)
+        );
+
+        return new GeneratedWriteMode("insertstaging." + table, session, sqlStatement, List.of("mgm_id"));
+    }
+
     /**
      * Analyzes the report database tables after massive inserts
      * @param session session the query should use
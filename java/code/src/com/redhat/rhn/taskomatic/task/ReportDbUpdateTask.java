@@ -15,6 +15,9 @@
 package com.redhat.rhn.taskomatic.task;
 
 import static com.redhat.rhn.common.conf.ConfigDefaults.REPORT_DB_BATCH_SIZE;
+import static com.redhat.rhn.common.conf.ConfigDefaults.REPORT_DB_BULK_LOAD;
+import static com.redhat.rhn.common.conf.ConfigDefaults.REPORT_DB_INCREMENTAL_REFRESH;
+import static com.redhat.rhn.common.conf.ConfigDefaults.REPORT_DB_PARALLEL_TABLES;
 import static com.redhat.rhn.taskomatic.task.ReportDBHelper.LOCAL_MGM_ID;
 
 import com.redhat.rhn.common.conf.Config;
@@ -24,15 +27,30 @@ import com.redhat.rhn.common.db.datasource.SelectMode;
 import com.redhat.rhn.common.db.datasource.WriteMode;
 import com.redhat.rhn.common.hibernate.ConnectionManager;
 import com.redhat.rhn.common.hibernate.ConnectionManagerFactory;
+import com.redhat.rhn.common.hibernate.HibernateFactory;
 import com.redhat.rhn.common.hibernate.ReportDbHibernateFactory;
 import com.redhat.rhn.common.util.TimeUtils;
 
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.apache.commons.lang3.tuple.Pair;
 import org.hibernate.Session;
 import org.quartz.JobExecutionContext;
 import org.quartz.JobExecutionException;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 
 public class ReportDbUpdateTask extends RhnJavaJob {
@@ -42,15 +60,60 @@ public class ReportDbUpdateTask extends RhnJavaJob {
     private static final String CHANNEL_REPORT_QUERIES = "ChannelReport_queries";
     private static final String SCAP_REPORT_QUERIES = "ScapReport_queries";
 
+    // Tables to refresh, each with the queries file to extract the data from. The reporting tables do not depend
+    // on each other, so they can be loaded in any order.
+    private static final List<Pair<String, String>> TABLES = List.of(
+        Pair.of(GENERAL_REPORT_QUERIES, "SystemGroup"),
+        Pair.of(GENERAL_REPORT_QUERIES, "SystemGroupPermission"),
+        Pair.of(GENERAL_REPORT_QUERIES, "Account"),
+        Pair.of(GENERAL_REPORT_QUERIES, "AccountGroup"),
+
+        Pair.of(SYSTEM_REPORT_QUERIES, "System"),
+        Pair.of(SYSTEM_REPORT_QUERIES, "SystemHistory"),
+        Pair.of(SYSTEM_REPORT_QUERIES, "SystemAction"),
+        Pair.of(SYSTEM_REPORT_QUERIES, "SystemChannel"),
+        Pair.of(SYSTEM_REPORT_QUERIES, "SystemConfigChannel"),
+        Pair.of(SYSTEM_REPORT_QUERIES, "SystemVirtualData"),
+        Pair.of(SYSTEM_REPORT_QUERIES, "SystemNetInterface"),
+        Pair.of(SYSTEM_REPORT_QUERIES, "SystemNetAddressV4"),
+        Pair.of(SYSTEM_REPORT_QUERIES, "SystemNetAddressV6"),
+        Pair.of(SYSTEM_REPORT_QUERIES, "SystemOutdated"),
+        Pair.of(SYSTEM_REPORT_QUERIES, "SystemGroupMember"),
+        Pair.of(SYSTEM_REPORT_QUERIES, "SystemEntitlement"),
+        Pair.of(SYSTEM_REPORT_QUERIES, "SystemErrata"),
+        Pair.of(SYSTEM_REPORT_QUERIES, "SystemPackageInstalled"),
+        Pair.of(SYSTEM_REPORT_QUERIES, "SystemPackageUpdate"),
+        Pair.of(SYSTEM_REPORT_QUERIES, "SystemCustomInfo"),
+
+        Pair.of(CHANNEL_REPORT_QUERIES, "Channel"),
+        Pair.of(CHANNEL_REPORT_QUERIES, "ChannelErrata"),
+        Pair.of(CHANNEL_REPORT_QUERIES, "ChannelPackage"),
+        Pair.of(CHANNEL_REPORT_QUERIES, "ChannelRepository"),
+        Pair.of(CHANNEL_REPORT_QUERIES, "Errata"),
+        Pair.of(CHANNEL_REPORT_QUERIES, "Package"),
+        Pair.of(CHANNEL_REPORT_QUERIES, "Repository"),
+
+        Pair.of(SCAP_REPORT_QUERIES, "XccdScan"),
+        Pair.of(SCAP_REPORT_QUERIES, "XccdScanResult")
+    );
+
     private final int batchSize;
 
+    private final boolean incremental;
+
+    private final boolean bulkLoad;
+
+    private final int parallelTables;
+
     private final ReportDBHelper dbHelper;
 
     /**
      * Default constructor
      */
     public ReportDbUpdateTask() {
-        this(ReportDBHelper.INSTANCE, Config.get().getInt(REPORT_DB_BATCH_SIZE, 2000));
+        this(ReportDBHelper.INSTANCE, Config.get().getInt(REPORT_DB_BATCH_SIZE, 2000),
+            Config.get().getBoolean(REPORT_DB_INCREMENTAL_REFRESH), Config.get().getBoolean(REPORT_DB_BULK_LOAD),
+            Config.get().getInt(REPORT_DB_PARALLEL_TABLES, 1));
     }
 
     /**
@@ -59,11 +122,42 @@ public class ReportDbUpdateTask extends RhnJavaJob {
      * @param batchSizeIn the batch size
      */
     public ReportDbUpdateTask(ReportDBHelper dbHelperIn, int batchSizeIn) {
+        this(dbHelperIn, batchSizeIn, false);
+    }
+
+    /**
+     * Constructor used for unit test to specify the {@link ReportDBHelper} and the refresh mode
+     * @param dbHelperIn the {@link ReportDBHelper}
+     * @param batchSizeIn the batch size
+     * @param incrementalIn true to only write the rows that changed since the last refresh
+     */
+    public ReportDbUpdateTask(ReportDBHelper dbHelperIn, int batchSizeIn, boolean incrementalIn) {
+        this(dbHelperIn, batchSizeIn, incrementalIn, false, 1);
+    }
+
+    /**
+     * Constructor used for unit test to specify the {@link ReportDBHelper}, the refresh mode and how data is loaded
+     * @param dbHelperIn the {@link ReportDBHelper}
+     * @param batchSizeIn the batch size
+     * @param incrementalIn true to only write the rows that changed since the last refresh
+     * @param bulkLoadIn true to stream the data with COPY instead of extracting and inserting it in batches
+     * @param parallelTablesIn the number of tables to load at the same time, each on its own connection
+     */
+    public ReportDbUpdateTask(ReportDBHelper dbHelperIn, int batchSizeIn, boolean incrementalIn, boolean bulkLoadIn,
+                              int parallelTablesIn) {
         this.dbHelper = dbHelperIn;
         this.batchSize = batchSizeIn;
+        this.incremental = incrementalIn;
+        this.bulkLoad = bulkLoadIn;
+        this.parallelTables = Math.max(1, parallelTablesIn);
     }
 
     private void fillReportDbTable(Session session, String xmlName, String tableName) {
+        if (incremental || bulkLoad) {
+            refreshReportDbTable(session, xmlName, tableName);
+            return;
+        }
+
         TimeUtils.logTime(log, "Refreshing table " + tableName, () -> {
             SelectMode query = ModeFactory.getMode(xmlName, tableName, Map.class);
 
@@ -97,44 +191,217 @@ public class ReportDbUpdateTask extends RhnJavaJob {
         });
     }
 
+    /**
+     * Refreshes a table going through a temporary staging table. The rows are extracted in a single pass, either
+     * through a cursor or streamed with COPY, into the staging table, which then replaces the table content.
+     */
+    private void refreshReportDbTable(Session session, String xmlName, String tableName) {
+        TimeUtils.logTime(log, "Refreshing table " + tableName + " through staging", () -> {
+            dbHelper.generateCreateStagingTable(session, tableName).executeUpdate(Map.of());
+
+            Collection<String> columnParameters = loadStagingTable(session, xmlName, tableName);
+            replaceFromStagingTable(session, tableName, columnParameters);
+        });
+    }
+
+    /**
+     * Extracts the rows of a table into its staging table, either through a cursor or streamed with COPY.
+     * @return the extracted columns, empty if no row was extracted
+     */
+    private Collection<String> loadStagingTable(Session session, String xmlName, String tableName) {
+        SelectMode query = ModeFactory.getMode(xmlName, tableName, Map.class);
+
+        return bulkLoad ?
+            copyToStagingTable(session, query, tableName) :
+            extractToStagingTable(session, query, tableName);
+    }
+
+    /**
+     * Replaces the content of a table with the rows of its staging table. Either all the existing rows are replaced
+     * or, in incremental mode, only the rows that disappeared or changed are deleted and the new or changed ones are
+     * inserted, leaving unchanged rows untouched with their synced_date.
+     */
+    private void replaceFromStagingTable(Session session, String tableName, Collection<String> columnParameters) {
+        if (columnParameters.isEmpty()) {
+            log.debug("No data extracted for table {}, deleting existing data", tableName);
+            dbHelper.generateDelete(session, tableName).executeUpdate(Map.of("mgm_id", LOCAL_MGM_ID));
+            return;
+        }
+
+        if (incremental) {
+            dbHelper.generateAnalyzeStagingTable(session, tableName).executeUpdate(Map.of());
+
+            int deleted = dbHelper.generateDeleteRemoved(session, tableName, columnParameters)
+                .executeUpdate(Map.of("mgm_id", LOCAL_MGM_ID));
+            int inserted = dbHelper.generateInsertChanged(session, tableName, columnParameters)
+                .executeUpdate(Map.of("mgm_id", LOCAL_MGM_ID));
+
+            log.debug("Table {}: {} rows removed or outdated, {} new or updated", tableName, deleted, inserted);
+        }
+        else {
+            log.debug("Deleting existing data in table {}", tableName);
+            dbHelper.generateDelete(session, tableName).executeUpdate(Map.of("mgm_id", LOCAL_MGM_ID));
+            dbHelper.generateInsertFromStaging(session, tableName, columnParameters)
+                .executeUpdate(Map.of("mgm_id", LOCAL_MGM_ID));
+        }
+    }
+
+    /**
+     * Extracts the rows of the query through a cursor and inserts them in batches into the staging table.
+     * @return the extracted columns, empty if no row was extracted
+     */
+    private Collection<String> extractToStagingTable(Session session, SelectMode query, String tableName) {
+        AtomicReference<Set<String>> columnParameters = new AtomicReference<>(Set.of());
+        AtomicReference<WriteMode> stagingInsert = new AtomicReference<>();
+        AtomicLong extracted = new AtomicLong();
+
+        // The queries are paginated: a limit larger than any table turns them into a single pass
+        query.executeInBatches(Map.of("offset", 0, "limit", Long.MAX_VALUE), batchSize, batch -> {
+            if (stagingInsert.get() == null) {
+                columnParameters.set(batch.get(0).keySet());
+                stagingInsert.set(dbHelper.generateInsert(session, dbHelper.getStagingTable(tableName),
+                    LOCAL_MGM_ID, columnParameters.get()));
+            }
+
+            stagingInsert.get().executeUpdates(batch);
+            log.debug("Extracted {} rows more for table {}", batch.size(), tableName);
+            extracted.addAndGet(batch.size());
+        });
+
+        log.debug("Extracted {} rows for table {}", extracted.get(), tableName);
+        return columnParameters.get();
+    }
+
+    /**
+     * Streams the rows of the query into the staging table with COPY.
+     * @return the extracted columns, empty if no row was extracted
+     */
+    private Collection<String> copyToStagingTable(Session session, SelectMode query, String tableName) {
+        Session sourceSession = HibernateFactory.getSession();
+        String sql = dbHelper.getUnpaginatedSql(query);
+        List<String> columns = dbHelper.getQueryColumns(sourceSession, sql);
+
+        // The staging table keeps the NOT NULL constraint of mgm_id, which the report queries never select
+        String stagingSql = String.format("SELECT %d AS mgm_id, q.* FROM (%s) q", LOCAL_MGM_ID, sql);
+        List<String> stagingColumns = new ArrayList<>();
+        stagingColumns.add("mgm_id");
+        stagingColumns.addAll(columns);
+
+        long copied = dbHelper.copy(sourceSession, stagingSql, session, dbHelper.getStagingTable(tableName),
+            stagingColumns);
+
+        log.debug("Copied {} rows for table {}", copied, tableName);
+        return copied > 0 ? columns : List.of();
+    }
+
+    /**
+     * Loads the staging tables of the given tables on a dedicated connection to the reporting database, reading the
+     * source data from the given snapshot. The staging tables are shared, so that another connection can replace
+     * the content of the report db tables with them.
+     * @return the extracted columns of each table, empty if no row was extracted
+     */
+    private Map<String, Collection<String>> stageReportDbTables(List<Pair<String, String>> tables, String snapshot) {
+        ConnectionManager rcm = ConnectionManagerFactory.localReportingConnectionManager();
+        ReportDbHibernateFactory rh = new ReportDbHibernateFactory(rcm);
+
+        try {
+            dbHelper.importSnapshot(HibernateFactory.getSession(), snapshot);
+
+            Map<String, Collection<String>> columnParameters = new HashMap<>();
+            tables.forEach(table -> TimeUtils.logTime(log, "Staging table " + table.getRight(), () -> {
+                dbHelper.generateDropStagingTable(rh.getSession(), table.getRight()).executeUpdate(Map.of());
+                dbHelper.generateCreateSharedStagingTable(rh.getSession(), table.getRight()).executeUpdate(Map.of());
+
+                columnParameters.put(table.getRight(),
+                    loadStagingTable(rh.getSession(), table.getLeft(), table.getRight()));
+            }));
+
+            rh.commitTransaction();
+            return columnParameters;
+        }
+        catch (RuntimeException ex) {
+            try {
+                rh.rollbackTransaction();
+            }
+            catch (RuntimeException rollbackException) {
+                log.warn("Unable to rollback transaction", rollbackException);
+            }
+            throw ex;
+        }
+        finally {
+            rh.closeSession();
+            rh.closeSessionFactory();
+            HibernateFactory.closeSession();
+        }
+    }
+
+    /**
+     * Loads the staging tables on parallelTables connections at the same time, all reading the same snapshot of the
+     * source data, then replaces the content of the report db tables in the given session. Nothing is visible until
+     * the given session commits, so the tables are refreshed all together or not at all.
+     */
+    private void fillReportDbTablesInParallel(Session session) {
+        // The exporting transaction must stay open until all the workers have imported its snapshot
+        String snapshot = dbHelper.exportSnapshot(HibernateFactory.getSession());
+
+        ExecutorService executor = Executors.newFixedThreadPool(parallelTables,
+            new BasicThreadFactory.Builder().namingPattern("report-db-update-%d").build());
+
+        Map<String, Collection<String>> columnParameters = new HashMap<>();
+        try {
+            List<CompletableFuture<Map<String, Collection<String>>>> futures = IntStream.range(0, parallelTables)
+                .mapToObj(worker -> IntStream.range(0, TABLES.size())
+                    .filter(i -> i % parallelTables == worker)
+                    .mapToObj(TABLES::get)
+                    .collect(Collectors.toList()))
+                .map(tables -> CompletableFuture.supplyAsync(() -> stageReportDbTables(tables, snapshot), executor))
+                .collect(Collectors.toList());
+
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+            futures.forEach(future -> columnParameters.putAll(future.join()));
+        }
+        finally {
+            executor.shutdown();
+        }
+
+        TABLES.forEach(table -> TimeUtils.logTime(log, "Refreshing table " + table.getRight() + " from staging", () -> {
+            replaceFromStagingTable(session, table.getRight(), columnParameters.get(table.getRight()));
+            dbHelper.generateDropStagingTable(session, table.getRight()).executeUpdate(Map.of());
+        }));
+    }
+
+    /**
+     * Drops the shared staging tables left behind by a failed parallel refresh.
+     */
+    private void dropStagingTables(ReportDbHibernateFactory rh) {
+        try {
+            TABLES.forEach(table -> dbHelper.generateDropStagingTable(rh.getSession(), table.getRight())
+                .executeUpdate(Map.of()));
+            rh.commitTransaction();
+        }
+        catch (RuntimeException ex) {
+            log.warn("Unable to drop the staging tables", ex);
+            try {
+                rh.rollbackTransaction();
+            }
+            catch (RuntimeException rollbackException) {
+                log.warn("Unable to rollback transaction", rollbackException);
+            }
+        }
+    }
+
     @Override
     public void execute(JobExecutionContext arg0) throws JobExecutionException {
         ConnectionManager rcm = ConnectionManagerFactory.localReportingConnectionManager();
         ReportDbHibernateFactory rh = new ReportDbHibernateFactory(rcm);
 
         try {
-            fillReportDbTable(rh.getSession(), GENERAL_REPORT_QUERIES, "SystemGroup");
-            fillReportDbTable(rh.getSession(), GENERAL_REPORT_QUERIES, "SystemGroupPermission");
-            fillReportDbTable(rh.getSession(), GENERAL_REPORT_QUERIES, "Account");
-            fillReportDbTable(rh.getSession(), GENERAL_REPORT_QUERIES, "AccountGroup");
-
-            fillReportDbTable(rh.getSession(), SYSTEM_REPORT_QUERIES, "System");
-            fillReportDbTable(rh.getSession(), SYSTEM_REPORT_QUERIES, "SystemHistory");
-            fillReportDbTable(rh.getSession(), SYSTEM_REPORT_QUERIES, "SystemAction");
-            fillReportDbTable(rh.getSession(), SYSTEM_REPORT_QUERIES, "SystemChannel");
-            fillReportDbTable(rh.getSession(), SYSTEM_REPORT_QUERIES, "SystemConfigChannel");
-            fillReportDbTable(rh.getSession(), SYSTEM_REPORT_QUERIES, "SystemVirtualData");
-            fillReportDbTable(rh.getSession(), SYSTEM_REPORT_QUERIES, "SystemNetInterface");
-            fillReportDbTable(rh.getSession(), SYSTEM_REPORT_QUERIES, "SystemNetAddressV4");
-            fillReportDbTable(rh.getSession(), SYSTEM_REPORT_QUERIES, "SystemNetAddressV6");
-            fillReportDbTable(rh.getSession(), SYSTEM_REPORT_QUERIES, "SystemOutdated");
-            fillReportDbTable(rh.getSession(), SYSTEM_REPORT_QUERIES, "SystemGroupMember");
-            fillReportDbTable(rh.getSession(), SYSTEM_REPORT_QUERIES, "SystemEntitlement");
-            fillReportDbTable(rh.getSession(), SYSTEM_REPORT_QUERIES, "SystemErrata");
-            fillReportDbTable(rh.getSession(), SYSTEM_REPORT_QUERIES, "SystemPackageInstalled");
-            fillReportDbTable(rh.getSession(), SYSTEM_REPORT_QUERIES, "SystemPackageUpdate");
-            fillReportDbTable(rh.getSession(), SYSTEM_REPORT_QUERIES, "SystemCustomInfo");
-
-            fillReportDbTable(rh.getSession(), CHANNEL_REPORT_QUERIES, "Channel");
-            fillReportDbTable(rh.getSession(), CHANNEL_REPORT_QUERIES, "ChannelErrata");
-            fillReportDbTable(rh.getSession(), CHANNEL_REPORT_QUERIES, "ChannelPackage");
-            fillReportDbTable(rh.getSession(), CHANNEL_REPORT_QUERIES, "ChannelRepository");
-            fillReportDbTable(rh.getSession(), CHANNEL_REPORT_QUERIES, "Errata");
-            fillReportDbTable(rh.getSession(), CHANNEL_REPORT_QUERIES, "Package");
-            fillReportDbTable(rh.getSession(), CHANNEL_REPORT_QUERIES, "Repository");
-
-            fillReportDbTable(rh.getSession(), SCAP_REPORT_QUERIES, "XccdScan");
-            fillReportDbTable(rh.getSession(), SCAP_REPORT_QUERIES, "XccdScanResult");
+            if (parallelTables > 1) {
+                fillReportDbTablesInParallel(rh.getSession());
+            }
+            else {
+                TABLES.forEach(table -> fillReportDbTable(rh.getSession(), table.getLeft(), table.getRight()));
+            }
 
             dbHelper.analyzeReportDb(rh.getSession());
 
@@ -149,7 +416,12 @@ public class ReportDbUpdateTask extends RhnJavaJob {
                 log.warn("Unable to rollback transaction", rollbackException);
             }
 
-            throw new JobExecutionException("Unable to update reporting db", ex);
+            if (parallelTables > 1) {
+                dropStagingTables(rh);
+            }
+
+            Throwable cause = ex instanceof CompletionException ? ex.getCause() : ex;
+            throw new JobExecutionException("Unable to update reporting db", cause);
         }
         finally {
             rh.closeSession();
@@ -21,17 +21,35 @@ import com.redhat.rhn.domain.action.Action;
 import com.redhat.rhn.domain.action.ActionFactory;
 import com.redhat.rhn.domain.server.MinionServer;
 import com.redhat.rhn.domain.server.MinionServerFactory;
+import com.redhat.rhn.frontend.events.TransactionHelper;
 
+import com.suse.manager.metrics.PrometheusExporter;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
+import org.quartz.JobDataMap;
 import org.quartz.JobExecutionContext;
 
+import java.util.Arrays;
 import java.util.Date;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Execute actions via salt-ssh.
+ *
+ * A job executes an action on one or more ssh minions. The minions of all jobs share a pool of
+ * taskomatic.sshminion_action_executor.parallel_threads workers, so that scheduling an action on thousands
+ * of minions takes a single job and never runs more salt-ssh processes than configured.
  */
 public class SSHMinionActionExecutor extends RhnJavaJob {
 
+    private static ThreadPoolExecutor minionPool;
+
     @Override
     public int getDefaultParallelThreads() {
         return 20;
@@ -48,10 +66,37 @@ public class SSHMinionActionExecutor extends RhnJavaJob {
      */
     @Override
     public void execute(JobExecutionContext context) {
-        long actionId = context.getJobDetail()
-                .getJobDataMap().getLongValueFromString("action_id");
-        boolean forcePkgRefresh = context.getJobDetail().getJobDataMap().getBooleanValue("force_pkg_list_refresh");
-        String sshMinionId = context.getJobDetail().getJobDataMap().getString("ssh_minion_id");
+        JobDataMap data = context.getJobDetail().getJobDataMap();
+        long actionId = data.getLongValueFromString("action_id");
+        boolean forcePkgRefresh = data.getBooleanValue("force_pkg_list_refresh");
+        // jobs scheduled before batching was introduced target a single minion
+        String sshMinionIds = Optional.ofNullable(data.getString("ssh_minion_ids"))
+                .orElseGet(() -> data.getString("ssh_minion_id"));
+        if (StringUtils.isBlank(sshMinionIds)) {
+            log.error("No ssh minion given. Aborting execution of action {}", actionId);
+            return;
+        }
+        List<String> minionIds = Arrays.asList(StringUtils.split(sshMinionIds, ','));
+
+        log.debug("Executing action: {} on {} ssh minions", actionId, minionIds.size());
+        ThreadPoolExecutor pool = getMinionPool(getParallelThreads());
+        CompletableFuture.allOf(minionIds.stream()
+                .map(minionId -> CompletableFuture.runAsync(() -> TransactionHelper.handlingTransaction(
+                        () -> execute(actionId, minionId, forcePkgRefresh),
+                        e -> log.error("Error executing action {} on ssh minion {}", actionId, minionId, e)),
+                        pool))
+                .toArray(CompletableFuture[]::new))
+            .join();
+    }
+
+    /**
+     * Execute an action on a single ssh minion, called from the shared pool.
+     *
+     * @param actionId the id of the action
+     * @param sshMinionId the minion id of the ssh minion
+     * @param forcePkgRefresh true to force a package list refresh after the action
+     */
+    protected void execute(long actionId, String sshMinionId, boolean forcePkgRefresh) {
         Optional<MinionServer> sshMinionOpt = MinionServerFactory.findByMinionId(sshMinionId);
         if (sshMinionOpt.isEmpty()) {
             log.error("SSH Minion {} not found. Aborting execution of action {}", sshMinionId, actionId);
@@ -74,4 +119,21 @@ public class SSHMinionActionExecutor extends RhnJavaJob {
         log.info("Executing action: {} on ssh minion: {}", actionId, sshMinionId);
         GlobalInstanceHolder.SALT_SERVER_ACTION_SERVICE.executeSSHAction(action, sshMinionOpt.get(), forcePkgRefresh);
     }
+
+    private static synchronized ThreadPoolExecutor getMinionPool(int threads) {
+        if (minionPool == null) {
+            minionPool = new ThreadPoolExecutor(
+                threads,
+                threads,
+                0L,
+                TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(),
+                new BasicThreadFactory.Builder()
+                    .namingPattern("ssh-minion-action-thread-%d")
+                    .build()
+            );
+            PrometheusExporter.INSTANCE.registerThreadPool(minionPool, "ssh_minion_action");
+        }
+        return minionPool;
+    }
 }
@@ -36,6 +36,6 @@ public class SystemOverviewUpdateTask extends RhnJavaJob {
 
         // Queue one task for each system to be picked by ServerOverviewUpdateQueue
         SystemManager.listSystemIds().forEach(sid ->
-            TaskFactory.createTask(OrgFactory.getSatelliteOrg(), SystemsOverviewUpdateDriver.TASK_NAME, sid));
+            TaskFactory.queueTask(OrgFactory.getSatelliteOrg(), SystemsOverviewUpdateDriver.TASK_NAME, sid));
     }
 }
@@ -21,16 +21,10 @@ import com.redhat.rhn.common.db.datasource.SelectMode;
 import com.redhat.rhn.common.hibernate.HibernateFactory;
 import com.redhat.rhn.common.localization.LocalizationService;
 import com.redhat.rhn.domain.action.Action;
-import com.redhat.rhn.taskomatic.InvalidParamException;
-import com.redhat.rhn.taskomatic.NoSuchBunchTaskException;
-import com.redhat.rhn.taskomatic.TaskoXmlRpcHandler;
-import com.redhat.rhn.taskomatic.TaskomaticApi;
+import com.redhat.rhn.domain.action.ActionDispatchFactory;
 
 import com.suse.manager.utils.MailHelper;
 
-import org.apache.logging.log4j.LogManager;
-import org.apache.logging.log4j.Logger;
-
 import java.net.InetAddress;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -44,8 +38,6 @@ import java.util.Map;
  */
 public class TaskHelper {
 
-    private static final Logger LOG = LogManager.getLogger(TaskHelper.class);
-
     /**
      * private constructor
      */
@@ -134,15 +126,6 @@ public class TaskHelper {
             return;
         }
 
-        try {
-            Map<String, String> params = new HashMap<>();
-            params.put("action_id", Long.toString(action.getId()));
-            params.put("force_pkg_list_refresh", Boolean.toString(false));
-            new TaskoXmlRpcHandler().scheduleSingleSatBunchRun(TaskomaticApi.MINION_ACTION_BUNCH_LABEL,
-                    TaskomaticApi.MINION_ACTION_JOB_PREFIX + action.getId(), params, action.getEarliestAction());
-        }
-        catch (NoSuchBunchTaskException | InvalidParamException e) {
-            LOG.error("Could not schedule action: {}", action.getActionType(), e);
-        }
+        ActionDispatchFactory.queueActions(List.of(action), false);
     }
 }
@@ -15,22 +15,27 @@
 package com.redhat.rhn.taskomatic.task.errata;
 
 import com.redhat.rhn.common.conf.Config;
-import com.redhat.rhn.domain.task.Task;
 import com.redhat.rhn.domain.task.TaskFactory;
 import com.redhat.rhn.taskomatic.task.threaded.QueueDriver;
 import com.redhat.rhn.taskomatic.task.threaded.QueueWorker;
+import com.redhat.rhn.taskomatic.task.threaded.TaskQueueStatistics;
 
 import org.apache.logging.log4j.Logger;
 
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Collections;
 import java.util.List;
-import java.util.Set;
 
 /**
- * Driver for the threaded errata cache update queue
+ * Driver for the threaded errata cache update queue.
+ *
+ * Candidates are the names of the tasks to process, once per worker needed to drain them:
+ * each worker claims batches of tasks with that name until none is left.
  */
-public class ErrataCacheDriver implements QueueDriver<Task> {
+public class ErrataCacheDriver implements QueueDriver<String> {
+
+    private static final List<String> TASK_NAMES = List.of(ErrataCacheWorker.BY_CHANNEL,
+            ErrataCacheWorker.FOR_SERVER, ErrataCacheWorker.FOR_IMAGE);
 
     private Logger logger = null;
 
@@ -46,13 +51,19 @@ public class ErrataCacheDriver implements QueueDriver<Task> {
      * {@inheritDoc}
      */
     @Override
-    public List<Task> getCandidates() {
-        List<Task> tasks = TaskFactory.getTaskListByNameLike(ErrataCacheWorker.BY_CHANNEL);
-        tasks.addAll(consolidateTasks(
-                TaskFactory.getTaskListByNameLike(ErrataCacheWorker.FOR_SERVER)));
-        tasks.addAll(consolidateTasks(
-                TaskFactory.getTaskListByNameLike(ErrataCacheWorker.FOR_IMAGE)));
-        return tasks;
+    public List<String> getCandidates() {
+        for (String taskName : TASK_NAMES) {
+            TaskFactory.collapseDuplicateTasks(taskName);
+        }
+        TaskQueueStatistics.refresh();
+
+        List<String> candidates = new ArrayList<>();
+        for (String taskName : TASK_NAMES) {
+            long batches = (TaskQueueStatistics.getDepth(taskName) + getBatchSize(taskName) - 1) /
+                    getBatchSize(taskName);
+            candidates.addAll(Collections.nCopies((int) Math.min(batches, getMaxWorkers()), taskName));
+        }
+        return candidates;
     }
 
     /**
@@ -80,37 +91,32 @@ public class ErrataCacheDriver implements QueueDriver<Task> {
     }
 
     /**
-     * {@inheritDoc}
+     * Returns the maximum number of tasks processed in one transaction. Channel tasks
+     * regenerate the cache of all the subscribed systems, so they are processed one by one.
+     * @param taskName the task name
+     * @return the batch size
      */
-    @Override
-    public QueueWorker makeWorker(Task task) {
-        return new ErrataCacheWorker(task, logger);
+    public int getBatchSize(String taskName) {
+        if (ErrataCacheWorker.BY_CHANNEL.equals(taskName)) {
+            return 1;
+        }
+        return Config.get().getInt("taskomatic.errata_cache_batch_size", 100);
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public void initialize() {
-        // empty
+    public QueueWorker makeWorker(String taskName) {
+        return new ErrataCacheWorker(taskName, getBatchSize(taskName), logger);
     }
 
     /**
-     * Reduce a given list of tasks to a list with unique data fields. Data is either
-     * a system id or a channel id depending on the type of tasks given in.
-     *
-     * @param tasks list of {@link Task} objects
-     * @return consolidated list of tasks
+     * {@inheritDoc}
      */
-    private List<Task> consolidateTasks(List<Task> tasks) {
-        Set<Long> uniqueTaskData = new HashSet<>();
-        List<Task> consolidated = new ArrayList<>();
-        for (Task task : tasks) {
-            if (uniqueTaskData.add(task.getData())) {
-                consolidated.add(task);
-            }
-        }
-        return consolidated;
+    @Override
+    public void initialize() {
+        // empty
     }
 
     /**
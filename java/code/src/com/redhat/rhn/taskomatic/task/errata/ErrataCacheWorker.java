@@ -15,16 +15,20 @@
 package com.redhat.rhn.taskomatic.task.errata;
 
 import com.redhat.rhn.common.hibernate.HibernateFactory;
-import com.redhat.rhn.domain.task.Task;
 import com.redhat.rhn.domain.task.TaskFactory;
 import com.redhat.rhn.manager.errata.cache.UpdateErrataCacheCommand;
 import com.redhat.rhn.taskomatic.task.threaded.QueueWorker;
 import com.redhat.rhn.taskomatic.task.threaded.TaskQueue;
+import com.redhat.rhn.taskomatic.task.threaded.TaskQueueStatistics;
 
 import org.apache.logging.log4j.Logger;
 
+import java.util.List;
+
 /**
- * Performs errata cache recalc for a given server or channel
+ * Performs errata cache recalc for the queued servers, images or channels, one batch
+ * of tasks per transaction. When a batch fails its tasks are retried one per transaction
+ * and the failing ones are removed from the queue.
  */
 public class ErrataCacheWorker implements QueueWorker {
 
@@ -32,17 +36,20 @@ public class ErrataCacheWorker implements QueueWorker {
     public static final String FOR_SERVER = "update_server_errata_cache";
     public static final String FOR_IMAGE  = "update_image_errata_cache";
 
-    private Task task;
+    private String taskName;
+    private int batchSize;
     private Logger logger;
     private TaskQueue parentQueue;
 
     /**
      * Constructor
-     * @param taskIn the task to work on
+     * @param taskNameIn the name of the tasks to work on
+     * @param batchSizeIn maximum number of tasks to process in one transaction
      * @param parentLogger logger to use
      */
-    public ErrataCacheWorker(Task taskIn, Logger parentLogger) {
-        task = taskIn;
+    public ErrataCacheWorker(String taskNameIn, int batchSizeIn, Logger parentLogger) {
+        taskName = taskNameIn;
+        batchSize = batchSizeIn;
         logger = parentLogger;
     }
 
@@ -52,38 +59,29 @@ public class ErrataCacheWorker implements QueueWorker {
     @Override
     public void run() {
         try {
-            removeTask();
             parentQueue.workerStarting();
-            UpdateErrataCacheCommand uecc = new UpdateErrataCacheCommand();
-            if (ErrataCacheWorker.FOR_SERVER.equals(task.getName())) {
-                Long sid = task.getData();
-                if (logger.isDebugEnabled()) {
-                    logger.debug("Updating errata cache for sid [{}]", sid);
-                }
-                uecc.updateErrataCacheForServer(sid, false);
-                if (logger.isDebugEnabled()) {
-                    logger.debug("Finished errata cache for sid [{}]", sid);
-                }
-            }
-            else if (ErrataCacheWorker.FOR_IMAGE.equals(task.getName())) {
-                Long iid = task.getData();
-                if (logger.isDebugEnabled()) {
-                    logger.debug("Updating errata cache for iid [{}]", iid);
+            List<Long> ids = TaskFactory.claimTasks(taskName, batchSize);
+            while (!ids.isEmpty()) {
+                try {
+                    process(ids);
+                    HibernateFactory.commitTransaction();
                 }
-                uecc.updateErrataCacheForImage(iid, false);
-                if (logger.isDebugEnabled()) {
-                    logger.debug("Finished errata cache for iid [{}]", iid);
-                }
-            }
-            else if (ErrataCacheWorker.BY_CHANNEL.equals(task.getName())) {
-                Long cid = task.getData();
-                if (logger.isDebugEnabled()) {
-                    logger.debug("Updating errata cache for cid [{}]", cid);
-                }
-                uecc.updateErrataCacheForChannel(cid);
-                if (logger.isDebugEnabled()) {
-                    logger.debug("Finished errata cache for cid [{}]", cid);
+                catch (Exception e) {
+                    // The claim is rolled back too: retry the tasks one by one to find the failing ones
+                    HibernateFactory.rollbackTransaction();
+                    HibernateFactory.closeSession();
+                    if (ids.size() == 1) {
+                        dropTask(ids.get(0), e);
+                    }
+                    else {
+                        logger.warn("Unable to process a batch of {} {} tasks, processing them one by one",
+                                ids.size(), taskName, e);
+                        ids.forEach(this::processAlone);
+                    }
                 }
+                HibernateFactory.closeSession();
+                TaskQueueStatistics.recordProcessed(taskName, ids.size());
+                ids = TaskFactory.claimTasks(taskName, batchSize);
             }
             HibernateFactory.commitTransaction();
         }
@@ -97,6 +95,69 @@ public class ErrataCacheWorker implements QueueWorker {
         }
     }
 
+    /**
+     * Processes a single task in its own transaction, unless another worker claimed it meanwhile.
+     * A failing task is removed from the queue, so that it does not block the following ones.
+     */
+    private void processAlone(Long id) {
+        try {
+            if (TaskFactory.claimTask(taskName, id)) {
+                process(List.of(id));
+            }
+            HibernateFactory.commitTransaction();
+        }
+        catch (Exception e) {
+            HibernateFactory.rollbackTransaction();
+            HibernateFactory.closeSession();
+            dropTask(id, e);
+        }
+        finally {
+            HibernateFactory.closeSession();
+        }
+    }
+
+    private void dropTask(Long id, Exception cause) {
+        logger.error("Unable to update the errata cache for {} [{}], removing the task", taskName, id, cause);
+        TaskFactory.claimTask(taskName, id);
+        HibernateFactory.commitTransaction();
+    }
+
+    /**
+     * Updates the errata cache for the given ids in the current transaction, without
+     * handling errors.
+     * @param ids the server, image or channel ids, depending on the task name
+     */
+    protected void process(List<Long> ids) {
+        UpdateErrataCacheCommand uecc = new UpdateErrataCacheCommand();
+        if (ErrataCacheWorker.FOR_SERVER.equals(taskName)) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("Updating errata cache for sids {}", ids);
+            }
+            uecc.updateErrataCacheForServers(ids);
+            if (logger.isDebugEnabled()) {
+                logger.debug("Finished errata cache for sids {}", ids);
+            }
+        }
+        else if (ErrataCacheWorker.FOR_IMAGE.equals(taskName)) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("Updating errata cache for iids {}", ids);
+            }
+            uecc.updateErrataCacheForImages(ids);
+            if (logger.isDebugEnabled()) {
+                logger.debug("Finished errata cache for iids {}", ids);
+            }
+        }
+        else if (ErrataCacheWorker.BY_CHANNEL.equals(taskName)) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("Updating errata cache for cids {}", ids);
+            }
+            uecc.updateErrataCacheForChannels(ids);
+            if (logger.isDebugEnabled()) {
+                logger.debug("Finished errata cache for cids {}", ids);
+            }
+        }
+    }
+
     /**
      * Set the parent so we can tell it when we're done
      * @param queue the parent queue
@@ -105,11 +166,4 @@ public class ErrataCacheWorker implements QueueWorker {
     public void setParentQueue(TaskQueue queue) {
         parentQueue = queue;
     }
-
-    /**
-     * Remove the task related to this worker from the DB via mode query.
-     */
-    private void removeTask() {
-        TaskFactory.deleteByOrgNameDataPriority(task.getOrg(), task.getName(), task.getData(), task.getPriority());
-    }
 }
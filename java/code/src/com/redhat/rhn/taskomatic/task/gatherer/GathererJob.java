@@ -20,6 +20,7 @@ import com.redhat.rhn.domain.server.virtualhostmanager.VirtualHostManager;
 import com.redhat.rhn.domain.server.virtualhostmanager.VirtualHostManagerFactory;
 import com.redhat.rhn.taskomatic.task.RhnJavaJob;
 
+import com.suse.manager.gatherer.GathererResultHandler;
 import com.suse.manager.gatherer.GathererRunner;
 import com.suse.manager.gatherer.HostJson;
 
@@ -27,8 +28,12 @@ import org.apache.commons.lang3.StringUtils;
 import org.quartz.JobExecutionContext;
 
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 /**
  * Taskomatic job for running gatherer on all Virtual Host Managers and
@@ -70,25 +75,51 @@ public class GathererJob extends RhnJavaJob {
         log.debug("Running gatherer for {} Virtual Host Managers", managers.size());
 
         try {
-            Map<String, Map<String, HostJson>> results = new GathererRunner().run(managers);
-            if (results == null) {
-                return;
-            }
-            log.debug("Got {} Virtual Host Managers from gatherer", results.size());
+            Map<String, VirtualHostManager> managersByLabel = managers.stream()
+                    .collect(Collectors.toMap(VirtualHostManager::getLabel, m -> m, (m1, m2) -> m1,
+                            LinkedHashMap::new));
+            Set<String> processed = new HashSet<>();
+            boolean success = new GathererRunner().run(managers, new GathererResultHandler() {
+                private VirtualHostManagerProcessor processor;
 
-            for (VirtualHostManager manager : managers) {
-                String label = manager.getLabel();
+                @Override
+                public void startVirtualHostManager(String label) {
+                    VirtualHostManager manager = managersByLabel.get(label);
+                    if (manager == null) {
+                        return;
+                    }
+                    log.debug("Processing {}", label);
+                    processor = new VirtualHostManagerProcessor(manager);
+                    processor.startProcessing();
+                }
 
-                if (!results.containsKey(label)) {
-                    log.warn("Virtual Host Manager with label '{}' is not " +
-                            "contained in the results from gatherer - skipping it.",
-                            label);
-                    continue;
+                @Override
+                public void host(String hostLabel, HostJson host) {
+                    if (processor != null) {
+                        processor.processVirtualHost(hostLabel, host);
+                    }
                 }
-                log.debug("Processing {}", label);
-                new VirtualHostManagerProcessor(manager, results.get(label))
-                        .processMapping();
+
+                @Override
+                public void endVirtualHostManager(String label) {
+                    if (processor != null) {
+                        processor.finishProcessing();
+                        processed.add(label);
+                        processor = null;
+                    }
+                }
+            });
+            if (!success) {
+                // do not keep the partial results of a failed gatherer run
+                HibernateFactory.rollbackTransaction();
+                return;
             }
+            log.debug("Got {} Virtual Host Managers from gatherer", processed.size());
+
+            managersByLabel.keySet().stream()
+                    .filter(label -> !processed.contains(label))
+                    .forEach(label -> log.warn("Virtual Host Manager with label '{}' is not " +
+                            "contained in the results from gatherer - skipping it.", label));
         }
         catch (Throwable t) {
             log.error(t.getMessage(), t);
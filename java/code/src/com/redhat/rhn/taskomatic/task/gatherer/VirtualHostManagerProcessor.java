@@ -16,9 +16,11 @@
 package com.redhat.rhn.taskomatic.task.gatherer;
 
 import com.redhat.rhn.GlobalInstanceHolder;
+import com.redhat.rhn.common.hibernate.HibernateFactory;
 import com.redhat.rhn.domain.server.CPU;
 import com.redhat.rhn.domain.server.Server;
 import com.redhat.rhn.domain.server.ServerFactory;
+import com.redhat.rhn.domain.server.VirtualInstance;
 import com.redhat.rhn.domain.server.VirtualInstanceFactory;
 import com.redhat.rhn.domain.server.VirtualInstanceType;
 import com.redhat.rhn.domain.server.virtualhostmanager.VirtualHostManager;
@@ -36,9 +38,11 @@ import org.apache.logging.log4j.Logger;
 
 import java.security.SecureRandom;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 /**
  * Logic for processing Virtual Host Managers based on the gatherer output.
@@ -48,10 +52,14 @@ import java.util.Set;
  */
 public class VirtualHostManagerProcessor {
 
+    private static final int JDBC_BATCH_SIZE = 100;
+
     private final VirtualHostManager virtualHostManager;
     private final Map<String, HostJson> virtualHosts;
     private Set<Server> serversToDelete;
     private Set<VirtualHostManagerNodeInfo> nodesToDelete;
+    private Map<String, Server> foreignServers;
+    private Map<Long, VirtualInstance> hostVirtualInstances;
     private Logger log;
     private SystemEntitlementManager systemEntitlementManager = GlobalInstanceHolder.SYSTEM_ENTITLEMENT_MANAGER;
 
@@ -69,6 +77,19 @@ public class VirtualHostManagerProcessor {
         this.virtualHosts = virtualHostsIn;
         this.serversToDelete = new HashSet<>();
         this.nodesToDelete = new HashSet<>();
+        this.foreignServers = new HashMap<>();
+        this.hostVirtualInstances = new HashMap<>();
+    }
+
+    /**
+     * Instantiates a new virtual host manager processor which is fed the virtual hosts
+     * one at a time, as they are read from the gatherer output, via
+     * {@link #processVirtualHost(String, HostJson)}.
+     *
+     * @param managerIn the virtual host manager
+     */
+    public VirtualHostManagerProcessor(VirtualHostManager managerIn) {
+        this(managerIn, null);
     }
 
     /**
@@ -85,12 +106,34 @@ public class VirtualHostManagerProcessor {
                     virtualHostManager.getLabel());
             return;
         }
+        startProcessing();
+        virtualHosts.forEach(this::processVirtualHost);
+        finishProcessing();
+    }
+
+    /**
+     * Prepares the processing of the Virtual Hosts: loads, in bulk, the hosts and host
+     * virtual instances currently known for this Virtual Host Manager, so that each
+     * processed host can be reconciled in memory.
+     */
+    public void startProcessing() {
         serversToDelete.addAll(virtualHostManager.getServers());
         nodesToDelete.addAll(virtualHostManager.getNodes());
-        virtualHosts.forEach((key, value) -> {
-            log.debug("Processing host: {}", key);
-            processVirtualHost(key, value);
-        });
+
+        ServerFactory.listForeignSystemsByDigitalServerIdPrefix(buildServerFullDigitalId(""))
+                .forEach(server -> foreignServers.put(server.getDigitalServerId(), server));
+        hostVirtualInstances.putAll(VirtualInstanceFactory.getInstance().lookupHostVirtInstancesByHostIds(
+                foreignServers.values().stream().map(Server::getId).collect(Collectors.toList())));
+
+        // all the changes are flushed at commit time, let them be sent in JDBC batches
+        HibernateFactory.getSession().setJdbcBatchSize(JDBC_BATCH_SIZE);
+    }
+
+    /**
+     * Completes the processing of the Virtual Hosts: unlinks all the hosts and nodes
+     * of this Virtual Host Manager that were not processed.
+     */
+    public void finishProcessing() {
         serversToDelete.forEach(srv -> {
             log.debug("Removing link to virtual host: {}", srv.getName());
             virtualHostManager.removeServer(srv);
@@ -108,10 +151,13 @@ public class VirtualHostManagerProcessor {
      * - for Server, update mapping between this new Server and its VirtualInstance
      * - for each VM (guest) reported to be running on this host, update the mapping
      *
+     * Must be called between {@link #startProcessing()} and {@link #finishProcessing()}.
+     *
      * @param hostLabel name of the Server (corresponds to label of Virtual Host Manager)
      * @param host object containing the information about the host and its VMs
      */
-    private void processVirtualHost(String hostLabel, HostJson host) {
+    public void processVirtualHost(String hostLabel, HostJson host) {
+        log.debug("Processing host: {}", hostLabel);
         Server server = updateAndGetServer(hostLabel, host,
                 VirtualHostManagerFactory.KUBERNETES);
         if (server == null) {
@@ -134,7 +180,8 @@ public class VirtualHostManagerProcessor {
         }
 
         VirtualInstanceType virtType = extractVirtualInstanceType(host.getType());
-        VirtualInstanceManager.updateHostVirtualInstance(server, virtType);
+        VirtualInstanceManager.updateHostVirtualInstance(server, virtType,
+                hostVirtualInstances.get(server.getId()));
         VirtualInstanceManager.updateGuestsVirtualInstances(server, virtType,
                 host.getVms(), host.getOptionalVmData());
     }
@@ -196,13 +243,13 @@ public class VirtualHostManagerProcessor {
     private Server updateAndGetServer(String hostId,
                                       HostJson host,
                                       String skipCreateForType) {
-        Server server = ServerFactory.lookupForeignSystemByDigitalServerId(
-                buildServerFullDigitalId(host.getHostIdentifier()));
+        Server server = foreignServers.get(buildServerFullDigitalId(host.getHostIdentifier()));
         if (server == null) {
             if (skipCreateForType.equalsIgnoreCase(host.getType())) {
                 return null;
             }
             server = createNewServer(hostId, host);
+            foreignServers.put(server.getDigitalServerId(), server);
         }
         else {
             updateServerMiscFields(server, host);
@@ -16,24 +16,68 @@ package com.redhat.rhn.taskomatic.task.repomd;
 
 import com.redhat.rhn.common.util.StringUtil;
 
-import java.io.BufferedOutputStream;
+import org.apache.commons.io.output.CloseShieldOutputStream;
+import org.apache.commons.io.output.CountingOutputStream;
+
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.security.DigestOutputStream;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
-import java.util.zip.GZIPOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 
 /**
+ * Compresses the written data, gzip unless another {@link RepomdCompression} is given, and
+ * computes the checksums of both the compressed and the uncompressed data.
  *
+ * The output can be split into several compressed members with {@link #finishMember()},
+ * and members compressed in advance can be copied as they are with {@link #appendMember(byte[])}.
  *
+ * When created with a background worker, the written data is collected in chunks which
+ * are compressed, digested and written by a dedicated thread, in order, while the caller
+ * goes on producing data. Errors of the worker are reported by the following call.
  */
 public class CompressingDigestOutputWriter extends OutputStream {
 
-    private DigestOutputStream uncompressedDigestStream;
-    private DigestOutputStream compressedDigestStream;
+    private static final int CHUNK_SIZE = 64 * 1024;
+    private static final int QUEUE_SIZE = 16;
+
+    /**
+     * An operation on the compressed output, run by the worker if there is one
+     */
+    @FunctionalInterface
+    private interface Operation {
+        void run() throws IOException;
+    }
+
+    private static final Operation STOP = () -> { };
+
+    private final RepomdCompression compression;
+    private final int level;
+
+    // only used by the thread running the operations
+    private final MessageDigest uncompressedDigest;
+    private final DigestOutputStream compressedDigestStream;
+    private final CountingOutputStream countingStream;
     private OutputStream compressedStream;
-    private BufferedOutputStream bufferedStream;
+    private long memberStart;
+    private final List<Long> memberLengths = new ArrayList<>();
+
+    // only used by the thread writing the data
+    private byte[] chunk = new byte[CHUNK_SIZE];
+    private int chunkLength;
+    private boolean memberOpen;
+    private boolean closed;
+
+    private final BlockingQueue<Operation> operations;
+    private final Thread worker;
+    private volatile IOException failure;
 
     /**
      *
@@ -44,12 +88,134 @@ public class CompressingDigestOutputWriter extends OutputStream {
      */
     public CompressingDigestOutputWriter(OutputStream stream, String checksumAlgo)
                                         throws NoSuchAlgorithmException, IOException {
-            compressedDigestStream = new DigestOutputStream(stream,
-                    MessageDigest.getInstance(checksumAlgo));
-            compressedStream = new GZIPOutputStream(compressedDigestStream);
-            uncompressedDigestStream = new DigestOutputStream(compressedStream,
-                    MessageDigest.getInstance(checksumAlgo));
-            bufferedStream = new BufferedOutputStream(uncompressedDigestStream);
+        this(stream, checksumAlgo, false);
+    }
+
+    /**
+     *
+     * @param stream The stream to compress
+     * @param checksumAlgo checksum algorithm
+     * @param backgroundWorker true to compress, digest and write in a dedicated thread
+     * @throws NoSuchAlgorithmException nosuchalgorithmexception
+     * @throws IOException ioexception
+     */
+    public CompressingDigestOutputWriter(OutputStream stream, String checksumAlgo, boolean backgroundWorker)
+                                        throws NoSuchAlgorithmException, IOException {
+        this(stream, checksumAlgo, RepomdCompression.GZIP, -1, backgroundWorker);
+    }
+
+    /**
+     *
+     * @param stream The stream to compress
+     * @param checksumAlgo checksum algorithm
+     * @param compressionIn the compression format
+     * @param levelIn the compression level, negative for the default of the format
+     * @param backgroundWorker true to compress, digest and write in a dedicated thread
+     * @throws NoSuchAlgorithmException nosuchalgorithmexception
+     * @throws IOException ioexception
+     */
+    public CompressingDigestOutputWriter(OutputStream stream, String checksumAlgo, RepomdCompression compressionIn,
+            int levelIn, boolean backgroundWorker) throws NoSuchAlgorithmException, IOException {
+        compression = compressionIn;
+        level = levelIn;
+        countingStream = new CountingOutputStream(stream);
+        compressedDigestStream = new DigestOutputStream(countingStream,
+                MessageDigest.getInstance(checksumAlgo));
+        uncompressedDigest = MessageDigest.getInstance(checksumAlgo);
+        if (backgroundWorker) {
+            operations = new ArrayBlockingQueue<>(QUEUE_SIZE);
+            worker = new Thread(this::runOperations, "repodata-compression");
+            worker.setDaemon(true);
+            worker.start();
+        }
+        else {
+            operations = null;
+            worker = null;
+        }
+    }
+
+    private void runOperations() {
+        try {
+            for (Operation operation = operations.take(); operation != STOP; operation = operations.take()) {
+                // after a failure, the remaining operations are just drained
+                if (failure == null) {
+                    try {
+                        operation.run();
+                    }
+                    catch (IOException | RuntimeException e) {
+                        failure = e instanceof IOException ? (IOException) e : new IOException(e);
+                    }
+                }
+            }
+        }
+        catch (InterruptedException e) {
+            failure = new InterruptedIOException("Compression interrupted");
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void submit(Operation operation) throws IOException {
+        checkFailure();
+        if (worker == null) {
+            operation.run();
+            return;
+        }
+        try {
+            operations.put(operation);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for compression");
+        }
+    }
+
+    private void checkFailure() throws IOException {
+        if (failure != null) {
+            throw new IOException("Compression failed", failure);
+        }
+    }
+
+    /**
+     * Members are started lazily, so that no empty member is written when
+     * nothing follows the last finished one.
+     */
+    private OutputStream getCompressedStream() throws IOException {
+        if (compressedStream == null) {
+            memberStart = countingStream.getByteCount();
+            // closing the member must not close the file
+            compressedStream = compression.compress(new CloseShieldOutputStream(compressedDigestStream), level);
+        }
+        return compressedStream;
+    }
+
+    private void compress(byte[] data, int length) throws IOException {
+        uncompressedDigest.update(data, 0, length);
+        getCompressedStream().write(data, 0, length);
+    }
+
+    private void endMember() throws IOException {
+        long length = 0;
+        if (compressedStream != null) {
+            compressedStream.close();
+            compressedStream = null;
+            length = countingStream.getByteCount() - memberStart;
+        }
+        memberLengths.add(length);
+    }
+
+    /**
+     * Hands the collected data over for compression
+     */
+    private void submitChunk() throws IOException {
+        if (chunkLength == 0) {
+            return;
+        }
+        byte[] data = chunk;
+        int length = chunkLength;
+        submit(() -> compress(data, length));
+        // the worker owns the submitted chunk now
+        chunk = worker == null ? chunk : new byte[CHUNK_SIZE];
+        chunkLength = 0;
     }
 
     /**
@@ -59,7 +225,11 @@ public class CompressingDigestOutputWriter extends OutputStream {
      */
     @Override
     public void write(int arg0) throws IOException {
-        bufferedStream.write(arg0);
+        memberOpen = true;
+        if (chunkLength == CHUNK_SIZE) {
+            submitChunk();
+        }
+        chunk[chunkLength++] = (byte) arg0;
     }
 
     /**
@@ -69,16 +239,85 @@ public class CompressingDigestOutputWriter extends OutputStream {
      */
     @Override
     public void write(byte[] b) throws IOException {
-        bufferedStream.write(b);
+        write(b, 0, b.length);
+    }
+
+    /**
+     * write part of a byte array
+     * @param b byte
+     * @param off offset of the first byte to write
+     * @param len number of bytes to write
+     * @throws IOException ioexception
+     */
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        memberOpen |= len > 0;
+        while (len > 0) {
+            if (chunkLength == CHUNK_SIZE) {
+                submitChunk();
+            }
+            int copied = Math.min(len, CHUNK_SIZE - chunkLength);
+            System.arraycopy(b, off, chunk, chunkLength, copied);
+            chunkLength += copied;
+            off += copied;
+            len -= copied;
+        }
     }
 
     /**
-     * flush stream
+     * Hands the data written so far over for compression. With a background worker
+     * this does not wait for the data to be compressed.
      * @throws IOException ioexception
      */
     @Override
     public void flush() throws IOException {
-        bufferedStream.flush();
+        submitChunk();
+    }
+
+    /**
+     * Completes the current compressed member, data written afterwards goes to a new one.
+     * The compressed length of the member, 0 if no data was written since the last
+     * member was completed, is added to {@link #getMemberLengths()}.
+     * @throws IOException ioexception
+     */
+    public void finishMember() throws IOException {
+        submitChunk();
+        submit(this::endMember);
+        memberOpen = false;
+    }
+
+    /**
+     * Copies a complete compressed member as it is. The member is only decompressed to compute
+     * the uncompressed checksum. Its length is added to {@link #getMemberLengths()}.
+     * @param member the compressed member, in the format of this writer
+     * @throws IOException ioexception
+     * @throws IllegalStateException if the current member was not completed
+     */
+    public void appendMember(byte[] member) throws IOException {
+        if (memberOpen) {
+            throw new IllegalStateException("The current member must be completed first");
+        }
+        submit(() -> {
+            compressedDigestStream.write(member);
+            memberLengths.add((long) member.length);
+            try (InputStream in = compression.decompress(new ByteArrayInputStream(member))) {
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    uncompressedDigest.update(buffer, 0, read);
+                }
+            }
+        });
+    }
+
+    /**
+     * Returns the compressed lengths of the members completed with {@link #finishMember()}
+     * or copied with {@link #appendMember(byte[])}, in order. The last member, completed by
+     * {@link #close()}, is included. Only available after the stream is closed.
+     * @return the lengths of the members
+     */
+    public List<Long> getMemberLengths() {
+        return memberLengths;
     }
 
     /**
@@ -87,7 +326,42 @@ public class CompressingDigestOutputWriter extends OutputStream {
      */
     @Override
     public void close() throws IOException {
-        bufferedStream.close();
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            submitChunk();
+            submit(() -> {
+                // an empty compressed file is not valid, so always write at least one member
+                if (compressedStream != null || countingStream.getByteCount() == 0) {
+                    getCompressedStream();
+                    endMember();
+                }
+                compressedDigestStream.close();
+            });
+        }
+        finally {
+            stopWorker();
+            if (failure != null) {
+                countingStream.close();
+            }
+        }
+        checkFailure();
+    }
+
+    private void stopWorker() throws IOException {
+        if (worker == null) {
+            return;
+        }
+        try {
+            operations.put(STOP);
+            worker.join();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for compression");
+        }
     }
 
     /**
@@ -95,8 +369,7 @@ public class CompressingDigestOutputWriter extends OutputStream {
      * @return Returns the HexString of the Uncompressed digest stream
      */
     public String getUncompressedChecksum() {
-        return StringUtil.getHexString(uncompressedDigestStream
-                .getMessageDigest().digest());
+        return StringUtil.getHexString(uncompressedDigest.digest());
     }
 
     /**
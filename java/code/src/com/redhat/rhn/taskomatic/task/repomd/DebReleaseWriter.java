@@ -37,6 +37,7 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Optional;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Generates the Release file for Debian repos.
@@ -81,8 +82,11 @@ public class DebReleaseWriter {
             writer.println("Date: " + RFC822_DATE_FORMAT.format(ZonedDateTime.now()));
             writer.println("Description: " + Optional.ofNullable(channel.getDescription()).orElse(""));
 
-            List<File> metadataFiles = Arrays.asList("Packages", "Packages.gz")
-                    .stream().map(name -> new File(pathPrefix + name))
+            // the uncompressed file and all its compressed variants
+            List<File> metadataFiles = Stream.concat(Stream.of(""),
+                            Arrays.stream(RepomdCompression.values()).map(RepomdCompression::getExtension))
+                    .map(extension -> new File(pathPrefix + "Packages" + extension))
+                    .filter(file -> file.getName().equals("Packages") || file.isFile())
                     .collect(Collectors.toList());
 
             writer.println("MD5Sum:");
@@ -29,12 +29,15 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
-import java.util.zip.GZIPOutputStream;
 
 /**
 *
@@ -132,12 +135,23 @@ public class DebRepositoryWriter extends RepositoryWriter {
             return;
         }
 
-        try {
-            gzipCompress(packagesFile);
-        }
-        catch (IOException e) {
-            log.error("Failed to create Packages.gz {}", e.toString());
-            return;
+        Set<RepomdCompression> formats = EnumSet.noneOf(RepomdCompression.class);
+        ConfigDefaults.get().getTaskoDebMetadataCompression()
+                .forEach(label -> formats.add(RepomdCompression.lookup(label)));
+        for (RepomdCompression compression : RepomdCompression.values()) {
+            File compressedFile = new File(packagesFile + compression.getExtension());
+            if (!formats.contains(compression)) {
+                // do not list a stale file in the Release file
+                compressedFile.delete();
+                continue;
+            }
+            try {
+                compress(packagesFile, compression);
+            }
+            catch (IOException e) {
+                log.error("Failed to create {} {}", compressedFile.getName(), e.toString());
+                return;
+            }
         }
 
         DebReleaseWriter releaseWriter = new DebReleaseWriter(channel, prefix);
@@ -177,23 +191,21 @@ public class DebRepositoryWriter extends RepositoryWriter {
      * @throws IOException io error
      */
     public void gzipCompress(String filename) throws IOException {
-        // Create the GZIP output stream
-        String outFilename = filename + ".gz";
-        try (GZIPOutputStream outGz = new GZIPOutputStream(new FileOutputStream(
-                outFilename, false))) {
-
-            // Open the input file
-            try (FileInputStream in = new FileInputStream(filename)) {
-                // Transfer bytes from the input file to the GZIP output stream
-                byte[] buf = new byte[1024];
-                int len;
-                while ((len = in.read(buf)) > 0) {
-                    outGz.write(buf, 0, len);
-                }
-            }
+        compress(filename, RepomdCompression.GZIP);
+    }
 
-            // Complete the GZIP file
-            outGz.finish();
+    /**
+     * Compresses a file next to the original one, adding the extension of the format
+     * @param filename the filename to compress
+     * @param compression the compression format
+     * @throws IOException io error
+     */
+    public void compress(String filename, RepomdCompression compression) throws IOException {
+        String outFilename = filename + compression.getExtension();
+        try (OutputStream out = compression.compress(new FileOutputStream(outFilename, false),
+                compression.getLevel());
+             InputStream in = new FileInputStream(filename)) {
+            in.transferTo(out);
         }
     }
 
@@ -0,0 +1,191 @@
+/*
+ * Copyright (c) 2023 SUSE LLC
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.taskomatic.task.repomd;
+
+import com.redhat.rhn.common.conf.ConfigDefaults;
+
+import org.apache.commons.compress.compressors.xz.XZCompressorInputStream;
+import org.apache.commons.compress.compressors.xz.XZCompressorOutputStream;
+import org.apache.commons.compress.compressors.xz.XZUtils;
+import org.apache.commons.compress.compressors.zstandard.ZstdCompressorInputStream;
+import org.apache.commons.compress.compressors.zstandard.ZstdCompressorOutputStream;
+import org.apache.commons.compress.compressors.zstandard.ZstdUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compression formats of the channel metadata files.
+ *
+ * xz and zstd need the optional xz-java and zstd-jni libraries at runtime, if they are
+ * missing gzip is used instead.
+ */
+public enum RepomdCompression {
+
+    GZIP("gzip", ".gz", true) {
+        @Override
+        public OutputStream compress(OutputStream out, int level) throws IOException {
+            return new GZIPOutputStream(out, BUFFER_SIZE) {
+                {
+                    def.setLevel(level);
+                }
+            };
+        }
+
+        @Override
+        public InputStream decompress(InputStream in) throws IOException {
+            return new GZIPInputStream(in);
+        }
+    },
+
+    XZ("xz", ".xz", false) {
+        @Override
+        public OutputStream compress(OutputStream out, int level) throws IOException {
+            return level < 0 ? new XZCompressorOutputStream(out) : new XZCompressorOutputStream(out, level);
+        }
+
+        @Override
+        public InputStream decompress(InputStream in) throws IOException {
+            return new XZCompressorInputStream(in);
+        }
+
+        @Override
+        public boolean isAvailable() {
+            return XZUtils.isXZCompressionAvailable();
+        }
+    },
+
+    ZSTD("zstd", ".zst", true) {
+        @Override
+        public OutputStream compress(OutputStream out, int level) throws IOException {
+            return level < 0 ? new ZstdCompressorOutputStream(out) : new ZstdCompressorOutputStream(out, level);
+        }
+
+        @Override
+        public InputStream decompress(InputStream in) throws IOException {
+            return new ZstdCompressorInputStream(in);
+        }
+
+        @Override
+        public boolean isAvailable() {
+            return ZstdUtils.isZstdCompressionAvailable();
+        }
+    };
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static Logger log = LogManager.getLogger(RepomdCompression.class);
+
+    private final String label;
+    private final String extension;
+    private final boolean concatenable;
+
+    RepomdCompression(String labelIn, String extensionIn, boolean concatenableIn) {
+        label = labelIn;
+        extension = extensionIn;
+        concatenable = concatenableIn;
+    }
+
+    /**
+     * Opens a compressing stream. Closing it completes the compressed data and closes
+     * the underlying stream.
+     * @param out the stream receiving the compressed data
+     * @param level the compression level, negative for the default of the format
+     * @return the compressing stream
+     * @throws IOException if the stream cannot be opened
+     */
+    public abstract OutputStream compress(OutputStream out, int level) throws IOException;
+
+    /**
+     * Opens a decompressing stream
+     * @param in the compressed data
+     * @return the decompressing stream
+     * @throws IOException if the stream cannot be opened
+     */
+    public abstract InputStream decompress(InputStream in) throws IOException;
+
+    /**
+     * @return true if the libraries needed by the format are available
+     */
+    public boolean isAvailable() {
+        return true;
+    }
+
+    /**
+     * @return the label of the format, as used in the configuration
+     */
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * @return the file name extension, including the dot
+     */
+    public String getExtension() {
+        return extension;
+    }
+
+    /**
+     * Concatenated compressed streams form a valid file which is read as the concatenation
+     * of the uncompressed data by all clients. Incremental metadata generation relies on it.
+     * @return true if compressed streams can be concatenated
+     */
+    public boolean isConcatenable() {
+        return concatenable;
+    }
+
+    /**
+     * @return the configured compression level, negative for the default of the format
+     */
+    public int getLevel() {
+        return ConfigDefaults.get().getTaskoRepodataCompressionLevel(label);
+    }
+
+    /**
+     * Finds a format by label
+     * @param label the label of the format
+     * @return the format, empty if unknown
+     */
+    public static Optional<RepomdCompression> byLabel(String label) {
+        return Arrays.stream(values())
+                .filter(c -> c.label.equalsIgnoreCase(label.trim()))
+                .findFirst();
+    }
+
+    /**
+     * Finds a format by label, falling back to gzip if it is unknown or not available
+     * @param label the label of the format
+     * @return the format
+     */
+    public static RepomdCompression lookup(String label) {
+        Optional<RepomdCompression> compression = byLabel(label);
+        if (compression.isEmpty()) {
+            log.warn("Unknown metadata compression '{}', using gzip", label);
+            return GZIP;
+        }
+        if (!compression.get().isAvailable()) {
+            log.warn("Metadata compression '{}' is not available, using gzip", label);
+            return GZIP;
+        }
+        return compression.get();
+    }
+}
@@ -37,6 +37,7 @@ public class RepomdIndexWriter {
     private RepomdIndexData group;
     private RepomdIndexData modules;
     private RepomdIndexData products;
+    private RepomdCompression compression;
 
     /**
      *
@@ -49,12 +50,13 @@ public class RepomdIndexWriter {
      * @param groupIn group data
      * @param modulesIn modules data
      * @param productsIn products data
+     * @param compressionIn compression of the xml files
      */
     public RepomdIndexWriter(Writer writerIn, RepomdIndexData primaryIn,
             RepomdIndexData filelistsIn, RepomdIndexData otherIn,
             RepomdIndexData susedataDataIn, RepomdIndexData updateinfoIn,
             RepomdIndexData groupIn, RepomdIndexData modulesIn,
-            RepomdIndexData productsIn) {
+            RepomdIndexData productsIn, RepomdCompression compressionIn) {
 
         this.primary = primaryIn;
         this.filelists = filelistsIn;
@@ -64,6 +66,7 @@ public class RepomdIndexWriter {
         this.modules = modulesIn;
         this.products = productsIn;
         this.susedata = susedataDataIn;
+        this.compression = compressionIn;
 
         OutputFormat of = new OutputFormat();
 
@@ -126,7 +129,7 @@ public class RepomdIndexWriter {
         SimpleAttributesImpl attr = new SimpleAttributesImpl();
         attr.addAttribute("type", type);
 
-        String location = type + ".xml.gz";
+        String location = type + ".xml" + compression.getExtension();
         // special case for comps file
         if (type.equals("group")) {
             location = "comps.xml";
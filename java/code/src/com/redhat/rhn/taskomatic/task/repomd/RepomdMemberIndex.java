@@ -0,0 +1,190 @@
+/*
+ * Copyright (c) 2023 SUSE LLC
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.taskomatic.task.repomd;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Position of the gzip member of every package in the package metadata files of a
+ * channel. Members of packages which stay in the channel are copied from the previous
+ * files when the metadata is regenerated incrementally.
+ */
+public class RepomdMemberIndex {
+
+    private static Logger log = LogManager.getLogger(RepomdMemberIndex.class);
+
+    /**
+     * Package metadata files split in members
+     */
+    public enum Metadata {
+        PRIMARY,
+        FILELISTS,
+        OTHER,
+        SUSEDATA
+    }
+
+    private final String checksumType;
+    private final Map<Metadata, String> files = new EnumMap<>(Metadata.class);
+    // offset and length of the member in each file, in Metadata order; length 0 if none
+    private final Map<Long, long[]> members = new LinkedHashMap<>();
+
+    /**
+     * Standard constructor
+     * @param checksumTypeIn the checksum type of the channel metadata
+     */
+    public RepomdMemberIndex(String checksumTypeIn) {
+        checksumType = checksumTypeIn;
+    }
+
+    /**
+     * @return the checksum type of the channel metadata
+     */
+    public String getChecksumType() {
+        return checksumType;
+    }
+
+    /**
+     * @param type the metadata type
+     * @param fileName name of the file containing the members of that type
+     */
+    public void setFile(Metadata type, String fileName) {
+        files.put(type, fileName);
+    }
+
+    /**
+     * @param type the metadata type
+     * @return name of the file containing the members of that type
+     */
+    public String getFile(Metadata type) {
+        return files.get(type);
+    }
+
+    /**
+     * Records the position of the member of a package
+     * @param type the metadata type
+     * @param packageId the package id
+     * @param offset offset of the member in the compressed file
+     * @param length length of the member
+     */
+    public void addMember(Metadata type, Long packageId, long offset, long length) {
+        long[] positions = members.computeIfAbsent(packageId, id -> new long[Metadata.values().length * 2]);
+        positions[type.ordinal() * 2] = offset;
+        positions[type.ordinal() * 2 + 1] = length;
+    }
+
+    /**
+     * @param type the metadata type
+     * @param packageId the package id
+     * @return the offset and length of the member of the package, empty if the package has none
+     */
+    public Optional<long[]> getMember(Metadata type, Long packageId) {
+        long[] positions = members.get(packageId);
+        if (positions == null || positions[type.ordinal() * 2 + 1] == 0) {
+            return Optional.empty();
+        }
+        return Optional.of(new long[] {positions[type.ordinal() * 2], positions[type.ordinal() * 2 + 1]});
+    }
+
+    /**
+     * @return the ids of the indexed packages, in the order of their members
+     */
+    public Set<Long> getPackageIds() {
+        return members.keySet();
+    }
+
+    /**
+     * Checks whether the members can be copied to metadata with the given checksum type
+     * and compression
+     * @param checksumTypeIn the checksum type of the new metadata
+     * @param compression the compression of the new metadata
+     * @param directory the directory containing the files
+     * @return true if the checksum type and compression match and all the files exist
+     */
+    public boolean isUsable(String checksumTypeIn, RepomdCompression compression, String directory) {
+        return checksumType.equals(checksumTypeIn) && files.size() == Metadata.values().length &&
+                files.values().stream()
+                        .allMatch(f -> f.endsWith(compression.getExtension()) && new File(directory, f).isFile());
+    }
+
+    /**
+     * Writes the index to a file
+     * @param file the file
+     * @throws IOException if the file cannot be written
+     */
+    public void save(File file) throws IOException {
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file))) {
+            writer.write("checksum " + checksumType);
+            writer.newLine();
+            for (Map.Entry<Metadata, String> entry : files.entrySet()) {
+                writer.write("file " + entry.getKey() + " " + entry.getValue());
+                writer.newLine();
+            }
+            for (Map.Entry<Long, long[]> entry : members.entrySet()) {
+                writer.write(entry.getKey().toString());
+                for (long position : entry.getValue()) {
+                    writer.write(" " + position);
+                }
+                writer.newLine();
+            }
+        }
+    }
+
+    /**
+     * Reads an index written by {@link #save(File)}
+     * @param file the file
+     * @return the index, empty if the file does not exist or cannot be parsed
+     */
+    public static Optional<RepomdMemberIndex> load(File file) {
+        if (!file.isFile()) {
+            return Optional.empty();
+        }
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String[] checksum = reader.readLine().split(" ");
+            RepomdMemberIndex index = new RepomdMemberIndex(checksum[1]);
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split(" ");
+                if (fields[0].equals("file")) {
+                    index.setFile(Metadata.valueOf(fields[1]), fields[2]);
+                }
+                else {
+                    long[] positions = new long[Metadata.values().length * 2];
+                    for (int i = 0; i < positions.length; i++) {
+                        positions[i] = Long.parseLong(fields[i + 1]);
+                    }
+                    index.members.put(Long.valueOf(fields[0]), positions);
+                }
+            }
+            return Optional.of(index);
+        }
+        catch (IOException | RuntimeException e) {
+            log.warn("Ignoring unreadable repodata member index {}", file, e);
+            return Optional.empty();
+        }
+    }
+}
@@ -36,6 +36,7 @@ import java.io.Writer;
 public abstract class RepomdWriter {
 
     protected SimpleContentHandler handler;
+    private XMLSerializer serializer;
 
     private static final String CONTROL_CHARS;
     private static final String CONTROL_CHARS_REPLACEMENT;
@@ -58,8 +59,6 @@ public abstract class RepomdWriter {
 
         OutputFormat of = new OutputFormat();
         of.setPreserveSpace(true);
-        XMLSerializer serializer = null;
-
         if (shouldEscape) {
             // XMLSerializer used to escape chars like < >
             serializer = new XMLSerializer(writer, of);
@@ -85,6 +84,23 @@ public abstract class RepomdWriter {
     }
 
 
+    /**
+     * Writes out everything serialized so far, so that the next data starts at a
+     * package boundary in the output. A pending start tag is closed first.
+     */
+    public void flush() {
+        if (!(serializer instanceof UnescapingXmlSerializer)) {
+            throw new RepomdRuntimeException("Only unescaped output can be flushed");
+        }
+        try {
+            handler.addCharacters("");
+            ((UnescapingXmlSerializer) serializer).flush();
+        }
+        catch (SAXException | IOException e) {
+            throw new RepomdRuntimeException(e);
+        }
+    }
+
     protected SimpleContentHandler getTemporaryHandler(OutputStream st) {
         OutputFormat of = new OutputFormat();
         of.setPreserveSpace(true);
@@ -29,6 +29,7 @@ import com.redhat.rhn.manager.rhnpackage.PackageManager;
 import com.redhat.rhn.manager.satellite.Executor;
 import com.redhat.rhn.manager.satellite.SystemCommandExecutor;
 import com.redhat.rhn.manager.task.TaskManager;
+import com.redhat.rhn.taskomatic.task.repomd.RepomdMemberIndex.Metadata;
 
 import org.apache.commons.io.FileUtils;
 
@@ -40,6 +41,7 @@ import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.security.DigestInputStream;
@@ -51,7 +53,13 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 /**
  *
@@ -59,16 +67,19 @@ import java.util.List;
  */
 public class RpmRepositoryWriter extends RepositoryWriter {
 
-    private static final String PRIMARY_FILE = "primary.xml.gz.new";
-    private static final String FILELISTS_FILE = "filelists.xml.gz.new";
-    private static final String OTHER_FILE = "other.xml.gz.new";
+    private static final String PRIMARY_FILE = "primary.xml";
+    private static final String FILELISTS_FILE = "filelists.xml";
+    private static final String OTHER_FILE = "other.xml";
     private static final String REPOMD_FILE = "repomd.xml.new";
-    private static final String UPDATEINFO_FILE = "updateinfo.xml.gz.new";
+    private static final String UPDATEINFO_FILE = "updateinfo.xml";
     private static final String PRODUCTS_FILE = "products.xml";
-    private static final String SUSEDATA_FILE = "susedata.xml.gz.new";
+    private static final String SUSEDATA_FILE = "susedata.xml";
+    private static final String NEW_SUFFIX = ".new";
     private static final String NOREPO_FILE = "noyumrepo.txt";
     private static final String SOLV_FILE = "solv.new";
     private static final String REPO2SOLV = "/usr/bin/repo2solv";
+    private static final String MEMBER_INDEX_FILE = ".members";
+    private static final String MEMBER_INDEX_FILE_NEW = ".members.new";
 
     private static final String GROUP = "groups";
     private static final String MODULES = "modules";
@@ -148,6 +159,92 @@ public class RpmRepositoryWriter extends RepositoryWriter {
         }
     }
 
+    /**
+     * Splits the package metadata files in one gzip member per package, and builds the
+     * {@link RepomdMemberIndex} of their positions once the files are complete
+     */
+    private static class MemberRecorder {
+        private final Map<Metadata, RepomdWriter> writers;
+        private final Map<Metadata, CompressingDigestOutputWriter> files;
+        // package of each member of the files, null for the header
+        private final Map<Metadata, List<Long>> memberPackages = new EnumMap<>(Metadata.class);
+
+        private MemberRecorder(Map<Metadata, RepomdWriter> writersIn,
+                Map<Metadata, CompressingDigestOutputWriter> filesIn) {
+            writers = writersIn;
+            files = filesIn;
+            for (Metadata type : Metadata.values()) {
+                memberPackages.put(type, new ArrayList<>());
+            }
+        }
+
+        /**
+         * Ends the members containing the beginning of the files
+         */
+        private void finishHeader() {
+            finishMembers(null);
+        }
+
+        /**
+         * Ends the members containing the metadata of a package added to the writers
+         * @param packageId the package id
+         */
+        private void finishPackage(Long packageId) {
+            finishMembers(packageId);
+        }
+
+        /**
+         * Copies a member of a previous metadata file
+         * @param type the metadata type
+         * @param packageId the package id
+         * @param member the compressed member
+         */
+        private void copyMember(Metadata type, Long packageId, byte[] member) {
+            try {
+                files.get(type).appendMember(member);
+            }
+            catch (IOException e) {
+                throw new RepomdRuntimeException(e);
+            }
+            memberPackages.get(type).add(packageId);
+        }
+
+        private void finishMembers(Long packageId) {
+            for (Metadata type : Metadata.values()) {
+                writers.get(type).flush();
+                try {
+                    files.get(type).finishMember();
+                }
+                catch (IOException e) {
+                    throw new RepomdRuntimeException(e);
+                }
+                memberPackages.get(type).add(packageId);
+            }
+        }
+
+        /**
+         * Builds the index from the lengths of the members, the files must be closed
+         * @param checksumType the checksum type of the metadata
+         * @return the index
+         */
+        private RepomdMemberIndex buildIndex(String checksumType) {
+            RepomdMemberIndex index = new RepomdMemberIndex(checksumType);
+            for (Metadata type : Metadata.values()) {
+                List<Long> lengths = files.get(type).getMemberLengths();
+                List<Long> packageIds = memberPackages.get(type);
+                long offset = 0;
+                for (int i = 0; i < packageIds.size(); i++) {
+                    // packages without susedata do not produce any member
+                    if (packageIds.get(i) != null && lengths.get(i) > 0) {
+                        index.addMember(type, packageIds.get(i), offset, lengths.get(i));
+                    }
+                    offset += lengths.get(i);
+                }
+            }
+            return index;
+        }
+    }
+
     /**
      * Constructor takes in pathprefix and mountpoint
      * @param pathPrefixIn prefix to package path
@@ -252,22 +349,33 @@ public class RpmRepositoryWriter extends RepositoryWriter {
             checksumLabel = "sha";
         }
 
-        log.info("Generating new repository metadata for channel '{}'({}) {} packages, {} errata", channel.getLabel(),
-                checksumType, channel.getPackageCount(), channel.getErrataCount());
+        RepomdCompression compression = RepomdCompression.lookup(
+                ConfigDefaults.get().getTaskoChannelRepodataCompression());
+        int level = compression.getLevel();
+        String primaryName = PRIMARY_FILE + compression.getExtension();
+        String filelistsName = FILELISTS_FILE + compression.getExtension();
+        String otherName = OTHER_FILE + compression.getExtension();
+        String susedataName = SUSEDATA_FILE + compression.getExtension();
+
+        log.info("Generating new repository metadata for channel '{}'({}, {}) {} packages, {} errata",
+                channel.getLabel(), checksumType, compression.getLabel(), channel.getPackageCount(),
+                channel.getErrataCount());
 
         CompressingDigestOutputWriter primaryFile, filelistsFile, otherFile, susedataFile;
 
         try {
             primaryFile = new CompressingDigestOutputWriter(
-                    new FileOutputStream(prefix + PRIMARY_FILE),
-                    checksumAlgo);
+                    new FileOutputStream(prefix + primaryName + NEW_SUFFIX),
+                    checksumAlgo, compression, level, true);
             filelistsFile = new CompressingDigestOutputWriter(
-                    new FileOutputStream(prefix + FILELISTS_FILE),
-                    checksumAlgo);
+                    new FileOutputStream(prefix + filelistsName + NEW_SUFFIX),
+                    checksumAlgo, compression, level, true);
             otherFile = new CompressingDigestOutputWriter(
-                    new FileOutputStream(prefix + OTHER_FILE), checksumAlgo);
+                    new FileOutputStream(prefix + otherName + NEW_SUFFIX),
+                    checksumAlgo, compression, level, true);
             susedataFile = new CompressingDigestOutputWriter(
-                    new FileOutputStream(prefix + SUSEDATA_FILE), checksumAlgo);
+                    new FileOutputStream(prefix + susedataName + NEW_SUFFIX),
+                    checksumAlgo, compression, level, true);
         }
         catch (IOException | NoSuchAlgorithmException e) {
             throw new RepomdRuntimeException(e);
@@ -290,53 +398,98 @@ public class RpmRepositoryWriter extends RepositoryWriter {
                 susedataBufferedWriter);
         Date start = new Date();
 
-        primary.begin(channel);
-        filelists.begin(channel);
-        other.begin(channel);
-        susedata.begin(channel);
-
-        // batch the elaboration so we don't have to hold many thousands of packages in memory at once
-        final int batchSize = 1000;
-        for (long i = 0; i < channel.getPackageCount(); i += batchSize) {
-            DataResult<PackageDto> packageBatch = TaskManager.getChannelPackageDtos(channel, i, batchSize);
-            packageBatch.elaborate();
-            for (PackageDto pkgDto : packageBatch) {
-                // this is a sanity check
-                // package may have been deleted before packageBatch.elaborate()
-                if (pkgDto.getChecksum() == null) {
-                    // channel content changed, we cannot guarantee correct repodata
-                    throw new RepomdRuntimeException("Package with id " + pkgDto.getId() +
-                            " removed from server, interrupting repo generation for " +
-                            channel.getLabel());
-                }
-                primary.addPackage(pkgDto);
-                filelists.addPackage(pkgDto);
-                other.addPackage(pkgDto);
-                susedata.addPackage(pkgDto);
-                try {
-                    primaryFile.flush();
-                    filelistsFile.flush();
-                    otherFile.flush();
-                    susedataFile.flush();
-                }
-                catch (IOException e) {
-                    throw new RepomdRuntimeException(e);
-                }
+        String channelLabel = channel.getLabel();
+        Consumer<PackageDto> addPackage = pkgDto -> {
+            // this is a sanity check
+            // package may have been deleted before packageBatch.elaborate()
+            if (pkgDto.getChecksum() == null) {
+                // channel content changed, we cannot guarantee correct repodata
+                throw new RepomdRuntimeException("Package with id " + pkgDto.getId() +
+                        " removed from server, interrupting repo generation for " +
+                        channelLabel);
             }
-            log.info("Processed {} packages", i + packageBatch.getEnd());
+            primary.addPackage(pkgDto);
+            filelists.addPackage(pkgDto);
+            other.addPackage(pkgDto);
+            susedata.addPackage(pkgDto);
+        };
+
+        MemberRecorder members = null;
+        Optional<RepomdMemberIndex> previousMembers = Optional.empty();
+        if (ConfigDefaults.get().isTaskoChannelRepodataIncremental() && !compression.isConcatenable()) {
+            log.warn("Incremental metadata generation is not possible with {} compression", compression.getLabel());
+        }
+        else if (ConfigDefaults.get().isTaskoChannelRepodataIncremental()) {
+            Map<Metadata, RepomdWriter> writers = new EnumMap<>(Metadata.class);
+            writers.put(Metadata.PRIMARY, primary);
+            writers.put(Metadata.FILELISTS, filelists);
+            writers.put(Metadata.OTHER, other);
+            writers.put(Metadata.SUSEDATA, susedata);
+            Map<Metadata, CompressingDigestOutputWriter> files = new EnumMap<>(Metadata.class);
+            files.put(Metadata.PRIMARY, primaryFile);
+            files.put(Metadata.FILELISTS, filelistsFile);
+            files.put(Metadata.OTHER, otherFile);
+            files.put(Metadata.SUSEDATA, susedataFile);
+            members = new MemberRecorder(writers, files);
+            previousMembers = RepomdMemberIndex.load(new File(prefix + MEMBER_INDEX_FILE))
+                    .filter(index -> index.isUsable(checksumType, compression, prefix));
         }
-        primary.end();
-        filelists.end();
-        other.end();
-        susedata.end();
+
         try {
-            primaryBufferedWriter.close();
-            filelistsBufferedWriter.close();
-            otherBufferedWriter.close();
-            susedataBufferedWriter.close();
+            primary.begin(channel);
+            filelists.begin(channel);
+            other.begin(channel);
+            susedata.begin(channel);
+            if (members != null) {
+                members.finishHeader();
+            }
+
+            if (previousMembers.isPresent()) {
+                addPackagesIncrementally(channel, prefix, previousMembers.get(), members, addPackage);
+            }
+            else {
+                // batch the elaboration so we don't have to hold many thousands of packages in memory at once
+                final int batchSize = 1000;
+                for (long i = 0; i < channel.getPackageCount(); i += batchSize) {
+                    DataResult<PackageDto> packageBatch = TaskManager.getChannelPackageDtos(channel, i, batchSize);
+                    packageBatch.elaborate();
+                    for (PackageDto pkgDto : packageBatch) {
+                        addPackage.accept(pkgDto);
+                        if (members != null) {
+                            members.finishPackage(pkgDto.getId());
+                        }
+                    }
+                    // hand the batch over to the compression workers
+                    try {
+                        primaryBufferedWriter.flush();
+                        filelistsBufferedWriter.flush();
+                        otherBufferedWriter.flush();
+                        susedataBufferedWriter.flush();
+                    }
+                    catch (IOException e) {
+                        throw new RepomdRuntimeException(e);
+                    }
+                    log.info("Processed {} packages", i + packageBatch.getEnd());
+                }
+            }
+            primary.end();
+            filelists.end();
+            other.end();
+            susedata.end();
+            try {
+                primaryBufferedWriter.close();
+                filelistsBufferedWriter.close();
+                otherBufferedWriter.close();
+                susedataBufferedWriter.close();
+            }
+            catch (IOException e) {
+                throw new RepomdRuntimeException(e);
+            }
         }
-        catch (IOException e) {
-            throw new RepomdRuntimeException(e);
+        catch (RuntimeException e) {
+            // stop the compression workers
+            closeQuietly(primaryFile, filelistsFile, otherFile, susedataFile);
+            throw e;
         }
 
         RepomdIndexData primaryData = new RepomdIndexData(primaryFile.getCompressedChecksum(),
@@ -351,7 +504,7 @@ public class RpmRepositoryWriter extends RepositoryWriter {
         if (log.isDebugEnabled()) {
             log.debug("Starting updateinfo generation for '{}\"", channel.getLabel());
         }
-        RepomdIndexData updateinfoData = generateUpdateinfo(channel, prefix, checksumAlgo);
+        RepomdIndexData updateinfoData = generateUpdateinfo(channel, prefix, checksumAlgo, compression);
         RepomdIndexData productsData = generateProducts(channel, prefix, checksumAlgo);
         RepomdIndexData groupsData = loadRepoMetadataFile(channel, checksumAlgo, GROUP);
         RepomdIndexData modulesData = loadRepoMetadataFile(channel, checksumAlgo, MODULES);
@@ -379,7 +532,7 @@ public class RpmRepositoryWriter extends RepositoryWriter {
             indexFile = new FileWriter(prefix + REPOMD_FILE);
             RepomdIndexWriter index = new RepomdIndexWriter(indexFile, primaryData,
                     filelistsData, otherData, susedataData, updateinfoData,
-                    groupsData, modulesData, productsData);
+                    groupsData, modulesData, productsData, compression);
             index.writeRepomdIndex();
             indexFile.close();
         }
@@ -389,14 +542,32 @@ public class RpmRepositoryWriter extends RepositoryWriter {
 
         List<File> createdFiles = new ArrayList<>();
         RepomdFileOrganizer organizer = new RepomdFileOrganizer(prefix, channel.getLastModified().getTime());
-        createdFiles.add(organizer.move(PRIMARY_FILE, "primary.xml.gz", primaryData.getChecksum()));
-        createdFiles.add(organizer.move(FILELISTS_FILE, "filelists.xml.gz", filelistsData.getChecksum()));
-        createdFiles.add(organizer.move(OTHER_FILE, "other.xml.gz", otherData.getChecksum()));
-        createdFiles.add(organizer.move(SUSEDATA_FILE, "susedata.xml.gz", susedataData.getChecksum()));
+        File primaryMd = organizer.move(primaryName + NEW_SUFFIX, primaryName, primaryData.getChecksum());
+        File filelistsMd = organizer.move(filelistsName + NEW_SUFFIX, filelistsName, filelistsData.getChecksum());
+        File otherMd = organizer.move(otherName + NEW_SUFFIX, otherName, otherData.getChecksum());
+        File susedataMd = organizer.move(susedataName + NEW_SUFFIX, susedataName, susedataData.getChecksum());
+        createdFiles.addAll(List.of(primaryMd, filelistsMd, otherMd, susedataMd));
+
+        if (members != null) {
+            RepomdMemberIndex index = members.buildIndex(checksumType);
+            index.setFile(Metadata.PRIMARY, primaryMd.getName());
+            index.setFile(Metadata.FILELISTS, filelistsMd.getName());
+            index.setFile(Metadata.OTHER, otherMd.getName());
+            index.setFile(Metadata.SUSEDATA, susedataMd.getName());
+            try {
+                index.save(new File(prefix + MEMBER_INDEX_FILE_NEW));
+                createdFiles.add(organizer.move(MEMBER_INDEX_FILE_NEW, MEMBER_INDEX_FILE));
+            }
+            catch (IOException e) {
+                // the next generation will just not be incremental
+                log.warn("Unable to save the repodata member index for '{}'", channel.getLabel(), e);
+            }
+        }
 
         // Optional files
         if (updateinfoData != null) {
-            createdFiles.add(organizer.move(UPDATEINFO_FILE, "updateinfo.xml.gz", updateinfoData.getChecksum()));
+            String updateinfoName = UPDATEINFO_FILE + compression.getExtension();
+            createdFiles.add(organizer.move(updateinfoName + NEW_SUFFIX, updateinfoName, updateinfoData.getChecksum()));
         }
         if (productsData != null) {
             createdFiles.add(organizer.move(PRODUCTS_FILE, "products.xml", productsData.getChecksum()));
@@ -438,6 +609,79 @@ public class RpmRepositoryWriter extends RepositoryWriter {
                 .forEach(File::delete);
     }
 
+    /**
+     * Adds the packages of the channel reusing the metadata of a previous generation: the
+     * members of the packages which are still in the channel are copied from the previous
+     * files, only the metadata of the new packages is generated
+     */
+    private void addPackagesIncrementally(Channel channel, String prefix, RepomdMemberIndex previous,
+            MemberRecorder members, Consumer<PackageDto> addPackage) {
+        // without elaboration only the ids are loaded
+        DataResult<PackageDto> packages = TaskManager.getChannelPackageDtos(channel);
+        Set<Long> packageIds = packages.stream().map(PackageDto::getId).collect(Collectors.toSet());
+
+        Map<Metadata, RandomAccessFile> previousFiles = new EnumMap<>(Metadata.class);
+        int reused = 0;
+        try {
+            for (Metadata type : Metadata.values()) {
+                previousFiles.put(type, new RandomAccessFile(prefix + previous.getFile(type), "r"));
+            }
+            for (Long packageId : previous.getPackageIds()) {
+                if (!packageIds.contains(packageId)) {
+                    continue;
+                }
+                for (Metadata type : Metadata.values()) {
+                    Optional<long[]> member = previous.getMember(type, packageId);
+                    if (member.isPresent()) {
+                        byte[] bytes = new byte[(int) member.get()[1]];
+                        RandomAccessFile file = previousFiles.get(type);
+                        file.seek(member.get()[0]);
+                        file.readFully(bytes);
+                        members.copyMember(type, packageId, bytes);
+                    }
+                }
+                reused++;
+            }
+        }
+        catch (IOException e) {
+            throw new RepomdRuntimeException(e);
+        }
+        finally {
+            for (RandomAccessFile file : previousFiles.values()) {
+                try {
+                    file.close();
+                }
+                catch (IOException e) {
+                    log.warn("Unable to close previous repodata file", e);
+                }
+            }
+        }
+
+        packages.removeIf(pkgDto -> previous.getPackageIds().contains(pkgDto.getId()));
+        log.info("Reused the metadata of {} packages, generating {} new ones", reused, packages.size());
+        final int batchSize = 1000;
+        for (int i = 0; i < packages.size(); i += batchSize) {
+            DataResult<PackageDto> packageBatch = packages.subList(i, i + batchSize);
+            packageBatch.elaborate();
+            for (PackageDto pkgDto : packageBatch) {
+                addPackage.accept(pkgDto);
+                members.finishPackage(pkgDto.getId());
+            }
+            log.info("Processed {} new packages", i + packageBatch.size());
+        }
+    }
+
+    private void closeQuietly(CompressingDigestOutputWriter... files) {
+        for (CompressingDigestOutputWriter file : files) {
+            try {
+                file.close();
+            }
+            catch (IOException e) {
+                log.debug("Ignoring error while closing metadata file", e);
+            }
+        }
+    }
+
     private void generateSolv(Channel channel) {
         String repodir  = mountPoint + File.separator + pathPrefix +
                           File.separator + channel.getLabel() + File.separator;
@@ -575,10 +819,11 @@ public class RpmRepositoryWriter extends RepositoryWriter {
      * @param channel channel info
      * @param prefix repodata file prefix
      * @param checksumtypeIn checksum type
+     * @param compression the compression of the file
      * @return repodata index
      */
     private RepomdIndexData generateUpdateinfo(Channel channel, String prefix,
-            String checksumtypeIn) {
+            String checksumtypeIn, RepomdCompression compression) {
 
         if (channel.getErrataCount() == 0) {
             return null;
@@ -587,7 +832,8 @@ public class RpmRepositoryWriter extends RepositoryWriter {
         CompressingDigestOutputWriter updateinfoFile;
         try {
             updateinfoFile = new CompressingDigestOutputWriter(
-                    new FileOutputStream(prefix + UPDATEINFO_FILE), checksumtypeIn);
+                    new FileOutputStream(prefix + UPDATEINFO_FILE + compression.getExtension() + NEW_SUFFIX),
+                    checksumtypeIn, compression, compression.getLevel(), false);
         }
         catch (IOException | NoSuchAlgorithmException e) {
             throw new RepomdRuntimeException(e);
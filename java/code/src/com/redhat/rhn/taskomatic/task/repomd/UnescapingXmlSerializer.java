@@ -56,4 +56,12 @@ public class UnescapingXmlSerializer extends XMLSerializer {
         _printer.printText((char)ch);
     }
 
+    /**
+     * Writes everything serialized so far to the underlying writer and flushes it
+     * @throws IOException if the writer fails
+     */
+    public void flush() throws IOException {
+        _printer.flush();
+    }
+
 }
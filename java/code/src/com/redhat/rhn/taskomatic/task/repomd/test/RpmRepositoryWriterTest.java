@@ -15,6 +15,7 @@
 package com.redhat.rhn.taskomatic.task.repomd.test;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
@@ -34,6 +35,7 @@ import com.redhat.rhn.manager.rhnpackage.PackageManager;
 import com.redhat.rhn.manager.rhnpackage.test.PackageManagerTest;
 import com.redhat.rhn.manager.satellite.Executor;
 import com.redhat.rhn.manager.task.TaskManager;
+import com.redhat.rhn.taskomatic.task.repomd.RepomdCompression;
 import com.redhat.rhn.taskomatic.task.repomd.RpmRepositoryWriter;
 import com.redhat.rhn.testing.JMockBaseTestCaseWithUser;
 import com.redhat.rhn.testing.TestUtils;
@@ -54,6 +56,7 @@ import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.List;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import java.util.zip.GZIPInputStream;
 
@@ -223,6 +226,93 @@ public class RpmRepositoryWriterTest extends JMockBaseTestCaseWithUser {
         }
     }
 
+    @Test
+    public void testIncrementalWriteRepomdFiles() throws Exception {
+        RpmRepositoryWriter writer = new RpmRepositoryWriter("rhn/repodata", mountPointDir.toAbsolutePath().toString());
+        boolean incremental = ConfigDefaults.get().isTaskoChannelRepodataIncremental();
+        try {
+            Config.get().setBoolean(ConfigDefaults.TASKOMATIC_CHANNEL_REPODATA_INCREMENTAL, "true");
+            PackageManagerTest.addPackageToChannel("pkgincr1", channel);
+            PackageManager.createRepoEntrys(channel.getId());
+            HibernateFactory.getSession().flush();
+            HibernateFactory.getSession().clear();
+            writer.writeRepomdFiles(channel);
+            assertTrue(metadataPath.resolve(".members").toFile().exists());
+
+            channel = ChannelFactory.lookupById(channel.getId());
+            PackageManagerTest.addPackageToChannel("pkgincr2", channel);
+            PackageManager.createRepoEntrys(channel.getId());
+            HibernateFactory.getSession().flush();
+            HibernateFactory.getSession().clear();
+            writer.writeRepomdFiles(channel);
+            String incrementalPrimary = readMetadata("-primary.xml.gz");
+            String incrementalRepomd = readRepomd();
+
+            assertTrue(incrementalPrimary.contains("packages=\"2\""));
+            assertTrue(incrementalPrimary.contains("<name>pkgincr1</name>"));
+            assertTrue(incrementalPrimary.contains("<name>pkgincr2</name>"));
+
+            // a full generation has the same content
+            Config.get().setBoolean(ConfigDefaults.TASKOMATIC_CHANNEL_REPODATA_INCREMENTAL, "false");
+            writer.writeRepomdFiles(channel);
+            assertFalse(metadataPath.resolve(".members").toFile().exists());
+            assertEquals(readMetadata("-primary.xml.gz"), incrementalPrimary);
+            assertEquals(openChecksums(readRepomd()), openChecksums(incrementalRepomd));
+        }
+        finally {
+            Config.get().setBoolean(ConfigDefaults.TASKOMATIC_CHANNEL_REPODATA_INCREMENTAL,
+                    Boolean.toString(incremental));
+        }
+    }
+
+    @Test
+    public void testWriteRepomdFilesCompression() throws Exception {
+        RpmRepositoryWriter writer = new RpmRepositoryWriter("rhn/repodata", mountPointDir.toAbsolutePath().toString());
+        String compression = ConfigDefaults.get().getTaskoChannelRepodataCompression();
+        try {
+            Config.get().setString(ConfigDefaults.TASKOMATIC_CHANNEL_REPODATA_COMPRESSION, "zstd");
+            // falls back to gzip if zstd-jni is missing
+            RepomdCompression expected = RepomdCompression.lookup("zstd");
+            PackageManagerTest.addPackageToChannel("pkgcompressed", channel);
+            PackageManager.createRepoEntrys(channel.getId());
+            HibernateFactory.getSession().flush();
+            HibernateFactory.getSession().clear();
+            writer.writeRepomdFiles(channel);
+
+            File primary = Files.list(metadataPath).map(Path::toFile)
+                    .filter(f -> f.getName().endsWith("-primary.xml" + expected.getExtension()))
+                    .findFirst().get();
+            try (InputStream in = expected.decompress(new FileInputStream(primary))) {
+                assertTrue(TestUtils.readAll(in).contains("<name>pkgcompressed</name>"));
+            }
+            assertTrue(readRepomd().contains("<location href=\"repodata/" + primary.getName() + "\"/>"));
+        }
+        finally {
+            Config.get().setString(ConfigDefaults.TASKOMATIC_CHANNEL_REPODATA_COMPRESSION, compression);
+        }
+    }
+
+    private String readMetadata(String suffix) throws IOException {
+        File file = Files.list(metadataPath).map(Path::toFile)
+                .filter(f -> f.getName().endsWith(suffix)).findFirst().get();
+        try (InputStream gzipStream = new GZIPInputStream(new FileInputStream(file))) {
+            return TestUtils.readAll(gzipStream);
+        }
+    }
+
+    private String readRepomd() throws IOException {
+        try (InputStream in = new FileInputStream(metadataPath.resolve("repomd.xml").toFile())) {
+            return TestUtils.readAll(in);
+        }
+    }
+
+    private List<String> openChecksums(String repomd) {
+        return Pattern.compile("<open-checksum type=\"sha256\">(\\w+)</open-checksum>").matcher(repomd)
+                .results()
+                .map(m -> m.group(1))
+                .collect(Collectors.toList());
+    }
+
     /**
      * Factory method to provide a JMock action for touching metadata key files
      * @param path the path to the repodata directory
@@ -18,16 +18,21 @@ import com.redhat.rhn.common.conf.Config;
 import com.redhat.rhn.domain.task.TaskFactory;
 import com.redhat.rhn.taskomatic.task.threaded.QueueDriver;
 import com.redhat.rhn.taskomatic.task.threaded.QueueWorker;
+import com.redhat.rhn.taskomatic.task.threaded.TaskQueueStatistics;
 
 import org.apache.logging.log4j.Logger;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.stream.Collectors;
 
 /**
- * Driver for the threaded system overview update queue
+ * Driver for the threaded system overview update queue.
+ *
+ * Candidates are not the queued systems but the workers needed to drain the queue: each
+ * of them claims batches of tasks until the queue is empty.
  */
-public class SystemsOverviewUpdateDriver implements QueueDriver<Long> {
+public class SystemsOverviewUpdateDriver implements QueueDriver<String> {
 
     public static final String TASK_NAME = "update_system_overview";
     private Logger logger = null;
@@ -43,12 +48,12 @@ public class SystemsOverviewUpdateDriver implements QueueDriver<Long> {
     }
 
     @Override
-    public List<Long> getCandidates() {
-        // Candidates are system IDs, deduplicated to avoid useless updates
-        return TaskFactory.getTaskListByNameLike(TASK_NAME).stream()
-            .map(task -> task.getData())
-            .distinct()
-            .collect(Collectors.toList());
+    public List<String> getCandidates() {
+        // Duplicated tasks would only cause useless updates
+        TaskFactory.collapseDuplicateTasks(TASK_NAME);
+        TaskQueueStatistics.refresh();
+        long batches = (TaskQueueStatistics.getDepth(TASK_NAME) + getBatchSize() - 1) / getBatchSize();
+        return new ArrayList<>(Collections.nCopies((int) Math.min(batches, getMaxWorkers()), TASK_NAME));
     }
 
     @Override
@@ -56,9 +61,16 @@ public class SystemsOverviewUpdateDriver implements QueueDriver<Long> {
         return Config.get().getInt("taskomatic.systems_overview_update_workers", 2);
     }
 
+    /**
+     * @return the maximum number of systems updated in one transaction
+     */
+    public int getBatchSize() {
+        return Config.get().getInt("taskomatic.systems_overview_update_batch_size", 100);
+    }
+
     @Override
-    public QueueWorker makeWorker(Long sid) {
-        return new SystemsOverviewUpdateWorker(sid, logger);
+    public QueueWorker makeWorker(String taskName) {
+        return new SystemsOverviewUpdateWorker(getBatchSize(), logger);
     }
 
     @Override
@@ -21,30 +21,33 @@ import com.redhat.rhn.domain.org.OrgFactory;
 import com.redhat.rhn.domain.task.TaskFactory;
 import com.redhat.rhn.taskomatic.task.threaded.QueueWorker;
 import com.redhat.rhn.taskomatic.task.threaded.TaskQueue;
+import com.redhat.rhn.taskomatic.task.threaded.TaskQueueStatistics;
 
 import org.apache.logging.log4j.Logger;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
- * Performs overview table refresh for a given server
+ * Performs overview table refresh for the queued servers, one batch per transaction. When a batch fails its
+ * servers are retried one per transaction and the failing ones are removed from the queue.
  */
 public class SystemsOverviewUpdateWorker implements QueueWorker {
 
     private final Logger logger;
-    private final Long sid;
+    private final int batchSize;
     private TaskQueue parentQueue;
 
 
     /**
      * Constructor
      *
-     * @param sidIn The ID of server to update the overview from
+     * @param batchSizeIn maximum number of servers to update in one transaction
      * @param loggerIn the logger
      */
-    public SystemsOverviewUpdateWorker(Long sidIn, Logger loggerIn) {
-        sid = sidIn;
+    public SystemsOverviewUpdateWorker(int batchSizeIn, Logger loggerIn) {
+        batchSize = batchSizeIn;
         logger = loggerIn;
     }
 
@@ -56,9 +59,31 @@ public class SystemsOverviewUpdateWorker implements QueueWorker {
     @Override
     public void run() {
         try {
-            removeTask(sid);
             parentQueue.workerStarting();
-            doUpdate(sid);
+            List<Long> sids = TaskFactory.claimTasks(SystemsOverviewUpdateDriver.TASK_NAME, batchSize);
+            while (!sids.isEmpty()) {
+                try {
+                    process(sids);
+                    HibernateFactory.commitTransaction();
+                }
+                catch (Exception e) {
+                    // The claim is rolled back too: retry the servers one by one to find the failing ones
+                    HibernateFactory.rollbackTransaction();
+                    HibernateFactory.closeSession();
+                    if (sids.size() == 1) {
+                        dropTask(sids.get(0), e);
+                    }
+                    else {
+                        logger.warn("Unable to update the overview of a batch of {} systems, updating them one by one",
+                                sids.size(), e);
+                        sids.forEach(this::processAlone);
+                    }
+                }
+                HibernateFactory.closeSession();
+                TaskQueueStatistics.recordProcessed(SystemsOverviewUpdateDriver.TASK_NAME, sids.size());
+                logger.debug("Updated the overview of {} systems", sids.size());
+                sids = TaskFactory.claimTasks(SystemsOverviewUpdateDriver.TASK_NAME, batchSize);
+            }
             HibernateFactory.commitTransaction();
         }
         catch (Exception e) {
@@ -72,6 +97,41 @@ public class SystemsOverviewUpdateWorker implements QueueWorker {
 
     }
 
+    /**
+     * Updates a single server in its own transaction, unless another worker claimed it meanwhile.
+     * A failing server is removed from the queue, so that it does not block the following ones.
+     */
+    private void processAlone(Long sid) {
+        try {
+            if (TaskFactory.claimTask(SystemsOverviewUpdateDriver.TASK_NAME, sid)) {
+                process(List.of(sid));
+            }
+            HibernateFactory.commitTransaction();
+        }
+        catch (Exception e) {
+            HibernateFactory.rollbackTransaction();
+            HibernateFactory.closeSession();
+            dropTask(sid, e);
+        }
+        finally {
+            HibernateFactory.closeSession();
+        }
+    }
+
+    private void dropTask(Long sid, Exception cause) {
+        logger.error("Unable to update the overview of system {}, removing the task", sid, cause);
+        TaskFactory.claimTask(SystemsOverviewUpdateDriver.TASK_NAME, sid);
+        HibernateFactory.commitTransaction();
+    }
+
+    /**
+     * Updates the overview of the given servers in the current transaction, without handling errors.
+     * @param sids the server ids
+     */
+    protected void process(List<Long> sids) {
+        sids.forEach(SystemsOverviewUpdateWorker::doUpdate);
+    }
+
     /**
      * Actually trigger the update_system_overview procedure.
      *
@@ -15,24 +15,29 @@
 package com.redhat.rhn.taskomatic.task.test;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import com.redhat.rhn.domain.server.Server;
 import com.redhat.rhn.domain.server.test.ServerFactoryTest;
-import com.redhat.rhn.domain.task.Task;
+import com.redhat.rhn.domain.task.TaskFactory;
 import com.redhat.rhn.manager.errata.ErrataManager;
 import com.redhat.rhn.taskomatic.task.errata.ErrataCacheDriver;
+import com.redhat.rhn.taskomatic.task.errata.ErrataCacheWorker;
+import com.redhat.rhn.taskomatic.task.threaded.TaskQueueStatistics;
 import com.redhat.rhn.testing.BaseTestCaseWithUser;
 
 import org.apache.logging.log4j.LogManager;
 import org.junit.jupiter.api.Test;
 
+import java.util.List;
+
 /**
  * Tests for ErrataCacheDriver class.
  */
 public class ErrataCacheDriverTest extends BaseTestCaseWithUser {
 
     /**
-     * Test the consolidation of tasks in getCandidates().
+     * Test the consolidation of tasks in the queue and the candidates of getCandidates().
      *
      * @throws Exception in case of a problem
      */
@@ -47,15 +52,17 @@ public class ErrataCacheDriverTest extends BaseTestCaseWithUser {
         Thread.sleep(1);
         ErrataManager.insertErrataCacheTask(server);
 
+        long taskCount = TaskFactory.getTaskListByNameLike(ErrataCacheWorker.FOR_SERVER).stream()
+                .filter(task -> task.getData().equals(server.getId()))
+                .count();
+        assertEquals(1, taskCount);
+
         // Get the candidates and verify
         ErrataCacheDriver driver = new ErrataCacheDriver();
         driver.setLogger(LogManager.getLogger(ErrataCacheDriverTest.class));
-        int candidateCount = 0;
-        for (Task task : driver.getCandidates()) {
-            if (task.getData().equals(server.getId())) {
-                candidateCount++;
-            }
-        }
-        assertEquals(1, candidateCount);
+        List<String> candidates = driver.getCandidates();
+        assertTrue(candidates.contains(ErrataCacheWorker.FOR_SERVER));
+        assertTrue(candidates.size() <= 3 * driver.getMaxWorkers());
+        assertTrue(TaskQueueStatistics.getDepth(ErrataCacheWorker.FOR_SERVER) >= 1);
     }
 }
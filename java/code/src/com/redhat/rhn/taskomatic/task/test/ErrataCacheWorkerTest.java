@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2023 SUSE LLC
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.taskomatic.task.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.redhat.rhn.domain.task.TaskFactory;
+import com.redhat.rhn.taskomatic.task.errata.ErrataCacheWorker;
+import com.redhat.rhn.taskomatic.task.threaded.TaskQueue;
+import com.redhat.rhn.testing.BaseTestCaseWithUser;
+import com.redhat.rhn.testing.TestUtils;
+
+import org.apache.logging.log4j.LogManager;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests for ErrataCacheWorker class.
+ */
+public class ErrataCacheWorkerTest extends BaseTestCaseWithUser {
+
+    /**
+     * A failing task must not block the other tasks of its batch and must be removed from the queue.
+     *
+     * @throws Exception in case of a problem
+     */
+    @Test
+    public void testFailingTaskIsRemoved() throws Exception {
+        String taskName = "errata_cache_worker_test_" + TestUtils.randomString();
+        TaskFactory.queueTask(user.getOrg(), taskName, 1L);
+        TaskFactory.queueTask(user.getOrg(), taskName, 2L);
+        TaskFactory.queueTask(user.getOrg(), taskName, 3L);
+        commitAndCloseSession();
+
+        List<List<Long>> processed = new ArrayList<>();
+        ErrataCacheWorker worker = new ErrataCacheWorker(taskName, 10,
+                LogManager.getLogger(ErrataCacheWorkerTest.class)) {
+            @Override
+            protected void process(List<Long> ids) {
+                processed.add(ids);
+                if (ids.contains(2L)) {
+                    throw new IllegalStateException("Failing task");
+                }
+            }
+        };
+        worker.setParentQueue(new TaskQueue());
+        worker.run();
+
+        assertEquals(List.of(List.of(1L, 2L, 3L), List.of(1L), List.of(2L), List.of(3L)), processed);
+        assertTrue(TaskFactory.getTaskListByNameLike(taskName).isEmpty());
+    }
+}
@@ -134,6 +134,82 @@ public class ReportDbUpdateTaskTest extends JMockBaseTestCaseWithUser {
 
     }
 
+    @Test
+    public void incrementalRefreshOnlyWritesChanges() throws Exception {
+        HibernateFactory.getSession().createSQLQuery("DELETE FROM rhnchannelpackage").executeUpdate();
+
+        Channel channel = ChannelFactoryTest.createTestChannel(user);
+
+        List<Package> testPackages = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            testPackages.add(PackageTest.createTestPackage(user.getOrg()));
+        }
+
+        channel.getPackages().addAll(testPackages.subList(0, 2));
+
+        ReportDbUpdateTask task = new ReportDbUpdateTask(ReportDBHelper.INSTANCE, 2, true);
+        task.execute(contextMock);
+
+        String channelPackageQuery = "SELECT * FROM ChannelPackage WHERE mgm_id = 1 ORDER BY channel_id, package_id";
+        List<Tuple> firstResult = getSession().createNativeQuery(channelPackageQuery, Tuple.class).getResultList();
+        assertEquals(2, firstResult.size());
+        Object unchangedSyncedDate = firstResult.get(1).get("synced_date");
+
+        channel.getPackages().remove(testPackages.get(0));
+        channel.getPackages().add(testPackages.get(2));
+        task.execute(contextMock);
+
+        List<Tuple> secondResult = getSession().createNativeQuery(channelPackageQuery, Tuple.class).getResultList();
+        assertEquals(2, secondResult.size());
+
+        Set<Pair<Long, Long>> pairSet = secondResult.stream()
+                                                    .map(t -> Pair.of(
+                                                            t.get("channel_id", BigDecimal.class).longValue(),
+                                                            t.get("package_id", BigDecimal.class).longValue()
+                                                        )
+                                                    )
+                                                    .collect(Collectors.toSet());
+
+        assertEquals(Set.of(
+            Pair.of(channel.getId(), testPackages.get(1).getId()),
+            Pair.of(channel.getId(), testPackages.get(2).getId())
+        ), pairSet);
+
+        // The row that did not change must have been left untouched
+        assertEquals(unchangedSyncedDate, secondResult.get(0).get("synced_date"));
+    }
+
+    @Test
+    public void bulkLoadCopiesAllRows() throws Exception {
+        HibernateFactory.getSession().createSQLQuery("DELETE FROM rhnchannelpackage").executeUpdate();
+
+        Channel channel = ChannelFactoryTest.createTestChannel(user);
+
+        List<Package> testPackages = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            testPackages.add(PackageTest.createTestPackage(user.getOrg()));
+        }
+
+        channel.getPackages().addAll(testPackages);
+
+        ReportDbUpdateTask task = new ReportDbUpdateTask(ReportDBHelper.INSTANCE, 2, false, true, 1);
+        assertDoesNotThrow(() -> task.execute(contextMock));
+
+        String channelPackageQuery = "SELECT * FROM ChannelPackage WHERE mgm_id = 1 ORDER BY channel_id, package_id";
+        List<Tuple> resultList = getSession().createNativeQuery(channelPackageQuery, Tuple.class).getResultList();
+
+        Set<Pair<Long, Long>> pairSet = resultList.stream()
+                                                  .map(t -> Pair.of(
+                                                          t.get("channel_id", BigDecimal.class).longValue(),
+                                                          t.get("package_id", BigDecimal.class).longValue()
+                                                      )
+                                                  )
+                                                  .collect(Collectors.toSet());
+
+        assertEquals(testPackages.stream().map(p -> Pair.of(channel.getId(), p.getId())).collect(Collectors.toSet()),
+            pairSet);
+    }
+
     private static synchronized Session getSession() {
         if (reportDbConnectionManager == null) {
             reportDbConnectionManager = ConnectionManagerFactory.localReportingConnectionManager();
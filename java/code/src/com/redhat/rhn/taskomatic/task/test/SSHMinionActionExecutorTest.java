@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2023 SUSE LLC
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+
+package com.redhat.rhn.taskomatic.task.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.redhat.rhn.taskomatic.task.SSHMinionActionExecutor;
+import com.redhat.rhn.testing.RhnBaseTestCase;
+
+import org.junit.jupiter.api.Test;
+import org.quartz.JobBuilder;
+import org.quartz.JobDataMap;
+import org.quartz.JobExecutionContext;
+import org.quartz.TriggerBuilder;
+import org.quartz.impl.JobExecutionContextImpl;
+import org.quartz.spi.OperableTrigger;
+import org.quartz.spi.TriggerFiredBundle;
+
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tests for SSHMinionActionExecutor class.
+ */
+public class SSHMinionActionExecutorTest extends RhnBaseTestCase {
+
+    private final Map<String, String> executions = new ConcurrentHashMap<>();
+
+    /**
+     * Executor recording the minions it executes an action on, together with the thread doing it.
+     */
+    private class RecordingExecutor extends SSHMinionActionExecutor {
+        @Override
+        protected void execute(long actionId, String sshMinionId, boolean forcePkgRefresh) {
+            executions.put(actionId + "/" + sshMinionId, Thread.currentThread().getName());
+        }
+    }
+
+    private static JobExecutionContext context(Map<String, String> data) {
+        JobDataMap jobData = new JobDataMap(data);
+        jobData.put("force_pkg_list_refresh", "false");
+        TriggerFiredBundle bundle = new TriggerFiredBundle(
+                JobBuilder.newJob(SSHMinionActionExecutor.class).usingJobData(jobData).build(),
+                (OperableTrigger) TriggerBuilder.newTrigger().build(),
+                null, false, new Date(), new Date(), null, null);
+        return new JobExecutionContextImpl(null, bundle, null);
+    }
+
+    /**
+     * A single job executes the action on all the minions it lists, and the minions of all the jobs
+     * share the same pool.
+     */
+    @Test
+    public void testMultipleMinions() {
+        new RecordingExecutor().execute(context(Map.of("action_id", "1", "ssh_minion_ids", "m1,m2,m3")));
+        new RecordingExecutor().execute(context(Map.of("action_id", "2", "ssh_minion_ids", "m4,m5")));
+
+        assertEquals(Set.of("1/m1", "1/m2", "1/m3", "2/m4", "2/m5"), executions.keySet());
+        Set<String> threads = new HashSet<>(executions.values());
+        assertTrue(threads.stream().allMatch(t -> t.startsWith("ssh-minion-action-thread-")));
+        assertTrue(threads.size() <= new RecordingExecutor().getParallelThreads());
+    }
+
+    /**
+     * Jobs scheduled before batching was introduced target a single minion.
+     */
+    @Test
+    public void testSingleMinion() {
+        new RecordingExecutor().execute(context(Map.of("action_id", "1", "ssh_minion_id", "m1")));
+
+        assertEquals(List.of("1/m1"), List.copyOf(executions.keySet()));
+    }
+
+    /**
+     * A job without any minion is aborted.
+     */
+    @Test
+    public void testNoMinion() {
+        new RecordingExecutor().execute(context(Map.of("action_id", "1")));
+
+        assertTrue(executions.isEmpty());
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2023 SUSE LLC
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.taskomatic.task.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.redhat.rhn.domain.task.Task;
+import com.redhat.rhn.domain.task.TaskFactory;
+import com.redhat.rhn.taskomatic.task.systems.SystemsOverviewUpdateDriver;
+import com.redhat.rhn.taskomatic.task.systems.SystemsOverviewUpdateWorker;
+import com.redhat.rhn.taskomatic.task.threaded.TaskQueue;
+import com.redhat.rhn.testing.BaseTestCaseWithUser;
+
+import org.apache.logging.log4j.LogManager;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Tests for SystemsOverviewUpdateWorker class.
+ */
+public class SystemsOverviewUpdateWorkerTest extends BaseTestCaseWithUser {
+
+    /**
+     * A failing system must not block the other systems of its batch and must be removed from the queue.
+     *
+     * @throws Exception in case of a problem
+     */
+    @Test
+    public void testFailingSystemIsRemoved() throws Exception {
+        List<Long> sids = List.of(1L, 2L, 3L);
+        sids.forEach(sid -> TaskFactory.queueTask(user.getOrg(), SystemsOverviewUpdateDriver.TASK_NAME, sid));
+        commitAndCloseSession();
+
+        List<List<Long>> processed = new ArrayList<>();
+        SystemsOverviewUpdateWorker worker = new SystemsOverviewUpdateWorker(100,
+                LogManager.getLogger(SystemsOverviewUpdateWorkerTest.class)) {
+            @Override
+            protected void process(List<Long> ids) {
+                // other systems might be queued too: only keep track of the test ones
+                processed.add(ids.stream().filter(sids::contains).collect(Collectors.toList()));
+                if (ids.contains(2L)) {
+                    throw new IllegalStateException("Failing system");
+                }
+            }
+        };
+        worker.setParentQueue(new TaskQueue());
+        worker.run();
+
+        List<List<Long>> testCalls = processed.stream().filter(ids -> !ids.isEmpty()).collect(Collectors.toList());
+        assertEquals(sids, testCalls.get(0));
+        assertEquals(List.of(List.of(1L), List.of(2L), List.of(3L)), testCalls.subList(1, testCalls.size()));
+        assertTrue(TaskFactory.getTaskListByNameLike(SystemsOverviewUpdateDriver.TASK_NAME).stream()
+                .map(Task::getData)
+                .noneMatch(sids::contains));
+    }
+}
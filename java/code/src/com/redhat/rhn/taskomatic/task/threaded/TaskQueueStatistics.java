@@ -0,0 +1,117 @@
+/*
+ * Copyright (c) 2023 SUSE LLC
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.redhat.rhn.taskomatic.task.threaded;
+
+import com.redhat.rhn.domain.task.TaskFactory;
+
+import com.suse.manager.metrics.PrometheusExporter;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Depth, age of the oldest entry and number of processed entries of the rhnTaskQueue
+ * queues, by task name. Depth and age are the values of the last refresh.
+ */
+public class TaskQueueStatistics {
+
+    private static final Map<String, Queue> QUEUES = new ConcurrentHashMap<>();
+
+    static {
+        PrometheusExporter.INSTANCE.registerTaskQueueStatistics();
+    }
+
+    private TaskQueueStatistics() {
+    }
+
+    /**
+     * Statistics of the tasks with a given name
+     */
+    public static class Queue {
+        private volatile long depth;
+        private volatile long oldestAgeSeconds;
+        private final LongAdder processed = new LongAdder();
+
+        /**
+         * @return the number of queued tasks
+         */
+        public long getDepth() {
+            return depth;
+        }
+
+        /**
+         * @return the age in seconds of the oldest queued task
+         */
+        public long getOldestAgeSeconds() {
+            return oldestAgeSeconds;
+        }
+
+        /**
+         * @return the number of tasks ever processed
+         */
+        public long getProcessed() {
+            return processed.sum();
+        }
+    }
+
+    /**
+     * Reads the current depth and age of all the queues with the current Hibernate session.
+     */
+    public static void refresh() {
+        Set<String> empty = new HashSet<>(QUEUES.keySet());
+        for (Map<String, Object> row : TaskFactory.getQueueStatistics()) {
+            String name = (String) row.get("task_name");
+            Queue queue = QUEUES.computeIfAbsent(name, n -> new Queue());
+            queue.depth = ((Number) row.get("depth")).longValue();
+            queue.oldestAgeSeconds = ((Number) row.get("oldest_age")).longValue();
+            empty.remove(name);
+        }
+        for (String name : empty) {
+            QUEUES.get(name).depth = 0;
+            QUEUES.get(name).oldestAgeSeconds = 0;
+        }
+    }
+
+    /**
+     * Returns the number of queued tasks with the given name at the last refresh
+     * @param name the task name
+     * @return the number of queued tasks
+     */
+    public static long getDepth(String name) {
+        Queue queue = QUEUES.get(name);
+        return queue == null ? 0 : queue.depth;
+    }
+
+    /**
+     * Records tasks processed
+     * @param name the task name
+     * @param count the number of processed tasks
+     */
+    public static void recordProcessed(String name, int count) {
+        QUEUES.computeIfAbsent(name, n -> new Queue()).processed.add(count);
+    }
+
+    /**
+     * Returns the statistics of the queues seen so far
+     * @return the statistics by task name
+     */
+    public static Map<String, Queue> getQueues() {
+        return Collections.unmodifiableMap(QUEUES);
+    }
+}
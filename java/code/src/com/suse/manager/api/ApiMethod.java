@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2023 SUSE LLC
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.suse.manager.api;
+
+import com.redhat.rhn.domain.user.User;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Parameter;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * An API handler method prepared for invocation from HTTP requests
+ *
+ * The parameters and the names of the arguments expected in a request are resolved once, and the method is invoked
+ * through a {@link MethodHandle} instead of reflection.
+ */
+public class ApiMethod {
+
+    /** Name of the parameter that receives the session key instead of a request argument */
+    public static final String SESSION_KEY_PARAM = "sessionKey";
+
+    private final Method method;
+    private final Parameter[] parameters;
+    private final Set<String> argumentNames;
+    private final MethodHandle handle;
+
+    /**
+     * Constructs an {@link ApiMethod} instance
+     * @param methodIn the API handler method
+     */
+    public ApiMethod(Method methodIn) {
+        this.method = methodIn;
+        this.parameters = methodIn.getParameters();
+        this.argumentNames = Collections.unmodifiableSet(Arrays.stream(parameters)
+                .filter(p -> !isUserParameter(p) && !isSessionKeyParameter(p))
+                .map(Parameter::getName)
+                .collect(Collectors.toSet()));
+        try {
+            MethodHandle unreflected = MethodHandles.lookup().unreflect(methodIn);
+            unreflected = unreflected.asType(unreflected.type().generic());
+            if (Modifier.isStatic(methodIn.getModifiers())) {
+                unreflected = MethodHandles.dropArguments(unreflected, 0, Object.class);
+            }
+            // (handler, Object[] args) -> Object
+            this.handle = unreflected.asSpreader(Object[].class, parameters.length);
+        }
+        catch (IllegalAccessException e) {
+            throw new IllegalArgumentException("API method is not accessible: " + methodIn, e);
+        }
+    }
+
+    /**
+     * Returns whether the parameter receives the authorized {@link User}
+     * @param parameter the parameter
+     * @return true if the parameter is a {@link User}
+     */
+    public static boolean isUserParameter(Parameter parameter) {
+        return User.class.equals(parameter.getType());
+    }
+
+    /**
+     * Returns whether the parameter receives the session key
+     * @param parameter the parameter
+     * @return true if the parameter is the session key
+     */
+    public static boolean isSessionKeyParameter(Parameter parameter) {
+        return SESSION_KEY_PARAM.equals(parameter.getName());
+    }
+
+    /**
+     * @return the underlying method
+     */
+    public Method getMethod() {
+        return method;
+    }
+
+    /**
+     * @return the parameters of the method
+     */
+    public Parameter[] getParameters() {
+        return parameters;
+    }
+
+    /**
+     * @return the names of the arguments expected in a request, excluding the user and the session key
+     */
+    public Set<String> getArgumentNames() {
+        return argumentNames;
+    }
+
+    /**
+     * Returns the handle invoking the method, taking the handler object and the arguments as an array
+     * @return the method handle
+     */
+    public MethodHandle getHandle() {
+        return handle;
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2023 SUSE LLC
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.suse.manager.api;
+
+import com.redhat.rhn.common.db.datasource.DataStream;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonIOException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * Creates {@link TypeAdapter}s serializing {@link DataStream}s as JSON arrays, writing each row as soon as it is
+ * read from the database
+ */
+public class DataStreamTypeAdapterFactory implements TypeAdapterFactory {
+
+    @Override
+    public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+        if (!DataStream.class.isAssignableFrom(type.getRawType())) {
+            return null;
+        }
+        return new TypeAdapter<>() {
+            @Override
+            public void write(JsonWriter out, T value) throws IOException {
+                if (value == null) {
+                    out.nullValue();
+                    return;
+                }
+                out.beginArray();
+                ((DataStream<?>) value).forEach(row -> {
+                    try {
+                        if (row == null) {
+                            out.nullValue();
+                        }
+                        else {
+                            gson.toJson(row, row.getClass(), out);
+                        }
+                    }
+                    catch (IOException e) {
+                        throw new JsonIOException(e);
+                    }
+                });
+                out.endArray();
+            }
+
+            @Override
+            public T read(JsonReader in) {
+                throw new UnsupportedOperationException("Data streams can only be serialized");
+            }
+        };
+    }
+}
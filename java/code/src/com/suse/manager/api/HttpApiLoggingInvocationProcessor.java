@@ -27,6 +27,7 @@ import com.google.gson.JsonElement;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 import spark.Request;
@@ -40,10 +41,32 @@ public class HttpApiLoggingInvocationProcessor extends LoggingInvocationProcesso
 
     // The pattern to capture everything starting with HTTP_API_ROOT
     public static final String HTTP_API_URL_PATTERN = HttpApiRegistry.HTTP_API_ROOT + "*";
+    // The metrics label of the calls to any URL not matching a registered method
+    public static final String UNKNOWN_METHOD = "unknown";
     private final ApiRequestParser apiRequestParser = new ApiRequestParser(new Gson());
 
     private static ThreadLocal<User> caller = new ThreadLocal<>();
 
+    // the registered methods, as handler.method
+    private final Set<String> methods;
+
+    /**
+     * Constructor for a processor which does not know any method: all the calls are labeled as unknown in the
+     * metrics
+     */
+    public HttpApiLoggingInvocationProcessor() {
+        this(Collections.emptySet());
+    }
+
+    /**
+     * Standard constructor
+     * @param methodsIn the registered methods, as handler.method. Calls to other URLs are labeled as unknown in
+     * the metrics. The set may be filled after the filters are registered.
+     */
+    public HttpApiLoggingInvocationProcessor(Set<String> methodsIn) {
+        methods = methodsIn;
+    }
+
     /**
      * Register before and after filters in Spark
      */
@@ -70,11 +93,23 @@ public class HttpApiLoggingInvocationProcessor extends LoggingInvocationProcesso
                 handler,
                 methodName,
                 processParams(request, handler, methodName),
-                request.ip()
+                request.ip(),
+                response.status() < 400
             );
         });
     }
 
+    @Override
+    protected String getApiName() {
+        return "http";
+    }
+
+    @Override
+    public String getMetricsMethod(String handlerName, String methodName) {
+        String method = super.getMetricsMethod(handlerName, methodName);
+        return methods.contains(method) ? method : UNKNOWN_METHOD;
+    }
+
     /**
      * Extracts params from request.queryMap() and request.body()
      *
@@ -33,6 +33,7 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 import spark.Route;
@@ -74,7 +75,8 @@ public class HttpApiRegistry {
      */
     public void initRoutes() {
         final int[] methodCount = {0};
-        new HttpApiLoggingInvocationProcessor().register();
+        Set<String> registeredMethods = ConcurrentHashMap.newKeySet();
+        new HttpApiLoggingInvocationProcessor(registeredMethods).register();
 
         handlerFactory.getKeys().forEach(namespace -> {
             BaseHandler handler = handlerFactory.getHandler(namespace).get();
@@ -110,11 +112,14 @@ public class HttpApiRegistry {
                                     MessageFormat.format(" ({0} overloads)", methodList.size()) : "",
                             groupKey.getRight() ? " (Read-only)" : ""));
                 }
+                registeredMethods.add(namespace + "." + groupKey.getLeft());
                 methodCount[0] += 1;
             });
         });
 
         registerAuthEndpoints();
+        registeredMethods.add("auth.login");
+        registeredMethods.add("auth.logout");
         LOG.info("Registered {} methods in {} namespaces.", methodCount[0], handlerFactory.getKeys().size());
     }
 
@@ -16,6 +16,8 @@ package com.suse.manager.api;
 
 import com.redhat.rhn.domain.user.User;
 
+import com.suse.manager.metrics.LatencyMetrics;
+
 import org.apache.commons.lang3.time.StopWatch;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -92,6 +94,28 @@ public abstract class LoggingInvocationProcessor {
         StringBuilder arguments,
         String ip
     ) {
+        afterProcess(handlerName, methodName, arguments, ip, true);
+    }
+
+    /**
+     * Makes the after hook processing logic agnostic, taking as parameters all data to be logged and
+     * the processingTimer to be stopped.
+     *
+     * @param handlerName the handler of the request
+     * @param methodName the method called
+     * @param arguments the string representation of the arguments passed to the method
+     * @param ip the request's ip
+     * @param success true if the call completed successfully
+     */
+    public void afterProcess(
+        String handlerName,
+        String methodName,
+        StringBuilder arguments,
+        String ip,
+        boolean success
+    ) {
+        long time = stopTimer();
+        observeCall(handlerName, methodName, success, time);
         try {
             // Create the call in a separate buffer for reuse
             StringBuilder buf = new StringBuilder();
@@ -108,7 +132,7 @@ public abstract class LoggingInvocationProcessor {
             buf.append(getCallerLogin());
             buf.append(") TIME: ");
 
-            buf.append(stopTimer() / 1000.00);
+            buf.append(time / 1000.00);
             buf.append(" seconds");
 
             LOGGER.info(buf);
@@ -120,6 +144,34 @@ public abstract class LoggingInvocationProcessor {
 
     protected abstract String getCallerLogin();
 
+    /**
+     * @return the name of the API the calls are processed for, used to label the latency metrics
+     */
+    protected abstract String getApiName();
+
+    /**
+     * Returns the method label of a call in the latency metrics. Each label creates a new series which is never
+     * removed, so the label must be picked from a bounded set of values.
+     * @param handlerName the handler of the request
+     * @param methodName the method called
+     * @return the label
+     */
+    public String getMetricsMethod(String handlerName, String methodName) {
+        return handlerName + "." + methodName;
+    }
+
+    /**
+     * Record the duration of an API call in the latency metrics
+     * @param handlerName the handler of the request
+     * @param methodName the method called
+     * @param success true if the call completed successfully
+     * @param millis the duration of the call in milliseconds
+     */
+    protected void observeCall(String handlerName, String methodName, boolean success, long millis) {
+        LatencyMetrics.API_CALLS.labels(getApiName(), getMetricsMethod(handlerName, methodName),
+                success ? "success" : "error").observe(millis / 1000.0);
+    }
+
     /**
      * Stop the timer
      * @return the time registered in this timer.
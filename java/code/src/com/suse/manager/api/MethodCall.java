@@ -16,6 +16,7 @@ package com.suse.manager.api;
 
 import com.redhat.rhn.domain.user.User;
 
+import java.lang.invoke.MethodHandle;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 
@@ -25,6 +26,7 @@ import java.lang.reflect.Method;
  */
 public class MethodCall {
     private final Method method;
+    private final MethodHandle handle;
     private final Object[] args;
 
     /**
@@ -34,6 +36,18 @@ public class MethodCall {
      */
     public MethodCall(Method methodIn, Object[] argsIn) {
         this.method = methodIn;
+        this.handle = null;
+        this.args = argsIn;
+    }
+
+    /**
+     * Constructs a {@link MethodCall} instance invoking the method through the handle of an {@link ApiMethod}
+     * @param apiMethodIn the prepared API method
+     * @param argsIn the arguments of the method
+     */
+    public MethodCall(ApiMethod apiMethodIn, Object[] argsIn) {
+        this.method = apiMethodIn.getMethod();
+        this.handle = apiMethodIn.getHandle();
         this.args = argsIn;
     }
 
@@ -47,7 +61,16 @@ public class MethodCall {
     public Object invoke(Object obj) throws InvocationTargetException, IllegalAccessException,
             UserNotPermittedException {
         ensureUserAccess();
-        return method.invoke(obj, args);
+        if (handle == null) {
+            return method.invoke(obj, args);
+        }
+        try {
+            return handle.invokeExact(obj, args);
+        }
+        catch (Throwable t) {
+            // Report exceptions thrown by the method the same way as reflective invocation does
+            throw new InvocationTargetException(t);
+        }
     }
 
     private void ensureUserAccess() throws UserNotPermittedException {
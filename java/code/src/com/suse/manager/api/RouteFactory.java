@@ -17,11 +17,11 @@ package com.suse.manager.api;
 import static com.suse.manager.webui.utils.SparkApplicationHelper.asJson;
 
 import com.redhat.rhn.FaultException;
+import com.redhat.rhn.domain.session.WebSession;
 import com.redhat.rhn.domain.user.User;
 import com.redhat.rhn.frontend.struts.RequestContext;
 import com.redhat.rhn.frontend.xmlrpc.BaseHandler;
 import com.redhat.rhn.frontend.xmlrpc.serializer.SerializerFactory;
-import com.redhat.rhn.manager.session.SessionManager;
 
 import com.suse.manager.webui.utils.SparkApplicationHelper;
 
@@ -38,13 +38,12 @@ import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Parameter;
 import java.text.MessageFormat;
-import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collector;
 import java.util.stream.Collectors;
 
@@ -149,6 +148,12 @@ public class RouteFactory {
      * @return the {@link Route}
      */
     public Route createRoute(List<Method> methods, BaseHandler handler) {
+        // Index the overloads by their argument names once, requests are only matched against the overloads
+        // expecting exactly the arguments they provide
+        Map<Set<String>, List<ApiMethod>> methodsByArgumentNames = methods.stream()
+                .map(ApiMethod::new)
+                .collect(Collectors.groupingBy(ApiMethod::getArgumentNames));
+
         Route route = (req, res) -> {
             // Collect all the parameters from the query string and the body
             Map<String, JsonElement> requestParams;
@@ -161,10 +166,13 @@ public class RouteFactory {
                 throw Spark.halt(HttpStatus.SC_BAD_REQUEST, e.getMessage());
             }
 
-            String sessionKey = new RequestContext(req.raw()).getWebSession().getKey();
+            // The session has already been validated and loaded by the authentication filter for this request
+            WebSession session = new RequestContext(req.raw()).getWebSession();
             try {
                 // Find an overload matching the parameter names and types
-                MethodCall call = findMethod(methods, requestParams, sessionKey);
+                List<ApiMethod> candidates = methodsByArgumentNames.getOrDefault(requestParams.keySet(),
+                        Collections.emptyList());
+                MethodCall call = findMethod(candidates, requestParams, session);
                 HttpApiResponse response = HttpApiResponse.success(call.invoke(handler));
                 return SparkApplicationHelper.json(gson, res, response);
             }
@@ -191,37 +199,33 @@ public class RouteFactory {
     }
 
     /**
-     * Finds a single method matching the specified JSON argument names and types
+     * Finds a single method matching the specified JSON argument types
      *
      * Type matching is performed by trying to parse every argument according to a method's parameter types
      * The parsed arguments are packed together with the chosen method and returned as a {@link MethodCall} object.
-     * @param methods list of methods
+     * @param methods list of methods expecting the names of the JSON arguments
      * @param jsonArgs the JSON arguments
-     * @param sessionKey the session key
+     * @param session the web session of the request
      * @return the matched method, if exists
      * @throws NoSuchMethodException if no match is found
      */
-    private MethodCall findMethod(List<Method> methods, Map<String, JsonElement> jsonArgs, String sessionKey)
+    private MethodCall findMethod(List<ApiMethod> methods, Map<String, JsonElement> jsonArgs, WebSession session)
             throws NoSuchMethodException {
-        User user = SessionManager.loadSession(sessionKey).getUser();
-        // Filter methods with parameter names that match the request parameters, excluding the User parameter
+        User user = session.getUser();
+        String sessionKey = session.getKey();
         return methods.stream()
-                .filter(m -> jsonArgs.keySet().equals(
-                        Arrays.stream(m.getParameters())
-                                .filter(p -> !User.class.equals(p.getType()))
-                                .map(Parameter::getName)
-                                .filter(p -> !"sessionKey".equals(p))
-                                .collect(Collectors.toSet())))
                 // Try to parse arguments according to method parameter types
                 .map(method -> {
-                    List<Object> args = new ArrayList<>(method.getParameterCount());
-                    for (Parameter param : method.getParameters()) {
+                    Parameter[] params = method.getParameters();
+                    Object[] args = new Object[params.length];
+                    for (int i = 0; i < params.length; i++) {
+                        Parameter param = params[i];
                         // If the method contains a User parameter, add the current user to the argument list
-                        if (User.class.equals(param.getType())) {
-                            args.add(user);
+                        if (ApiMethod.isUserParameter(param)) {
+                            args[i] = user;
                         }
-                        else if ("sessionKey".equals(param.getName())) {
-                            args.add(sessionKey);
+                        else if (ApiMethod.isSessionKeyParameter(param)) {
+                            args[i] = sessionKey;
                         }
                         else {
                             JsonElement jsonArg = jsonArgs.get(param.getName());
@@ -235,7 +239,7 @@ public class RouteFactory {
 
                             try {
                                 // Parse each value and add to the argument list
-                                args.add(requestParser.parseValue(jsonArg, param.getType()));
+                                args[i] = requestParser.parseValue(jsonArg, param.getType());
                             }
                             catch (ParseException e) {
                                 // Type mismatch, skip the method
@@ -245,7 +249,7 @@ public class RouteFactory {
                             }
                         }
                     }
-                    return new MethodCall(method, args.toArray());
+                    return new MethodCall(method, args);
                 })
                 .collect(toUnique())
                 .orElseThrow(() -> new NoSuchMethodException("No method exists with the matching parameters"));
@@ -259,7 +263,8 @@ public class RouteFactory {
     private Gson initGsonWithSerializers() {
         GsonBuilder builder = new GsonBuilder()
                 .registerTypeAdapter(Map.class, new MapDeserializer())
-                .registerTypeAdapter(List.class, new ListDeserializer());
+                .registerTypeAdapter(List.class, new ListDeserializer())
+                .registerTypeAdapterFactory(new DataStreamTypeAdapterFactory());
 
         // Serializers that serialize classes in the same class hierarchy override each other in the order they are
         // added. To ensure subclass serializers take precedence, they must be added later than serializers of their
@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2023 SUSE LLC
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.suse.manager.api.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.redhat.rhn.domain.user.User;
+
+import com.suse.manager.api.ApiMethod;
+import com.suse.manager.api.MethodCall;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.Map;
+import java.util.Set;
+
+public class ApiMethodTest {
+
+    private final TestHandler handler = new TestHandler();
+
+    /**
+     * Tests that the argument names exclude the user parameter
+     */
+    @Test
+    public void testArgumentNames() throws Exception {
+        ApiMethod withUser = new ApiMethod(TestHandler.class.getMethod("withUser", User.class));
+        assertTrue(withUser.getArgumentNames().isEmpty());
+
+        ApiMethod basicTypes = new ApiMethod(
+                TestHandler.class.getMethod("basicTypes", Integer.class, String.class, Boolean.class));
+        assertEquals(Set.of("myInteger", "myString", "myBoolean"), basicTypes.getArgumentNames());
+    }
+
+    /**
+     * Tests invoking a method through its handle
+     */
+    @Test
+    public void testInvoke() throws Exception {
+        ApiMethod basicTypes = new ApiMethod(
+                TestHandler.class.getMethod("basicTypes", Integer.class, String.class, Boolean.class));
+        Object result = new MethodCall(basicTypes, new Object[]{1, "foo", true}).invoke(handler);
+        assertEquals(Map.of("myInteger", 1, "myString", "foo", "myBoolean", true), result);
+
+        ApiMethod overloaded = new ApiMethod(
+                TestHandler.class.getMethod("overloadedEndpoint", Integer.class, Integer.class));
+        assertEquals(overloaded.getMethod().invoke(handler, 3, 4),
+                new MethodCall(overloaded, new Object[]{3, 4}).invoke(handler));
+    }
+
+    /**
+     * Tests that exceptions thrown by the method are reported as {@link InvocationTargetException}s
+     */
+    @Test
+    public void testInvokeFailing() throws Exception {
+        ApiMethod failing = new ApiMethod(TestHandler.class.getMethod("failing"));
+        InvocationTargetException e = assertThrows(InvocationTargetException.class,
+                () -> new MethodCall(failing, new Object[0]).invoke(handler));
+        assertTrue(e.getCause() instanceof TestApiException);
+    }
+}
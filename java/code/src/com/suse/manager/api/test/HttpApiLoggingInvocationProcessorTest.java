@@ -26,6 +26,7 @@ import org.junit.jupiter.api.Test;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 
 public class HttpApiLoggingInvocationProcessorTest {
 
@@ -39,6 +40,19 @@ public class HttpApiLoggingInvocationProcessorTest {
         assertEquals("system.provisioning.powermanagement", handlerName);
     }
 
+    @Test
+    public void testGetMetricsMethod() {
+        HttpApiLoggingInvocationProcessor registered =
+                new HttpApiLoggingInvocationProcessor(Set.of("system.provisioning.powermanagement.listTypes"));
+        assertEquals("system.provisioning.powermanagement.listTypes",
+                registered.getMetricsMethod("system.provisioning.powermanagement", "listTypes"));
+        // calls to unregistered URLs must not create new metrics series
+        assertEquals(HttpApiLoggingInvocationProcessor.UNKNOWN_METHOD,
+                registered.getMetricsMethod("system.provisioning.powermanagement", "listTypes2"));
+        assertEquals(HttpApiLoggingInvocationProcessor.UNKNOWN_METHOD,
+                processor.getMetricsMethod("system.provisioning.powermanagement", "listTypes"));
+    }
+
     @Test
     public void testGetCallerLogin() {
         String login = "userLoginTest";
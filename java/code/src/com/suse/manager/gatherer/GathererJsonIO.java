@@ -26,9 +26,11 @@ import com.google.gson.JsonSyntaxException;
 import com.google.gson.TypeAdapter;
 import com.google.gson.reflect.TypeToken;
 import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import com.google.gson.stream.JsonWriter;
 
 import java.io.IOException;
+import java.io.Reader;
 import java.util.Map;
 
 /**
@@ -75,6 +77,38 @@ public class GathererJsonIO {
                 new TypeToken<Map<String, Map<String, HostJson>>>() { }.getType());
     }
 
+    /**
+     * Read Hosts from virtual-host-gatherer's JSON output as a stream, passing them to the
+     * handler one at a time instead of building the whole result in memory.
+     * Virtual Host Managers reported without data are skipped.
+     *
+     * @param reader the reader of the JSON output
+     * @param handler the handler receiving the hosts
+     * @throws IOException in case reading fails
+     * @throws JsonSyntaxException in case JSON does not have correct syntax
+     */
+    public void readHosts(Reader reader, GathererResultHandler handler)
+            throws IOException, JsonSyntaxException {
+        JsonReader json = gson.newJsonReader(reader);
+        json.beginObject();
+        while (json.hasNext()) {
+            String vhmLabel = json.nextName();
+            if (json.peek() == JsonToken.NULL) {
+                json.nextNull();
+                continue;
+            }
+            handler.startVirtualHostManager(vhmLabel);
+            json.beginObject();
+            while (json.hasNext()) {
+                String hostLabel = json.nextName();
+                handler.host(hostLabel, gson.fromJson(json, HostJson.class));
+            }
+            json.endObject();
+            handler.endVirtualHostManager(vhmLabel);
+        }
+        json.endObject();
+    }
+
     /**
      * Write Object to Json
      * @param o an object
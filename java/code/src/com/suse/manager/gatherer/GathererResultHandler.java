@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) 2023 SUSE LLC
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+
+package com.suse.manager.gatherer;
+
+/**
+ * Receives the virtual-host-gatherer results while they are read, one host at a time.
+ */
+public interface GathererResultHandler {
+
+    /**
+     * Called before the hosts of a Virtual Host Manager are read.
+     *
+     * @param vhmLabel the label of the Virtual Host Manager
+     */
+    void startVirtualHostManager(String vhmLabel);
+
+    /**
+     * Called for each host reported for the current Virtual Host Manager.
+     *
+     * @param hostLabel the name of the host
+     * @param host the host
+     */
+    void host(String hostLabel, HostJson host);
+
+    /**
+     * Called once all the hosts of a Virtual Host Manager have been read.
+     *
+     * @param vhmLabel the label of the Virtual Host Manager
+     */
+    void endVirtualHostManager(String vhmLabel);
+}
@@ -24,6 +24,8 @@ import com.redhat.rhn.manager.satellite.SystemCommandExecutor;
 
 import com.suse.manager.model.gatherer.GathererModule;
 
+import com.google.gson.JsonParseException;
+
 import org.apache.commons.lang3.StringUtils;
 import org.apache.http.client.utils.URIBuilder;
 import org.apache.logging.log4j.LogManager;
@@ -80,6 +82,39 @@ public class GathererRunner {
      * (virtual name, {@link HostJson}) pairs
      */
     public Map<String, Map<String, HostJson>> run(List<VirtualHostManager> vhms) {
+        Map<String, Map<String, HostJson>> hosts = new HashMap<>();
+        boolean success = run(vhms, new GathererResultHandler() {
+            private Map<String, HostJson> current;
+
+            @Override
+            public void startVirtualHostManager(String vhmLabel) {
+                current = new HashMap<>();
+                hosts.put(vhmLabel, current);
+            }
+
+            @Override
+            public void host(String hostLabel, HostJson host) {
+                current.put(hostLabel, host);
+            }
+
+            @Override
+            public void endVirtualHostManager(String vhmLabel) {
+                current = null;
+            }
+        });
+        return success ? hosts : null;
+    }
+
+    /**
+     * Runs virtual-host-gatherer against a set of Virtual Host Managers, passing the
+     * hosts to the handler while the gatherer output is read.
+     *
+     * @param vhms the virtual host managers
+     * @param handler the handler receiving the hosts
+     * @return true if the gatherer completed successfully, false otherwise. The handler
+     * might have received hosts even when false is returned.
+     */
+    public boolean run(List<VirtualHostManager> vhms, GathererResultHandler handler) {
         List<String> args = new LinkedList<>();
         args.add(GATHERER_CMD);
         args.add("--infile");
@@ -130,7 +165,6 @@ public class GathererRunner {
             envp[i++] = e.getKey() + "=" + e.getValue();
         }
 
-        Map<String, Map<String, HostJson>> hosts = null;
         Runtime r = Runtime.getRuntime();
         try {
             Process p = r.exec(args.toArray(new String[0]), envp);
@@ -154,23 +188,29 @@ public class GathererRunner {
             });
             errStreamReader.start();
 
-            InputStreamReader irr = new InputStreamReader(p.getInputStream());
-            // We need to consume the input stream as it comes to avoid
-            // a deadlock because the buffer size is full.
-            BufferedReader br = new BufferedReader(irr);
-            StringBuilder sb = new StringBuilder();
-            String line;
-            while ((line = br.readLine()) != null) {
-                sb.append(line);
+            // The output is parsed as it comes, which also consumes the input stream
+            // and avoids a deadlock because the buffer size is full.
+            boolean parsed = false;
+            try (BufferedReader br = new BufferedReader(new InputStreamReader(p.getInputStream()))) {
+                new GathererJsonIO().readHosts(br, handler);
+                parsed = true;
+            }
+            catch (IOException | JsonParseException e) {
+                logger.error("Unable to parse the virtual-host-gatherer output", e);
+            }
+            catch (RuntimeException e) {
+                // the handler failed: nobody reads the gatherer output anymore
+                p.destroy();
+                throw e;
             }
-            hosts = new GathererJsonIO().readHosts(sb.toString());
 
             int exitCode = p.waitFor();
             if (exitCode != 0) {
                 logger.error("Error while calling the virtual-host-gatherer, exit code {}", exitCode);
                 logger.error("Please check the virtual-host-gatherer logfile.");
-                return null;
+                return false;
             }
+            return parsed;
         }
         catch (IOException ioe) {
             logger.error("execute(String[])", ioe);
@@ -179,6 +219,6 @@ public class GathererRunner {
             Thread.currentThread().interrupt();
             logger.error("execute(String[])", e);
         }
-        return hosts;
+        return false;
     }
 }
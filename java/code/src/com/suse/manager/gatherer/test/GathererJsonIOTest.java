@@ -29,13 +29,16 @@ import com.redhat.rhn.domain.server.virtualhostmanager.VirtualHostManagerConfig;
 import com.redhat.rhn.testing.TestUtils;
 
 import com.suse.manager.gatherer.GathererJsonIO;
+import com.suse.manager.gatherer.GathererResultHandler;
 import com.suse.manager.gatherer.HostJson;
 import com.suse.manager.model.gatherer.GathererModule;
 
 import org.junit.jupiter.api.Test;
 
+import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -156,4 +159,43 @@ public class GathererJsonIOTest  {
         assertNotNull(h.getOptionalVmData());
         assertEquals("running", h.getOptionalVmData().get("SUSE-Manager-Reference").get("vmState"));
     }
+
+    @Test
+    public void testReadGathererOutputStreamed() throws Exception {
+        String json = FileUtils.readStringFromFile(TestUtils.findTestData(GATHEREROUT).getPath());
+        Map<String, Map<String, HostJson>> expected = new GathererJsonIO().readHosts(json);
+
+        List<String> events = new ArrayList<>();
+        Map<String, Map<String, HostJson>> hosts = new HashMap<>();
+        new GathererJsonIO().readHosts(new StringReader(json), new GathererResultHandler() {
+            private String current;
+
+            @Override
+            public void startVirtualHostManager(String vhmLabel) {
+                events.add("start " + vhmLabel);
+                current = vhmLabel;
+                hosts.put(vhmLabel, new HashMap<>());
+            }
+
+            @Override
+            public void host(String hostLabel, HostJson host) {
+                hosts.get(current).put(hostLabel, host);
+            }
+
+            @Override
+            public void endVirtualHostManager(String vhmLabel) {
+                events.add("end " + vhmLabel);
+            }
+        });
+
+        assertEquals(6, events.size());
+        assertEquals(expected.keySet(), hosts.keySet());
+        expected.forEach((vhmLabel, expectedHosts) -> {
+            assertEquals(expectedHosts.keySet(), hosts.get(vhmLabel).keySet());
+            expectedHosts.forEach((hostLabel, host) -> {
+                assertEquals(host.getHostIdentifier(), hosts.get(vhmLabel).get(hostLabel).getHostIdentifier());
+                assertEquals(host.getVms(), hosts.get(vhmLabel).get(hostLabel).getVms());
+            });
+        });
+    }
 }
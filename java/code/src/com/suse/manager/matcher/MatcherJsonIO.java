@@ -16,12 +16,19 @@
 package com.suse.manager.matcher;
 
 import static java.util.Optional.ofNullable;
+import static java.util.stream.Collectors.groupingBy;
+import static java.util.stream.Collectors.mapping;
 import static java.util.stream.Collectors.toList;
+import static java.util.stream.Collectors.toMap;
 import static java.util.stream.Collectors.toSet;
 import static java.util.stream.Stream.concat;
 import static java.util.stream.Stream.empty;
 import static java.util.stream.Stream.of;
 
+import com.redhat.rhn.common.conf.ConfigDefaults;
+import com.redhat.rhn.common.db.datasource.DataResult;
+import com.redhat.rhn.common.db.datasource.ModeFactory;
+import com.redhat.rhn.common.db.datasource.SelectMode;
 import com.redhat.rhn.common.hibernate.HibernateFactory;
 import com.redhat.rhn.domain.credentials.Credentials;
 import com.redhat.rhn.domain.matcher.MatcherRunData;
@@ -31,10 +38,8 @@ import com.redhat.rhn.domain.product.SUSEProduct;
 import com.redhat.rhn.domain.product.SUSEProductFactory;
 import com.redhat.rhn.domain.scc.SCCCachingFactory;
 import com.redhat.rhn.domain.scc.SCCSubscription;
+import com.redhat.rhn.domain.server.InstalledProduct;
 import com.redhat.rhn.domain.server.PinnedSubscription;
-import com.redhat.rhn.domain.server.Server;
-import com.redhat.rhn.domain.server.ServerArch;
-import com.redhat.rhn.domain.server.ServerFactory;
 import com.redhat.rhn.domain.server.virtualhostmanager.VirtualHostManagerFactory;
 import com.redhat.rhn.manager.entitlement.EntitlementManager;
 
@@ -50,10 +55,14 @@ import com.suse.utils.Opt;
 import com.google.gson.FieldNamingPolicy;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.stream.JsonWriter;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
@@ -61,8 +70,11 @@ import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -79,12 +91,12 @@ public class MatcherJsonIO {
     private static final String S390_ARCH_STR = "s390";
     private static final String PPC64LE_ARCH_STR = "ppc64le";
 
+    /** Label of the s390x server arch */
+    private static final String S390X_ARCH_LABEL = "s390x";
+
     /** (De)serializer instance. */
     private Gson gson;
 
-    /** Cached instance of the s390x ServerArch object. */
-    private final ServerArch s390arch;
-
     /** Cached mandatory product ID for an s390x system. */
     private final Optional<Long> productIdForS390xSystem;
 
@@ -124,8 +136,6 @@ public class MatcherJsonIO {
             .setPrettyPrinting()
             .create();
 
-        s390arch = ServerFactory.lookupServerArchByLabel("s390x");
-
         productIdForS390xSystem = productIdForEntitlement("SUSE-Manager-Mgmt-Unlimited-Virtual-Z");
         productIdForSystem = productIdForEntitlement("SUSE-Manager-Mgmt-Single");
         lifecycleProductsTranslation = new HashMap<>();
@@ -158,32 +168,59 @@ public class MatcherJsonIO {
      * about systems on this Server
      */
     public List<SystemJson> getJsonSystems(boolean includeSelf, String arch, boolean selfMonitoringEnabled) {
-        Stream<SystemJson> systems = ServerFactory.list(true, true).stream()
-            .map(system -> {
-                Long cpus = system.getCpu() == null ? null : system.getCpu().getNrsocket();
-                Set<String> entitlements = system.getEntitlementLabels();
-                boolean virtualHost = entitlements.contains(EntitlementManager.VIRTUALIZATION_ENTITLED) ||
-                        !system.getGuests().isEmpty();
-                Set<Long> productIds = productIdsForServer(system, entitlements).collect(toSet());
-                return new SystemJson(
-                    system.getId(),
-                    system.getName(),
-                    cpus == null ? null : cpus.intValue(),
-                    !system.isVirtualGuest(),
-                    virtualHost,
-                    getVirtualGuests(system),
-                    productIds
-                );
-            });
+        List<SystemJson> result = new ArrayList<>();
+        forEachJsonSystem(includeSelf, arch, selfMonitoringEnabled, result::add);
+        return result;
+    }
+
+    /**
+     * Passes the JSON representation of every system on this Server to the consumer, one at a time. Systems are
+     * read from a single aggregate query through a database cursor, so no Server object is ever loaded.
+     *
+     * @param includeSelf - true if we want to add SUMa products and host
+     * @param arch - cpu architecture of this SUMa
+     * @param selfMonitoringEnabled whether the monitoring of SUMA server itself is enabled
+     * @param consumer the consumer of the systems
+     */
+    public void forEachJsonSystem(boolean includeSelf, String arch, boolean selfMonitoringEnabled,
+            Consumer<SystemJson> consumer) {
+        Map<Long, InstalledProduct> installedProducts = HibernateFactory.getSession()
+                .createQuery("FROM InstalledProduct", InstalledProduct.class)
+                .stream()
+                .collect(toMap(InstalledProduct::getId, Function.identity()));
+
+        SelectMode m = ModeFactory.getMode("System_queries", "matcher_systems");
+        m.<Map<String, Object>>executeWithCursor(new HashMap<>(), ConfigDefaults.get().getApiStreamingFetchSize(),
+                row -> consumer.accept(toJsonSystem(row, installedProducts)));
+
+        jsonSystemForSelf(includeSelf, selfMonitoringEnabled, arch).forEach(consumer);
+    }
 
-        return concat(systems, jsonSystemForSelf(includeSelf, selfMonitoringEnabled, arch)).collect(toList());
+    private SystemJson toJsonSystem(Map<String, Object> row, Map<Long, InstalledProduct> installedProducts) {
+        Long cpus = (Long) row.get("cpus");
+        Set<String> entitlements = splitLabels((String) row.get("entitlements")).collect(toSet());
+        boolean virtualHost = entitlements.contains(EntitlementManager.VIRTUALIZATION_ENTITLED) ||
+                Boolean.TRUE.equals(row.get("has_guests"));
+        List<InstalledProduct> products = splitLabels((String) row.get("installed_products"))
+                .map(id -> installedProducts.get(Long.valueOf(id)))
+                .filter(Objects::nonNull)
+                .collect(toList());
+        boolean s390 = S390X_ARCH_LABEL.equals(row.get("server_arch"));
+        Set<Long> productIds = productIdsForServer(products, Boolean.TRUE.equals(row.get("payg")), s390,
+                entitlements).collect(toSet());
+        return new SystemJson(
+            (Long) row.get("id"),
+            (String) row.get("name"),
+            cpus == null ? null : cpus.intValue(),
+            !Boolean.TRUE.equals(row.get("virtual_guest")),
+            virtualHost,
+            splitLabels((String) row.get("guests")).map(Long::valueOf).collect(toSet()),
+            productIds
+        );
     }
 
-    private static Set<Long> getVirtualGuests(Server system) {
-        return system.getGuests().stream()
-            .filter(vi -> vi.getGuestSystem() != null)
-            .map(vi -> vi.getGuestSystem().getId())
-            .collect(toSet());
+    private static Stream<String> splitLabels(String aggregate) {
+        return aggregate == null ? Stream.empty() : Arrays.stream(aggregate.split(","));
     }
 
     /**
@@ -242,8 +279,10 @@ public class MatcherJsonIO {
     }
 
     /**
-     * Returns input data for subscription-matcher as a string.
+     * Writes the input data for subscription-matcher to the given writer. Systems are streamed from the database
+     * as they are serialized, so the whole document is never held in memory.
      *
+     * @param writer the writer to serialize the input to, it is flushed but not closed
      * @param includeSelf true if we want to add the products of the SUMA instance
      *                    running Matcher to the JSON output. Since SUMA Server is not
      *                    typically a SUMA Client at the same time, its system (with
@@ -255,17 +294,34 @@ public class MatcherJsonIO {
      * @param arch cpu architecture of this SUMA instance. This is important for correct
      *             product ID computation in case includeSelf == true.
      * @param selfMonitoringEnabled whether the monitoring of SUMA server itself is enabled
-     * @return an object representation of the JSON input for the matcher
+     * @throws IOException if writing fails
      */
-    public String generateMatcherInput(boolean includeSelf, String arch, boolean selfMonitoringEnabled) {
-        return gson.toJson(new InputJson(
-            new Date(),
-            getJsonSystems(includeSelf, arch, selfMonitoringEnabled),
-            getJsonVirtualizationGroups(),
-            getJsonProducts(),
-            getJsonSubscriptions(),
-            getJsonMatches())
-        );
+    public void writeMatcherInput(Writer writer, boolean includeSelf, String arch, boolean selfMonitoringEnabled)
+            throws IOException {
+        JsonWriter json = gson.newJsonWriter(writer);
+        json.beginObject();
+        json.name("timestamp");
+        gson.toJson(new Date(), Date.class, json);
+
+        json.name("systems").beginArray();
+        forEachJsonSystem(includeSelf, arch, selfMonitoringEnabled,
+                system -> gson.toJson(system, SystemJson.class, json));
+        json.endArray();
+
+        writeArray(json, "virtualization_groups", getJsonVirtualizationGroups(), VirtualizationGroupJson.class);
+        writeArray(json, "products", getJsonProducts(), ProductJson.class);
+        writeArray(json, "subscriptions", getJsonSubscriptions(), SubscriptionJson.class);
+        writeArray(json, "pinned_matches", getJsonMatches(), MatchJson.class);
+        json.endObject();
+        json.flush();
+    }
+
+    private <T> void writeArray(JsonWriter json, String name, List<T> items, Class<T> type) throws IOException {
+        json.name(name).beginArray();
+        for (T item : items) {
+            gson.toJson(item, type, json);
+        }
+        json.endArray();
     }
 
     /**
@@ -274,15 +330,19 @@ public class MatcherJsonIO {
      * @return virtualization groups
      */
     public List<VirtualizationGroupJson> getJsonVirtualizationGroups() {
+        SelectMode m = ModeFactory.getMode("System_queries", "matcher_virtual_host_manager_guests");
+        DataResult<Map<String, Object>> rows = m.execute(new HashMap<>());
+        Map<Long, Set<Long>> guestsByManager = rows.stream()
+                .collect(groupingBy(row -> (Long) row.get("virtual_host_manager_id"),
+                        mapping(row -> (Long) row.get("guest_id"), toSet())));
+
         // only group we currently support is by virtual host manager
         return VirtualHostManagerFactory.getInstance().listVirtualHostManagers().stream()
                 .map(vhm -> new VirtualizationGroupJson(
                         vhm.getId(),
                         vhm.getLabel(),
                         "virtual_host_manager_" + vhm.getGathererModule().toLowerCase(),
-                        vhm.getServers().stream()
-                                .flatMap(s -> getVirtualGuests(s).stream())
-                                .collect(Collectors.toSet())))
+                        guestsByManager.getOrDefault(vhm.getId(), new HashSet<>())))
                 .collect(Collectors.toList());
     }
 
@@ -292,9 +352,7 @@ public class MatcherJsonIO {
      */
     public Optional<InputJson> getLastMatcherInput() {
         MatcherRunData data = MatcherRunDataFactory.getSingle();
-        return ofNullable(gson.fromJson(
-                data == null ? null : data.getInput(),
-                InputJson.class));
+        return data == null ? Optional.empty() : ofNullable(gson.fromJson(data.getInputReader(), InputJson.class));
     }
 
     /**
@@ -303,9 +361,7 @@ public class MatcherJsonIO {
      */
     public Optional<OutputJson> getLastMatcherOutput() {
         MatcherRunData data = MatcherRunDataFactory.getSingle();
-        return ofNullable(gson.fromJson(
-                data == null ? null : data.getOutput(),
-                OutputJson.class));
+        return data == null ? Optional.empty() : ofNullable(gson.fromJson(data.getOutputReader(), OutputJson.class));
     }
 
     /**
@@ -341,8 +397,9 @@ public class MatcherJsonIO {
      * subsription matching.
      * Also filters out the products for PAYG (Pay-As-You-Go) instances.
      */
-    private Stream<Long> productIdsForServer(Server server, Set<String> entitlements) {
-        List<SUSEProduct> products = productFactory.map(server.getInstalledProducts())
+    private Stream<Long> productIdsForServer(List<InstalledProduct> installedProducts, boolean payg, boolean s390,
+            Set<String> entitlements) {
+        List<SUSEProduct> products = productFactory.map(installedProducts)
                 .filter(product -> !"SLE-M-T".equals(product.getChannelFamily().getLabel()))
                 .collect(toList());
 
@@ -352,19 +409,19 @@ public class MatcherJsonIO {
 
         // add SUSE Manager entitlements
         return concat(
-                server.isPayg() ? Stream.empty() : products.stream().map(SUSEProduct::getProductId),
-                entitlementIdsForServer(server, entitlements)
+                payg ? Stream.empty() : products.stream().map(SUSEProduct::getProductId),
+                entitlementIdsForServer(s390, entitlements)
         );
     }
 
     /**
      * Returns SUSE Manager entitlement product ids for a server.
      */
-    private Stream<Long> entitlementIdsForServer(Server server, Set<String> entitlements) {
+    private Stream<Long> entitlementIdsForServer(boolean s390, Set<String> entitlements) {
         Optional<Long> lifecycleProduct = Optional.empty();
         if (entitlements.contains(EntitlementManager.SALT_ENTITLED) ||
                 entitlements.contains(EntitlementManager.ENTERPRISE_ENTITLED)) {
-            if (server.getServerArch().equals(s390arch)) {
+            if (s390) {
                 lifecycleProduct = productIdForS390xSystem;
             }
             else {
@@ -373,7 +430,7 @@ public class MatcherJsonIO {
         }
         Optional<Long> monitoringProduct = Optional.empty();
         if (entitlements.contains(EntitlementManager.MONITORING_ENTITLED)) {
-            if (server.getServerArch().equals(s390arch)) {
+            if (s390) {
                 monitoringProduct = monitoringProductIdS390x;
             }
             else {
@@ -30,11 +30,14 @@ import org.apache.commons.io.FileUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.PrintWriter;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Optional;
@@ -83,23 +86,26 @@ public class MatcherRunner {
         Runtime r = Runtime.getRuntime();
         ExecutorService errorReaderService = null;
         ExecutorService inputReaderService = null;
+        Process p = null;
         try {
             boolean isISSMaster = IssFactory.getCurrentMaster() == null;
             boolean isSelfMonitoringEnabled = MonitoringService.isMonitoringEnabled();
             PinnedSubscriptionFactory.getInstance().cleanStalePins();
             String arch = System.getProperty("os.arch");
-            String s = new MatcherJsonIO().generateMatcherInput(isISSMaster, arch, isSelfMonitoringEnabled);
 
-            Process p = r.exec(args.toArray(new String[0]));
-            PrintWriter stdin = new PrintWriter(p.getOutputStream());
-            stdin.println(s);
-            stdin.flush();
-            stdin.close();
+            p = r.exec(args.toArray(new String[0]));
 
             // we need to exhaust the process output not to get stuck
             errorReaderService = exhaustOutputOnBackground(p.getErrorStream());
             inputReaderService = exhaustOutputOnBackground(p.getInputStream());
 
+            // the input is serialized straight into the matcher process while systems are read from the database
+            try (Writer stdin = new BufferedWriter(new OutputStreamWriter(p.getOutputStream(),
+                    StandardCharsets.UTF_8))) {
+                new MatcherJsonIO().writeMatcherInput(stdin, isISSMaster, arch, isSelfMonitoringEnabled);
+                stdin.write(System.lineSeparator());
+            }
+
             int exitCode = p.waitFor();
             if (exitCode != 0) {
                 logger.error("Error while calling the subscription-matcher, exit code {}", exitCode);
@@ -116,6 +122,9 @@ public class MatcherRunner {
         }
         catch (IOException | InterruptedException e) {
             logger.error("execute(String[])", e);
+            if (p != null) {
+                p.destroy();
+            }
         }
         finally {
             if (errorReaderService != null) {
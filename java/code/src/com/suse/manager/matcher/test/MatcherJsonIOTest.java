@@ -55,6 +55,7 @@ import com.suse.manager.webui.services.iface.MonitoringManager;
 import com.suse.manager.webui.services.iface.SaltApi;
 import com.suse.manager.webui.services.iface.VirtManager;
 import com.suse.manager.webui.services.test.TestSaltApi;
+import com.suse.matcher.json.InputJson;
 import com.suse.matcher.json.MatchJson;
 import com.suse.matcher.json.ProductJson;
 import com.suse.matcher.json.SubscriptionJson;
@@ -62,12 +63,16 @@ import com.suse.matcher.json.SystemJson;
 import com.suse.matcher.json.VirtualizationGroupJson;
 import com.suse.scc.model.SCCSubscriptionJson;
 
+import com.google.gson.FieldNamingPolicy;
+import com.google.gson.GsonBuilder;
+
 import org.jmock.Expectations;
 import org.jmock.imposters.ByteBuddyClassImposteriser;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.io.File;
+import java.io.StringWriter;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Arrays;
@@ -250,6 +255,34 @@ public class MatcherJsonIOTest extends JMockBaseTestCaseWithUser {
         assertEquals(new HashSet<>(Arrays.asList(1897L, 1201L)), sumaItself.getProductIds());
     }
 
+    @Test
+    public void testWriteMatcherInput() throws Exception {
+        Server server = ServerTestUtils.createTestSystem();
+        server.setName("streamed.example.com");
+        server.setCpu(createCPU(server, 2L));
+
+        StringWriter writer = new StringWriter();
+        new MatcherJsonIO().writeMatcherInput(writer, true, AMD64_ARCH, false);
+
+        InputJson input = new GsonBuilder()
+                .setDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSSX")
+                .setFieldNamingPolicy(FieldNamingPolicy.LOWER_CASE_WITH_UNDERSCORES)
+                .create()
+                .fromJson(writer.toString(), InputJson.class);
+        assertNotNull(input.getTimestamp());
+        assertNotNull(input.getVirtualizationGroups());
+        assertNotNull(input.getProducts());
+        assertNotNull(input.getSubscriptions());
+        assertNotNull(input.getPinnedMatches());
+
+        SystemJson system = findSystem(server.getId(), input.getSystems());
+        assertNotNull(system);
+        assertEquals("streamed.example.com", system.getName());
+        assertEquals(2, system.getCpus().intValue());
+        assertTrue(system.getPhysical());
+        assertNotNull(findSystem(MatcherJsonIO.SELF_SYSTEM_ID, input.getSystems()));
+    }
+
     @Test
     public void testProductsToJson() {
         SUSEProductTestUtils.clearAllProducts();
@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2023 SUSE LLC
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.suse.manager.metrics;
+
+import com.suse.utils.ExpiringCache;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import io.prometheus.client.Collector;
+
+/**
+ * Collector for an {@link ExpiringCache}.
+ */
+public class CacheCollector extends Collector {
+
+    private ExpiringCache<?, ?> cache;
+    private String cacheId;
+
+    /**
+     * Standard constructor.
+     * @param cacheIn a cache
+     * @param cacheIdIn a unique ID for the cache
+     */
+    public CacheCollector(ExpiringCache<?, ?> cacheIn, String cacheIdIn) {
+        this.cache = cacheIn;
+        this.cacheId = cacheIdIn;
+    }
+
+    @Override
+    public List<MetricFamilySamples> collect() {
+        List<MetricFamilySamples> out = new ArrayList<>();
+
+        out.add(CustomCollectorUtils.counterFor("cache_hits",
+                "Number of lookups finding a cached value", this.cache.getHits(), this.cacheId));
+        out.add(CustomCollectorUtils.counterFor("cache_misses",
+                "Number of lookups not finding a cached value", this.cache.getMisses(), this.cacheId));
+        out.add(CustomCollectorUtils.gaugeFor("cache_size",
+                "Number of cached entries", this.cache.size(), this.cacheId));
+
+        return out;
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2023 SUSE LLC
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.suse.manager.metrics;
+
+import io.prometheus.client.Histogram;
+
+/**
+ * Latency histograms of the hot paths: event handling, action dispatch and API calls.
+ *
+ * Observations are cheap and always recorded, the histograms are only exported when Prometheus
+ * monitoring is enabled.
+ */
+public class LatencyMetrics {
+
+    private static final String PREFIX = SystemsCollector.PRODUCT_NAME;
+
+    // from 1ms to ~16s, enough for event handlers, queries and API calls
+    private static final double[] SHORT_BUCKETS = {0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2,
+            4, 8, 16};
+
+    // from 1s to 1 day, for the delays of scheduled actions
+    private static final double[] LONG_BUCKETS = {1, 5, 15, 30, 60, 120, 300, 600, 1800, 3600, 3 * 3600, 6 * 3600,
+            12 * 3600, 24 * 3600};
+
+    /** Time spent by each handler of the messages of the MessageQueue, by message and handler class */
+    public static final Histogram MESSAGE_HANDLING = Histogram.build()
+            .name(PREFIX + "_message_handling_seconds")
+            .help(PREFIX + " - Time spent handling the messages of the message queue")
+            .labelNames("message", "handler")
+            .buckets(SHORT_BUCKETS)
+            .create();
+
+    /** Time spent processing each Salt event, by event type */
+    public static final Histogram SALT_EVENT_PROCESSING = Histogram.build()
+            .name(PREFIX + "_salt_event_processing_seconds")
+            .help(PREFIX + " - Time spent processing a Salt event from the database queue")
+            .labelNames("type")
+            .buckets(SHORT_BUCKETS)
+            .create();
+
+    /** Delay between the earliest execution time of an action and its dispatch, by action type */
+    public static final Histogram ACTION_PICKUP_DELAY = Histogram.build()
+            .name(PREFIX + "_action_pickup_delay_seconds")
+            .help(PREFIX + " - Delay between the earliest execution time of an action and its dispatch")
+            .labelNames("action_type")
+            .buckets(LONG_BUCKETS)
+            .create();
+
+    /** Time spent dispatching an action to the minions, by action type */
+    public static final Histogram ACTION_DISPATCH = Histogram.build()
+            .name(PREFIX + "_action_dispatch_seconds")
+            .help(PREFIX + " - Time spent dispatching an action to Salt minions")
+            .labelNames("action_type")
+            .buckets(SHORT_BUCKETS)
+            .create();
+
+    /** Time spent updating a server action from its job result, by action type */
+    public static final Histogram ACTION_RESULT_UPDATE = Histogram.build()
+            .name(PREFIX + "_action_result_update_seconds")
+            .help(PREFIX + " - Time spent updating a server action from its Salt job result")
+            .labelNames("action_type")
+            .buckets(SHORT_BUCKETS)
+            .create();
+
+    /** API call latency, by API, method and result */
+    public static final Histogram API_CALLS = Histogram.build()
+            .name(PREFIX + "_api_call_seconds")
+            .help(PREFIX + " - Latency of the XML-RPC and HTTP API calls")
+            .labelNames("api", "method", "result")
+            .buckets(SHORT_BUCKETS)
+            .create();
+
+    static {
+        PrometheusExporter.INSTANCE.registerCollectors(MESSAGE_HANDLING, SALT_EVENT_PROCESSING, ACTION_PICKUP_DELAY,
+                ACTION_DISPATCH, ACTION_RESULT_UPDATE, API_CALLS);
+    }
+
+    private LatencyMetrics() {
+    }
+
+    /**
+     * Records the time elapsed since start
+     * @param histogram the histogram
+     * @param startNanos the start, as returned by {@link System#nanoTime()}
+     * @param labels the label values
+     */
+    public static void observeSince(Histogram histogram, long startNanos, String... labels) {
+        histogram.labels(labels).observe((System.nanoTime() - startNanos) / 1.0E9);
+    }
+}
@@ -16,13 +16,17 @@ package com.suse.manager.metrics;
 
 import com.redhat.rhn.common.conf.ConfigDefaults;
 
+import com.suse.utils.ExpiringCache;
+
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.quartz.Scheduler;
 
 import java.io.IOException;
 import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicLongArray;
 
+import io.prometheus.client.Collector;
 import io.prometheus.client.exporter.HTTPServer;
 
 /**
@@ -64,6 +68,17 @@ public enum PrometheusExporter {
         }
     }
 
+    /**
+     * Registers a cache for monitoring.
+     * @param cache a cache
+     * @param cacheId a unique ID for the cache
+     */
+    public void registerCache(ExpiringCache<?, ?> cache, String cacheId) {
+        if (ENABLED) {
+            new CacheCollector(cache, cacheId).register();
+        }
+    }
+
     /**
      * Registers a Scheduler for monitoring.
      * @param scheduler a scheduler
@@ -75,12 +90,57 @@ public enum PrometheusExporter {
         }
     }
 
+    /**
+     * Registers the Salt event queues statistics for monitoring.
+     * @param queued number of events waiting in each queue
+     * @param processed number of events ever processed by each queue
+     * @param lastBatchMillis duration in milliseconds of the last batch processed by each queue
+     */
+    public void registerSaltEventQueues(AtomicLongArray queued, AtomicLongArray processed,
+                                        AtomicLongArray lastBatchMillis) {
+        if (ENABLED) {
+            new SaltEventsCollector(queued, processed, lastBatchMillis).register();
+        }
+    }
+
+    /**
+     * Registers collectors, typically metrics updated by the application code, for monitoring.
+     * @param collectors the collectors
+     */
+    public void registerCollectors(Collector... collectors) {
+        if (ENABLED) {
+            for (Collector collector : collectors) {
+                collector.register();
+            }
+        }
+    }
+
+    /**
+     * Registers the datasource query statistics for monitoring.
+     */
+    public void registerQueryStatistics() {
+        if (ENABLED) {
+            new QueryCollector().register();
+        }
+    }
+
+    /**
+     * Registers the Taskomatic task queue statistics for monitoring.
+     */
+    public void registerTaskQueueStatistics() {
+        if (ENABLED) {
+            new TaskQueueCollector().register();
+        }
+    }
+
     /**
      * Register collector for systems statistics
      */
     public void registerSystemsCollector() {
         if (ENABLED) {
-            new SystemsCollector().register();
+            SystemsCollector collector = new SystemsCollector();
+            collector.register();
+            collector.start();
         }
     }
 }
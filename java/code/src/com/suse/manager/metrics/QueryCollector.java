@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2023 SUSE LLC
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.suse.manager.metrics;
+
+import com.redhat.rhn.common.db.datasource.QueryStatistics;
+
+import java.util.List;
+import java.util.Map;
+
+import io.prometheus.client.Collector;
+import io.prometheus.client.CounterMetricFamily;
+
+/**
+ * Collector for the datasource query statistics, labelled by query name.
+ */
+public class QueryCollector extends Collector {
+
+    private static final String PREFIX = "datasource_query";
+
+    @Override
+    public List<MetricFamilySamples> collect() {
+        List<String> labels = List.of("query");
+        CounterMetricFamily executions = new CounterMetricFamily(PREFIX + "_executions",
+                PREFIX + " - Number of statements executed", labels);
+        CounterMetricFamily seconds = new CounterMetricFamily(PREFIX + "_seconds",
+                PREFIX + " - Time spent preparing, executing and reading statements", labels);
+
+        for (Map.Entry<String, QueryStatistics.Timing> entry : QueryStatistics.getTimings().entrySet()) {
+            List<String> query = List.of(entry.getKey());
+            executions.addMetric(query, entry.getValue().getExecutions());
+            seconds.addMetric(query, entry.getValue().getSeconds());
+        }
+        return List.of(executions, seconds);
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2023 SUSE LLC
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.suse.manager.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import io.prometheus.client.Collector;
+import io.prometheus.client.CounterMetricFamily;
+import io.prometheus.client.GaugeMetricFamily;
+
+/**
+ * Collector for the Salt event queues, labelled by queue number.
+ */
+public class SaltEventsCollector extends Collector {
+
+    private static final String PREFIX = "salt_events";
+
+    private AtomicLongArray queued;
+    private AtomicLongArray processed;
+    private AtomicLongArray lastBatchMillis;
+
+    /**
+     * Standard constructor.
+     * @param queuedIn number of events waiting in each queue
+     * @param processedIn number of events ever processed by each queue
+     * @param lastBatchMillisIn duration in milliseconds of the last batch processed by each queue
+     */
+    public SaltEventsCollector(AtomicLongArray queuedIn, AtomicLongArray processedIn,
+                               AtomicLongArray lastBatchMillisIn) {
+        this.queued = queuedIn;
+        this.processed = processedIn;
+        this.lastBatchMillis = lastBatchMillisIn;
+    }
+
+    @Override
+    public List<MetricFamilySamples> collect() {
+        List<String> labels = List.of("queue");
+        GaugeMetricFamily queuedFamily = new GaugeMetricFamily(PREFIX + "_queued",
+                PREFIX + " - Number of events waiting to be processed", labels);
+        CounterMetricFamily processedFamily = new CounterMetricFamily(PREFIX + "_processed",
+                PREFIX + " - Number of events ever processed", labels);
+        GaugeMetricFamily lastBatchFamily = new GaugeMetricFamily(PREFIX + "_last_batch_duration_seconds",
+                PREFIX + " - Duration of the last processed batch of events", labels);
+
+        for (int i = 0; i < queued.length(); i++) {
+            List<String> queue = List.of(String.valueOf(i));
+            queuedFamily.addMetric(queue, queued.get(i));
+            processedFamily.addMetric(queue, processed.get(i));
+            lastBatchFamily.addMetric(queue, lastBatchMillis.get(i) / 1000.0);
+        }
+
+        List<MetricFamilySamples> out = new ArrayList<>();
+        out.add(queuedFamily);
+        out.add(processedFamily);
+        out.add(lastBatchFamily);
+        return out;
+    }
+}
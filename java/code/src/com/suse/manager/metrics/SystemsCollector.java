@@ -10,53 +10,132 @@
  */
 
 package com.suse.manager.metrics;
-
-import com.redhat.rhn.domain.server.Server;
-import com.redhat.rhn.domain.server.ServerFactory;
+import com.redhat.rhn.common.conf.ConfigDefaults;
+import com.redhat.rhn.common.db.datasource.DataResult;
+import com.redhat.rhn.common.db.datasource.ModeFactory;
+import com.redhat.rhn.common.db.datasource.SelectMode;
+import com.redhat.rhn.common.hibernate.HibernateFactory;
+import com.redhat.rhn.domain.common.SatConfigFactory;
 import com.redhat.rhn.manager.system.SystemManager;
 
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import io.prometheus.client.Collector;
+import io.prometheus.client.GaugeMetricFamily;
 
+/**
+ * Collector for the systems statistics.
+ *
+ * The statistics are computed with aggregate queries by a background thread, on its own
+ * schedule: scrapes get the values of the last refresh and never hit the database.
+ */
 public class SystemsCollector extends Collector {
 
     public static final String PRODUCT_NAME = "uyuni";
 
+    private static final Logger LOG = LogManager.getLogger(SystemsCollector.class);
+
+    private static final long MILLIS_IN_DAY = 1000L * 60 * 60 * 24;
+
+    private volatile List<MetricFamilySamples> samples = Collections.emptyList();
+
+    /**
+     * Starts refreshing the statistics in the background.
+     */
+    public void start() {
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "systems-metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        int interval = ConfigDefaults.get().getPrometheusSystemsRefreshInterval();
+        executor.scheduleWithFixedDelay(this::refresh, 0, interval, TimeUnit.SECONDS);
+    }
+
     @Override
     public List<MetricFamilySamples> collect() {
-        List<MetricFamilySamples> out = new ArrayList<>();
+        return samples;
+    }
+
+    private void refresh() {
+        try {
+            samples = computeSamples();
+        }
+        catch (RuntimeException e) {
+            LOG.error("Unable to refresh the systems metrics", e);
+        }
+        finally {
+            HibernateFactory.closeSession();
+        }
+    }
+
+    /**
+     * Computes the statistics with the current Hibernate session.
+     * @return the samples
+     */
+    public List<MetricFamilySamples> computeSamples() {
         long start = System.nanoTime();
-        List<Server> servers = ServerFactory.lookupByIds(SystemManager.listSystemIds());
+        List<MetricFamilySamples> out = new ArrayList<>();
+
+        long threshold = SatConfigFactory.getSatConfigLongValue(SatConfigFactory.SYSTEM_CHECKIN_THRESHOLD, 1L);
+        DataResult<Map<String, Object>> byOrg = query("metrics_systems_by_org",
+                Map.of("inactive_date", new Timestamp(System.currentTimeMillis() - MILLIS_IN_DAY * threshold)));
 
         out.add(CustomCollectorUtils.gaugeFor("all_systems", "Number of all systems",
-                getNumberOfSystems(servers), PRODUCT_NAME));
+                sum(byOrg, "systems"), PRODUCT_NAME));
         out.add(CustomCollectorUtils.gaugeFor("virtual_systems", "Number of virtual systems",
-                getNumberOfVirtualSystems(servers), PRODUCT_NAME));
+                sum(byOrg, "virtual_systems"), PRODUCT_NAME));
         out.add(CustomCollectorUtils.gaugeFor("inactive_systems", "Number of inactive systems",
-                getNumberOfInactiveSystems(servers), PRODUCT_NAME));
+                sum(byOrg, "inactive_systems"), PRODUCT_NAME));
         out.add(CustomCollectorUtils.gaugeFor("outdated_systems", "Number of systems with outdated packages",
-                getNumberOfOutdatedSystems(), PRODUCT_NAME));
-        out.add(CustomCollectorUtils.gaugeFor("systems_scrape_duration_seconds", "Duration of Uyuni systems " +
-                "statistics scrape", (System.nanoTime() - start) / 1.0E9, PRODUCT_NAME));
+                SystemManager.countOutdatedSystems(), PRODUCT_NAME));
 
-        return out;
-    }
+        out.add(labelledGauge("org_systems", "Number of systems by organization",
+                byOrg, "org", "systems"));
+        out.add(labelledGauge("org_virtual_systems", "Number of virtual systems by organization",
+                byOrg, "org", "virtual_systems"));
+        out.add(labelledGauge("org_inactive_systems", "Number of inactive systems by organization",
+                byOrg, "org", "inactive_systems"));
+        out.add(labelledGauge("contact_method_systems", "Number of systems by contact method",
+                query("metrics_systems_by_contact_method", Map.of()), "contact_method", "systems"));
+        out.add(labelledGauge("os_family_systems", "Number of systems by OS family",
+                query("metrics_systems_by_os_family", Map.of()), "os_family", "systems"));
+        out.add(labelledGauge("pending_actions", "Number of queued or picked up actions by action type",
+                query("metrics_pending_actions_by_type", Map.of()), "action_type", "actions"));
 
-    private long getNumberOfSystems(List<Server> servers) {
-        return servers.size();
+        out.add(CustomCollectorUtils.gaugeFor("systems_scrape_duration_seconds", "Duration of the last refresh " +
+                "of the Uyuni systems statistics", (System.nanoTime() - start) / 1.0E9, PRODUCT_NAME));
+        out.add(CustomCollectorUtils.gaugeFor("systems_refresh_timestamp_seconds", "Time of the last " +
+                "refresh of the systems statistics", System.currentTimeMillis() / 1000.0, PRODUCT_NAME));
+        return out;
     }
 
-    private long getNumberOfVirtualSystems(List<Server> servers) {
-        return servers.stream().filter(Server::isVirtualGuest).count();
+    private static DataResult<Map<String, Object>> query(String name, Map<String, Object> params) {
+        SelectMode mode = ModeFactory.getMode("System_queries", name);
+        return mode.execute(params);
     }
 
-    private long getNumberOfInactiveSystems(List<Server> servers) {
-        return servers.stream().filter(Server::isInactive).count();
+    private static long sum(List<Map<String, Object>> rows, String column) {
+        return rows.stream().mapToLong(row -> (Long) row.get(column)).sum();
     }
 
-    private long getNumberOfOutdatedSystems() {
-        return SystemManager.countOutdatedSystems();
+    private static GaugeMetricFamily labelledGauge(String metricName, String help,
+            List<Map<String, Object>> rows, String label, String column) {
+        GaugeMetricFamily gauge = new GaugeMetricFamily(PRODUCT_NAME + "_" + metricName,
+                PRODUCT_NAME + " - " + help, List.of(label));
+        for (Map<String, Object> row : rows) {
+            gauge.addMetric(List.of(String.valueOf(row.get(label))), (Long) row.get(column));
+        }
+        return gauge;
     }
 }
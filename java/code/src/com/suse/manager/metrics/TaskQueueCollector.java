@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) 2023 SUSE LLC
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.suse.manager.metrics;
+
+import com.redhat.rhn.taskomatic.task.threaded.TaskQueueStatistics;
+
+import java.util.List;
+import java.util.Map;
+
+import io.prometheus.client.Collector;
+import io.prometheus.client.CounterMetricFamily;
+import io.prometheus.client.GaugeMetricFamily;
+
+/**
+ * Collector for the Taskomatic rhnTaskQueue queues, labelled by task name.
+ */
+public class TaskQueueCollector extends Collector {
+
+    private static final String PREFIX = "taskomatic_task_queue";
+
+    @Override
+    public List<MetricFamilySamples> collect() {
+        List<String> labels = List.of("task");
+        GaugeMetricFamily depth = new GaugeMetricFamily(PREFIX + "_depth",
+                PREFIX + " - Number of queued tasks", labels);
+        GaugeMetricFamily oldestAge = new GaugeMetricFamily(PREFIX + "_oldest_age_seconds",
+                PREFIX + " - Age of the oldest queued task", labels);
+        CounterMetricFamily processed = new CounterMetricFamily(PREFIX + "_processed",
+                PREFIX + " - Number of tasks ever processed", labels);
+
+        for (Map.Entry<String, TaskQueueStatistics.Queue> entry : TaskQueueStatistics.getQueues().entrySet()) {
+            List<String> task = List.of(entry.getKey());
+            depth.addMetric(task, entry.getValue().getDepth());
+            oldestAge.addMetric(task, entry.getValue().getOldestAgeSeconds());
+            processed.addMetric(task, entry.getValue().getProcessed());
+        }
+        return List.of(depth, oldestAge, processed);
+    }
+}
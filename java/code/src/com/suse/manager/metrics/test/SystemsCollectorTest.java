@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2023 SUSE LLC
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.suse.manager.metrics.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.redhat.rhn.domain.server.test.ServerFactoryTest;
+import com.redhat.rhn.testing.BaseTestCaseWithUser;
+
+import com.suse.manager.metrics.SystemsCollector;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import io.prometheus.client.Collector.MetricFamilySamples;
+
+public class SystemsCollectorTest extends BaseTestCaseWithUser {
+
+    @Test
+    public void testComputeSamples() {
+        ServerFactoryTest.createTestServer(user);
+        ServerFactoryTest.createTestServer(user);
+
+        SystemsCollector collector = new SystemsCollector();
+        assertTrue(collector.collect().isEmpty());
+
+        List<MetricFamilySamples> samples = collector.computeSamples();
+        assertTrue(getValue(samples, "uyuni_all_systems", null) >= 2);
+        assertEquals(2, getValue(samples, "uyuni_org_systems", user.getOrg().getName()));
+        assertEquals(0, getValue(samples, "uyuni_org_virtual_systems", user.getOrg().getName()));
+    }
+
+    private double getValue(List<MetricFamilySamples> samples, String name, String label) {
+        return samples.stream()
+                .filter(family -> family.name.equals(name))
+                .flatMap(family -> family.samples.stream())
+                .filter(sample -> label == null || sample.labelValues.contains(label))
+                .mapToDouble(sample -> sample.value)
+                .findFirst()
+                .orElse(-1);
+    }
+}
@@ -26,6 +26,9 @@ import com.redhat.rhn.domain.reactor.SaltEvent;
 import com.redhat.rhn.domain.reactor.SaltEventFactory;
 import com.redhat.rhn.frontend.events.TransactionHelper;
 
+import com.suse.manager.metrics.LatencyMetrics;
+import com.suse.manager.metrics.PrometheusExporter;
+import com.suse.salt.netapi.datatypes.Event;
 import com.suse.salt.netapi.event.AbstractEventStream;
 import com.suse.salt.netapi.exception.SaltException;
 import com.suse.salt.netapi.parser.JsonParser;
@@ -41,14 +44,22 @@ import org.apache.logging.log4j.Logger;
 import java.io.IOException;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
 import java.util.Timer;
 import java.util.TimerTask;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import java.util.stream.LongStream;
@@ -62,8 +73,44 @@ public class PGEventStream extends AbstractEventStream implements PGNotification
     private static final Logger LOG = LogManager.getLogger(PGEventStream.class);
     private static final int MAX_EVENTS_PER_COMMIT = ConfigDefaults.get().getSaltEventsPerCommit();
     private static final int THREAD_POOL_SIZE = ConfigDefaults.get().getSaltEventThreadPoolSize();
+    private static final int DISPATCH_WORKERS = ConfigDefaults.get().getSaltEventDispatchWorkers();
+    private static final int DISPATCH_MAILBOX_SIZE = ConfigDefaults.get().getSaltEventDispatchMailboxSize();
+    // maximum number of events of a queue waiting in the mailboxes, enough to keep all dispatch workers busy
+    private static final int DISPATCH_MAX_PENDING = DISPATCH_WORKERS * DISPATCH_MAILBOX_SIZE;
+
+    // per queue statistics, shared by all instances as the reactor may recreate the stream at any time
+    private static final AtomicLongArray QUEUED_EVENTS = new AtomicLongArray(THREAD_POOL_SIZE + 1);
+    private static final AtomicLongArray PROCESSED_EVENTS = new AtomicLongArray(THREAD_POOL_SIZE + 1);
+    private static final AtomicLongArray LAST_BATCH_MILLIS = new AtomicLongArray(THREAD_POOL_SIZE + 1);
+
+    // shared pool processing the events of different minions in parallel, empty if parallel dispatch is disabled.
+    // It holds at most one task per minion with pending events.
+    private static final Optional<ThreadPoolExecutor> DISPATCH_POOL = Optional.of(DISPATCH_WORKERS)
+            .filter(workers -> workers > 0)
+            .map(workers -> new ThreadPoolExecutor(
+                workers,
+                workers,
+                0L,
+                TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(),
+                new BasicThreadFactory.Builder()
+                    .namingPattern("salt-event-dispatch-thread-%d")
+                    .build()
+            ));
+
+    static {
+        DISPATCH_POOL.ifPresent(pool -> PrometheusExporter.INSTANCE.registerThreadPool(pool, "salt_event_dispatch"));
+        PrometheusExporter.INSTANCE.registerSaltEventQueues(QUEUED_EVENTS, PROCESSED_EVENTS, LAST_BATCH_MILLIS);
+    }
 
     private PGConnection connection;
+
+    // dispatch mode state: the mailboxes, the id of the last event dispatched by queue and whether a read of each
+    // queue is scheduled
+    private final Optional<SaltEventDispatcher> dispatcher = DISPATCH_POOL.map(pool -> new SaltEventDispatcher(
+            pool, DISPATCH_MAILBOX_SIZE, THREAD_POOL_SIZE + 1, this::handleMinionEvents, this::scheduleRead));
+    private final AtomicLongArray lastDispatchedIds = new AtomicLongArray(THREAD_POOL_SIZE + 1);
+    private final AtomicIntegerArray readsScheduled = new AtomicIntegerArray(THREAD_POOL_SIZE + 1);
     private final List<ThreadPoolExecutor> executorServices = IntStream.range(0, THREAD_POOL_SIZE + 1).mapToObj(i ->
         new ThreadPoolExecutor(
             1,
@@ -133,9 +180,11 @@ public class PGEventStream extends AbstractEventStream implements PGNotification
                         // then schedule tasks for them
                         // this can only happen in case we lost notifications somehow
                         List<Long> allJobs = SaltEventFactory.countSaltEvents(THREAD_POOL_SIZE + 1);
+                        IntStream.range(0, allJobs.size()).forEach(i -> QUEUED_EVENTS.set(i, allJobs.get(i)));
 
                         List<Long> missingJobs = IntStream.range(0, allJobs.size())
-                            .mapToObj(i -> executorServices.get(i).getActiveCount() > 0 ? 0 : allJobs.get(i))
+                            .mapToObj(i -> executorServices.get(i).getActiveCount() > 0 || isDispatching(i) ?
+                                    0 : allJobs.get(i))
                             .collect(Collectors.toList());
 
                         if (missingJobs.stream().mapToLong(l -> l).sum() > 0) {
@@ -180,6 +229,13 @@ public class PGEventStream extends AbstractEventStream implements PGNotification
         // compute the number of jobs we need to do - each job COMMITs individually
         // jobs = events / MAX_EVENTS_PER_COMMIT (rounded up)
         IntStream.range(0, THREAD_POOL_SIZE + 1).forEach(queue -> {
+            if (dispatcher.isPresent() && queue > 0) {
+                if (counts.get(queue) > 0) {
+                    scheduleRead(queue);
+                }
+                return;
+            }
+
             long jobs = (counts.get(queue) + MAX_EVENTS_PER_COMMIT - 1) / MAX_EVENTS_PER_COMMIT;
 
             // queue one handlingTransaction(processEvents) call per job
@@ -202,17 +258,168 @@ public class PGEventStream extends AbstractEventStream implements PGNotification
      * @param queue the index of the thread processing the events
      */
     private void processEvents(List<SaltEvent> uncommittedEvents, int queue) {
+        long start = System.currentTimeMillis();
         Stream<SaltEvent> events = SaltEventFactory.popSaltEvents(MAX_EVENTS_PER_COMMIT, queue)
                 .sorted(comparing(SaltEvent::getMinionId, nullsLast(naturalOrder())).thenComparing(SaltEvent::getId));
 
         events.forEach(event -> {
-            if (LOG.isTraceEnabled()) {
-                LOG.trace("Handling event {} in worker #{}", event.getId(), queue);
-                LOG.trace(event.getData());
-            }
             uncommittedEvents.add(event);
-            notifyListeners(JsonParser.EVENTS.parse(event.getData()));
+            processEvent(event, queue);
         });
+        PROCESSED_EVENTS.addAndGet(queue, uncommittedEvents.size());
+
+        LAST_BATCH_MILLIS.set(queue, System.currentTimeMillis() - start);
+    }
+
+    private void processEvent(SaltEvent event, int queue) {
+        if (LOG.isTraceEnabled()) {
+            LOG.trace("Handling event {} in worker #{}", event.getId(), queue);
+            LOG.trace(event.getData());
+        }
+        long start = System.nanoTime();
+        Event parsed = JsonParser.EVENTS.parse(event.getData());
+        try {
+            notifyListeners(parsed);
+        }
+        finally {
+            LatencyMetrics.observeSince(LatencyMetrics.SALT_EVENT_PROCESSING, start, getEventType(parsed.getTag()));
+        }
+    }
+
+    /**
+     * Returns the type of an event for the metrics: the first two parts of the tag, and the kind of
+     * job event for job events. Minion ids and job ids are left out to keep the number of types small.
+     * @param tag the event tag, like salt/job/20230101120000000000/ret/minion
+     * @return the event type, like salt/job/ret
+     */
+    public static String getEventType(String tag) {
+        String[] parts = tag.split("/");
+        if (parts.length < 2) {
+            return tag;
+        }
+        String type = parts[0] + "/" + parts[1];
+        if ((parts[1].equals("job") || parts[1].equals("run")) && parts.length > 3) {
+            type += "/" + parts[3];
+        }
+        return type;
+    }
+
+    private boolean isDispatching(int queue) {
+        return dispatcher.isPresent() && queue > 0 &&
+                (dispatcher.get().getPendingEvents(queue) > 0 || readsScheduled.get(queue) > 0);
+    }
+
+    /**
+     * Schedules a read of the events of a queue into the minion mailboxes, unless one is already scheduled.
+     * @param queue the index of the queue
+     */
+    private void scheduleRead(int queue) {
+        if (readsScheduled.compareAndSet(queue, 0, 1)) {
+            executorServices.get(queue).execute(() -> {
+                readsScheduled.set(queue, 0);
+                TransactionHelper.handlingTransaction(
+                        () -> dispatchEvents(queue),
+                        e -> LOG.error("Unable to read the events of queue {}", queue, e));
+            });
+        }
+    }
+
+    /**
+     * Reads the events of a queue, without removing them, and dispatches them to the mailboxes of their minions.
+     * Reading stops when the queue has too many pending events or the mailbox of a minion is full, and resumes
+     * once a chunk of the queue has been handled.
+     *
+     * Events are read after the last dispatched one. When no event of the queue is pending anymore they are read
+     * from the start again, picking up any event left behind by an unexpected failure.
+     * @param queue the index of the queue
+     */
+    private void dispatchEvents(int queue) {
+        long start = System.currentTimeMillis();
+        SaltEventDispatcher mailboxes = dispatcher.orElseThrow();
+        while (true) {
+            long pending = mailboxes.getPendingEvents(queue);
+            if (pending >= DISPATCH_MAX_PENDING) {
+                break;
+            }
+            if (pending == 0) {
+                lastDispatchedIds.set(queue, 0);
+            }
+            int limit = (int) (DISPATCH_MAX_PENDING - pending);
+            List<SaltEvent> events = SaltEventFactory.listSaltEvents(limit, queue, lastDispatchedIds.get(queue));
+            for (SaltEvent event : events) {
+                if (!mailboxes.offer(event)) {
+                    LAST_BATCH_MILLIS.set(queue, System.currentTimeMillis() - start);
+                    return;
+                }
+                lastDispatchedIds.set(queue, event.getId());
+            }
+            if (events.size() < limit) {
+                break;
+            }
+        }
+        LAST_BATCH_MILLIS.set(queue, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Handles a chunk of events of a minion, in order. The events are deleted in the same transaction that
+     * processes them, which stops at the first failing event.
+     * @param events the events of a minion
+     * @return the events to be handled again, in order
+     */
+    private List<SaltEvent> handleMinionEvents(List<SaltEvent> events) {
+        // the event being processed, null once all the events were processed
+        AtomicReference<SaltEvent> current = new AtomicReference<>();
+        List<SaltEvent> unhandled = new ArrayList<>();
+        AtomicBoolean handled = new AtomicBoolean(true);
+        TransactionHelper.handlingTransaction(
+                () -> {
+                    Set<Long> deletedIds = new HashSet<>(SaltEventFactory.deleteSaltEvents(
+                            events.stream().map(SaltEvent::getId).collect(toList())));
+                    events.stream()
+                            .filter(event -> deletedIds.contains(event.getId()))
+                            .forEach(event -> {
+                                current.set(event);
+                                processEvent(event, event.getQueue());
+                            });
+                    current.set(null);
+                },
+                e -> {
+                    handled.set(false);
+                    unhandled.addAll(handleDispatchExceptions(events, current.get(), e));
+                });
+
+        if (handled.get()) {
+            events.forEach(event -> PROCESSED_EVENTS.incrementAndGet(event.getQueue()));
+        }
+        return unhandled;
+    }
+
+    /**
+     * Handles any {@link Exception} raised while dispatching the events of a minion. The chunk is rolled back: like
+     * in {@link #handleExceptions}, the failing event is deleted, while the other events are handled again in order.
+     * When the failure is not caused by a single event, like a failed commit, all the events of the chunk are
+     * deleted.
+     * @return the events to be handled again
+     */
+    private List<SaltEvent> handleDispatchExceptions(List<SaltEvent> events, SaltEvent failedEvent,
+            Exception exception) {
+        List<SaltEvent> unhandled = new ArrayList<>();
+        if (failedEvent != null) {
+            List<Long> deletedIds = SaltEventFactory.deleteSaltEvents(List.of(failedEvent.getId()));
+            LOG.error("Events {} were lost", deletedIds);
+            events.stream().filter(event -> !event.equals(failedEvent)).forEach(unhandled::add);
+        }
+        else {
+            List<Long> deletedIds = SaltEventFactory.deleteSaltEvents(
+                    events.stream().map(SaltEvent::getId).collect(toList()));
+            LOG.error("Events {} were lost", deletedIds);
+        }
+
+        if (exception instanceof PGEventListenerException) {
+            PGEventListenerException listenerException = (PGEventListenerException) exception;
+            listenerException.getExceptionHandler().run();
+        }
+        return unhandled;
     }
 
     /**
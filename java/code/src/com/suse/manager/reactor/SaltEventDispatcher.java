@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2023 SUSE LLC
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.suse.manager.reactor;
+
+import com.redhat.rhn.domain.reactor.SaltEvent;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+
+/**
+ * Dispatches Salt events to bounded per-minion mailboxes, handled on a shared executor.
+ *
+ * The events of a minion are passed to the handler in order, in chunks of all the events waiting in its mailbox,
+ * and never concurrently. Events of different minions are handled in parallel and independently: a slow minion
+ * only holds back its own events. After each chunk the minion's mailbox goes back to the end of the executor
+ * queue, so that busy minions do not starve the others.
+ *
+ * The handler returns the events of a chunk it did not handle: they are put back in front of the mailbox, so that
+ * they are handled again, before any later event of the minion.
+ */
+public class SaltEventDispatcher {
+
+    private static final Logger LOG = LogManager.getLogger(SaltEventDispatcher.class);
+
+    private final Executor executor;
+    private final int mailboxCapacity;
+    private final Function<List<SaltEvent>, List<SaltEvent>> handler;
+    private final IntConsumer chunkListener;
+
+    // a minion has a mailbox as long as a drain of it is scheduled or running
+    private final Map<String, Deque<SaltEvent>> mailboxes = new HashMap<>();
+    private final AtomicLongArray pendingEvents;
+
+    /**
+     * Standard constructor
+     * @param executorIn the executor handling the mailboxes
+     * @param mailboxCapacityIn the maximum number of events waiting in the mailbox of a minion
+     * @param queues the number of event queues, including the queue 0
+     * @param handlerIn handles a chunk of events of the same minion, in order, and returns the events to handle
+     * again. It is expected to handle its own errors.
+     * @param chunkListenerIn called with the queue of each chunk once it has been handled, when its events are not
+     * pending anymore
+     */
+    public SaltEventDispatcher(Executor executorIn, int mailboxCapacityIn, int queues,
+            Function<List<SaltEvent>, List<SaltEvent>> handlerIn, IntConsumer chunkListenerIn) {
+        executor = executorIn;
+        mailboxCapacity = mailboxCapacityIn;
+        handler = handlerIn;
+        chunkListener = chunkListenerIn;
+        pendingEvents = new AtomicLongArray(queues);
+    }
+
+    /**
+     * Adds an event to the mailbox of its minion, unless the mailbox is full.
+     * @param event the event
+     * @return true if the event was accepted, false if the mailbox of the minion is full
+     */
+    public boolean offer(SaltEvent event) {
+        String minionId = Objects.toString(event.getMinionId(), "");
+        boolean schedule = false;
+        synchronized (mailboxes) {
+            Deque<SaltEvent> mailbox = mailboxes.get(minionId);
+            if (mailbox == null) {
+                mailbox = new ArrayDeque<>();
+                mailboxes.put(minionId, mailbox);
+                schedule = true;
+            }
+            else if (mailbox.size() >= mailboxCapacity) {
+                return false;
+            }
+            mailbox.add(event);
+            pendingEvents.incrementAndGet(event.getQueue());
+        }
+        if (schedule) {
+            executor.execute(() -> drain(minionId));
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of events of a queue which were accepted and have not been handled yet
+     * @param queue the queue
+     * @return the number of pending events
+     */
+    public long getPendingEvents(int queue) {
+        return pendingEvents.get(queue);
+    }
+
+    private void drain(String minionId) {
+        List<SaltEvent> chunk;
+        synchronized (mailboxes) {
+            Deque<SaltEvent> mailbox = mailboxes.get(minionId);
+            chunk = new ArrayList<>(mailbox);
+            mailbox.clear();
+        }
+
+        List<SaltEvent> unhandled = Collections.emptyList();
+        try {
+            unhandled = handler.apply(chunk);
+        }
+        catch (RuntimeException e) {
+            LOG.error("Unexpected exception handling the events of minion {}", minionId, e);
+        }
+
+        List<SaltEvent> handled = new ArrayList<>(chunk);
+        handled.removeAll(unhandled);
+        handled.forEach(event -> pendingEvents.decrementAndGet(event.getQueue()));
+        handled.stream().mapToInt(SaltEvent::getQueue).distinct().forEach(chunkListener);
+
+        boolean reschedule;
+        synchronized (mailboxes) {
+            Deque<SaltEvent> mailbox = mailboxes.get(minionId);
+            for (int i = unhandled.size() - 1; i >= 0; i--) {
+                mailbox.addFirst(unhandled.get(i));
+            }
+            reschedule = !mailbox.isEmpty();
+            if (!reschedule) {
+                mailboxes.remove(minionId);
+            }
+        }
+        if (reschedule) {
+            executor.execute(() -> drain(minionId));
+        }
+    }
+}
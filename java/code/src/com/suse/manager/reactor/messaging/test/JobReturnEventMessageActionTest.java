@@ -487,6 +487,47 @@ public class JobReturnEventMessageActionTest extends JMockBaseTestCaseWithUser {
         assertEquals(3, minion.getPackages().size());
     }
 
+    /**
+     * Test the processing of packages.profileupdate job return event on a minion loaded
+     * from the database: the packages are not loaded in the session and are updated with
+     * a single statement.
+     *
+     * @throws Exception in case of an error
+     */
+    @Test
+    public void testPackagesProfileUpdateInDatabase() throws Exception {
+        MinionServer minion = MinionServerFactoryTest.createTestMinionServer(user);
+        minion.setMinionId("minionsles12-suma3pg.vagrant.local");
+        Action action = ActionFactoryTest.createAction(
+                user, ActionFactory.TYPE_PACKAGES_REFRESH_LIST);
+        action.addServerAction(ActionFactoryTest.createServerAction(minion, action));
+        JobReturnEventMessageAction messageAction = new JobReturnEventMessageAction(saltServerActionService, saltUtils);
+        messageAction.execute(new JobReturnEventMessage(JobReturnEvent
+                .parse(getJobReturnEvent("packages.profileupdate.json", action.getId()))
+                .get()));
+        HibernateFactory.getSession().flush();
+        HibernateFactory.getSession().clear();
+
+        // aaa_base is identical, bash was updated to version 500, timezone-java is gone and java is new
+        messageAction.execute(new JobReturnEventMessage(JobReturnEvent
+                .parse(getJobReturnEvent("packages.profileupdate.updated.json", action.getId()))
+                .get()));
+        HibernateFactory.getSession().flush();
+        HibernateFactory.getSession().clear();
+
+        minion = MinionServerFactory.lookupById(minion.getId()).get();
+        Map<String, InstalledPackage> packages = minion.getPackages().stream()
+                .collect(Collectors.toMap(p -> p.getName().getName(), p -> p));
+        assertEquals(Set.of("aaa_base", "bash", "java"), packages.keySet());
+        assertEquals("13.2+git20140911.61c1681", packages.get("aaa_base").getEvr().getVersion());
+        assertEquals("500", packages.get("bash").getEvr().getVersion());
+        assertEquals("75.2", packages.get("bash").getEvr().getRelease());
+        assertEquals("x86_64", packages.get("bash").getArch().getName());
+        assertEquals("1.6", packages.get("java").getEvr().getVersion());
+        assertEquals("0", packages.get("java").getEvr().getRelease());
+        assertNull(packages.get("java").getEvr().getEpoch());
+    }
+
     @Test
     public void testPackagesProfileUpdateLivePatching() throws Exception {
         MinionServer minion = MinionServerFactoryTest.createTestMinionServer(user);
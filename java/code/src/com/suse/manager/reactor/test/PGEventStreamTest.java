@@ -0,0 +1,37 @@
+/*
+ * Copyright (c) 2023 SUSE LLC
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.suse.manager.reactor.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.suse.manager.reactor.PGEventStream;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for {@link PGEventStream}
+ */
+public class PGEventStreamTest {
+
+    @Test
+    public void testGetEventType() {
+        assertEquals("salt/job/ret", PGEventStream.getEventType("salt/job/20230101120000000000/ret/minion1"));
+        assertEquals("salt/job/new", PGEventStream.getEventType("salt/job/20230101120000000000/new"));
+        assertEquals("salt/run/ret", PGEventStream.getEventType("salt/run/20230101120000000000/ret"));
+        assertEquals("salt/minion", PGEventStream.getEventType("salt/minion/minion1/start"));
+        assertEquals("salt/beacon", PGEventStream.getEventType("salt/beacon/minion1/reboot_info/"));
+        assertEquals("minion_start", PGEventStream.getEventType("minion_start"));
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2023 SUSE LLC
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.suse.manager.reactor.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.redhat.rhn.domain.reactor.SaltEvent;
+
+import com.suse.manager.reactor.SaltEventDispatcher;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.stream.Collectors;
+
+/**
+ * Tests for {@link SaltEventDispatcher}
+ */
+public class SaltEventDispatcherTest {
+
+    private Queue<Runnable> tasks;
+    private List<List<Long>> handledChunks;
+    private List<Integer> handledQueues;
+    private SaltEventDispatcher dispatcher;
+
+    @BeforeEach
+    public void setUp() {
+        tasks = new LinkedList<>();
+        handledChunks = new ArrayList<>();
+        handledQueues = new ArrayList<>();
+        dispatcher = new SaltEventDispatcher(tasks::add, 3, 3,
+                chunk -> {
+                    handledChunks.add(chunk.stream().map(SaltEvent::getId).collect(Collectors.toList()));
+                    return List.of();
+                },
+                handledQueues::add);
+    }
+
+    private static SaltEvent event(long id, String minionId, int queue) {
+        return new SaltEvent(id, minionId, "{}", queue);
+    }
+
+    @Test
+    public void testEventsOfAMinionAreHandledInOrderInChunks() {
+        assertTrue(dispatcher.offer(event(1, "minion1", 1)));
+        assertTrue(dispatcher.offer(event(2, "minion1", 1)));
+        assertTrue(dispatcher.offer(event(3, "minion2", 2)));
+        assertTrue(dispatcher.offer(event(4, "minion1", 1)));
+
+        // one task per minion
+        assertEquals(2, tasks.size());
+        assertEquals(3, dispatcher.getPendingEvents(1));
+        assertEquals(1, dispatcher.getPendingEvents(2));
+
+        while (!tasks.isEmpty()) {
+            tasks.poll().run();
+        }
+
+        assertEquals(List.of(List.of(1L, 2L, 4L), List.of(3L)), handledChunks);
+        assertEquals(List.of(1, 2), handledQueues);
+        assertEquals(0, dispatcher.getPendingEvents(1));
+        assertEquals(0, dispatcher.getPendingEvents(2));
+    }
+
+    @Test
+    public void testMailboxesAreBounded() {
+        assertTrue(dispatcher.offer(event(1, "minion1", 1)));
+        assertTrue(dispatcher.offer(event(2, "minion1", 1)));
+        assertTrue(dispatcher.offer(event(3, "minion1", 1)));
+        assertFalse(dispatcher.offer(event(4, "minion1", 1)));
+
+        // other minions are not affected
+        assertTrue(dispatcher.offer(event(5, "minion2", 1)));
+
+        tasks.poll().run();
+        assertEquals(List.of(List.of(1L, 2L, 3L)), handledChunks);
+        assertTrue(dispatcher.offer(event(4, "minion1", 1)));
+    }
+
+    @Test
+    public void testSlowMinionDoesNotHoldBackOthers() {
+        assertTrue(dispatcher.offer(event(1, "slow", 1)));
+        assertTrue(dispatcher.offer(event(2, "fast", 1)));
+
+        // run the fast minion's task while the slow one has not completed yet
+        Runnable slowTask = tasks.poll();
+        tasks.poll().run();
+        assertEquals(List.of(List.of(2L)), handledChunks);
+        assertEquals(1, dispatcher.getPendingEvents(1));
+
+        // new events of the fast minion are handled independently too
+        assertTrue(dispatcher.offer(event(3, "fast", 1)));
+        assertEquals(1, tasks.size());
+        slowTask.run();
+        tasks.poll().run();
+        assertEquals(List.of(List.of(2L), List.of(1L), List.of(3L)), handledChunks);
+    }
+
+    @Test
+    public void testHandlerFailureDoesNotStopTheMailbox() {
+        List<Long> handled = new ArrayList<>();
+        dispatcher = new SaltEventDispatcher(tasks::add, 3, 3,
+                chunk -> {
+                    handled.addAll(chunk.stream().map(SaltEvent::getId).collect(Collectors.toList()));
+                    throw new IllegalStateException("Failing handler");
+                },
+                handledQueues::add);
+
+        assertTrue(dispatcher.offer(event(1, "minion1", 1)));
+        tasks.poll().run();
+        assertEquals(0, dispatcher.getPendingEvents(1));
+        assertEquals(List.of(1), handledQueues);
+
+        assertTrue(dispatcher.offer(event(2, "minion1", 1)));
+        tasks.poll().run();
+        assertEquals(List.of(1L, 2L), handled);
+    }
+
+    @Test
+    public void testUnhandledEventsAreHandledAgainFirst() {
+        dispatcher = new SaltEventDispatcher(tasks::add, 3, 3,
+                chunk -> {
+                    handledChunks.add(chunk.stream().map(SaltEvent::getId).collect(Collectors.toList()));
+                    // the first chunk fails on its second event, the ones after it are handed back
+                    return handledChunks.size() == 1 ? chunk.subList(2, chunk.size()) : List.of();
+                },
+                handledQueues::add);
+
+        assertTrue(dispatcher.offer(event(1, "minion1", 1)));
+        assertTrue(dispatcher.offer(event(2, "minion1", 1)));
+        assertTrue(dispatcher.offer(event(3, "minion1", 1)));
+        tasks.poll().run();
+        assertEquals(1, dispatcher.getPendingEvents(1));
+
+        assertTrue(dispatcher.offer(event(4, "minion1", 1)));
+        assertEquals(1, tasks.size());
+        tasks.poll().run();
+
+        assertEquals(List.of(List.of(1L, 2L, 3L), List.of(3L, 4L)), handledChunks);
+        assertEquals(0, dispatcher.getPendingEvents(1));
+        assertTrue(tasks.isEmpty());
+    }
+}
@@ -84,6 +84,7 @@ import com.redhat.rhn.manager.system.SystemManager;
 import com.redhat.rhn.taskomatic.TaskomaticApi;
 import com.redhat.rhn.taskomatic.TaskomaticApiException;
 
+import com.suse.manager.metrics.LatencyMetrics;
 import com.suse.manager.reactor.hardware.CpuArchUtil;
 import com.suse.manager.reactor.hardware.HardwareMapper;
 import com.suse.manager.reactor.messaging.ApplyStatesEventMessage;
@@ -147,6 +148,7 @@ import org.apache.commons.lang3.StringEscapeUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.hibernate.Hibernate;
 
 import java.io.File;
 import java.io.FileInputStream;
@@ -497,6 +499,18 @@ public class SaltUtils {
      */
     public void updateServerAction(ServerAction serverAction, long retcode,
             boolean success, String jid, JsonElement jsonResult, Optional<Xor<String[], String>> function) {
+        long start = System.nanoTime();
+        try {
+            updateServerActionStatus(serverAction, retcode, success, jid, jsonResult, function);
+        }
+        finally {
+            LatencyMetrics.observeSince(LatencyMetrics.ACTION_RESULT_UPDATE, start,
+                    serverAction.getParentAction().getActionType().getLabel());
+        }
+    }
+
+    private void updateServerActionStatus(ServerAction serverAction, long retcode,
+            boolean success, String jid, JsonElement jsonResult, Optional<Xor<String[], String>> function) {
         serverAction.setCompletionTime(new Date());
 
         // Set the result code defaulting to 0
@@ -1477,21 +1491,15 @@ public class SaltUtils {
     }
 
     /**
-     * Updates a minion's packages with the result coming from Salt
+     * Updates a minion's packages with the result coming from Salt. If the packages of the
+     * minion are not loaded in the session yet, the changes are applied in the database
+     * without loading them.
      *
      * @param server a Server object corresponding to a minion
      * @param result the result from the package profile update state
      */
     private static void updatePackages(MinionServer server,
             PkgProfileUpdateSlsResult result) {
-        Set<InstalledPackage> packages = server.getPackages();
-
-        Map<String, InstalledPackage> oldPackageMap = packages.stream()
-            .collect(Collectors.toMap(
-                    SaltUtils::packageToKey,
-                    Function.identity()
-             ));
-
         Map<String, Map.Entry<String, Pkg.Info>> newPackageMap =
             result.getInfoInstalled().getChanges().getRet()
                 .entrySet().stream()
@@ -1509,6 +1517,26 @@ public class SaltUtils {
                         SaltUtils::resolveDuplicatePackage
                 ));
 
+        Set<InstalledPackage> packages = server.getPackages();
+        if (!Hibernate.isInitialized(packages)) {
+            // diff the packages in the database instead of loading them all in the session
+            List<InstalledPackage> installed = newPackageMap.values().stream()
+                    .map(e -> createInstalledPackage(createPackageName(e.getKey()),
+                            toPackageEvr(e.getValue().getEpoch(), e.getValue().getVersion().get(),
+                                    e.getValue().getRelease(), server.getPackageType()),
+                            e.getValue(), server))
+                    .collect(Collectors.toList());
+            ServerFactory.replaceInstalledPackages(server, installed);
+            SystemManager.updateSystemOverview(server.getId());
+            return;
+        }
+
+        Map<String, InstalledPackage> oldPackageMap = packages.stream()
+            .collect(Collectors.toMap(
+                    SaltUtils::packageToKey,
+                    Function.identity()
+             ));
+
         Collection<InstalledPackage> unchanged = oldPackageMap.entrySet().stream().filter(
             e -> newPackageMap.containsKey(e.getKey())
         ).map(Map.Entry::getValue).collect(Collectors.toList());
@@ -1719,17 +1747,34 @@ public class SaltUtils {
 
     private static PackageEvr parsePackageEvr(Optional<String> epoch, String version, Optional<String> release,
                                               PackageType type) {
+        return PackageEvrFactory.lookupOrCreatePackageEvr(toPackageEvr(epoch, version, release, type));
+    }
+
+    /**
+     * Builds a transient {@link PackageEvr}, not looked up in the database
+     */
+    private static PackageEvr toPackageEvr(Optional<String> epoch, String version, Optional<String> release,
+                                           PackageType type) {
         switch (type) {
             case DEB:
-                return PackageEvrFactory.lookupOrCreatePackageEvr(PackageEvr.parseDebian(version));
+                return PackageEvr.parseDebian(version);
             case RPM:
-                return PackageEvrFactory.lookupOrCreatePackageEvr(epoch.map(StringUtils::trimToNull).orElse(null),
-                        version, release.orElse("0"), PackageType.RPM);
+                return new PackageEvr(epoch.map(StringUtils::trimToNull).orElse(null), version, release.orElse("0"),
+                        PackageType.RPM);
             default:
                 throw new RuntimeException("unreachable");
         }
     }
 
+    /**
+     * Builds a transient {@link PackageName}, not looked up in the database
+     */
+    private static PackageName createPackageName(String name) {
+        PackageName packageName = new PackageName();
+        packageName.setName(name);
+        return packageName;
+    }
+
     private static ImagePackage createImagePackageFromSalt(String name, Pkg.Info info, ImageInfo imageInfo) {
         return createImagePackageFromSalt(name, info.getEpoch(), info.getRelease(), info.getVersion().get(),
                 info.getInstallDateUnixTime(), info.getArchitecture(), imageInfo);
@@ -32,6 +32,7 @@ import com.redhat.rhn.domain.rhnpackage.Package;
 import com.redhat.rhn.domain.rhnpackage.PackageEvr;
 import com.redhat.rhn.domain.rhnpackage.PackageFactory;
 
+import com.suse.manager.webui.utils.DownloadCache;
 import com.suse.manager.webui.utils.TokenBuilder;
 import com.suse.utils.Opt;
 
@@ -395,11 +396,15 @@ public class DownloadController {
         }
 
         String mountPoint = Config.get().getString(ConfigDefaults.MOUNT_POINT);
-        PkgInfo pkgInfo = parsePackageFileName(path);
-        Package pkg = PackageFactory.lookupByChannelLabelNevraCs(channel, pkgInfo.getName(),
-                pkgInfo.getVersion(), pkgInfo.getRelease(), pkgInfo.getEpoch(), pkgInfo.getArch(),
-                pkgInfo.getChecksum());
-        if (pkg == null) {
+        String urlPath = path;
+        String pkgPath = DownloadCache.getPackagePath(urlPath, () -> {
+            PkgInfo pkgInfo = parsePackageFileName(urlPath);
+            Package pkg = PackageFactory.lookupByChannelLabelNevraCs(channel, pkgInfo.getName(),
+                    pkgInfo.getVersion(), pkgInfo.getRelease(), pkgInfo.getEpoch(), pkgInfo.getArch(),
+                    pkgInfo.getChecksum());
+            return pkg == null ? null : pkg.getPath();
+        });
+        if (pkgPath == null) {
             if (LOG.isDebugEnabled()) {
                 LOG.error("{}: Package not found in channel: {}", path, StringUtil.sanitizeLogInput(channel));
             }
@@ -407,7 +412,7 @@ public class DownloadController {
                  String.format("%s not found in %s", basename, channel));
         }
 
-        File file = new File(mountPoint, pkg.getPath()).getAbsoluteFile();
+        File file = new File(mountPoint, pkgPath).getAbsoluteFile();
 
         return downloadFile(request, response, file);
     }
@@ -506,15 +511,18 @@ public class DownloadController {
      * @param filename the filename
      */
     private static void validateToken(String token, String channel, String filename) {
-
-        AccessTokenFactory.lookupByToken(token).ifPresent(obj -> {
-            if (!obj.getValid()) {
-                LOG.info(String.format("Forbidden: invalid token %s to access %s", token, filename));
-                halt(HttpStatus.SC_FORBIDDEN, "This token is not valid");
-            }
-        });
         try {
-            JwtClaims claims = JWT_CONSUMER.processToClaims(token);
+            JwtClaims claims = DownloadCache.getTokenClaims(token).orElse(null);
+            if (claims == null) {
+                AccessTokenFactory.lookupByToken(token).ifPresent(obj -> {
+                    if (!obj.getValid()) {
+                        LOG.info(String.format("Forbidden: invalid token %s to access %s", token, filename));
+                        halt(HttpStatus.SC_FORBIDDEN, "This token is not valid");
+                    }
+                });
+                claims = JWT_CONSUMER.processToClaims(token);
+                DownloadCache.putTokenClaims(token, claims);
+            }
 
             if (Opt.fold(Optional.ofNullable(claims.getExpirationTime()),
                     () -> false,
@@ -545,7 +553,8 @@ public class DownloadController {
                 LOG.info("Forbidden: Token does not specify the organization");
                 halt(HttpStatus.SC_BAD_REQUEST, "Token does not specify the organization");
             }, orgId -> {
-                if (!ChannelFactory.isAccessibleBy(channel, orgId)) {
+                if (!DownloadCache.isChannelAccessible(channel, orgId,
+                        () -> ChannelFactory.isAccessibleBy(channel, orgId))) {
                     LOG.info(String.format("Forbidden: Token does not provide access to channel %s", channel));
                     halt(HttpStatus.SC_FORBIDDEN, "Token does not provide access to channel " + channel);
                 }
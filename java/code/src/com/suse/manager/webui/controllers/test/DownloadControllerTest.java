@@ -16,6 +16,7 @@
 package com.suse.manager.webui.controllers.test;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -50,6 +51,7 @@ import com.redhat.rhn.testing.RhnMockHttpServletResponse;
 import com.redhat.rhn.testing.TestUtils;
 
 import com.suse.manager.webui.controllers.DownloadController;
+import com.suse.manager.webui.utils.DownloadCache;
 import com.suse.manager.webui.utils.DownloadTokenBuilder;
 import com.suse.manager.webui.utils.SparkTestUtils;
 
@@ -58,6 +60,7 @@ import com.mockobjects.servlet.MockHttpServletResponse;
 import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
+import org.jose4j.jwt.JwtClaims;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
@@ -468,6 +471,27 @@ public class DownloadControllerTest extends BaseTestCaseWithUser {
         }
     }
 
+    /**
+     * Tests that a revoked token is dropped from the cache only once the transaction completes.
+     */
+    @Test
+    public void testRevokedTokenInvalidatedAfterCompletion() {
+        MinionServer testMinionServer = MinionServerFactoryTest.createTestMinionServer(user);
+        testMinionServer.getChannels().add(channel);
+        AccessTokenFactory.refreshTokens(testMinionServer);
+
+        AccessToken token = testMinionServer.getAccessTokens().iterator().next();
+        DownloadCache.putTokenClaims(token.getToken(), new JwtClaims());
+
+        token.setValid(false);
+        AccessTokenFactory.save(token);
+        // the revocation is not visible to other transactions yet
+        assertTrue(DownloadCache.getTokenClaims(token.getToken()).isPresent());
+
+        HibernateFactory.rollbackTransaction();
+        assertFalse(DownloadCache.getTokenClaims(token.getToken()).isPresent());
+    }
+
     /**
      * Test a download with a correct channel in the token and the token
      * in a query param.
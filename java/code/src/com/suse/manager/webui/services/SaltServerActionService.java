@@ -125,6 +125,7 @@ import com.redhat.rhn.manager.system.SystemManager;
 import com.redhat.rhn.taskomatic.TaskomaticApi;
 import com.redhat.rhn.taskomatic.TaskomaticApiException;
 
+import com.suse.manager.metrics.LatencyMetrics;
 import com.suse.manager.reactor.messaging.ApplyStatesEventMessage;
 import com.suse.manager.utils.SaltKeyUtils;
 import com.suse.manager.utils.SaltUtils;
@@ -486,7 +487,22 @@ public class SaltServerActionService {
      */
     public void execute(Action actionIn, boolean forcePackageListRefresh,
             boolean isStagingJob, Optional<Long> stagingJobMinionServerId) {
+        long start = System.nanoTime();
+        String actionType = actionIn.getActionType().getLabel();
+        if (actionIn.getEarliestAction() != null) {
+            LatencyMetrics.ACTION_PICKUP_DELAY.labels(actionType)
+                    .observe(Math.max(0, System.currentTimeMillis() - actionIn.getEarliestAction().getTime()) / 1000.0);
+        }
+        try {
+            executeForMinions(actionIn, forcePackageListRefresh, isStagingJob, stagingJobMinionServerId);
+        }
+        finally {
+            LatencyMetrics.observeSince(LatencyMetrics.ACTION_DISPATCH, start, actionType);
+        }
+    }
 
+    private void executeForMinions(Action actionIn, boolean forcePackageListRefresh,
+            boolean isStagingJob, Optional<Long> stagingJobMinionServerId) {
         List<MinionSummary> allMinions = MinionServerFactory.findQueuedMinionSummaries(actionIn.getId());
         if (CollectionUtils.isEmpty(allMinions)) {
             LOG.warn("Unable to find any minion that have the action id={} in status QUEUED", actionIn.getId());
@@ -510,14 +526,12 @@ public class SaltServerActionService {
                 sshMinionSummaries.stream().map(MinionSummary::getServerId).collect(Collectors.toList()));
 
         if (!sshPushMinions.isEmpty()) {
-            for (MinionServer sshMinion : sshPushMinions) {
-                try {
-                    taskomaticApi.scheduleSSHActionExecution(actionIn, sshMinion, forcePackageListRefresh);
-                }
-                catch (TaskomaticApiException e) {
-                    LOG.error("Couldn't schedule SSH action id={} minion={}",
-                            actionIn.getId(), sshMinion.getMinionId(), e);
-                }
+            try {
+                taskomaticApi.scheduleSSHActionExecutions(actionIn, sshPushMinions, forcePackageListRefresh);
+            }
+            catch (TaskomaticApiException e) {
+                LOG.error("Couldn't schedule SSH action id={} on {} minions",
+                        actionIn.getId(), sshPushMinions.size(), e);
             }
         }
     }
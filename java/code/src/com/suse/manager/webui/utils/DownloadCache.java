@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2023 SUSE LLC
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.suse.manager.webui.utils;
+
+import com.redhat.rhn.common.conf.ConfigDefaults;
+import com.redhat.rhn.common.hibernate.HibernateFactory;
+
+import com.suse.manager.metrics.PrometheusExporter;
+import com.suse.utils.ExpiringCache;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.hibernate.Transaction;
+import org.jose4j.jwt.JwtClaims;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import javax.transaction.Synchronization;
+
+/**
+ * Caches used by the download endpoint to avoid hitting the database for every package requested by a client.
+ *
+ * Entries expire after java.download_cache_lifetime seconds. Tokens revoked and channel contents changed in this
+ * process are invalidated as soon as the transaction changing them completes, changes made by other processes are
+ * noticed once the entries expire.
+ */
+public class DownloadCache {
+
+    private static final int SIZE = ConfigDefaults.get().getDownloadCacheSize();
+    private static final int LIFETIME = ConfigDefaults.get().getDownloadCacheLifetime();
+
+    // verified claims of valid tokens, keyed by the token hash
+    private static final ExpiringCache<String, JwtClaims> TOKEN_CLAIMS =
+            new ExpiringCache<>(SIZE, LIFETIME, TimeUnit.SECONDS);
+
+    // channel accessibility by organization, keyed by channel label and organization id
+    private static final ExpiringCache<String, Boolean> CHANNEL_ACCESS =
+            new ExpiringCache<>(SIZE, LIFETIME, TimeUnit.SECONDS);
+
+    // package paths, keyed by the requested url path which contains the channel label, NEVRA and checksum
+    private static final ExpiringCache<String, String> PACKAGE_PATHS =
+            new ExpiringCache<>(SIZE, LIFETIME, TimeUnit.SECONDS);
+
+    static {
+        PrometheusExporter.INSTANCE.registerCache(TOKEN_CLAIMS, "download_token");
+        PrometheusExporter.INSTANCE.registerCache(CHANNEL_ACCESS, "download_channel_access");
+        PrometheusExporter.INSTANCE.registerCache(PACKAGE_PATHS, "download_package");
+    }
+
+    private DownloadCache() {
+    }
+
+    private static String hash(String token) {
+        return DigestUtils.sha256Hex(token);
+    }
+
+    /**
+     * Returns the cached claims of a token previously found valid.
+     * @param token the token
+     * @return the verified claims
+     */
+    public static Optional<JwtClaims> getTokenClaims(String token) {
+        return TOKEN_CLAIMS.get(hash(token));
+    }
+
+    /**
+     * Caches the claims of a valid token.
+     * @param token the token
+     * @param claims the verified claims
+     */
+    public static void putTokenClaims(String token, JwtClaims claims) {
+        TOKEN_CLAIMS.put(hash(token), claims);
+    }
+
+    /**
+     * Removes a token from the cache once the current transaction completes, to be called whenever a token is
+     * revoked or deleted.
+     * @param token the token
+     */
+    public static void invalidateToken(String token) {
+        if (token != null) {
+            String key = hash(token);
+            afterCompletion(() -> TOKEN_CLAIMS.invalidate(key));
+        }
+    }
+
+    /**
+     * Returns whether a channel is accessible by an organization, computing it if not cached.
+     * @param channel the channel label
+     * @param orgId the organization id
+     * @param loader computes the accessibility
+     * @return true if the channel is accessible
+     */
+    public static boolean isChannelAccessible(String channel, long orgId, Supplier<Boolean> loader) {
+        return CHANNEL_ACCESS.get(channel + "/" + orgId, k -> loader.get());
+    }
+
+    /**
+     * Returns the path of a package, computing it if not cached.
+     * @param urlPath the url path of the request
+     * @param loader computes the package path, returns null if the package is not found
+     * @return the package path, or null if not found
+     */
+    public static String getPackagePath(String urlPath, Supplier<String> loader) {
+        return PACKAGE_PATHS.get(urlPath, k -> loader.get());
+    }
+
+    /**
+     * Removes all the cached package paths and channel accesses once the current transaction completes, to be called
+     * whenever the content of a channel changes.
+     */
+    public static void invalidateChannels() {
+        afterCompletion(() -> {
+            PACKAGE_PATHS.clear();
+            CHANNEL_ACCESS.clear();
+        });
+    }
+
+    /**
+     * Runs an invalidation when the current transaction completes, or right away if there is none. Invalidating
+     * earlier would let a concurrent request cache again the data still visible before the commit.
+     */
+    private static void afterCompletion(Runnable invalidation) {
+        Transaction transaction = HibernateFactory.getSession().getTransaction();
+        if (!transaction.isActive()) {
+            invalidation.run();
+            return;
+        }
+        transaction.registerSynchronization(new Synchronization() {
+            @Override
+            public void beforeCompletion() {
+                // nothing to do
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                // also on rollback: dropping an entry which is still valid is harmless
+                invalidation.run();
+            }
+        });
+    }
+}
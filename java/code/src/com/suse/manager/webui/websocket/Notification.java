@@ -32,7 +32,10 @@ import org.apache.logging.log4j.Logger;
 
 import java.io.EOFException;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -42,7 +45,7 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
-import java.util.function.BiFunction;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -69,9 +72,14 @@ public class Notification {
     // Logger for this class
     private static final Logger LOG = LogManager.getLogger(Notification.class);
 
+    // delay during which the updates to spread are coalesced
+    private static final long UPDATE_DELAY_MS = 500;
+
     private static final Object LOCK = new Object();
     private static final Gson GSON = new GsonBuilder().create();
     private static Map<Session, Set<String>> wsSessions = new ConcurrentHashMap();
+    private static final Set<String> PENDING_UPDATES = ConcurrentHashMap.newKeySet();
+    private static final AtomicBoolean UPDATE_SCHEDULED = new AtomicBoolean(false);
     private static Set<Session> brokenSessions = ConcurrentHashMap.newKeySet();
     private static final WebsocketHeartbeatService HEARTBEAT_SERVICE = GlobalInstanceHolder.WEBSOCKET_SESSION_MANAGER;
 
@@ -161,69 +169,112 @@ public class Notification {
     }
 
     /**
-     * Must be synchronized. Sending messages concurrently from separate threads
-     * will result in IllegalStateException.
+     * Queues a message to be sent asynchronously to the session. Messages to the same
+     * session are sent in order, without blocking the caller.
      *
      * @param session the WebSocket session
      * @param message the message to be sent
      */
     public static void sendMessage(Session session, String message) {
-        synchronized (LOCK) {
-            try {
-                if (session.isOpen()) {
-                    session.getBasicRemote().sendText(message);
-                }
-                else {
-                    LOG.debug("Could not send websocket message. Session [id:{}] is already closed.", session.getId());
-                    handbreakSession(session);
-                }
-            }
-            catch (IOException e) {
-                LOG.debug(String.format("Could not send websocket message. Session [id:%s] is already closed.",
-                        session.getId()));
-                handbreakSession(session);
-            }
+        if (!WebsocketOutboundQueue.forSession(session).offer(message)) {
+            LOG.debug("Could not send websocket message. Session [id:{}] is already closed.", session.getId());
+            handbreakSession(session);
         }
     }
 
     /**
-     * A static method to notify all {@link Session}s attached to WebSocket from the outside
+     * A static method to notify all {@link Session}s attached to WebSocket from the outside.
+     * Updates are coalesced for a short time and then sent from a background thread, computing
+     * each value once per user.
      *
      * @param property which property to spread to all sessions
      */
     public static void spreadUpdate(String property) {
+        PENDING_UPDATES.add(property);
+        if (UPDATE_SCHEDULED.compareAndSet(false, true)) {
+            scheduledExecutorService.schedule(Notification::flushPendingUpdates, UPDATE_DELAY_MS,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private static void flushPendingUpdates() {
+        UPDATE_SCHEDULED.set(false);
+        Set<String> properties = new HashSet<>();
+        for (Iterator<String> it = PENDING_UPDATES.iterator(); it.hasNext();) {
+            properties.add(it.next());
+            it.remove();
+        }
+        try {
+            sendUpdates(properties);
+        }
+        catch (Exception e) {
+            LOG.error("Notification update exception", e);
+            clearBrokenSessions();
+        }
+        finally {
+            HibernateFactory.closeSession();
+        }
+    }
+
+    private static void sendUpdates(Set<String> properties) {
         // Check for closed sessions before notifying them
         clearBrokenSessions();
 
-        // if there are unread messages, notify it to all attached WebSocket sessions
+        // group the sessions watching the properties by user, to compute the values once per user
+        Map<Long, List<Session>> sessionsByUser = new HashMap<>();
         wsSessions.forEach((session, watched) -> {
-            if (watched.contains(property)) {
+            if (properties.stream().anyMatch(watched::contains)) {
                 Optional.ofNullable(session.getUserProperties().get(WEB_USER_ID))
-                        .map(webUserID -> UserFactory.lookupById((Long) webUserID))
-                        .ifPresent(user -> sendData(session, user, Set.of(property)));
+                        .ifPresent(webUserID -> sessionsByUser.computeIfAbsent((Long) webUserID,
+                                id -> new ArrayList<>()).add(session));
+            }
+        });
+
+        sessionsByUser.forEach((userId, sessions) -> {
+            User user = UserFactory.lookupById(userId);
+            if (user == null) {
+                return;
             }
+            Set<String> wanted = sessions.stream()
+                    .flatMap(session -> wsSessions.getOrDefault(session, Set.of()).stream())
+                    .filter(properties::contains)
+                    .collect(Collectors.toSet());
+            Map<String, Object> values = prepareData(user, wanted);
+            sessions.forEach(session -> {
+                Set<String> watched = wsSessions.getOrDefault(session, Set.of());
+                Map<String, Object> data = values.entrySet().stream()
+                        .filter(e -> watched.contains(e.getKey()))
+                        .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+                if (!data.isEmpty()) {
+                    sendMessage(session, GSON.toJson(data));
+                }
+            });
         });
     }
 
     private static void sendData(Session session, User user, Set<String> properties) {
-        Map<String, BiFunction<Session, User, Object>> preparers = Map.of(
+        Map<String, Object> data = prepareData(user, properties);
+        if (!data.isEmpty()) {
+            sendMessage(session, GSON.toJson(data));
+        }
+    }
+
+    private static Map<String, Object> prepareData(User user, Set<String> properties) {
+        Map<String, Function<User, Object>> preparers = Map.of(
                 USER_NOTIFICATIONS, Notification::prepareUserNotifications,
                 SSM_COUNT, Notification::prepareSsmCount
         );
-        Map<String, Object> data = properties.stream()
+        return properties.stream()
                 .filter(preparers::containsKey)
                 .collect(Collectors.toMap(Function.identity(),
-                        property -> preparers.get(property).apply(session, user)));
-        if (!data.isEmpty()) {
-            sendMessage(session, GSON.toJson(data));
-        }
+                        property -> preparers.get(property).apply(user)));
     }
 
-    private static Object prepareUserNotifications(Session session, User user) {
+    private static Object prepareUserNotifications(User user) {
         return UserNotificationFactory.unreadUserNotificationsSize(user);
     }
 
-    private static Object prepareSsmCount(Session session, User user) {
+    private static Object prepareSsmCount(User user) {
         RhnSet systemSet = RhnSetDecl.SYSTEMS.lookup(user);
         return systemSet != null ? systemSet.size() : 0;
     }
@@ -267,7 +318,7 @@ public class Notification {
      */
     private static void handshakeSession(Session session) {
         HEARTBEAT_SERVICE.register(session);
-        wsSessions.put(session, new HashSet<>());
+        wsSessions.put(session, ConcurrentHashMap.newKeySet());
     }
 
     /**
@@ -284,7 +335,7 @@ public class Notification {
         scheduledExecutorService = Executors.newScheduledThreadPool(1);
         scheduledExecutorService.scheduleWithFixedDelay(() -> {
             try {
-                spreadUpdate(USER_NOTIFICATIONS);
+                sendUpdates(Set.of(USER_NOTIFICATIONS));
             }
             catch (Exception e) {
                 LOG.error("Notification scheduledExecutorService exception", e);
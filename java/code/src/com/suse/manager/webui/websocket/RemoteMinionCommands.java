@@ -381,22 +381,12 @@ public class RemoteMinionCommands {
     }
 
     /**
-     * Must be synchronized. Sending messages concurrently from separate threads
-     * will result in IllegalStateException.
+     * Queues the message to be sent asynchronously, so that the Salt result callbacks
+     * never wait for a slow client.
      */
     private void sendMessage(Session session, AbstractSaltEventDto dto) {
-        synchronized (session) {
-            try {
-                if (session.isOpen()) {
-                    session.getBasicRemote().sendText(Json.GSON.toJson(dto));
-                }
-                else {
-                    LOG.debug("Could not send websocket message. Session is closed.");
-                }
-            }
-            catch (IOException e) {
-                LOG.error("Error sending websocket message", e);
-            }
+        if (!WebsocketOutboundQueue.forSession(session).offer(Json.GSON.toJson(dto))) {
+            LOG.debug("Could not send websocket message. Session is closed.");
         }
     }
 
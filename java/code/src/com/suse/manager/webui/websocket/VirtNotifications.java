@@ -42,14 +42,16 @@ import java.util.Arrays;
 import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 
 import javax.websocket.EndpointConfig;
@@ -74,9 +76,14 @@ public class VirtNotifications {
             .registerTypeAdapterFactory(new OptionalTypeAdapterFactory())
             .create();
 
+    // delay during which the refreshes to spread are coalesced
+    private static final long REFRESH_DELAY_MS = 500;
+
     private static final Object LOCK = new Object();
-    private static Map<Session, Set<VirtNotificationMessage>> wsSessions = new HashMap<>();
-    private static Set<Session> brokenSessions = new HashSet<>();
+    private static Map<Session, Set<VirtNotificationMessage>> wsSessions = new ConcurrentHashMap<>();
+    private static Set<Session> brokenSessions = ConcurrentHashMap.newKeySet();
+    private static final Set<String> PENDING_REFRESHES = ConcurrentHashMap.newKeySet();
+    private static final AtomicBoolean REFRESH_SCHEDULED = new AtomicBoolean(false);
     private static final WebsocketHeartbeatService HEARTBEAT_SERVICE = GlobalInstanceHolder.WEBSOCKET_SESSION_MANAGER;
 
     /**
@@ -188,89 +195,86 @@ public class VirtNotifications {
     }
 
     /**
-     * Must be synchronized. Sending messages concurrently from separate threads
-     * will result in IllegalStateException.
+     * Queues a message to be sent asynchronously to the session. Messages to the same
+     * session are sent in order, without blocking the caller.
      *
      * @param session the WebSocket session
      * @param message the message to be sent
      */
     public static void sendMessage(Session session, String message) {
-        synchronized (LOCK) {
-            try {
-                if (session.isOpen()) {
-                    session.getBasicRemote().sendText(message);
-                }
-                else {
-                    LOG.debug("Could not send websocket message. Session [id:{}] is closed.", session.getId());
-                    handbreakSession(session);
-                }
-            }
-            catch (IOException e) {
-                LOG.error("Error sending websocket message", e);
-                handbreakSession(session);
-            }
+        if (!WebsocketOutboundQueue.forSession(session).offer(message)) {
+            LOG.debug("Could not send websocket message. Session [id:{}] is closed.", session.getId());
+            handbreakSession(session);
         }
     }
 
     /**
      * A static method to notify all {@link Session}s attached to WebSocket from the outside
-     * Must be synchronized. Sending messages concurrently from separate threads
-     * will result in IllegalStateException.
      *
      * @param action the action that changed
      */
     public static void spreadActionUpdate(Action action) {
-        synchronized (LOCK) {
-            // Notify sessions waiting for this action
-            wsSessions.forEach((session, requests) -> {
-                List<Long> servers = requests.stream()
-                        .filter(req -> req.getGuestUuid().isEmpty() && req.getSid().isPresent())
-                        .map(req -> req.getSid().get())
-                        .collect(Collectors.toList());
-                Optional<ServerAction> serverAction = action.getServerActions().stream()
-                        .filter(sa -> servers.contains(sa.getServerId()))
-                        .findFirst();
-
-                serverAction.ifPresent(sa -> {
-                    Map<String, Object> actions = new HashMap<>();
-                    actions.put("id", action.getId());
-                    actions.put("status", sa.getStatus().getName());
-                    actions.put("type", sa.getParentAction().getActionType().getLabel());
-                    actions.put("name", sa.getParentAction().getName());
-
-                    Map<String, Object> msg = new HashMap<>();
-                    msg.put(action.getWebSocketActionId(), actions);
-
-                    sendMessage(session, GSON.toJson(msg));
-                });
+        // Notify sessions waiting for this action
+        wsSessions.forEach((session, requests) -> {
+            List<Long> servers = requests.stream()
+                    .filter(req -> req.getGuestUuid().isEmpty() && req.getSid().isPresent())
+                    .map(req -> req.getSid().get())
+                    .collect(Collectors.toList());
+            Optional<ServerAction> serverAction = action.getServerActions().stream()
+                    .filter(sa -> servers.contains(sa.getServerId()))
+                    .findFirst();
+
+            serverAction.ifPresent(sa -> {
+                Map<String, Object> actions = new HashMap<>();
+                actions.put("id", action.getId());
+                actions.put("status", sa.getStatus().getName());
+                actions.put("type", sa.getParentAction().getActionType().getLabel());
+                actions.put("name", sa.getParentAction().getName());
+
+                Map<String, Object> msg = new HashMap<>();
+                msg.put(action.getWebSocketActionId(), actions);
+
+                sendMessage(session, GSON.toJson(msg));
             });
-        }
+        });
     }
 
     /**
      * A static method to notify all {@link Session}s attached to WebSocket that a refresh is needed.
-     * Must be synchronized. Sending messages concurrently from separate threads
-     * will result in IllegalStateException.
+     * Refreshes are coalesced for a short time, so that a burst of changes results in a single
+     * message per kind and session.
      *
      * @param kind the kind of object list that needs refresh. One of "guest", "pool"
      */
     public static void spreadRefresh(String kind) {
-        synchronized (LOCK) {
-            // Notify sessions waiting for this action
+        PENDING_REFRESHES.add(kind);
+        if (REFRESH_SCHEDULED.compareAndSet(false, true)) {
+            scheduledExecutorService.schedule(VirtNotifications::flushPendingRefreshes, REFRESH_DELAY_MS,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private static void flushPendingRefreshes() {
+        REFRESH_SCHEDULED.set(false);
+        List<String> kinds = new ArrayList<>();
+        for (Iterator<String> it = PENDING_REFRESHES.iterator(); it.hasNext();) {
+            kinds.add(it.next());
+            it.remove();
+        }
+        try {
             wsSessions.forEach((session, requests) -> {
                 if (requests.stream().anyMatch(req -> req.getGuestUuid().isEmpty())) {
-                    Map<String, Object> data = new HashMap<>();
-                    data.put("refresh", kind);
-                    sendMessage(session, GSON.toJson(data));
+                    kinds.forEach(kind -> sendMessage(session, GSON.toJson(Map.of("refresh", kind))));
                 }
             });
         }
+        catch (Exception e) {
+            LOG.error("VirtNotification refresh exception", e);
+        }
     }
 
     /**
      * A static method to notify all {@link Session}s attached to WebSocket from the outside
-     * Must be synchronized. Sending messages concurrently from separate threads
-     * will result in IllegalStateException.
      *
      * @param sid the server ID of the virtual host where the VM is located
      * @param uuid the UUID of the VM
@@ -278,19 +282,17 @@ public class VirtNotifications {
      * @param detail the libvirt event detail
      */
     public static void spreadGuestEvent(Long sid, String uuid, String event, String detail) {
-        synchronized (LOCK) {
-            // Notify sessions waiting for this action
-            wsSessions.forEach((session, requests) -> {
-                if (requests.stream()
-                        .anyMatch(req -> req.getSid().isEmpty() && uuid.equals(req.getGuestUuid().orElse(null)))) {
-                    Map<String, Object> data = new HashMap<>();
-                    data.put("hostId", sid);
-                    data.put("event", event);
-                    data.put("detail", detail);
-                    sendMessage(session, GSON.toJson(data));
-                }
-            });
-        }
+        // Notify sessions waiting for this action
+        wsSessions.forEach((session, requests) -> {
+            if (requests.stream()
+                    .anyMatch(req -> req.getSid().isEmpty() && uuid.equals(req.getGuestUuid().orElse(null)))) {
+                Map<String, Object> data = new HashMap<>();
+                data.put("hostId", sid);
+                data.put("event", event);
+                data.put("detail", detail);
+                sendMessage(session, GSON.toJson(data));
+            }
+        });
     }
 
     /**
@@ -305,10 +307,14 @@ public class VirtNotifications {
                 }
             });
 
+            // this is a temporary list to cope with the scenario
+            // when new "brokenSessions" where added while we were cleaning them
+            List<Session> brokenSessionRemove = new ArrayList<>();
             // remove any invalid/broken session from the valid set
             // try to close it if it is still open
             brokenSessions.forEach(session -> {
                 wsSessions.remove(session);
+                brokenSessionRemove.add(session);
                 if (session.isOpen()) {
                     try {
                         session.close();
@@ -318,7 +324,7 @@ public class VirtNotifications {
                     }
                 }
             });
-            brokenSessions.clear();
+            brokenSessions.removeAll(brokenSessionRemove);
         }
     }
 
@@ -328,9 +334,7 @@ public class VirtNotifications {
      */
     private static void handshakeSession(Session session) {
         HEARTBEAT_SERVICE.register(session);
-        synchronized (LOCK) {
-            wsSessions.put(session, new HashSet<>());
-        }
+        wsSessions.put(session, ConcurrentHashMap.newKeySet());
     }
 
     /**
@@ -339,9 +343,7 @@ public class VirtNotifications {
      */
     private static void handbreakSession(Session session) {
         HEARTBEAT_SERVICE.unregister(session);
-        synchronized (LOCK) {
-            brokenSessions.add(session);
-        }
+        brokenSessions.add(session);
     }
 
     private static ScheduledExecutorService scheduledExecutorService;
@@ -366,14 +368,8 @@ public class VirtNotifications {
     static {
         keepaliveExecutorService = Executors.newScheduledThreadPool(1);
         keepaliveExecutorService.scheduleWithFixedDelay(() -> {
-            synchronized (LOCK) {
-                // Notify sessions waiting for this action
-                wsSessions.forEach((session, requests) -> {
-                    Map<String, Object> data = new HashMap<>();
-                    data.put("keepalive", "yes");
-                    sendMessage(session, GSON.toJson(data));
-                });
-            }
+            String keepalive = GSON.toJson(Map.of("keepalive", "yes"));
+            wsSessions.keySet().forEach(session -> sendMessage(session, keepalive));
         }, 15, 15, TimeUnit.SECONDS);
     }
 }
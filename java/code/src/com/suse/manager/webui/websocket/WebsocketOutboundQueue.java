@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2023 SUSE LLC
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+
+package com.suse.manager.webui.websocket;
+
+import com.redhat.rhn.common.conf.Config;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import javax.websocket.CloseReason;
+import javax.websocket.SendHandler;
+import javax.websocket.SendResult;
+import javax.websocket.Session;
+
+/**
+ * Bounded queue of the text messages to be sent to a websocket session.
+ *
+ * <p>Messages are sent asynchronously, one at a time and in the order they were queued, so that the callers never wait
+ * for the client and never need a lock shared with other sessions. If a client is too slow to keep up and its queue
+ * fills up, the session is closed: the client is expected to reconnect and fetch the current state again.
+ */
+public class WebsocketOutboundQueue implements SendHandler {
+
+    private static final Logger LOG = LogManager.getLogger(WebsocketOutboundQueue.class);
+
+    /** Configuration key of the maximum number of messages waiting to be sent to a session */
+    public static final String QUEUE_SIZE = "java.websocket_outbound_queue_size";
+    private static final int DEFAULT_QUEUE_SIZE = 1000;
+
+    private static final String USER_PROPERTY = WebsocketOutboundQueue.class.getName();
+
+    private final Session session;
+    private final int capacity;
+    private final Deque<String> messages = new ArrayDeque<>();
+    private boolean sending;
+    private boolean closed;
+
+    /**
+     * Creates a new queue for the given session. Endpoints should use {@link #forSession(Session)} instead, so that
+     * all the messages to a session go through the same queue.
+     *
+     * @param sessionIn the websocket session
+     * @param capacityIn the maximum number of messages waiting to be sent
+     */
+    public WebsocketOutboundQueue(Session sessionIn, int capacityIn) {
+        session = sessionIn;
+        capacity = capacityIn;
+    }
+
+    /**
+     * Returns the queue of the given session, creating it on first use.
+     *
+     * @param session the websocket session
+     * @return the queue of the session
+     */
+    public static WebsocketOutboundQueue forSession(Session session) {
+        return (WebsocketOutboundQueue) session.getUserProperties().computeIfAbsent(USER_PROPERTY,
+                k -> new WebsocketOutboundQueue(session, Config.get().getInt(QUEUE_SIZE, DEFAULT_QUEUE_SIZE)));
+    }
+
+    /**
+     * Queues a message to be sent to the session, without waiting for it to be sent.
+     *
+     * @param message the message
+     * @return false if the message cannot be sent because the session is closed or the client is too slow
+     */
+    public boolean offer(String message) {
+        String next = null;
+        boolean overflow = false;
+        synchronized (this) {
+            if (closed || !session.isOpen()) {
+                return false;
+            }
+            if (messages.size() >= capacity) {
+                overflow = true;
+                closed = true;
+                messages.clear();
+            }
+            else {
+                messages.add(message);
+                if (!sending) {
+                    sending = true;
+                    next = messages.poll();
+                }
+            }
+        }
+
+        if (overflow) {
+            LOG.warn("Too many pending websocket messages for session [id:{}]. Closing it.", session.getId());
+            try {
+                session.close(new CloseReason(CloseReason.CloseCodes.TRY_AGAIN_LATER, "Client too slow"));
+            }
+            catch (IOException e) {
+                LOG.debug("Error closing web socket session", e);
+            }
+            return false;
+        }
+        if (next != null) {
+            send(next);
+        }
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onResult(SendResult result) {
+        String next = null;
+        synchronized (this) {
+            if (!result.isOK()) {
+                LOG.debug("Could not send websocket message to session [id:{}]", session.getId(),
+                        result.getException());
+                closed = true;
+                messages.clear();
+            }
+            else {
+                next = messages.poll();
+            }
+            sending = next != null;
+        }
+        if (next != null) {
+            send(next);
+        }
+    }
+
+    /**
+     * @return true if no more messages can be sent through this queue
+     */
+    public synchronized boolean isClosed() {
+        return closed;
+    }
+
+    private void send(String message) {
+        try {
+            session.getAsyncRemote().sendText(message, this);
+        }
+        catch (RuntimeException e) {
+            // e.g. the session was closed in the meantime
+            onResult(new SendResult(e));
+        }
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2023 SUSE LLC
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+
+package com.suse.manager.webui.websocket.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.suse.manager.webui.websocket.WebsocketOutboundQueue;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.websocket.RemoteEndpoint;
+import javax.websocket.SendHandler;
+import javax.websocket.SendResult;
+import javax.websocket.Session;
+
+/**
+ * Tests for {@link WebsocketOutboundQueue}
+ */
+public class WebsocketOutboundQueueTest {
+
+    private List<String> sent;
+    private List<SendHandler> handlers;
+    private boolean open;
+    private Session session;
+
+    @BeforeEach
+    public void setUp() {
+        sent = new ArrayList<>();
+        handlers = new ArrayList<>();
+        open = true;
+        Map<String, Object> userProperties = new HashMap<>();
+
+        RemoteEndpoint.Async async = (RemoteEndpoint.Async) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{RemoteEndpoint.Async.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("sendText") && args.length == 2) {
+                        sent.add((String) args[0]);
+                        handlers.add((SendHandler) args[1]);
+                    }
+                    return null;
+                });
+        session = (Session) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{Session.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "isOpen":
+                            return open;
+                        case "getAsyncRemote":
+                            return async;
+                        case "getUserProperties":
+                            return userProperties;
+                        case "getId":
+                            return "test";
+                        case "close":
+                            open = false;
+                            return null;
+                        default:
+                            return null;
+                    }
+                });
+    }
+
+    @Test
+    public void testMessagesAreSentInOrderOneAtATime() {
+        WebsocketOutboundQueue queue = new WebsocketOutboundQueue(session, 10);
+        assertTrue(queue.offer("1"));
+        assertTrue(queue.offer("2"));
+        assertTrue(queue.offer("3"));
+
+        // the second message waits for the first one to complete
+        assertEquals(List.of("1"), sent);
+
+        handlers.get(0).onResult(new SendResult());
+        assertEquals(List.of("1", "2"), sent);
+        handlers.get(1).onResult(new SendResult());
+        handlers.get(2).onResult(new SendResult());
+        assertEquals(List.of("1", "2", "3"), sent);
+
+        assertTrue(queue.offer("4"));
+        assertEquals(List.of("1", "2", "3", "4"), sent);
+    }
+
+    @Test
+    public void testSlowClientIsClosed() {
+        WebsocketOutboundQueue queue = new WebsocketOutboundQueue(session, 2);
+        assertTrue(queue.offer("1"));
+        assertTrue(queue.offer("2"));
+        assertTrue(queue.offer("3"));
+        assertFalse(queue.offer("4"));
+
+        assertTrue(queue.isClosed());
+        assertFalse(open);
+        assertEquals(List.of("1"), sent);
+    }
+
+    @Test
+    public void testFailedSendClosesQueue() {
+        WebsocketOutboundQueue queue = new WebsocketOutboundQueue(session, 10);
+        assertTrue(queue.offer("1"));
+        assertTrue(queue.offer("2"));
+
+        handlers.get(0).onResult(new SendResult(new RuntimeException("broken pipe")));
+        assertTrue(queue.isClosed());
+        assertFalse(queue.offer("3"));
+        assertEquals(List.of("1"), sent);
+    }
+
+    @Test
+    public void testForSessionReusesQueue() {
+        assertSame(WebsocketOutboundQueue.forSession(session), WebsocketOutboundQueue.forSession(session));
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright (c) 2023 SUSE LLC
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.suse.utils;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+
+/**
+ * A thread safe, size bounded cache whose entries expire after a fixed lifetime. When full, the least recently used
+ * entry is evicted. Hits and misses are counted so that the cache effectiveness can be monitored.
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the cached values
+ */
+public class ExpiringCache<K, V> {
+
+    private final int maxSize;
+    private final long lifetimeMillis;
+    private final LongSupplier clock;
+
+    private final Map<K, Entry<V>> entries;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Creates a cache.
+     * @param maxSizeIn the maximum number of entries
+     * @param lifetime the lifetime of each entry
+     * @param unit the unit of the lifetime
+     */
+    public ExpiringCache(int maxSizeIn, long lifetime, TimeUnit unit) {
+        this(maxSizeIn, lifetime, unit, System::currentTimeMillis);
+    }
+
+    /**
+     * Creates a cache with a specific clock. Only meant for unit tests.
+     * @param maxSizeIn the maximum number of entries
+     * @param lifetime the lifetime of each entry
+     * @param unit the unit of the lifetime
+     * @param clockIn the clock, returning the current time in milliseconds
+     */
+    public ExpiringCache(int maxSizeIn, long lifetime, TimeUnit unit, LongSupplier clockIn) {
+        this.maxSize = maxSizeIn;
+        this.lifetimeMillis = unit.toMillis(lifetime);
+        this.clock = clockIn;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Returns the value cached for a key, if present and not expired.
+     * @param key the key
+     * @return the cached value
+     */
+    public Optional<V> get(K key) {
+        long now = clock.getAsLong();
+        synchronized (entries) {
+            Entry<V> entry = entries.get(key);
+            if (entry != null && entry.getExpiration() > now) {
+                hits.incrementAndGet();
+                return Optional.of(entry.getValue());
+            }
+            if (entry != null) {
+                entries.remove(key);
+            }
+        }
+        misses.incrementAndGet();
+        return Optional.empty();
+    }
+
+    /**
+     * Returns the value cached for a key, computing and caching it if missing. The value is computed outside of any
+     * lock, so concurrent callers may compute it more than once. Null values are returned but not cached.
+     * @param key the key
+     * @param loader the function computing the value
+     * @return the cached or computed value
+     */
+    public V get(K key, Function<K, V> loader) {
+        return get(key).orElseGet(() -> {
+            V value = loader.apply(key);
+            if (value != null) {
+                put(key, value);
+            }
+            return value;
+        });
+    }
+
+    /**
+     * Caches a value.
+     * @param key the key
+     * @param value the value, not null
+     */
+    public void put(K key, V value) {
+        if (maxSize <= 0) {
+            return;
+        }
+        Entry<V> entry = new Entry<>(value, clock.getAsLong() + lifetimeMillis);
+        synchronized (entries) {
+            entries.put(key, entry);
+        }
+    }
+
+    /**
+     * Removes the value cached for a key.
+     * @param key the key
+     */
+    public void invalidate(K key) {
+        synchronized (entries) {
+            entries.remove(key);
+        }
+    }
+
+    /**
+     * Removes the values cached for all the keys matching a predicate.
+     * @param predicate the predicate on the keys
+     */
+    public void invalidateIf(Predicate<K> predicate) {
+        synchronized (entries) {
+            entries.keySet().removeIf(predicate);
+        }
+    }
+
+    /**
+     * Removes all the cached values.
+     */
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    /**
+     * @return the number of cached entries, including the expired ones not evicted yet
+     */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * @return the number of lookups that found a value
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return the number of lookups that did not find a value
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    private static class Entry<V> {
+        private final V value;
+        private final long expiration;
+
+        Entry(V valueIn, long expirationIn) {
+            this.value = valueIn;
+            this.expiration = expirationIn;
+        }
+
+        V getValue() {
+            return value;
+        }
+
+        long getExpiration() {
+            return expiration;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2023 SUSE LLC
+ *
+ * This software is licensed to you under the GNU General Public License,
+ * version 2 (GPLv2). There is NO WARRANTY for this software, express or
+ * implied, including the implied warranties of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+ * along with this software; if not, see
+ * http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+ *
+ * Red Hat trademarks are not licensed under GPLv2. No permission is
+ * granted to use or replicate Red Hat trademarks that are incorporated
+ * in this software or its documentation.
+ */
+package com.suse.utils.test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.suse.utils.ExpiringCache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class ExpiringCacheTest {
+
+    @Test
+    public void testExpiration() {
+        AtomicLong now = new AtomicLong(0);
+        ExpiringCache<String, String> cache = new ExpiringCache<>(10, 10, TimeUnit.SECONDS, now::get);
+
+        cache.put("key", "value");
+        assertEquals(Optional.of("value"), cache.get("key"));
+
+        now.set(9_999);
+        assertEquals(Optional.of("value"), cache.get("key"));
+
+        now.set(10_000);
+        assertTrue(cache.get("key").isEmpty());
+        assertEquals(0, cache.size());
+
+        assertEquals(2, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() {
+        ExpiringCache<Integer, String> cache = new ExpiringCache<>(2, 1, TimeUnit.HOURS);
+
+        cache.put(1, "one");
+        cache.put(2, "two");
+        cache.get(1);
+        cache.put(3, "three");
+
+        assertEquals(Optional.of("one"), cache.get(1));
+        assertTrue(cache.get(2).isEmpty());
+        assertEquals(Optional.of("three"), cache.get(3));
+    }
+
+    @Test
+    public void testLoader() {
+        ExpiringCache<Integer, String> cache = new ExpiringCache<>(10, 1, TimeUnit.HOURS);
+        AtomicLong calls = new AtomicLong();
+
+        assertEquals("1", cache.get(1, k -> {
+            calls.incrementAndGet();
+            return k.toString();
+        }));
+        assertEquals("1", cache.get(1, k -> {
+            calls.incrementAndGet();
+            return k.toString();
+        }));
+        assertEquals(1, calls.get());
+
+        // null values are not cached
+        assertNull(cache.get(2, k -> null));
+        assertTrue(cache.get(2).isEmpty());
+    }
+
+    @Test
+    public void testInvalidation() {
+        ExpiringCache<String, String> cache = new ExpiringCache<>(10, 1, TimeUnit.HOURS);
+        cache.put("a1", "value");
+        cache.put("a2", "value");
+        cache.put("b1", "value");
+
+        cache.invalidate("a1");
+        assertTrue(cache.get("a1").isEmpty());
+
+        cache.invalidateIf(k -> k.startsWith("b"));
+        assertTrue(cache.get("b1").isEmpty());
+        assertEquals(Optional.of("value"), cache.get("a2"));
+
+        cache.clear();
+        assertEquals(0, cache.size());
+    }
+}
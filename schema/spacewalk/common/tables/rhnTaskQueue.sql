@@ -37,4 +37,7 @@ CREATE INDEX rhn_task_queue_org_task_idx
 CREATE INDEX rhn_task_queue_earliest
     ON rhnTaskQueue (earliest);
 
+CREATE INDEX rhn_task_queue_name_data_idx
+    ON rhnTaskQueue (task_name, task_data);
+
 CREATE SEQUENCE rhn_task_queue_id_seq START WITH 1;
@@ -0,0 +1,49 @@
+--
+-- Copyright (c) 2023 SUSE LLC
+--
+-- This software is licensed to you under the GNU General Public License,
+-- version 2 (GPLv2). There is NO WARRANTY for this software, express or
+-- implied, including the implied warranties of MERCHANTABILITY or FITNESS
+-- FOR A PARTICULAR PURPOSE. You should have received a copy of GPLv2
+-- along with this software; if not, see
+-- http://www.gnu.org/licenses/old-licenses/gpl-2.0.txt.
+--
+-- Red Hat trademarks are not licensed under GPLv2. No permission is
+-- granted to use or replicate Red Hat trademarks that are incorporated
+-- in this software or its documentation.
+--
+
+CREATE TABLE suseActionDispatchQueue
+(
+    id                     NUMERIC NOT NULL
+                               CONSTRAINT suse_actdispq_id_pk PRIMARY KEY,
+    action_id              NUMERIC NOT NULL
+                               CONSTRAINT suse_actdispq_aid_fk
+                                   REFERENCES rhnAction (id)
+                                   ON DELETE CASCADE,
+    earliest_action        TIMESTAMPTZ NOT NULL,
+    force_pkg_list_refresh CHAR(1)
+                               DEFAULT ('N') NOT NULL
+                               CONSTRAINT suse_actdispq_fplr_ck
+                                   CHECK (force_pkg_list_refresh IN ('Y', 'N')),
+    staging_server_id      NUMERIC
+                               CONSTRAINT suse_actdispq_ssid_fk
+                                   REFERENCES rhnServer (id)
+                                   ON DELETE CASCADE,
+    user_id                NUMERIC
+                               CONSTRAINT suse_actdispq_uid_fk
+                                   REFERENCES web_contact (id)
+                                   ON DELETE SET NULL,
+    attempts               NUMERIC
+                               DEFAULT (0) NOT NULL,
+    created                TIMESTAMPTZ
+                               DEFAULT (current_timestamp) NOT NULL
+);
+
+CREATE INDEX suse_actdispq_ea_idx
+    ON suseActionDispatchQueue (earliest_action);
+
+CREATE INDEX suse_actdispq_aid_idx
+    ON suseActionDispatchQueue (action_id);
+
+CREATE SEQUENCE suse_actdispq_id_seq;
@@ -0,0 +1,34 @@
+CREATE TABLE IF NOT EXISTS suseActionDispatchQueue
+(
+    id                     NUMERIC NOT NULL
+                               CONSTRAINT suse_actdispq_id_pk PRIMARY KEY,
+    action_id              NUMERIC NOT NULL
+                               CONSTRAINT suse_actdispq_aid_fk
+                                   REFERENCES rhnAction (id)
+                                   ON DELETE CASCADE,
+    earliest_action        TIMESTAMPTZ NOT NULL,
+    force_pkg_list_refresh CHAR(1)
+                               DEFAULT ('N') NOT NULL
+                               CONSTRAINT suse_actdispq_fplr_ck
+                                   CHECK (force_pkg_list_refresh IN ('Y', 'N')),
+    staging_server_id      NUMERIC
+                               CONSTRAINT suse_actdispq_ssid_fk
+                                   REFERENCES rhnServer (id)
+                                   ON DELETE CASCADE,
+    user_id                NUMERIC
+                               CONSTRAINT suse_actdispq_uid_fk
+                                   REFERENCES web_contact (id)
+                                   ON DELETE SET NULL,
+    attempts               NUMERIC
+                               DEFAULT (0) NOT NULL,
+    created                TIMESTAMPTZ
+                               DEFAULT (current_timestamp) NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS suse_actdispq_ea_idx
+    ON suseActionDispatchQueue (earliest_action);
+
+CREATE INDEX IF NOT EXISTS suse_actdispq_aid_idx
+    ON suseActionDispatchQueue (action_id);
+
+CREATE SEQUENCE IF NOT EXISTS suse_actdispq_id_seq;
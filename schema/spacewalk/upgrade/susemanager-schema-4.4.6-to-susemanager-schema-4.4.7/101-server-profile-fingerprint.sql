@@ -0,0 +1,14 @@
+CREATE TABLE IF NOT EXISTS suseServerProfileFingerprint
+(
+    server_id    NUMERIC NOT NULL
+                     CONSTRAINT suse_srvprofp_sid_pk PRIMARY KEY
+                     CONSTRAINT suse_srvprofp_sid_fk
+                         REFERENCES rhnServer (id)
+                         ON DELETE CASCADE,
+    fingerprint  VARCHAR(32) NOT NULL,
+    modified     TIMESTAMPTZ
+                     DEFAULT (current_timestamp) NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS suse_srvprofp_fp_idx
+    ON suseServerProfileFingerprint (fingerprint);
@@ -0,0 +1,2 @@
+CREATE INDEX IF NOT EXISTS rhn_task_queue_name_data_idx
+    ON rhnTaskQueue (task_name, task_data);
@@ -41,11 +41,12 @@ import org.apache.lucene.search.Query;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
 import org.apache.lucene.store.LockObtainFailedException;
+import org.picocontainer.Startable;
 
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -55,9 +56,13 @@ import java.util.TreeMap;
 /**
  * Indexing workhorse class
  *
+ * Every index has a single long-lived IndexWriter whose changes are committed in
+ * batches, and a shared IndexSearcher which is reopened only after the index
+ * changed on disk.
+ *
  * @version $Rev$
  */
-public class IndexManager {
+public class IndexManager implements Startable {
 
     private static Logger log = LogManager.getLogger(IndexManager.class);
     private String indexWorkDir;
@@ -73,6 +78,12 @@ public class IndexManager {
     // Name conflict with our Configuration class and Hadoop's
     private Map<String, String> docLocaleLookUp = new TreeMap<String, String>
                                                                                                 (String.CASE_INSENSITIVE_ORDER);
+    private int commitBatchSize;
+    private final Map<String, IndexWriter> writers = new HashMap<String, IndexWriter>();
+    private final Map<String, Integer> pendingChanges = new HashMap<String, Integer>();
+    private final Map<String, SearcherHolder> searchers =
+            new HashMap<String, SearcherHolder>();
+
     /**
      * Constructor
      *
@@ -97,6 +108,44 @@ public class IndexManager {
         max_ngram = config.getInt("search.max_ngram", 5);
         filterDocResults = config.getBoolean("search.doc.limit_results");
         explainResults = config.getBoolean("search.log.explain.results");
+        commitBatchSize = config.getInt("search.index.commit_batch_size", 100);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void start() {
+        // writers and searchers are opened lazily
+    }
+
+    /**
+     * Commits pending changes and closes all the writers and searchers
+     */
+    public void stop() {
+        synchronized (writers) {
+            for (String indexName : new ArrayList<String>(writers.keySet())) {
+                try {
+                    commit(indexName);
+                }
+                catch (IndexingException e) {
+                    log.error("Unable to commit index <" + indexName + ">", e);
+                }
+                closeWriter(indexName);
+            }
+        }
+        synchronized (searchers) {
+            for (SearcherHolder holder : searchers.values()) {
+                holder.release();
+            }
+            searchers.clear();
+        }
+    }
+
+    /**
+     * @return number of changes after which an index is committed
+     */
+    public int getCommitBatchSize() {
+        return commitBatchSize;
     }
 
 
@@ -142,12 +191,13 @@ public class IndexManager {
     public List<Result> search(String indexName, String query, String lang,
             boolean isFineGrained)
             throws IndexingException, QueryParseException {
-        IndexSearcher searcher = null;
-        IndexReader reader = null;
+        SearcherHolder holder = null;
         List<Result> retval = null;
         try {
-            reader = getIndexReader(indexName, lang);
-            searcher = getIndexSearcher(indexName, lang);
+            // make the pending changes of this index visible to the query
+            commit(indexName);
+            holder = acquireSearcher(indexName, lang);
+            IndexSearcher searcher = holder.getSearcher();
             QueryParser qp = getQueryParser(indexName, lang, isFineGrained);
             Query q = qp.parse(query);
             if (log.isDebugEnabled()) {
@@ -161,7 +211,7 @@ public class IndexManager {
             Set<Term> queryTerms = null;
             try {
                 queryTerms = new HashSet<Term>();
-                Query newQ = q.rewrite(reader);
+                Query newQ = q.rewrite(holder.getReader());
                 newQ.extractTerms(queryTerms);
             }
             catch (Exception e) {
@@ -187,16 +237,8 @@ public class IndexManager {
             throw new QueryParseException("Could not parse query: '" + query + "'");
         }
         finally {
-            try {
-                if (searcher != null) {
-                    searcher.close();
-                }
-                if (reader != null) {
-                    reader.close();
-                }
-            }
-            catch (IOException ex) {
-                throw new IndexingException(ex);
+            if (holder != null) {
+                holder.release();
             }
         }
         return retval;
@@ -215,17 +257,9 @@ public class IndexManager {
 
         try {
             IndexWriter writer = getIndexWriter(indexName, lang);
-            try {
-                writer.flush();
-            }
-            finally {
-                try {
-                    writer.close();
-                }
-                finally {
-                    // unlock it if it is locked.
-                    unlockIndex(indexName);
-                }
+            synchronized (writers) {
+                writer.commit();
+                pendingChanges.put(indexName, 0);
             }
         }
         catch (CorruptIndexException e) {
@@ -235,13 +269,15 @@ public class IndexManager {
             throw new IndexingException(e);
         }
         catch (IOException e) {
+            abortWriter(indexName);
             throw new IndexingException(e);
         }
     }
 
 
     /**
-     * Adds a document to an index
+     * Adds a document to an index. The document is visible to searches after the
+     * next commit of the index.
      *
      * @param indexName index to use
      * @param doc Document to be indexed.
@@ -253,19 +289,7 @@ public class IndexManager {
 
         try {
             IndexWriter writer = getIndexWriter(indexName, lang);
-            try {
-                writer.addDocument(doc);
-                writer.flush();
-            }
-            finally {
-                try {
-                    writer.close();
-                }
-                finally {
-                    // unlock it if it is locked.
-                    unlockIndex(indexName);
-                }
-            }
+            writer.addDocument(doc);
         }
         catch (CorruptIndexException e) {
             throw new IndexingException(e);
@@ -274,10 +298,14 @@ public class IndexManager {
             throw new IndexingException(e);
         }
         catch (IOException e) {
+            abortWriter(indexName);
             throw new IndexingException(e);
         }
+        indexChanged(indexName);
     }
     /**
+     * Adds a document to an index, replacing the documents having the same value
+     * in uniqueField
      * @param indexName
      * @param doc document with data to index
      * @param uniqueField field in doc which identifies this uniquely
@@ -287,37 +315,25 @@ public class IndexManager {
     public void addUniqueToIndex(String indexName, Document doc,
             String uniqueField, String lang)
         throws IndexingException {
-        IndexReader reader = null;
-        int numFound = 0;
-        try {
-            reader = getIndexReader(indexName, lang);
-            Term term = new Term(uniqueField, doc.get(uniqueField));
-            numFound = reader.docFreq(term);
+        if (log.isDebugEnabled()) {
+            log.debug("Replacing <" + indexName + "> docs for " + uniqueField + ":" +
+                    doc.get(uniqueField));
         }
-        catch (FileNotFoundException e) {
-            // Index doesn't exist, so this add will be unique
-            // we don't need to do anything/
+        try {
+            IndexWriter writer = getIndexWriter(indexName, lang);
+            writer.updateDocument(new Term(uniqueField, doc.get(uniqueField)), doc);
         }
-        catch (IOException e) {
+        catch (CorruptIndexException e) {
             throw new IndexingException(e);
         }
-        finally {
-            if (reader != null) {
-                try {
-                    reader.close();
-                }
-                catch (IOException e) {
-                    //
-                }
-            }
+        catch (LockObtainFailedException e) {
+            throw new IndexingException(e);
         }
-        if (numFound > 0) {
-            log.info("Found " + numFound + " <" + indexName + " docs for " +
-                    uniqueField + ":" + doc.get(uniqueField) +
-                    " will remove them now.");
-            removeFromIndex(indexName, uniqueField, doc.get(uniqueField));
+        catch (IOException e) {
+            abortWriter(indexName);
+            throw new IndexingException(e);
         }
-        addToIndex(indexName, doc, lang);
+        indexChanged(indexName);
     }
 
     /**
@@ -333,25 +349,96 @@ public class IndexManager {
         log.info("Removing <" + indexName + "> " + uniqueField + ":" +
                 objectId);
         Term t = new Term(uniqueField, objectId);
-        IndexReader reader;
         try {
-            reader = getIndexReader(indexName, IndexHandler.DEFAULT_LANG);
-            try {
-                reader.deleteDocuments(t);
-                reader.flush();
-            }
-            finally {
-               if (reader != null) {
-                    reader.close();
-               }
-            }
+            IndexWriter writer = getIndexWriter(indexName, IndexHandler.DEFAULT_LANG);
+            writer.deleteDocuments(t);
         }
         catch (CorruptIndexException e) {
             throw new IndexingException(e);
         }
         catch (IOException e) {
+            abortWriter(indexName);
             throw new IndexingException(e);
         }
+        indexChanged(indexName);
+    }
+
+    /**
+     * Commits the pending changes of an index, making them visible to searches.
+     * Does nothing if the index has no pending changes.
+     *
+     * @param indexName index to commit
+     * @throws IndexingException something went wrong committing the changes
+     */
+    public void commit(String indexName) throws IndexingException {
+        synchronized (writers) {
+            Integer pending = pendingChanges.get(indexName);
+            IndexWriter writer = writers.get(indexName);
+            if (writer == null || pending == null || pending == 0) {
+                return;
+            }
+            try {
+                writer.commit();
+                pendingChanges.put(indexName, 0);
+                if (log.isDebugEnabled()) {
+                    log.debug("Committed " + pending + " changes to <" + indexName + ">");
+                }
+            }
+            catch (IOException e) {
+                abortWriter(indexName);
+                throw new IndexingException(e);
+            }
+        }
+    }
+
+    private void indexChanged(String indexName) throws IndexingException {
+        boolean commitNeeded;
+        synchronized (writers) {
+            Integer pending = pendingChanges.get(indexName);
+            pending = (pending == null) ? 1 : pending + 1;
+            pendingChanges.put(indexName, pending);
+            commitNeeded = pending >= commitBatchSize;
+        }
+        if (commitNeeded) {
+            commit(indexName);
+        }
+    }
+
+    /**
+     * Drops the uncommitted changes of a writer which failed and closes it, so that
+     * the next operation opens a fresh one.
+     */
+    private void abortWriter(String indexName) {
+        synchronized (writers) {
+            IndexWriter writer = writers.remove(indexName);
+            pendingChanges.remove(indexName);
+            if (writer == null) {
+                return;
+            }
+            log.warn("Discarding uncommitted changes to <" + indexName + ">");
+            try {
+                writer.rollback();
+            }
+            catch (IOException e) {
+                log.error("Unable to rollback index <" + indexName + ">", e);
+            }
+        }
+    }
+
+    private void closeWriter(String indexName) {
+        synchronized (writers) {
+            IndexWriter writer = writers.remove(indexName);
+            pendingChanges.remove(indexName);
+            if (writer == null) {
+                return;
+            }
+            try {
+                writer.close();
+            }
+            catch (IOException e) {
+                log.error("Unable to close index <" + indexName + ">", e);
+            }
+        }
     }
 
     /**
@@ -372,32 +459,58 @@ public class IndexManager {
     private IndexWriter getIndexWriter(String name, String lang)
             throws CorruptIndexException, LockObtainFailedException,
             IOException {
-        String path = indexWorkDir + name;
-        File f = new File(path);
-        f.mkdirs();
-        Analyzer analyzer = getAnalyzer(name, lang);
-        IndexWriter writer = new IndexWriter(path, analyzer);
-        writer.setUseCompoundFile(true);
-        return writer;
-    }
-
-    private IndexReader getIndexReader(String indexName, String locale)
-            throws CorruptIndexException, IOException {
-        String path = indexWorkDir + indexName;
-        log.info("IndexManager::getIndexReader(" + indexName + ", " + locale +
-                ") path = " + path);
-        File f = new File(path);
-        IndexReader retval = IndexReader.open(FSDirectory.getDirectory(f));
-        return retval;
+        synchronized (writers) {
+            IndexWriter writer = writers.get(name);
+            if (writer != null) {
+                return writer;
+            }
+            String path = indexWorkDir + name;
+            log.info("IndexManager::getIndexWriter(" + name + ", " + lang +
+                    ") path = " + path);
+            File f = new File(path);
+            f.mkdirs();
+            // writers live as long as this process, so a lock found now is stale
+            unlockIndex(name);
+            Analyzer analyzer = getAnalyzer(name, lang);
+            writer = new IndexWriter(FSDirectory.getDirectory(f), analyzer,
+                    IndexWriter.MaxFieldLength.LIMITED);
+            writer.setUseCompoundFile(true);
+            writers.put(name, writer);
+            return writer;
+        }
     }
 
-    private IndexSearcher getIndexSearcher(String indexName, String locale)
+    /**
+     * Returns the shared searcher of an index, reopening it first if the index
+     * changed since it was opened. The caller must release the returned holder.
+     */
+    private SearcherHolder acquireSearcher(String indexName, String locale)
             throws CorruptIndexException, IOException {
-        String path = indexWorkDir + indexName;
-        log.info("IndexManager::getIndexSearcher(" + indexName + ", " + locale +
-                ") path = " + path);
-        IndexSearcher retval = new IndexSearcher(path);
-        return retval;
+        synchronized (searchers) {
+            SearcherHolder holder = searchers.get(indexName);
+            if (holder == null) {
+                String path = indexWorkDir + indexName;
+                log.info("IndexManager::acquireSearcher(" + indexName + ", " + locale +
+                        ") path = " + path);
+                IndexReader reader = IndexReader.open(FSDirectory.getDirectory(
+                        new File(path)), true);
+                holder = new SearcherHolder(reader);
+                searchers.put(indexName, holder);
+            }
+            else if (!holder.getReader().isCurrent()) {
+                IndexReader reader = holder.getReader().reopen();
+                if (reader != holder.getReader()) {
+                    if (log.isDebugEnabled()) {
+                        log.debug("Reopened searcher of <" + indexName + ">");
+                    }
+                    holder.release();
+                    holder = new SearcherHolder(reader);
+                    searchers.put(indexName, holder);
+                }
+            }
+            holder.acquire();
+            return holder;
+        }
     }
 
     private QueryParser getQueryParser(String indexName, String lang,
@@ -587,9 +700,11 @@ public class IndexManager {
     public int deleteRecordsNotInList(Set<String> ids, String indexName,
             String uniqField) {
         int count = 0;
-        IndexReader reader = null;
+        SearcherHolder holder = null;
         try {
-            reader = getIndexReader(indexName, IndexHandler.DEFAULT_LANG);
+            commit(indexName);
+            holder = acquireSearcher(indexName, IndexHandler.DEFAULT_LANG);
+            IndexReader reader = holder.getReader();
 
             // Use maxDoc() to iterate over all docs, numDocs() returns the
             // number of currently alive docs leaving out the deleted ones.
@@ -608,6 +723,7 @@ public class IndexManager {
                     }
                 }
             }
+            commit(indexName);
         }
         catch (IOException e) {
             e.printStackTrace();
@@ -618,13 +734,8 @@ public class IndexManager {
             log.info("deleteRecordsNotInList() caught exception : " + e);
         }
         finally {
-            if (reader != null) {
-                try {
-                    reader.close();
-                }
-                catch (IOException e) {
-                    //
-                }
+            if (holder != null) {
+                holder.release();
             }
         }
         return count;
@@ -724,4 +835,44 @@ public class IndexManager {
         return analyzer;
     }
 
+    /**
+     * An IndexReader and the IndexSearcher built on it, shared by concurrent
+     * searches. Both are closed once the holder has been replaced in the pool and
+     * the last search using it released it.
+     */
+    private static class SearcherHolder {
+        private final IndexReader reader;
+        private final IndexSearcher searcher;
+        private int refCount = 1;
+
+        SearcherHolder(IndexReader readerIn) {
+            reader = readerIn;
+            searcher = new IndexSearcher(readerIn);
+        }
+
+        IndexReader getReader() {
+            return reader;
+        }
+
+        IndexSearcher getSearcher() {
+            return searcher;
+        }
+
+        synchronized void acquire() {
+            refCount++;
+        }
+
+        synchronized void release() {
+            refCount--;
+            if (refCount == 0) {
+                try {
+                    searcher.close();
+                    reader.close();
+                }
+                catch (IOException e) {
+                    log.error("Unable to close searcher", e);
+                }
+            }
+        }
+    }
 }
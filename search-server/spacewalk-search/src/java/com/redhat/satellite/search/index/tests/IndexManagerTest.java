@@ -57,6 +57,27 @@ public class IndexManagerTest extends BaseTestCase {
         assertTrue(results.size() >= 1);
     }
 
+    public void testUpdatesVisibleToSearches()
+        throws IndexingException, QueryParseException {
+
+        String index = "bar";
+        Map<String, String> meta = new HashMap<String, String>();
+        meta.put("name", "bar");
+        meta.put("desc", "A first bar");
+        DocumentBuilder pdb = new PackageDocumentBuilder();
+        indexManager.addUniqueToIndex(index, pdb.buildDocument(new Long(456), meta),
+                "id", "en");
+        assertEquals(1, indexManager.search(index, "name:bar", "en").size());
+
+        // replacing the document must not leave the old one behind
+        meta.put("desc", "A second bar");
+        indexManager.addUniqueToIndex(index, pdb.buildDocument(new Long(456), meta),
+                "id", "en");
+        assertEquals(1, indexManager.search(index, "name:bar", "en").size());
+
+        indexManager.removeFromIndex(index, "id", "456");
+        assertEquals(0, indexManager.search(index, "name:bar", "en").size());
+    }
 
     @SuppressWarnings("unchecked")
     @Override
@@ -72,7 +72,9 @@ public abstract class GenericIndexTask implements StatefulJob {
                 GenericRecord current = iter.next();
                 indexRecord(indexManager, current);
                 count++;
-                if (count == 10 || !iter.hasNext()) {
+                if (count == indexManager.getCommitBatchSize() || !iter.hasNext()) {
+                    // only remember records as indexed once they are committed
+                    indexManager.commit(getIndexName());
                     if (System.getProperties().get("isTesting") == null) {
                         updateLastRecord(databaseManager, current.getId());
                     }
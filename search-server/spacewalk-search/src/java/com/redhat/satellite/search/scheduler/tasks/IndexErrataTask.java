@@ -67,7 +67,9 @@ public class IndexErrataTask implements Job {
                 Errata current = iter.next();
                 indexErrata(indexManager, current);
                 count++;
-                if (count == 10 || !iter.hasNext()) {
+                if (count == indexManager.getCommitBatchSize() || !iter.hasNext()) {
+                    // only remember records as indexed once they are committed
+                    indexManager.commit("errata");
                     if (System.getProperties().get("isTesting") == null) {
                         updateLastErrataId(databaseManager, current.getId());
                     }
@@ -69,7 +69,9 @@ public class IndexPackagesTask implements Job {
                 RhnPackage current = iter.next();
                 indexPackage(indexManager, current);
                 count++;
-                if (count == 10 || !iter.hasNext()) {
+                if (count == indexManager.getCommitBatchSize() || !iter.hasNext()) {
+                    // only remember records as indexed once they are committed
+                    indexManager.commit("package");
                     if (System.getProperties().get("isTesting") == null) {
                         updateLastPackageId(databaseManager, current.getId());
                     }